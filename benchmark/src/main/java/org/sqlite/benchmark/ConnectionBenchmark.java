@@ -0,0 +1,98 @@
+package org.sqlite.benchmark;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.sqlite.JDBC;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.core.CoreConnection;
+import org.sqlite.javax.SQLitePoolingDataSource;
+
+/**
+ * Gets a connection to a file database, runs a query and gives the connection back,
+ * with a connection opened and closed each time and with one borrowed from a pool.
+ * Scores are per connection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectionBenchmark
+{
+    private String url;
+    private SQLiteConfig config;
+    private SQLitePoolingDataSource pool;
+    private Connection keepAlive;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        url = Databases.url("file");
+        config = new SQLiteConfig();
+        config.setCacheSize(2000);
+        config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+
+        keepAlive = config.createConnection(url);
+        Statement stat = keepAlive.createStatement();
+        stat.executeUpdate("create table t (id integer primary key, name text)");
+        stat.executeUpdate("insert into t values (1, 'one')");
+        stat.close();
+
+        pool = new SQLitePoolingDataSource(config);
+        pool.setUrl(url);
+        pool.setMaxPoolSize(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        pool.close();
+        Databases.close(keepAlive);
+    }
+
+    private static String query(Connection conn) throws Exception {
+        Statement stat = conn.createStatement();
+        ResultSet rs = stat.executeQuery("select name from t where id = 1");
+        String name = rs.next() ? rs.getString(1) : null;
+        rs.close();
+        stat.close();
+        return name;
+    }
+
+    @Benchmark
+    public String raw() throws Exception {
+        Connection conn = JDBC.createConnection(url, config.toProperties());
+        try {
+            return query(conn);
+        }
+        finally {
+            ((CoreConnection) conn).realClose();
+        }
+    }
+
+    @Benchmark
+    public String pooled() throws Exception {
+        Connection conn = pool.getConnection();
+        try {
+            return query(conn);
+        }
+        finally {
+            conn.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.sqlite.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.sqlite.JDBC;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.core.CoreConnection;
+
+/**
+ * Opens the databases the benchmarks run against: "memory" for an in-memory database,
+ * "file" for a new file in the temporary directory, deleted when it is closed.
+ */
+final class Databases
+{
+    private Databases() {}
+
+    /**
+     * @param kind "memory" or "file".
+     * @return The URL of a new, empty database.
+     * @throws IOException
+     */
+    static String url(String kind) throws IOException {
+        if ("memory".equals(kind)) {
+            return JDBC.PREFIX + ":memory:";
+        }
+        if ("file".equals(kind)) {
+            File file = File.createTempFile("sqlite-jdbc-benchmark", ".db");
+            file.deleteOnExit();
+            return JDBC.PREFIX + file.getAbsolutePath();
+        }
+        throw new IllegalArgumentException("unknown database kind: " + kind);
+    }
+
+    /**
+     * @param kind "memory" or "file".
+     * @param config Configuration of the connection.
+     * @return A connection to a new, empty database.
+     * @throws Exception
+     */
+    static Connection open(String kind, SQLiteConfig config) throws Exception {
+        return config.createConnection(url(kind));
+    }
+
+    /**
+     * @param kind "memory" or "file".
+     * @return A connection to a new, empty database with the default configuration.
+     * @throws Exception
+     */
+    static Connection open(String kind) throws Exception {
+        return open(kind, new SQLiteConfig());
+    }
+
+    /**
+     * Closes a connection and its database, deleting the file of a file database.
+     * @param conn The connection, or null.
+     * @throws SQLException
+     */
+    static void close(Connection conn) throws SQLException {
+        if (conn == null) {
+            return;
+        }
+        String url = conn.getMetaData().getURL();
+        ((CoreConnection) conn).realClose();
+        String path = url.substring(JDBC.PREFIX.length());
+        if (!path.startsWith(":memory:")) {
+            new File(path).delete();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.sqlite.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Reads dates and timestamps stored in each of the date classes, which decides whether
+ * getDate() and getTimestamp() convert numbers or parse text, and binds timestamps for an
+ * insert. Scores are per query over all rows, or per insert.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateBenchmark
+{
+    @Param({ "integer", "text", "real" })
+    public String dateClass;
+
+    @Param({ "1000" })
+    public int rows;
+
+    private Connection conn;
+    private PreparedStatement select;
+    private PreparedStatement insert;
+    private Timestamp now;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setDateClass(dateClass);
+        conn = Databases.open("memory", config);
+        Statement stat = conn.createStatement();
+        stat.executeUpdate("create table t (d date, ts timestamp)");
+        stat.executeUpdate("create table u (ts timestamp)");
+        stat.close();
+
+        now = new Timestamp(System.currentTimeMillis());
+        conn.setAutoCommit(false);
+        PreparedStatement prep = conn.prepareStatement("insert into t values (?, ?)");
+        for (int i = 0; i < rows; i++) {
+            Timestamp ts = new Timestamp(now.getTime() - i * 3600000L);
+            prep.setDate(1, new java.sql.Date(ts.getTime()));
+            prep.setTimestamp(2, ts);
+            prep.addBatch();
+        }
+        prep.executeBatch();
+        prep.close();
+        conn.commit();
+        conn.setAutoCommit(true);
+
+        select = conn.prepareStatement("select d, ts from t");
+        insert = conn.prepareStatement("insert into u values (?)");
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        select.close();
+        insert.close();
+        Databases.close(conn);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clear() throws Exception {
+        Statement stat = conn.createStatement();
+        stat.executeUpdate("delete from u");
+        stat.close();
+    }
+
+    @Benchmark
+    public void getDate(Blackhole bh) throws Exception {
+        ResultSet rs = select.executeQuery();
+        while (rs.next()) {
+            bh.consume(rs.getDate(1));
+        }
+        rs.close();
+    }
+
+    @Benchmark
+    public void getTimestamp(Blackhole bh) throws Exception {
+        ResultSet rs = select.executeQuery();
+        while (rs.next()) {
+            bh.consume(rs.getTimestamp(2));
+        }
+        rs.close();
+    }
+
+    @Benchmark
+    public int setTimestamp() throws Exception {
+        insert.setTimestamp(1, now);
+        return insert.executeUpdate();
+    }
+}
@@ -0,0 +1,191 @@
+package org.sqlite.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.sqlite.Function;
+
+/**
+ * Calls user-defined functions once per row of a table, against the same query with the
+ * built-in equivalent as a baseline. The scalarArguments benchmarks use Function.Scalar,
+ * whose arguments and result go through a buffer instead of a JNI call per value, and
+ * batchAggregate uses Function.BatchAggregate, which gets the rows in batches. Scores are per query over all rows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FunctionBenchmark
+{
+    @Param({ "memory" })
+    public String database;
+
+    @Param({ "10000" })
+    public int rows;
+
+    private Connection conn;
+    private PreparedStatement builtin;
+    private PreparedStatement scalar;
+    private PreparedStatement text;
+    private PreparedStatement buffered;
+    private PreparedStatement bufferedText;
+    private PreparedStatement aggregate;
+    private PreparedStatement batchAggregate;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        conn = Databases.open(database);
+        Statement stat = conn.createStatement();
+        stat.executeUpdate("create table t (v integer, s text)");
+        stat.close();
+        conn.setAutoCommit(false);
+        PreparedStatement insert = conn.prepareStatement("insert into t values (?, ?)");
+        for (int i = 0; i < rows; i++) {
+            insert.setInt(1, i);
+            insert.setString(2, "value " + i);
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        insert.close();
+        conn.commit();
+        conn.setAutoCommit(true);
+
+        Function.create(conn, "bench_add", new Function() {
+            @Override
+            protected void xFunc() throws SQLException {
+                result(value_long(0) + value_long(1));
+            }
+        });
+        Function.create(conn, "bench_upper", new Function() {
+            @Override
+            protected void xFunc() throws SQLException {
+                result(value_text(0).toUpperCase());
+            }
+        });
+        Function.create(conn, "bench_add_args", new Function.Scalar() {
+            @Override
+            protected void xFunc(Arguments args) throws SQLException {
+                args.result(args.value_long(0) + args.value_long(1));
+            }
+        });
+        Function.create(conn, "bench_upper_args", new Function.Scalar() {
+            @Override
+            protected void xFunc(Arguments args) throws SQLException {
+                args.result(args.value_text(0).toUpperCase());
+            }
+        });
+        Function.create(conn, "bench_sum", new Function.Aggregate() {
+            private long sum;
+
+            @Override
+            protected void xStep() throws SQLException {
+                sum += value_long(0);
+            }
+
+            @Override
+            protected void xFinal() throws SQLException {
+                result(sum);
+                sum = 0;
+            }
+        });
+
+        Function.create(conn, "bench_sum_batch", new Function.BatchAggregate() {
+            private long sum;
+
+            @Override
+            protected void xStepBatch(Rows rows) throws SQLException {
+                long[] values = rows.longs(0);
+                for (int i = 0; i < rows.count(); i++) {
+                    sum += values[i];
+                }
+            }
+
+            @Override
+            protected void xFinal() throws SQLException {
+                result(sum);
+            }
+        });
+
+        builtin = conn.prepareStatement("select sum(v + 1) from t");
+        scalar = conn.prepareStatement("select sum(bench_add(v, 1)) from t");
+        text = conn.prepareStatement("select count(bench_upper(s)) from t");
+        buffered = conn.prepareStatement("select sum(bench_add_args(v, 1)) from t");
+        bufferedText = conn.prepareStatement("select count(bench_upper_args(s)) from t");
+        aggregate = conn.prepareStatement("select bench_sum(v) from t");
+        batchAggregate = conn.prepareStatement("select bench_sum_batch(v) from t");
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        builtin.close();
+        scalar.close();
+        text.close();
+        buffered.close();
+        bufferedText.close();
+        aggregate.close();
+        batchAggregate.close();
+        Databases.close(conn);
+    }
+
+    private static long query(PreparedStatement prep) throws Exception {
+        ResultSet rs = prep.executeQuery();
+        long result = rs.next() ? rs.getLong(1) : 0;
+        rs.close();
+        return result;
+    }
+
+    @Benchmark
+    public long builtin() throws Exception {
+        return query(builtin);
+    }
+
+    @Benchmark
+    public long scalar() throws Exception {
+        return query(scalar);
+    }
+
+    @Benchmark
+    public long scalarText() throws Exception {
+        return query(text);
+    }
+
+    @Benchmark
+    public long scalarArguments() throws Exception {
+        return query(buffered);
+    }
+
+    @Benchmark
+    public long scalarArgumentsText() throws Exception {
+        return query(bufferedText);
+    }
+
+    @Benchmark
+    public long aggregate() throws Exception {
+        return query(aggregate);
+    }
+
+    @Benchmark
+    public long batchAggregate() throws Exception {
+        return query(batchAggregate);
+    }
+}
@@ -0,0 +1,104 @@
+package org.sqlite.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Inserts rows with PreparedStatement.executeBatch() (DB.executeBatch and the binding of
+ * parameters), with a row of a given number of values of one type per entry. Scores are
+ * per batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InsertBenchmark
+{
+    @Param({ "memory", "file" })
+    public String database;
+
+    @Param({ "1", "100", "10000" })
+    public int batchSize;
+
+    @Param({ "1", "8" })
+    public int columns;
+
+    @Param({ "integer", "text", "blob" })
+    public String payload;
+
+    private Connection conn;
+    private PreparedStatement insert;
+    private String text;
+    private byte[] blob;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        conn = Databases.open(database);
+        StringBuilder create = new StringBuilder("create table t (");
+        StringBuilder values = new StringBuilder("insert into t values (");
+        for (int i = 0; i < columns; i++) {
+            create.append(i == 0 ? "" : ", ").append("c").append(i);
+            values.append(i == 0 ? "?" : ", ?");
+        }
+        Statement stat = conn.createStatement();
+        stat.executeUpdate(create.append(")").toString());
+        stat.close();
+        insert = conn.prepareStatement(values.append(")").toString());
+
+        text = "The quick brown fox jumps over the lazy dog, \u00e9\u00e8\u00ea";
+        blob = new byte[64];
+        for (int i = 0; i < blob.length; i++) {
+            blob[i] = (byte) i;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() throws Exception {
+        Statement stat = conn.createStatement();
+        stat.executeUpdate("delete from t");
+        stat.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        insert.close();
+        Databases.close(conn);
+    }
+
+    @Benchmark
+    public int[] executeBatch() throws Exception {
+        for (int row = 0; row < batchSize; row++) {
+            for (int col = 1; col <= columns; col++) {
+                if ("integer".equals(payload)) {
+                    insert.setLong(col, row * 31L + col);
+                }
+                else if ("text".equals(payload)) {
+                    insert.setString(col, text);
+                }
+                else {
+                    insert.setBytes(col, blob);
+                }
+            }
+            insert.addBatch();
+        }
+        return insert.executeBatch();
+    }
+}
@@ -0,0 +1,153 @@
+package org.sqlite.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reads every value of a table with ResultSet.next() and the getter matching the type of
+ * the columns, by index and by name. Scores are per query of all rows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSetBenchmark
+{
+    @Param({ "memory", "file" })
+    public String database;
+
+    @Param({ "1000" })
+    public int rows;
+
+    @Param({ "1", "4", "16" })
+    public int columns;
+
+    @Param({ "integer", "real", "text", "blob" })
+    public String payload;
+
+    private Connection conn;
+    private PreparedStatement query;
+    private String[] names;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        conn = Databases.open(database);
+        names = new String[columns];
+        StringBuilder create = new StringBuilder("create table t (");
+        StringBuilder values = new StringBuilder("insert into t values (");
+        for (int i = 0; i < columns; i++) {
+            names[i] = "column_" + i;
+            create.append(i == 0 ? "" : ", ").append(names[i]);
+            values.append(i == 0 ? "?" : ", ?");
+        }
+        Statement stat = conn.createStatement();
+        stat.executeUpdate(create.append(")").toString());
+        stat.close();
+
+        conn.setAutoCommit(false);
+        PreparedStatement insert = conn.prepareStatement(values.append(")").toString());
+        byte[] blob = new byte[64];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 1; col <= columns; col++) {
+                if ("integer".equals(payload)) {
+                    insert.setLong(col, row * 31L + col);
+                }
+                else if ("real".equals(payload)) {
+                    insert.setDouble(col, row / 7.0 + col);
+                }
+                else if ("text".equals(payload)) {
+                    insert.setString(col, "row " + row + " column " + col);
+                }
+                else {
+                    blob[0] = (byte) row;
+                    insert.setBytes(col, blob);
+                }
+            }
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        insert.close();
+        conn.commit();
+        conn.setAutoCommit(true);
+
+        query = conn.prepareStatement("select * from t");
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        query.close();
+        Databases.close(conn);
+    }
+
+    private void read(ResultSet rs, int col, Blackhole bh) throws Exception {
+        if ("integer".equals(payload)) {
+            bh.consume(rs.getLong(col));
+        }
+        else if ("real".equals(payload)) {
+            bh.consume(rs.getDouble(col));
+        }
+        else if ("text".equals(payload)) {
+            bh.consume(rs.getString(col));
+        }
+        else {
+            bh.consume(rs.getBytes(col));
+        }
+    }
+
+    private void read(ResultSet rs, String col, Blackhole bh) throws Exception {
+        if ("integer".equals(payload)) {
+            bh.consume(rs.getLong(col));
+        }
+        else if ("real".equals(payload)) {
+            bh.consume(rs.getDouble(col));
+        }
+        else if ("text".equals(payload)) {
+            bh.consume(rs.getString(col));
+        }
+        else {
+            bh.consume(rs.getBytes(col));
+        }
+    }
+
+    @Benchmark
+    public void getByIndex(Blackhole bh) throws Exception {
+        ResultSet rs = query.executeQuery();
+        while (rs.next()) {
+            for (int col = 1; col <= columns; col++) {
+                read(rs, col, bh);
+            }
+        }
+        rs.close();
+    }
+
+    @Benchmark
+    public void getByName(Blackhole bh) throws Exception {
+        ResultSet rs = query.executeQuery();
+        while (rs.next()) {
+            for (int col = 0; col < columns; col++) {
+                read(rs, names[col], bh);
+            }
+        }
+        rs.close();
+    }
+}
@@ -0,0 +1,112 @@
+package org.sqlite.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Runs a lookup by primary key as a statement kept prepared, as a statement prepared for
+ * each execution (served by the statement cache when it is enabled), and as SQL text
+ * through Statement. Scores are per lookup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementBenchmark
+{
+    private static final int ROWS = 10000;
+
+    @Param({ "memory", "file" })
+    public String database;
+
+    @Param({ "0", "32" })
+    public int statementCacheSize;
+
+    private Connection conn;
+    private PreparedStatement prepared;
+    private Statement stat;
+    private int key;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setStatementCacheSize(statementCacheSize);
+        conn = Databases.open(database, config);
+        stat = conn.createStatement();
+        stat.executeUpdate("create table t (id integer primary key, name text)");
+        conn.setAutoCommit(false);
+        PreparedStatement insert = conn.prepareStatement("insert into t values (?, ?)");
+        for (int i = 0; i < ROWS; i++) {
+            insert.setInt(1, i);
+            insert.setString(2, "name " + i);
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        insert.close();
+        conn.commit();
+        conn.setAutoCommit(true);
+        prepared = conn.prepareStatement("select name from t where id = ?");
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        prepared.close();
+        stat.close();
+        Databases.close(conn);
+    }
+
+    private int nextKey() {
+        key = (key + 7919) % ROWS;
+        return key;
+    }
+
+    private static String read(ResultSet rs) throws Exception {
+        String name = rs.next() ? rs.getString(1) : null;
+        rs.close();
+        return name;
+    }
+
+    @Benchmark
+    public String prepared() throws Exception {
+        prepared.setInt(1, nextKey());
+        return read(prepared.executeQuery());
+    }
+
+    @Benchmark
+    public String preparedEachTime() throws Exception {
+        PreparedStatement prep = conn.prepareStatement("select name from t where id = ?");
+        try {
+            prep.setInt(1, nextKey());
+            return read(prep.executeQuery());
+        }
+        finally {
+            prep.close();
+        }
+    }
+
+    @Benchmark
+    public String unprepared() throws Exception {
+        return read(stat.executeQuery("select name from t where id = " + nextKey()));
+    }
+}
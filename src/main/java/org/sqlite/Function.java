@@ -15,11 +15,14 @@
  */
 package org.sqlite;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.sql.Connection;
 import java.sql.SQLException;
 
 import org.sqlite.core.Codes;
 import org.sqlite.core.DB;
+import org.sqlite.core.Utf8;
 
 /** Provides an interface for creating SQLite user-defined functions.
  *
@@ -50,6 +53,10 @@ import org.sqlite.core.DB;
  *  argument. Similarly a function can return a value using the
  *  <tt>result(&lt;type&gt;)</tt> function.</p>
  *
+ *  <p>Functions called for many rows, e.g. predicates in WHERE clauses,
+ *  should extend {@link Function.Scalar} instead, which receives its
+ *  arguments and returns its result without a JNI call per value.</p>
+ *
  *  <p>Aggregate functions are not yet supported, but coming soon.</p>
  *
  */
@@ -62,6 +69,36 @@ public abstract class Function
     long value = 0;       // pointer sqlite3_value**
     int args = 0;
 
+    /**
+     * Flag of {@link #create(Connection, String, Function, int)}: the function always returns
+     * the same result for the same arguments, so SQLite may evaluate it once for constant
+     * arguments and allows it in indexes on expressions and partial indexes.
+     */
+    public static final int FLAG_DETERMINISTIC = 0x800;
+
+    /**
+     * Flag of {@link #create(Connection, String, Function, int)}: the function may only be
+     * called from top-level SQL, not from views, triggers or schema structures. Ignored by
+     * SQLite before 3.30.0.
+     */
+    public static final int FLAG_DIRECTONLY = 0x80000;
+
+    /**
+     * Flag of {@link #create(Connection, String, Function, int)}: the function has no side
+     * effects and cannot leak information, so it may be used in the schema even when the
+     * schema is not trusted. Ignored by SQLite before 3.31.0.
+     */
+    public static final int FLAG_INNOCUOUS = 0x200000;
+
+    /**
+     * Flag of {@link #create(Connection, String, Function, int)}: the function prefers its
+     * text arguments in UTF-8 rather than UTF-16, saving their conversion when the database
+     * is UTF-8. {@link Scalar} functions always use UTF-8.
+     */
+    public static final int FLAG_UTF8 = 0x1;
+
+    private static final int FLAGS = FLAG_DETERMINISTIC | FLAG_DIRECTONLY | FLAG_INNOCUOUS | FLAG_UTF8;
+
     /**
      * Registers a given function with the connection.
      * @param conn The connection.
@@ -70,6 +107,19 @@ public abstract class Function
      */
     public static final void create(Connection conn, String name, Function f)
             throws SQLException {
+        create(conn, name, f, 0);
+    }
+
+    /**
+     * Registers a given function with the connection.
+     * @param conn The connection.
+     * @param name The name of the function.
+     * @param f The function to register.
+     * @param flags FLAG_* constants or'ed together, 0 for none.
+     * @see <a href="http://www.sqlite.org/c3ref/c_deterministic.html">http://www.sqlite.org/c3ref/c_deterministic.html</a>
+     */
+    public static final void create(Connection conn, String name, Function f, int flags)
+            throws SQLException {
         if (conn == null || !(conn instanceof SQLiteConnection)) {
             throw new SQLException("connection must be to an SQLite db");
         }
@@ -83,8 +133,36 @@ public abstract class Function
         if (name == null || name.length() > 255) {
             throw new SQLException("invalid function name: '"+name+"'");
         }
+        if ((flags & ~FLAGS) != 0) {
+            throw new SQLException("invalid function flags: 0x" + Integer.toHexString(flags));
+        }
 
-        if (f.db.create_function(name, f) != Codes.SQLITE_OK) {
+        int rc;
+        if (!f.db.extended()) {
+            // Scalar, Window and BatchAggregate functions are called through xFunc() and
+            // xStep() one row at a time, like any other
+            if ((flags & ~FLAG_UTF8) != 0) {
+                f.db.requireExtended("function flags other than FLAG_UTF8 are");
+            }
+            rc = f.db.create_function(name, f);
+        }
+        else if (f instanceof Scalar) {
+            rc = f.db.create_scalar(name, f, flags, ((Scalar) f).arguments.buffer);
+        }
+        else if (f instanceof Window) {
+            rc = f.db.create_window_function(name, f, flags);
+            if (rc == DB.WINDOW_UNSUPPORTED) {
+                rc = f.db.create_function(name, f, flags);
+            }
+        }
+        else if (f instanceof BatchAggregate) {
+            Rows rows = ((BatchAggregate) f).rows;
+            rc = f.db.create_batch_aggregate(name, f, flags, rows, rows.size);
+        }
+        else {
+            rc = f.db.create_function(name, f, flags);
+        }
+        if (rc != Codes.SQLITE_OK) {
             throw new SQLException("error creating function");
         }
     }
@@ -240,6 +318,452 @@ public abstract class Function
     }
 
 
+    /**
+     * Provides an interface for scalar functions called for many rows, e.g. predicates in
+     * WHERE clauses. The native library copies the arguments of each call into a reusable
+     * buffer and calls <tt>xFunc(Arguments)</tt> once; the function reads its arguments and
+     * sets its result through the {@link Arguments}, which are plain Java methods on that
+     * buffer rather than a synchronized JNI call per value. Numeric arguments and results
+     * allocate nothing.
+     *
+     * <pre>
+     *      Function.create(conn, "within", new Function.Scalar() {
+     *          protected void xFunc(Arguments args) throws SQLException {
+     *              double dx = args.value_double(0) - args.value_double(2);
+     *              double dy = args.value_double(1) - args.value_double(3);
+     *              args.result(dx * dx + dy * dy <= args.value_double(4) ? 1 : 0);
+     *          }
+     *      });
+     * </pre>
+     *
+     * An instance keeps a single buffer, so it must not be registered with several
+     * connections used concurrently.
+     * @see Function
+     */
+    public static abstract class Scalar
+            extends Function
+    {
+        final Arguments arguments = new Arguments(this);
+
+        /**
+         * Called by SQLite as a custom function.
+         * @param args The arguments, which also receive the result.
+         * @throws SQLException
+         */
+        protected abstract void xFunc(Arguments args) throws SQLException;
+
+        /**
+         * Called by native libraries built without argument buffers: copies the arguments
+         * through <tt>value_*(int)</tt> and the result back through <tt>result(*)</tt>.
+         * @see org.sqlite.Function#xFunc()
+         */
+        protected final void xFunc() throws SQLException {
+            arguments.load(this);
+            xFunc(arguments);
+            arguments.store(this);
+        }
+
+        /**
+         * Called from native code once the arguments have been copied into the buffer.
+         * @param count Number of arguments.
+         * @return The new buffer if the result did not fit in the current one; null otherwise.
+         */
+        final ByteBuffer call(int count) throws SQLException {
+            arguments.begin(count);
+            xFunc(arguments);
+            return arguments.end();
+        }
+
+        /**
+         * Called from native code when the arguments of a call do not fit in the buffer.
+         * @param size Number of bytes needed.
+         * @return The new buffer.
+         */
+        final ByteBuffer reserve(int size) {
+            arguments.reserve(size);
+            return arguments.buffer;
+        }
+    }
+
+    /**
+     * Arguments and result of a call of a {@link Scalar} function. Values are read from a
+     * direct buffer in native byte order, filled by the native library before the call:
+     * a 16 bytes slot for the result, then a 16 bytes slot per argument holding its type,
+     * the length of its data and either its numeric value or the offset of its data, then
+     * the UTF-8 text and BLOB data. Values are read as another type through
+     * <tt>value_*(int)</tt> of the function, so that SQLite converts them.
+     */
+    public static final class Arguments
+    {
+        /** Size of the result slot and of each argument slot. */
+        static final int SLOT_SIZE = 16;
+
+        /** Type of an error result, whose data is the message. */
+        static final int ERROR = -1;
+
+        private static final int INITIAL_CAPACITY = 4096;
+
+        ByteBuffer buffer = allocate(INITIAL_CAPACITY);
+        private final Function function;
+        private int count = 0;
+        private int dataOffset = 0;  // where the result data goes, after the arguments
+        private boolean replaced = false;
+        private byte[] data = new byte[256];
+
+        Arguments(Function function) {
+            this.function = function;
+        }
+
+        private static ByteBuffer allocate(int capacity) {
+            return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+        }
+
+        /**
+         * Replaces the buffer by a larger one, keeping the first bytes of the old one.
+         * @param size Number of bytes needed.
+         * @param keep Number of bytes to keep.
+         */
+        private void grow(int size, int keep) {
+            ByteBuffer old = buffer;
+            buffer = allocate(Math.max(size, 2 * old.capacity()));
+            ByteBuffer kept = old.duplicate();
+            kept.position(0);
+            kept.limit(keep);
+            buffer.put(kept);
+            buffer.position(0);
+        }
+
+        void reserve(int size) {
+            if (size > buffer.capacity()) {
+                grow(size, 0);
+            }
+        }
+
+        /**
+         * Starts a call whose arguments have been copied into the buffer, with the result
+         * slot set to NULL and holding the offset of the data area for the result.
+         */
+        void begin(int count) {
+            this.count = count;
+            dataOffset = (int) buffer.getLong(8);
+            replaced = false;
+        }
+
+        /**
+         * @return The buffer if it was replaced during the call; null otherwise.
+         */
+        ByteBuffer end() {
+            count = 0;
+            return replaced ? buffer : null;
+        }
+
+        /**
+         * Copies the arguments of a call made without an argument buffer.
+         * @param f The function being called.
+         */
+        void load(Function f) throws SQLException {
+            int n = f.args();
+            int offset = SLOT_SIZE * (n + 1);
+            reserve(offset);
+            for (int i = 0; i < n; i++) {
+                int slot = SLOT_SIZE * (i + 1);
+                int type = f.value_type(i);
+                int length = 0;
+                switch (type) {
+                case Codes.SQLITE_INTEGER:
+                    buffer.putLong(slot + 8, f.value_long(i));
+                    break;
+                case Codes.SQLITE_FLOAT:
+                    buffer.putDouble(slot + 8, f.value_double(i));
+                    break;
+                case Codes.SQLITE_TEXT:
+                case Codes.SQLITE_BLOB:
+                    byte[] value = type == Codes.SQLITE_TEXT ? f.value_text(i).getBytes(Utf8.UTF8) : f.value_blob(i);
+                    length = value == null ? 0 : value.length;
+                    if (offset + length > buffer.capacity()) {
+                        grow(offset + length, offset);
+                    }
+                    if (length > 0) {
+                        putBytes(offset, value, length);
+                    }
+                    buffer.putLong(slot + 8, offset);
+                    offset += length;
+                    break;
+                }
+                buffer.putInt(slot, type);
+                buffer.putInt(slot + 4, length);
+            }
+            buffer.putInt(0, Codes.SQLITE_NULL);
+            buffer.putInt(4, 0);
+            buffer.putLong(8, offset);
+            begin(n);
+        }
+
+        /**
+         * Sets the result of a call made without an argument buffer.
+         * @param f The function being called.
+         */
+        void store(Function f) throws SQLException {
+            end();
+            switch (buffer.getInt(0)) {
+            case Codes.SQLITE_INTEGER:
+                f.result(buffer.getLong(8));
+                break;
+            case Codes.SQLITE_FLOAT:
+                f.result(buffer.getDouble(8));
+                break;
+            case Codes.SQLITE_TEXT:
+                f.result(resultText());
+                break;
+            case Codes.SQLITE_BLOB:
+                f.result(getBytes((int) buffer.getLong(8), buffer.getInt(4)));
+                break;
+            case ERROR:
+                // reported by the native library like any exception of xFunc()
+                throw new SQLException(resultText());
+            default:
+                f.result();
+            }
+        }
+
+        private String resultText() {
+            return text((int) buffer.getLong(8), buffer.getInt(4));
+        }
+
+        private void putBytes(int offset, byte[] value, int length) {
+            buffer.position(offset);
+            buffer.put(value, 0, length);
+            buffer.position(0);
+        }
+
+        private byte[] getBytes(int offset, int length) {
+            byte[] value = new byte[length];
+            buffer.position(offset);
+            buffer.get(value);
+            buffer.position(0);
+            return value;
+        }
+
+        private String text(int offset, int length) {
+            if (data.length < length) {
+                data = new byte[Math.max(length, 2 * data.length)];
+            }
+            buffer.position(offset);
+            buffer.get(data, 0, length);
+            buffer.position(0);
+            return Utf8.decode(data, length);
+        }
+
+        /**
+         * @return Position of the slot of an argument.
+         */
+        private int slot(int arg) throws SQLException {
+            if (arg < 0 || arg >= count) {
+                throw new SQLException("arg " + arg + " out bounds [0," + count + ")");
+            }
+            return SLOT_SIZE * (arg + 1);
+        }
+
+        /**
+         * @return The number of arguments passed to the function.
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * @param arg Index of the argument.
+         * @return The <a href="http://www.sqlite.org/c3ref/c_blob.html">datatype code</a> of
+         *         the argument.
+         */
+        public int value_type(int arg) throws SQLException {
+            return buffer.getInt(slot(arg));
+        }
+
+        /**
+         * @param arg Index of the argument.
+         * @return The size of the argument as text or BLOB, in bytes.
+         */
+        public int value_bytes(int arg) throws SQLException {
+            int slot = slot(arg);
+            switch (buffer.getInt(slot)) {
+            case Codes.SQLITE_INTEGER:
+            case Codes.SQLITE_FLOAT:
+                return value_text(arg).length();
+            default:
+                return buffer.getInt(slot + 4);
+            }
+        }
+
+        /**
+         * @param arg Index of the argument.
+         * @return The argument as a long.
+         */
+        public long value_long(int arg) throws SQLException {
+            int slot = slot(arg);
+            switch (buffer.getInt(slot)) {
+            case Codes.SQLITE_INTEGER:
+                return buffer.getLong(slot + 8);
+            case Codes.SQLITE_FLOAT:
+                return (long) buffer.getDouble(slot + 8);
+            case Codes.SQLITE_TEXT:
+            case Codes.SQLITE_BLOB:
+                return function.value_long(arg);
+            default:
+                return 0;
+            }
+        }
+
+        /**
+         * @param arg Index of the argument.
+         * @return The argument as an int.
+         */
+        public int value_int(int arg) throws SQLException {
+            return (int) value_long(arg);
+        }
+
+        /**
+         * @param arg Index of the argument.
+         * @return The argument as a double.
+         */
+        public double value_double(int arg) throws SQLException {
+            int slot = slot(arg);
+            switch (buffer.getInt(slot)) {
+            case Codes.SQLITE_INTEGER:
+                return buffer.getLong(slot + 8);
+            case Codes.SQLITE_FLOAT:
+                return buffer.getDouble(slot + 8);
+            case Codes.SQLITE_TEXT:
+            case Codes.SQLITE_BLOB:
+                return function.value_double(arg);
+            default:
+                return 0;
+            }
+        }
+
+        /**
+         * @param arg Index of the argument.
+         * @return The argument as text, or null if it is NULL.
+         */
+        public String value_text(int arg) throws SQLException {
+            int slot = slot(arg);
+            switch (buffer.getInt(slot)) {
+            case Codes.SQLITE_INTEGER:
+                return Long.toString(buffer.getLong(slot + 8));
+            case Codes.SQLITE_FLOAT:
+                return function.value_text(arg);
+            case Codes.SQLITE_TEXT:
+            case Codes.SQLITE_BLOB:
+                return text((int) buffer.getLong(slot + 8), buffer.getInt(slot + 4));
+            default:
+                return null;
+            }
+        }
+
+        /**
+         * @param arg Index of the argument.
+         * @return The argument as a BLOB, or null if it is NULL.
+         */
+        public byte[] value_blob(int arg) throws SQLException {
+            int slot = slot(arg);
+            switch (buffer.getInt(slot)) {
+            case Codes.SQLITE_INTEGER:
+            case Codes.SQLITE_FLOAT:
+                return value_text(arg).getBytes(Utf8.UTF8);
+            case Codes.SQLITE_TEXT:
+            case Codes.SQLITE_BLOB:
+                return getBytes((int) buffer.getLong(slot + 8), buffer.getInt(slot + 4));
+            default:
+                return null;
+            }
+        }
+
+        /**
+         * Sets the result to a value.
+         * @param value
+         */
+        public void result(long value) {
+            buffer.putInt(0, Codes.SQLITE_INTEGER);
+            buffer.putLong(8, value);
+        }
+
+        /**
+         * Sets the result to a value.
+         * @param value
+         */
+        public void result(int value) {
+            result((long) value);
+        }
+
+        /**
+         * Sets the result to a value.
+         * @param value
+         */
+        public void result(double value) {
+            buffer.putInt(0, Codes.SQLITE_FLOAT);
+            buffer.putDouble(8, value);
+        }
+
+        /**
+         * Sets the result to NULL, which is the result if none is set.
+         */
+        public void result() {
+            buffer.putInt(0, Codes.SQLITE_NULL);
+        }
+
+        /**
+         * Sets the result to a value.
+         * @param value
+         */
+        public void result(String value) {
+            if (value == null) {
+                result();
+                return;
+            }
+            putText(Codes.SQLITE_TEXT, value);
+        }
+
+        /**
+         * Sets the result to a value.
+         * @param value
+         */
+        public void result(byte[] value) {
+            if (value == null) {
+                result();
+                return;
+            }
+            putData(Codes.SQLITE_BLOB, value, value.length);
+        }
+
+        /**
+         * Makes the call fail with an error.
+         * @param err The message of the error.
+         */
+        public void error(String err) {
+            putText(ERROR, err == null ? "" : err);
+        }
+
+        private void putText(int type, String value) {
+            int capacity = value.length() * Utf8.MAX_BYTES_PER_CHAR;
+            if (data.length < capacity) {
+                data = new byte[Math.max(capacity, 2 * data.length)];
+            }
+            putData(type, data, Utf8.encode(value, data));
+        }
+
+        private void putData(int type, byte[] value, int length) {
+            if (dataOffset + length > buffer.capacity()) {
+                // keep the arguments, which may still be read
+                grow(dataOffset + length, dataOffset);
+                replaced = true;
+            }
+            putBytes(dataOffset, value, length);
+            buffer.putInt(0, type);
+            buffer.putInt(4, length);
+            buffer.putLong(8, dataOffset);
+        }
+    }
+
     /**
      * Provides an interface for creating SQLite user-defined aggregate functions.
      * @see Function
@@ -274,4 +798,201 @@ public abstract class Function
             return super.clone();
         }
     }
+
+    /**
+     * Provides an interface for creating SQLite user-defined aggregate window functions.
+     * Besides <tt>xStep()</tt>, which adds a row to the frame of the window, SQLite calls
+     * <tt>xInverse()</tt> with the arguments of a row leaving the frame and
+     * <tt>xValue()</tt> for the result of the current frame, so that moving aggregates cost
+     * a constant time per row. <tt>xFinal()</tt> returns the result of the last frame, and
+     * of the whole group when the function is called without an OVER clause.
+     *
+     * <p>Window functions need SQLite 3.25.0 or later; with older versions the function is
+     * registered as a plain {@link Aggregate}.</p>
+     * @see <a href="http://www.sqlite.org/windowfunctions.html#udfwinfunc">http://www.sqlite.org/windowfunctions.html#udfwinfunc</a>
+     */
+    public static abstract class Window
+            extends Aggregate
+    {
+        /**
+         * Removes the row whose arguments are given by <tt>value_*(int)</tt> from the frame,
+         * the oldest row added by <tt>xStep()</tt> and not removed yet.
+         * @throws SQLException
+         */
+        protected abstract void xInverse() throws SQLException;
+
+        /**
+         * Returns the result of the current frame with <tt>result(*)</tt>, without changing
+         * it.
+         * @throws SQLException
+         */
+        protected abstract void xValue() throws SQLException;
+    }
+
+    /**
+     * Provides an interface for aggregate functions over many rows, e.g. extents or
+     * weighted averages. The native library buffers the arguments of the rows of a group
+     * and passes them to <tt>xStepBatch(Rows)</tt> as primitive arrays, one call per batch
+     * of rows instead of one <tt>xStep()</tt> per row. Batches are flushed when they are
+     * full and before <tt>xFinal()</tt>, which returns the result of the group like for
+     * any {@link Aggregate}.
+     *
+     * <pre>
+     *      Function.create(conn, "wavg", new Function.BatchAggregate() {
+     *          private double sum, weights;
+     *          protected void xStepBatch(Rows rows) {
+     *              double[] values = rows.doubles(0), weight = rows.doubles(1);
+     *              for (int i = 0; i &lt; rows.count(); i++) {
+     *                  sum += values[i] * weight[i];
+     *                  weights += weight[i];
+     *              }
+     *          }
+     *          protected void xFinal() throws SQLException {
+     *              result(sum / weights);
+     *          }
+     *      });
+     * </pre>
+     * @see Aggregate
+     */
+    public static abstract class BatchAggregate
+            extends Aggregate
+    {
+        /** Number of rows buffered before they are passed to xStepBatch(Rows). */
+        public static final int DEFAULT_BATCH_SIZE = 4096;
+
+        final Rows rows;
+
+        protected BatchAggregate() {
+            this(DEFAULT_BATCH_SIZE);
+        }
+
+        /**
+         * @param batchSize Maximum number of rows passed to each call of xStepBatch(Rows).
+         */
+        protected BatchAggregate(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+            }
+            rows = new Rows(batchSize);
+        }
+
+        /**
+         * Called by SQLite with the buffered rows of the group of this instance.
+         * @param rows The rows, whose arrays are only valid during the call.
+         * @throws SQLException
+         */
+        protected abstract void xStepBatch(Rows rows) throws SQLException;
+
+        /**
+         * Called by native libraries built without batches, once per row: passes the row
+         * as a batch of one.
+         * @see org.sqlite.Function.Aggregate#xStep()
+         */
+        protected final void xStep() throws SQLException {
+            rows.load(this);
+            xStepBatch(rows);
+        }
+
+        /**
+         * Called from native code once the arrays of the rows have been filled.
+         * @param count Number of rows.
+         */
+        final void stepBatch(int count) throws SQLException {
+            rows.count = count;
+            xStepBatch(rows);
+        }
+    }
+
+    /**
+     * Rows passed to {@link BatchAggregate#xStepBatch(Rows)}, as one array per argument of
+     * each kind, of which the first {@link #count()} elements are set. Every argument is
+     * given both as a long and a double, converted like <tt>value_long(int)</tt> and
+     * <tt>value_double(int)</tt> would; text and BLOB values are not kept.
+     */
+    public static final class Rows
+    {
+        final int size;
+        int count = 0;
+        long[][] longs = new long[0][];
+        double[][] doubles = new double[0][];
+        byte[][] types = new byte[0][];
+
+        Rows(int size) {
+            this.size = size;
+        }
+
+        /**
+         * Makes room for a number of arguments, called from native code when it changes.
+         */
+        void reserve(int args) {
+            if (longs.length == args) {
+                return;
+            }
+            long[][] l = new long[args][];
+            double[][] d = new double[args][];
+            byte[][] t = new byte[args][];
+            for (int i = 0; i < args; i++) {
+                l[i] = i < longs.length ? longs[i] : new long[size];
+                d[i] = i < doubles.length ? doubles[i] : new double[size];
+                t[i] = i < types.length ? types[i] : new byte[size];
+            }
+            longs = l;
+            doubles = d;
+            types = t;
+        }
+
+        /**
+         * Copies the arguments of a call made without batches as a single row.
+         * @param f The function being called.
+         */
+        void load(Function f) throws SQLException {
+            int args = f.args();
+            reserve(args);
+            for (int i = 0; i < args; i++) {
+                types[i][0] = (byte) f.value_type(i);
+                longs[i][0] = f.value_long(i);
+                doubles[i][0] = f.value_double(i);
+            }
+            count = 1;
+        }
+
+        /**
+         * @return The number of rows.
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * @return The number of arguments of each row.
+         */
+        public int args() {
+            return longs.length;
+        }
+
+        /**
+         * @param arg Index of the argument.
+         * @return The argument of each row as a long.
+         */
+        public long[] longs(int arg) {
+            return longs[arg];
+        }
+
+        /**
+         * @param arg Index of the argument.
+         * @return The argument of each row as a double.
+         */
+        public double[] doubles(int arg) {
+            return doubles[arg];
+        }
+
+        /**
+         * @param arg Index of the argument.
+         * @return The <a href="http://www.sqlite.org/c3ref/c_blob.html">datatype code</a> of
+         *         the argument of each row.
+         */
+        public byte[] types(int arg) {
+            return types[arg];
+        }
+    }
 }
@@ -32,6 +32,8 @@ import java.sql.Statement;
 import java.util.HashSet;
 import java.util.Properties;
 
+import org.sqlite.core.DB;
+
 /**
  * SQLite Configuration
  *
@@ -81,6 +83,11 @@ public class SQLiteConfig
         openMode = pragmaTable.getProperty(Pragma.SHARED_CACHE.pragmaName);
         setOpenMode(SQLiteOpenMode.OPEN_URI); // Enable URI filenames
 
+        String threadingMode = pragmaTable.getProperty(Pragma.THREADING_MODE.pragmaName);
+        if (threadingMode != null) {
+            setThreadingMode(ThreadingMode.getMode(threadingMode));
+        }
+
         transactionMode = TransactionMode.getMode(
                 pragmaTable.getProperty(Pragma.TRANSACTION_MODE.pragmaName, TransactionMode.DEFFERED.name()));
 
@@ -116,6 +123,20 @@ public class SQLiteConfig
         pragmaParams.remove(Pragma.OPEN_MODE.pragmaName);
         pragmaParams.remove(Pragma.SHARED_CACHE.pragmaName);
         pragmaParams.remove(Pragma.LOAD_EXTENSION.pragmaName);
+        pragmaParams.remove(Pragma.THREADING_MODE.pragmaName);
+        pragmaParams.remove(Pragma.BATCH_TRANSACTION.pragmaName);
+        pragmaParams.remove(Pragma.STATEMENT_CACHE_SIZE.pragmaName);
+        pragmaParams.remove(Pragma.METRICS.pragmaName);
+        pragmaParams.remove(Pragma.SLOW_QUERY_THRESHOLD.pragmaName);
+        pragmaParams.remove(Pragma.JMX.pragmaName);
+        pragmaParams.remove(Pragma.QUERY_TIMEOUT_INTERVAL.pragmaName);
+        // set by the connection with its busy handler, which the pragma would replace
+        pragmaParams.remove(Pragma.BUSY_TIMEOUT.pragmaName);
+        pragmaParams.remove(Pragma.BUSY_HANDLER.pragmaName);
+        pragmaParams.remove(Pragma.BUSY_SPINS.pragmaName);
+        pragmaParams.remove(Pragma.BUSY_BACKOFF_INITIAL.pragmaName);
+        pragmaParams.remove(Pragma.BUSY_BACKOFF_MAX.pragmaName);
+        pragmaParams.remove(Pragma.BUSY_JITTER.pragmaName);
         pragmaParams.remove(Pragma.DATE_PRECISION.pragmaName);
         pragmaParams.remove(Pragma.DATE_CLASS.pragmaName);
         pragmaParams.remove(Pragma.DATE_STRING_FORMAT.pragmaName);
@@ -186,6 +207,88 @@ public class SQLiteConfig
         return getBoolean(Pragma.LOAD_EXTENSION, "false");
     }
 
+    /**
+     * Checks if batches are run in a transaction of their own.
+     * @return True if turned on; false otherwise.
+     */
+    public boolean isEnabledBatchTransaction() {
+        return getBoolean(Pragma.BATCH_TRANSACTION, "false");
+    }
+
+    /**
+     * @return The maximum number of idle prepared statements kept for reuse by a connection.
+     */
+    public int getStatementCacheSize() {
+        return Integer.parseInt(pragmaTable.getProperty(Pragma.STATEMENT_CACHE_SIZE.pragmaName, "0"));
+    }
+
+    /**
+     * @return True if connections collect execution statistics.
+     */
+    public boolean isEnabledMetrics() {
+        return getBoolean(Pragma.METRICS, "false");
+    }
+
+    /**
+     * @return The slow query threshold in milliseconds; negative if slow queries are not
+     *         logged.
+     */
+    public long getSlowQueryThreshold() {
+        return Long.parseLong(pragmaTable.getProperty(Pragma.SLOW_QUERY_THRESHOLD.pragmaName, "-1"));
+    }
+
+    /**
+     * @return Number of virtual machine instructions between checks of a query timeout.
+     */
+    public int getQueryTimeoutInterval() {
+        return Integer.parseInt(pragmaTable.getProperty(Pragma.QUERY_TIMEOUT_INTERVAL.pragmaName,
+                Integer.toString(DB.DEFAULT_QUERY_TIMEOUT_INTERVAL)));
+    }
+
+    /**
+     * @return How connections wait for locks held by other connections.
+     */
+    public BusyHandler getBusyHandler() {
+        return BusyHandler.getBusyHandler(pragmaTable.getProperty(Pragma.BUSY_HANDLER.pragmaName,
+                BusyHandler.TIMEOUT.name()));
+    }
+
+    /**
+     * @return Number of attempts to take a lock made after yielding the processor, before
+     *         the busy handler sleeps.
+     */
+    public int getBusySpins() {
+        return Integer.parseInt(pragmaTable.getProperty(Pragma.BUSY_SPINS.pragmaName, "0"));
+    }
+
+    /**
+     * @return First sleep of the backoff busy handler, in milliseconds.
+     */
+    public int getBusyBackoffInitial() {
+        return Integer.parseInt(pragmaTable.getProperty(Pragma.BUSY_BACKOFF_INITIAL.pragmaName, "1"));
+    }
+
+    /**
+     * @return Longest sleep of the backoff busy handler, in milliseconds.
+     */
+    public int getBusyBackoffMax() {
+        return Integer.parseInt(pragmaTable.getProperty(Pragma.BUSY_BACKOFF_MAX.pragmaName, "100"));
+    }
+
+    /**
+     * @return True if the sleeps of the backoff busy handler are randomized.
+     */
+    public boolean isEnabledBusyJitter() {
+        return getBoolean(Pragma.BUSY_JITTER, "true");
+    }
+
+    /**
+     * @return True if connections register an MBean exposing their status counters.
+     */
+    public boolean isEnabledJmx() {
+        return getBoolean(Pragma.JMX, "false");
+    }
+
     /**
      * @return The open mode flags.
      */
@@ -243,6 +346,7 @@ public class SQLiteConfig
         OPEN_MODE("open_mode", "Database open-mode flag", null),
         SHARED_CACHE("shared_cache", "Enable SQLite Shared-Cache mode, native driver only", OnOff),
         LOAD_EXTENSION("enable_load_extension", "Enable SQLite load_extention() function, native driver only", OnOff),
+        THREADING_MODE("threading_mode", "\"serialized\": (Default) SQLite guards every API call with its own mutex\n\"multi_thread\": open the connection with SQLITE_OPEN_NOMUTEX and rely on the lock the driver takes for each statement operation", toStringArray(ThreadingMode.values())),
 
         // Pragmas that can be set after opening the database
         CACHE_SIZE("cache_size"),
@@ -275,7 +379,18 @@ public class SQLiteConfig
         DATE_PRECISION("date_precision", "\"seconds\": Read and store integer dates as seconds from the Unix Epoch (SQLite standard).\n\"milliseconds\": (DEFAULT) Read and store integer dates as milliseconds from the Unix Epoch (Java standard).", toStringArray(DatePrecision.values())),
         DATE_CLASS("date_class", "\"integer\": (Default) store dates as number of seconds or milliseconds from the Unix Epoch\n\"text\": store dates as a string of text\n\"real\": store dates as Julian Dates", toStringArray(DateClass.values())),
         DATE_STRING_FORMAT("date_string_format", "Format to store and retrieve dates stored as text. Defaults to \"yyyy-MM-dd HH:mm:ss.SSS\"", null),
-        BUSY_TIMEOUT("busy_timeout", null);
+        BUSY_TIMEOUT("busy_timeout", null),
+        BATCH_TRANSACTION("batch_transaction", "Run each executeBatch() in a single transaction, or in a savepoint when a transaction is already open, rolled back as a whole if an entry fails", OnOff),
+        STATEMENT_CACHE_SIZE("statement_cache_size", "Number of closed prepared statements a connection keeps for reuse by prepareStatement() with the same SQL. Defaults to 0, no cache", null),
+        METRICS("metrics", "Collect execution statistics per normalized SQL, see SQLiteConnection.getQueryStats()", OnOff),
+        SLOW_QUERY_THRESHOLD("slow_query_threshold", "Log executions which spend at least this many milliseconds in native code to the org.sqlite.SlowQuery logger. Defaults to -1, no logging", null),
+        JMX("jmx", "Register an MBean exposing the status counters of each connection with the platform MBean server", OnOff),
+        QUERY_TIMEOUT_INTERVAL("query_timeout_interval", "Number of virtual machine instructions between checks of the query timeout of a statement. Defaults to 1000", null),
+        BUSY_HANDLER("busy_handler", "How to wait for a lock held by another connection, up to busy_timeout:\n\"timeout\": (Default) the sleeps of sqlite3_busy_timeout()\n\"backoff\": exponential backoff", toStringArray(BusyHandler.values())),
+        BUSY_SPINS("busy_spins", "Number of attempts to take a lock made after yielding the processor, before sleeping. Defaults to 0", null),
+        BUSY_BACKOFF_INITIAL("busy_backoff_initial", "First sleep of the backoff busy handler, in milliseconds. Defaults to 1", null),
+        BUSY_BACKOFF_MAX("busy_backoff_max", "Longest sleep of the backoff busy handler, in milliseconds. Defaults to 100", null),
+        BUSY_JITTER("busy_jitter", "Sleep a random time between half and all of each delay of the backoff busy handler. Defaults to true", OnOff);
 
         public final String   pragmaName;
         public final String[] choices;
@@ -746,6 +861,48 @@ public class SQLiteConfig
         return transactionMode;
     }
 
+    public static enum ThreadingMode implements PragmaValue {
+        SERIALIZED(SQLiteOpenMode.FULLMUTEX), MULTI_THREAD(SQLiteOpenMode.NOMUTEX);
+
+        private final SQLiteOpenMode openMode;
+
+        private ThreadingMode(SQLiteOpenMode openMode) {
+            this.openMode = openMode;
+        }
+
+        public String getValue() {
+            return name();
+        }
+
+        public static ThreadingMode getMode(String mode) {
+            return ThreadingMode.valueOf(mode.toUpperCase());
+        }
+    }
+
+    /**
+     * Sets the threading mode of the connection. The driver takes the lock of the
+     * connection once for each statement operation (execute, step, fetch of a row),
+     * and the native calls made within it run unsynchronized. In MULTI_THREAD mode the
+     * connection is opened with SQLITE_OPEN_NOMUTEX, so that this lock is the only one
+     * taken; SERIALIZED additionally keeps the mutex of SQLite itself.
+     * @param mode One of {@link ThreadingMode}.
+     * @see <a href="http://www.sqlite.org/threadsafe.html">http://www.sqlite.org/threadsafe.html</a>
+     */
+    public void setThreadingMode(ThreadingMode mode) {
+        for (ThreadingMode each : ThreadingMode.values()) {
+            resetOpenMode(each.openMode);
+        }
+        setOpenMode(mode.openMode);
+        setPragma(Pragma.THREADING_MODE, mode.getValue());
+    }
+
+    /**
+     * @return The threading mode.
+     */
+    public ThreadingMode getThreadingMode() {
+        return (openModeFlag & SQLiteOpenMode.NOMUTEX.flag) != 0 ? ThreadingMode.MULTI_THREAD : ThreadingMode.SERIALIZED;
+    }
+
     public static enum DatePrecision implements PragmaValue {
         SECONDS, MILLISECONDS;
 
@@ -792,6 +949,138 @@ public class SQLiteConfig
         this.dateStringFormat = dateStringFormat;
     }
 
+    /**
+     * How a connection waits for a lock held by another connection, see
+     * {@link SQLiteConfig#setBusyHandler(BusyHandler)}.
+     */
+    public static enum BusyHandler implements PragmaValue {
+        /** The fixed sleeps of sqlite3_busy_timeout(): 1, 2, 5, 10, 15, 20, 25, 25, 25, 50, 50, then 100 ms. */
+        TIMEOUT,
+        /** Sleeps doubling from the initial to the maximum backoff, randomized by the jitter. */
+        BACKOFF;
+
+        public String getValue() {
+            return name().toLowerCase();
+        }
+
+        public static BusyHandler getBusyHandler(String busyHandler) {
+            return BusyHandler.valueOf(busyHandler.toUpperCase());
+        }
+    }
+
+    /**
+     * Sets how a connection waits for a lock held by another connection. The busy handler
+     * sleeps between attempts to take the lock until it is free or the busy timeout has been
+     * slept. With several writers on one database, the fixed sleeps of TIMEOUT make waiters
+     * retry in lockstep, so that the same connections keep losing the lock; BACKOFF with
+     * jitter spreads the attempts out. Executing "pragma busy_timeout" on the connection
+     * replaces the busy handler with the one of SQLite, use setBusyTimeout() instead.
+     * @param busyHandler The strategy; TIMEOUT by default.
+     * @see #setBusyTimeout(String)
+     * @see org.sqlite.core.CoreConnection#getBusyStats()
+     */
+    public void setBusyHandler(BusyHandler busyHandler) {
+        setPragma(Pragma.BUSY_HANDLER, busyHandler.getValue());
+    }
+
+    /**
+     * Sets the number of attempts to take a lock made after merely yielding the processor,
+     * before the busy handler starts sleeping. Locks held for short transactions are often
+     * released within a time slice, which a sleep of a millisecond or more overshoots.
+     * @param spins Number of attempts; 0 by default.
+     */
+    public void setBusySpins(int spins) {
+        setPragma(Pragma.BUSY_SPINS, Integer.toString(spins));
+    }
+
+    /**
+     * Sets the sleeps of the BACKOFF busy handler, which start at the initial delay and
+     * double after each attempt up to the maximum.
+     * @param initialMillis First sleep in milliseconds; 1 by default.
+     * @param maxMillis Longest sleep in milliseconds; 100 by default.
+     */
+    public void setBusyBackoff(int initialMillis, int maxMillis) {
+        setPragma(Pragma.BUSY_BACKOFF_INITIAL, Integer.toString(initialMillis));
+        setPragma(Pragma.BUSY_BACKOFF_MAX, Integer.toString(maxMillis));
+    }
+
+    /**
+     * Enables or disables randomizing the sleeps of the BACKOFF busy handler, each between
+     * half and all of its delay.
+     * @param enable True to enable (the default); false to disable.
+     */
+    public void setBusyJitter(boolean enable) {
+        set(Pragma.BUSY_JITTER, enable);
+    }
+
+    /**
+     * Enables or disables running each executeBatch() in a transaction of its own, so that
+     * the rows of the batch are written with a single journal sync instead of one for each
+     * row in auto-commit mode. When a transaction is already open, the batch runs in a
+     * savepoint instead. If an entry of the batch fails, everything the batch did is rolled
+     * back and a BatchUpdateException reports every entry as failed.
+     * @param enable True to enable; false to disable.
+     */
+    public void setBatchTransaction(boolean enable) {
+        set(Pragma.BATCH_TRANSACTION, enable);
+    }
+
+    /**
+     * Sets the number of closed prepared statements a connection keeps, reset and with
+     * their bindings cleared, so that prepareStatement() with the same SQL does not compile
+     * it again. The least recently used statements are destroyed when the cache is full.
+     * @param size Number of statements; 0 (the default) disables the cache.
+     */
+    public void setStatementCacheSize(int size) {
+        set(Pragma.STATEMENT_CACHE_SIZE, size);
+    }
+
+    /**
+     * Enables or disables collecting execution statistics for each distinct SQL statement
+     * (with literals replaced by "?"): time spent compiling and executing it in native code,
+     * steps, rows, bytes of text and BLOB values read and time spent waiting for locks.
+     * Timing adds two System.nanoTime() calls to each native call made for an execution.
+     * @param enable True to enable; false to disable.
+     * @see org.sqlite.core.CoreConnection#getQueryStats()
+     */
+    public void setMetrics(boolean enable) {
+        set(Pragma.METRICS, enable);
+    }
+
+    /**
+     * Sets the time in native code from which an execution of a statement is logged, as a
+     * warning to the java.util.logging logger "org.sqlite.SlowQuery". The time counts the
+     * native calls from the execution to the end of its result, not the time the
+     * application spends between calls.
+     * @param millis Threshold in milliseconds; negative (the default) to log no executions.
+     */
+    public void setSlowQueryThreshold(long millis) {
+        setPragma(Pragma.SLOW_QUERY_THRESHOLD, Long.toString(millis));
+    }
+
+    /**
+     * Sets how often the query timeout of a statement is checked while it runs, see
+     * Statement.setQueryTimeout(). A smaller interval stops a statement closer to its
+     * deadline at the cost of reading the clock more often.
+     * @param opcodes Number of virtual machine instructions between checks; defaults to
+     *        1000.
+     */
+    public void setQueryTimeoutInterval(int opcodes) {
+        setPragma(Pragma.QUERY_TIMEOUT_INTERVAL, Integer.toString(opcodes));
+    }
+
+    /**
+     * Enables or disables registering an MBean for each connection with the platform MBean
+     * server, named org.sqlite:type=Connection,id=<i>n</i>, which exposes the status
+     * counters of the connection and its execution statistics. The MBean is unregistered
+     * when the connection is closed.
+     * @param enable True to enable; false to disable.
+     * @see SQLiteConnectionStatusMBean
+     */
+    public void setJmx(boolean enable) {
+        set(Pragma.JMX, enable);
+    }
+
     /**
      * @param milliseconds Connect to DB timeout in milliseconds
      */
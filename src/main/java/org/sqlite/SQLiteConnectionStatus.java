@@ -0,0 +1,262 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.sqlite.core.BusyStats;
+import org.sqlite.core.QueryStats;
+
+/**
+ * MBean exposing the status counters of a connection, registered with the platform MBean
+ * server for each connection when {@link SQLiteConfig#setJmx(boolean)} is enabled. It only
+ * keeps a weak reference to the connection, so that a connection which is not closed can
+ * still be garbage collected.
+ */
+public class SQLiteConnectionStatus implements SQLiteConnectionStatusMBean
+{
+    private static final AtomicLong ids = new AtomicLong();
+
+    private final WeakReference<SQLiteConnection> conn;
+    private final String url;
+    private ObjectName name;
+
+    /**
+     * @param conn The connection.
+     */
+    public SQLiteConnectionStatus(SQLiteConnection conn) {
+        this.conn = new WeakReference<SQLiteConnection>(conn);
+        this.url = conn.url();
+    }
+
+    /**
+     * Registers an MBean for a connection with the platform MBean server, named
+     * org.sqlite:type=Connection,id=<i>n</i>.
+     * @param conn The connection.
+     * @return The registered MBean.
+     * @throws SQLException if the MBean cannot be registered.
+     */
+    public static SQLiteConnectionStatus register(SQLiteConnection conn) throws SQLException {
+        SQLiteConnectionStatus status = new SQLiteConnectionStatus(conn);
+        try {
+            ObjectName name = new ObjectName("org.sqlite:type=Connection,id=" + ids.incrementAndGet());
+            status.name = ManagementFactory.getPlatformMBeanServer().registerMBean(status, name).getObjectName();
+        }
+        catch (JMException e) {
+            SQLException ex = new SQLException("cannot register the MBean of the connection: " + e.getMessage());
+            ex.initCause(e);
+            throw ex;
+        }
+        return status;
+    }
+
+    /**
+     * Unregisters the MBean from the platform MBean server, if it is registered.
+     */
+    public void unregister() {
+        if (name == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        }
+        catch (JMException e) {
+            // already unregistered by someone else
+        }
+        name = null;
+    }
+
+    /**
+     * @return Name under which the MBean is registered; null if it is not.
+     */
+    public ObjectName getObjectName() {
+        return name;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    private long dbStatus(SQLiteDbStatus status, boolean highwater) {
+        SQLiteConnection c = conn.get();
+        try {
+            if (c == null || c.isClosed()) {
+                return -1;
+            }
+            return highwater ? c.getDbStatusHighwater(status, false) : c.getDbStatus(status, false);
+        }
+        catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    public long getCacheUsed() {
+        return dbStatus(SQLiteDbStatus.CACHE_USED, false);
+    }
+
+    public long getSchemaUsed() {
+        return dbStatus(SQLiteDbStatus.SCHEMA_USED, false);
+    }
+
+    public long getStmtUsed() {
+        return dbStatus(SQLiteDbStatus.STMT_USED, false);
+    }
+
+    public long getCacheHit() {
+        return dbStatus(SQLiteDbStatus.CACHE_HIT, false);
+    }
+
+    public long getCacheMiss() {
+        return dbStatus(SQLiteDbStatus.CACHE_MISS, false);
+    }
+
+    public long getCacheWrite() {
+        return dbStatus(SQLiteDbStatus.CACHE_WRITE, false);
+    }
+
+    public long getCacheSpill() {
+        return dbStatus(SQLiteDbStatus.CACHE_SPILL, false);
+    }
+
+    public long getLookasideUsed() {
+        return dbStatus(SQLiteDbStatus.LOOKASIDE_USED, false);
+    }
+
+    public long getLookasideHit() {
+        return dbStatus(SQLiteDbStatus.LOOKASIDE_HIT, true);
+    }
+
+    public long getLookasideMissSize() {
+        return dbStatus(SQLiteDbStatus.LOOKASIDE_MISS_SIZE, true);
+    }
+
+    public long getLookasideMissFull() {
+        return dbStatus(SQLiteDbStatus.LOOKASIDE_MISS_FULL, true);
+    }
+
+    private long status(boolean highwater) {
+        SQLiteConnection c = conn.get();
+        try {
+            if (c == null || c.isClosed()) {
+                return -1;
+            }
+            return highwater ? c.getStatusHighwater(SQLiteStatus.MEMORY_USED, false)
+                    : c.getStatus(SQLiteStatus.MEMORY_USED, false);
+        }
+        catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    public long getMemoryUsed() {
+        return status(false);
+    }
+
+    public long getMemoryHighwater() {
+        return status(true);
+    }
+
+    public long getStatementCacheHits() {
+        SQLiteConnection c = conn.get();
+        return c == null ? -1 : c.getStatementCacheHits();
+    }
+
+    public long getStatementCacheMisses() {
+        SQLiteConnection c = conn.get();
+        return c == null ? -1 : c.getStatementCacheMisses();
+    }
+
+    /**
+     * @return The counters of the busy handler; null if the connection is closed.
+     */
+    private BusyStats busyStats() {
+        SQLiteConnection c = conn.get();
+        try {
+            return c == null || c.isClosed() ? null : c.getBusyStats();
+        }
+        catch (SQLException e) {
+            return null;
+        }
+    }
+
+    public long getBusyCallbacks() {
+        BusyStats stats = busyStats();
+        return stats == null ? -1 : stats.getCallbacks();
+    }
+
+    public long getBusyWaits() {
+        BusyStats stats = busyStats();
+        return stats == null ? -1 : stats.getWaits();
+    }
+
+    public long getBusyWaitMicros() {
+        BusyStats stats = busyStats();
+        return stats == null ? -1 : stats.getWaitMicros();
+    }
+
+    public long getBusyTimeouts() {
+        BusyStats stats = busyStats();
+        return stats == null ? -1 : stats.getTimeouts();
+    }
+
+    public String[] getQueryStats() {
+        SQLiteConnection c = conn.get();
+        if (c == null) {
+            return new String[0];
+        }
+        List<QueryStats> stats = c.getQueryStats();
+        String[] result = new String[stats.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = stats.get(i).toString();
+        }
+        return result;
+    }
+
+    public void resetCounters() {
+        SQLiteConnection c = conn.get();
+        if (c == null) {
+            return;
+        }
+        for (SQLiteDbStatus each : SQLiteDbStatus.values()) {
+            try {
+                if (c.isClosed()) {
+                    return;
+                }
+                c.getDbStatus(each, true);
+            }
+            catch (SQLException e) {
+                // not known to the SQLite version in use
+            }
+        }
+        try {
+            if (!c.isClosed()) {
+                c.resetBusyStats();
+            }
+        }
+        catch (SQLException e) {
+            // closed meanwhile
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite;
+
+/**
+ * Management interface of {@link SQLiteConnectionStatus}, exposing the status counters of a
+ * connection. Values read as -1 once the connection is closed.
+ * @see SQLiteConfig#setJmx(boolean)
+ */
+public interface SQLiteConnectionStatusMBean
+{
+    /** @return Location of the database. */
+    public String getUrl();
+
+    /** @return Bytes of heap memory used by the page caches. */
+    public long getCacheUsed();
+
+    /** @return Bytes of heap memory used to store the schemas. */
+    public long getSchemaUsed();
+
+    /** @return Bytes of heap memory used by the prepared statements. */
+    public long getStmtUsed();
+
+    /** @return Page cache hits. */
+    public long getCacheHit();
+
+    /** @return Page cache misses. */
+    public long getCacheMiss();
+
+    /** @return Dirty pages written to the database file. */
+    public long getCacheWrite();
+
+    /** @return Dirty pages written in the middle of a transaction. */
+    public long getCacheSpill();
+
+    /** @return Lookaside memory slots in use. */
+    public long getLookasideUsed();
+
+    /** @return Allocations served from lookaside memory. */
+    public long getLookasideHit();
+
+    /** @return Allocations too large for lookaside memory. */
+    public long getLookasideMissSize();
+
+    /** @return Allocations made while lookaside memory was full. */
+    public long getLookasideMissFull();
+
+    /** @return Bytes of memory allocated by SQLite in the whole process. */
+    public long getMemoryUsed();
+
+    /** @return Highest number of bytes of memory allocated by SQLite in the whole process. */
+    public long getMemoryHighwater();
+
+    /** @return Number of prepareStatement() calls that reused a cached statement. */
+    public long getStatementCacheHits();
+
+    /** @return Number of prepareStatement() calls that compiled their SQL. */
+    public long getStatementCacheMisses();
+
+    /** @return Number of times the busy handler found a lock held by another connection. */
+    public long getBusyCallbacks();
+
+    /** @return Number of waits for a lock held by another connection. */
+    public long getBusyWaits();
+
+    /** @return Microseconds slept by the busy handler. */
+    public long getBusyWaitMicros();
+
+    /** @return Number of waits for a lock given up after the busy timeout. */
+    public long getBusyTimeouts();
+
+    /**
+     * @return The execution statistics of the connection, the statements which spent the
+     *         most time in native code first; empty if metrics are disabled.
+     * @see SQLiteConfig#setMetrics(boolean)
+     */
+    public String[] getQueryStats();
+
+    /**
+     * Resets the counters of page cache hits, misses, writes and spills, the highwater
+     * values and the counters of the busy handler of the connection.
+     */
+    public void resetCounters();
+}
@@ -379,6 +379,97 @@ public class SQLiteDataSource implements DataSource
         config.setTransactionMode(transactionMode);
     }
 
+    /**
+     * Enables or disables running each executeBatch() in a transaction of its own.
+     * @param enable True to enable; false to disable.
+     * @see SQLiteConfig#setBatchTransaction(boolean)
+     */
+    public void setBatchTransaction(boolean enable) {
+        config.setBatchTransaction(enable);
+    }
+
+    /**
+     * Sets the number of closed prepared statements a connection keeps for reuse.
+     * @param size Number of statements; 0 disables the cache.
+     * @see SQLiteConfig#setStatementCacheSize(int)
+     */
+    public void setStatementCacheSize(int size) {
+        config.setStatementCacheSize(size);
+    }
+
+    /**
+     * Enables or disables collecting execution statistics.
+     * @param enable True to enable; false to disable.
+     * @see SQLiteConfig#setMetrics(boolean)
+     */
+    public void setMetrics(boolean enable) {
+        config.setMetrics(enable);
+    }
+
+    /**
+     * Sets the time in native code from which executions are logged as slow queries.
+     * @param millis Threshold in milliseconds; negative to log no executions.
+     * @see SQLiteConfig#setSlowQueryThreshold(long)
+     */
+    public void setSlowQueryThreshold(long millis) {
+        config.setSlowQueryThreshold(millis);
+    }
+
+    /**
+     * Sets how a connection waits for a lock held by another connection.
+     * @param busyHandler The strategy.
+     * @see SQLiteConfig#setBusyHandler(SQLiteConfig.BusyHandler)
+     */
+    public void setBusyHandler(SQLiteConfig.BusyHandler busyHandler) {
+        config.setBusyHandler(busyHandler);
+    }
+
+    /**
+     * Sets the number of attempts to take a lock made after yielding the processor.
+     * @param spins Number of attempts.
+     * @see SQLiteConfig#setBusySpins(int)
+     */
+    public void setBusySpins(int spins) {
+        config.setBusySpins(spins);
+    }
+
+    /**
+     * Sets the sleeps of the backoff busy handler.
+     * @param initialMillis First sleep in milliseconds.
+     * @param maxMillis Longest sleep in milliseconds.
+     * @see SQLiteConfig#setBusyBackoff(int, int)
+     */
+    public void setBusyBackoff(int initialMillis, int maxMillis) {
+        config.setBusyBackoff(initialMillis, maxMillis);
+    }
+
+    /**
+     * Enables or disables randomizing the sleeps of the backoff busy handler.
+     * @param enable True to enable; false to disable.
+     * @see SQLiteConfig#setBusyJitter(boolean)
+     */
+    public void setBusyJitter(boolean enable) {
+        config.setBusyJitter(enable);
+    }
+
+    /**
+     * Sets how often the query timeout of a statement is checked while it runs.
+     * @param opcodes Number of virtual machine instructions between checks.
+     * @see SQLiteConfig#setQueryTimeoutInterval(int)
+     */
+    public void setQueryTimeoutInterval(int opcodes) {
+        config.setQueryTimeoutInterval(opcodes);
+    }
+
+    /**
+     * Enables or disables registering an MBean for each connection.
+     * @param enable True to enable; false to disable.
+     * @see SQLiteConfig#setJmx(boolean)
+     */
+    public void setJmx(boolean enable) {
+        config.setJmx(enable);
+    }
+
     /**
      * Sets the value of the user-version. It is a big-endian 32-bit signed
      * integer stored in the database header at offset 60. 
@@ -0,0 +1,44 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite;
+
+/**
+ * Status values SQLite keeps for each database connection, read with
+ * {@link org.sqlite.core.CoreConnection#getDbStatus(SQLiteDbStatus, boolean)}.
+ * Reading a value unknown to the SQLite version in use throws an SQLException.
+ * 
+ * See also http://www.sqlite.org/c3ref/c_dbstatus_options.html
+ */
+public enum SQLiteDbStatus {
+    LOOKASIDE_USED(0), /* lookaside memory slots in use */
+    CACHE_USED(1), /* bytes of heap memory used by the page caches */
+    SCHEMA_USED(2), /* bytes of heap memory used to store the schemas */
+    STMT_USED(3), /* bytes of heap memory used by the prepared statements */
+    LOOKASIDE_HIT(4), /* allocations served from lookaside memory (highwater only) */
+    LOOKASIDE_MISS_SIZE(5), /* allocations too large for lookaside memory (highwater only) */
+    LOOKASIDE_MISS_FULL(6), /* allocations made while lookaside memory was full (highwater only) */
+    CACHE_HIT(7), /* page cache hits */
+    CACHE_MISS(8), /* page cache misses */
+    CACHE_WRITE(9), /* dirty pages written to the database file */
+    DEFERRED_FKS(10), /* non-zero if there are unresolved deferred foreign key constraints */
+    CACHE_USED_SHARED(11), /* CACHE_USED with shared caches divided among their connections (SQLite 3.14.0) */
+    CACHE_SPILL(12) /* dirty pages written in the middle of a transaction (SQLite 3.23.0) */
+    ;
+
+    public final int code;
+
+    private SQLiteDbStatus(int code) {
+        this.code = code;
+    }
+}
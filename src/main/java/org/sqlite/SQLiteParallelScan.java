@@ -0,0 +1,488 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite;
+
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sqlite.core.CoreConnection;
+
+/**
+ * Scans a table on several read-only connections at once, so that a query over a large
+ * table uses more than one core. The rowids of the table are split into ranges, several
+ * for each connection, and each connection runs
+ * <pre>
+ * SELECT columns FROM table WHERE rowid BETWEEN ? AND ? AND (where)
+ * </pre>
+ * for one range after the other, claiming the next range not yet taken, so that a
+ * connection done early with sparse ranges takes over the remaining work of the others.
+ * <p>
+ * The connections are opened in read-only mode with the configuration of a data source,
+ * and closed when the scan is over. They only see the same database if the URL names a
+ * file; as each reads its own snapshot, the rows are only consistent with each other
+ * if the table is not written to during the scan. Rows come in no particular order.
+ */
+public class SQLiteParallelScan
+{
+    /** Receives the rows of a scan. */
+    public interface RowHandler
+    {
+        /**
+         * Called for each row, concurrently from the threads running the scan.
+         * @param rs Result set of the calling thread, positioned on the row.
+         * @throws SQLException to stop the scan.
+         */
+        void row(ResultSet rs) throws SQLException;
+    }
+
+    private static final int QUEUE_SIZE = 1024;
+    private static final long POLL_MILLIS = 100;
+
+    private final SQLiteDataSource dataSource;
+    private final ExecutorService executor;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int rangesPerConnection = 4;
+
+    /**
+     * Creates a scan running on threads of its own.
+     * @param dataSource Data source for the URL and configuration of the connections.
+     */
+    public SQLiteParallelScan(SQLiteDataSource dataSource) {
+        this(dataSource, null);
+    }
+
+    /**
+     * Creates a scan running on the threads of an executor.
+     * @param dataSource Data source for the URL and configuration of the connections.
+     * @param executor Executor which runs each connection of a scan as a task.
+     */
+    public SQLiteParallelScan(SQLiteDataSource dataSource, ExecutorService executor) {
+        this.dataSource = dataSource;
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the number of connections a scan opens; the number of available processors by
+     * default.
+     * @param parallelism Number of connections.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * @return The number of connections a scan opens.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets how many ranges the rowids are split into for each connection; 4 by default.
+     * More ranges balance the work better when rows are unevenly spread over the rowids.
+     * @param ranges Number of ranges per connection.
+     */
+    public void setRangesPerConnection(int ranges) {
+        this.rangesPerConnection = Math.max(1, ranges);
+    }
+
+    /**
+     * @return The number of ranges per connection.
+     */
+    public int getRangesPerConnection() {
+        return rangesPerConnection;
+    }
+
+    /**
+     * Scans a table, passing each row to a handler, and returns when all rows are done.
+     * @param table Name of the table, which must have a rowid.
+     * @param columns Result columns, e.g. "*".
+     * @param where Condition on the rows, or null for all rows.
+     * @param handler Receives the rows.
+     * @param params Values of the positional parameters of the condition.
+     * @throws SQLException the first failure of a connection or the handler, which stops
+     *         the scan.
+     */
+    public void scan(String table, String columns, String where, final RowHandler handler, Object... params)
+            throws SQLException {
+        Scan scan = new Scan(table, columns, where, params) {
+            @Override
+            void row(ResultSet rs) throws SQLException {
+                handler.row(rs);
+            }
+        };
+        List<Future<Void>> tasks = scan.start();
+
+        SQLException failure = null;
+        for (Future<Void> task : tasks) {
+            try {
+                task.get();
+            }
+            catch (InterruptedException e) {
+                scan.cancelled = true;
+                Thread.currentThread().interrupt();
+                failure = chain(failure, new SQLException("interrupted"));
+            }
+            catch (ExecutionException e) {
+                scan.cancelled = true;
+                failure = chain(failure, asSQLException(e.getCause()));
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Scans a table in the background, merging the rows of all connections into one
+     * sequence. The connections wait while the rows they produce are not consumed.
+     * @param table Name of the table, which must have a rowid.
+     * @param columns Result columns, e.g. "*".
+     * @param where Condition on the rows, or null for all rows.
+     * @param params Values of the positional parameters of the condition.
+     * @return The rows, which must be closed if not read to the end.
+     * @throws SQLException
+     */
+    public Rows rows(String table, String columns, String where, Object... params) throws SQLException {
+        final BlockingQueue<Object[]> queue = new ArrayBlockingQueue<Object[]>(QUEUE_SIZE);
+        Scan scan = new Scan(table, columns, where, params) {
+            @Override
+            void row(ResultSet rs) throws SQLException {
+                Object[] row = new Object[rs.getMetaData().getColumnCount()];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = rs.getObject(i + 1);
+                }
+                put(queue, row);
+            }
+
+            @Override
+            void done() {
+                // the end is passed on even if the scan failed, until the rows are closed
+                put(queue, END);
+            }
+
+            private void put(BlockingQueue<Object[]> queue, Object[] row) {
+                try {
+                    while (!(row == END ? closed : cancelled)
+                            && !queue.offer(row, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        // wait for the consumer
+                    }
+                }
+                catch (InterruptedException e) {
+                    cancelled = true;
+                }
+            }
+        };
+        return new Rows(scan, scan.start(), queue);
+    }
+
+    /** Marks the end of the rows of one connection in the queue of {@link Rows}. */
+    private static final Object[] END = new Object[0];
+
+    /**
+     * The merged rows of {@link SQLiteParallelScan#rows(String, String, String, Object...)}.
+     */
+    public static class Rows
+    {
+        private final Scan scan;
+        private final List<Future<Void>> tasks;
+        private final BlockingQueue<Object[]> queue;
+        private int running;
+        private Object[] row;
+
+        Rows(Scan scan, List<Future<Void>> tasks, BlockingQueue<Object[]> queue) {
+            this.scan = scan;
+            this.tasks = tasks;
+            this.queue = queue;
+            this.running = tasks.size();
+        }
+
+        /**
+         * Moves to the next row, waiting for one if none is ready.
+         * @return False once all rows have been read.
+         * @throws SQLException the first failure of a connection, which stops the scan.
+         */
+        public boolean next() throws SQLException {
+            row = null;
+            while (running > 0) {
+                Object[] next;
+                try {
+                    next = queue.take();
+                }
+                catch (InterruptedException e) {
+                    close();
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("interrupted");
+                }
+                if (next != END) {
+                    row = next;
+                    return true;
+                }
+                running--;
+            }
+            return finish();
+        }
+
+        /**
+         * @return The values of the current row, by column from 0.
+         */
+        public Object[] getRow() {
+            return row;
+        }
+
+        /**
+         * @param col Column from 1.
+         * @return The value of a column of the current row.
+         */
+        public Object getObject(int col) {
+            return row[col - 1];
+        }
+
+        /**
+         * Stops the scan and waits until its connections are closed.
+         * @throws SQLException
+         */
+        public void close() throws SQLException {
+            if (running == 0) {
+                return;
+            }
+            scan.cancelled = true;
+            scan.closed = true;
+            running = 0;
+            queue.clear();
+            for (Future<Void> task : tasks) {
+                try {
+                    task.get();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                catch (ExecutionException e) {
+                    // stopped by close()
+                }
+            }
+        }
+
+        private boolean finish() throws SQLException {
+            SQLException failure = null;
+            for (Future<Void> task : tasks) {
+                try {
+                    task.get();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure = chain(failure, new SQLException("interrupted"));
+                }
+                catch (ExecutionException e) {
+                    failure = chain(failure, asSQLException(e.getCause()));
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * One scan of a table: the ranges of rowids to claim and the tasks claiming them.
+     */
+    abstract class Scan
+    {
+        private final String table;
+        private final String sql;
+        private final Object[] params;
+        private final AtomicInteger nextRange = new AtomicInteger();
+        private long[] bounds;
+        volatile boolean cancelled = false;
+        volatile boolean closed = false;
+
+        Scan(String table, String columns, String where, Object[] params) {
+            this.table = "\"" + table.replace("\"", "\"\"") + "\"";
+            this.sql = "select " + columns + " from " + this.table + " where rowid between ? and ?"
+                    + (where == null ? "" : " and (" + where + ")") + ";";
+            this.params = params;
+        }
+
+        /** Called for each row by the thread of a connection. */
+        abstract void row(ResultSet rs) throws SQLException;
+
+        /** Called by the thread of each connection when it is done. */
+        void done() {}
+
+        /**
+         * Splits the rowids into ranges and submits a task for each connection.
+         * @return The tasks.
+         * @throws SQLException
+         */
+        List<Future<Void>> start() throws SQLException {
+            Connection conn = open();
+            try {
+                ResultSet rs = conn.createStatement().executeQuery(
+                        "select min(rowid), max(rowid) from " + table + ";");
+                rs.next();
+                long min = rs.getLong(1);
+                boolean empty = rs.wasNull();
+                long max = rs.getLong(2);
+                rs.close();
+                bounds = empty ? new long[0] : split(min, max, parallelism * rangesPerConnection);
+            }
+            finally {
+                close(conn);
+            }
+
+            int count = Math.max(1, Math.min(parallelism, bounds.length / 2));
+            ExecutorService pool = executor != null ? executor : Executors.newFixedThreadPool(count);
+            List<Future<Void>> tasks = new ArrayList<Future<Void>>(count);
+            try {
+                for (int i = 0; i < count; i++) {
+                    tasks.add(pool.submit(new Callable<Void>() {
+                        public Void call() throws SQLException {
+                            try {
+                                run();
+                            }
+                            catch (SQLException e) {
+                                cancelled = true;
+                                throw e;
+                            }
+                            catch (RuntimeException e) {
+                                cancelled = true;
+                                throw e;
+                            }
+                            finally {
+                                done();
+                            }
+                            return null;
+                        }
+                    }));
+                }
+            }
+            finally {
+                if (pool != executor) {
+                    // the tasks submitted still run
+                    pool.shutdown();
+                }
+            }
+            return tasks;
+        }
+
+        /**
+         * Claims ranges on a connection of its own until there are none left.
+         * @throws SQLException
+         */
+        private void run() throws SQLException {
+            int range = nextRange.getAndIncrement();
+            if (range * 2 >= bounds.length || cancelled) {
+                return;
+            }
+
+            Connection conn = open();
+            try {
+                PreparedStatement prep = conn.prepareStatement(sql);
+                for (int i = 0; i < params.length; i++) {
+                    prep.setObject(i + 3, params[i]);
+                }
+                for (; range * 2 < bounds.length && !cancelled; range = nextRange.getAndIncrement()) {
+                    prep.setLong(1, bounds[range * 2]);
+                    prep.setLong(2, bounds[range * 2 + 1]);
+                    ResultSet rs = prep.executeQuery();
+                    try {
+                        while (!cancelled && rs.next()) {
+                            row(rs);
+                        }
+                    }
+                    finally {
+                        rs.close();
+                    }
+                }
+                prep.close();
+            }
+            finally {
+                close(conn);
+            }
+        }
+    }
+
+    /**
+     * Splits the rowids from min to max into ranges of about the same width.
+     * @return The lowest and highest rowid of each range, one after the other.
+     */
+    static long[] split(long min, long max, int count) {
+        BigInteger low = BigInteger.valueOf(min);
+        BigInteger span = BigInteger.valueOf(max).subtract(low).add(BigInteger.ONE);
+        BigInteger n = BigInteger.valueOf(count).min(span);
+        long[] bounds = new long[n.intValue() * 2];
+        for (int i = 0; i < bounds.length / 2; i++) {
+            BigInteger index = BigInteger.valueOf(i);
+            bounds[i * 2] = low.add(span.multiply(index).divide(n)).longValue();
+            bounds[i * 2 + 1] = low.add(span.multiply(index.add(BigInteger.ONE)).divide(n)).longValue() - 1;
+        }
+        return bounds;
+    }
+
+    /**
+     * @return A new read-only connection with the configuration of the data source.
+     * @throws SQLException
+     */
+    private Connection open() throws SQLException {
+        Properties prop = new Properties();
+        prop.putAll(dataSource.getConfig().toProperties());
+        SQLiteConfig config = new SQLiteConfig(prop);
+        config.setReadOnly(true);
+        return JDBC.createConnection(dataSource.getUrl(), config.toProperties());
+    }
+
+    private static void close(Connection conn) throws SQLException {
+        if (conn instanceof CoreConnection) {
+            ((CoreConnection) conn).realClose();
+        }
+        else {
+            conn.close();
+        }
+    }
+
+    private static SQLException asSQLException(Throwable cause) {
+        if (cause instanceof SQLException) {
+            return (SQLException) cause;
+        }
+        SQLException e = new SQLException(String.valueOf(cause));
+        e.initCause(cause);
+        return e;
+    }
+
+    private static SQLException chain(SQLException first, SQLException next) {
+        if (first == null) {
+            return next;
+        }
+        if (first != next) {
+            first.setNextException(next);
+        }
+        return first;
+    }
+}
@@ -0,0 +1,37 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite;
+
+/**
+ * Status values SQLite keeps for the whole process, read with
+ * {@link org.sqlite.core.CoreConnection#getStatus(SQLiteStatus, boolean)}.
+ * 
+ * See also http://www.sqlite.org/c3ref/c_status_malloc_count.html
+ */
+public enum SQLiteStatus {
+    MEMORY_USED(0), /* bytes of memory allocated through sqlite3_malloc() */
+    PAGECACHE_USED(1), /* pages used out of the page cache memory configured at startup */
+    PAGECACHE_OVERFLOW(2), /* bytes of page cache allocations which did not fit that memory */
+    MALLOC_SIZE(5), /* largest allocation requested (highwater only) */
+    PARSER_STACK(6), /* deepest parser stack (highwater only) */
+    PAGECACHE_SIZE(7), /* largest page cache allocation requested (highwater only) */
+    MALLOC_COUNT(9) /* allocations currently outstanding */
+    ;
+
+    public final int code;
+
+    private SQLiteStatus(int code) {
+        this.code = code;
+    }
+}
@@ -0,0 +1,38 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite;
+
+/**
+ * Counters SQLite keeps for each prepared statement, read with
+ * {@link org.sqlite.core.CoreStatement#getStatus(SQLiteStmtStatus, boolean)}.
+ * Counters unknown to the SQLite version in use read as 0.
+ * 
+ * See also http://www.sqlite.org/c3ref/c_stmtstatus_counter.html
+ */
+public enum SQLiteStmtStatus {
+    FULLSCAN_STEP(1), /* steps taken by full table scans; large values hint at a missing index */
+    SORT(2), /* sort operations; large values hint at a missing index for ORDER BY */
+    AUTOINDEX(3), /* rows inserted into automatic indexes built for the statement */
+    VM_STEP(4), /* virtual machine operations run */
+    REPREPARE(5), /* automatic recompilations after schema changes (SQLite 3.20.0) */
+    RUN(6), /* completed runs (SQLite 3.20.0) */
+    MEMUSED(99) /* bytes of memory used by the statement (SQLite 3.20.0) */
+    ;
+
+    public final int code;
+
+    private SQLiteStmtStatus(int code) {
+        this.code = code;
+    }
+}
@@ -0,0 +1,320 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.SQLException;
+
+import org.sqlite.core.Codes;
+import org.sqlite.core.Utf8;
+
+/**
+ * A scan of the rows of a {@link VirtualTable}. SQLite starts each scan with
+ * {@link #filter(int, String, Object[])}, then the cursor produces the rows with
+ * {@link #next(Row)}, which is called for up to a batch of rows at a time: the rows are
+ * copied into a direct buffer that the native library reads without calling back into
+ * Java for each row or value. A cursor may therefore run ahead of SQLite by up to a batch
+ * of rows, e.g. for queries with a LIMIT.
+ *
+ * <p>The layout of the buffer, in native byte order, is a header of the number of rows
+ * and whether the scan ended, then the rows, each made of its size, its number of
+ * columns and its rowid, a 16 bytes slot per column holding its type, the length of its
+ * data and its value or the offset of its data in the row, then the UTF-8 text and BLOB
+ * data of the row, padded to 8 bytes.</p>
+ */
+public abstract class VirtualCursor
+{
+    /** Number of rows produced for each call from the native library. */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    static final int HEADER_SIZE = 8;
+    static final int ROW_HEADER_SIZE = 16;
+    static final int SLOT_SIZE = 16;
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private final int batchSize;
+    private final Row row = new Row();
+    private ByteBuffer buffer = allocate(INITIAL_CAPACITY);
+    private byte[] text = new byte[256];
+    private long position = 0;
+
+    protected VirtualCursor() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param batchSize Maximum number of rows produced for each call from the native
+     *        library.
+     */
+    protected VirtualCursor(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Starts a scan, possibly again.
+     * @param indexNumber Number of the plan set by {@link VirtualTable#bestIndex(VirtualTable.IndexInfo)}.
+     * @param indexString String of the plan, or null.
+     * @param values Values of the constraints used by the plan, in the order of their argv
+     *        index: Long, Double, String, byte[] or null.
+     * @throws SQLException
+     */
+    protected abstract void filter(int indexNumber, String indexString, Object[] values) throws SQLException;
+
+    /**
+     * Produces the next row of the scan.
+     * @param row Receives the values of the row; its rowid defaults to the position of the
+     *        row in the scan and its columns to NULL.
+     * @return False if the scan has ended, the row being ignored.
+     * @throws SQLException
+     */
+    protected abstract boolean next(Row row) throws SQLException;
+
+    /**
+     * Called when SQLite is done with the cursor.
+     * @throws SQLException
+     */
+    protected void close() throws SQLException {}
+
+    /**
+     * Called from native code to start a scan.
+     * @return The buffer holding the first batch of rows.
+     */
+    final ByteBuffer start(int indexNumber, String indexString, Object[] values) throws SQLException {
+        position = 0;
+        filter(indexNumber, indexString, values);
+        return fetch();
+    }
+
+    /**
+     * Called from native code once the rows of the previous batch have been read.
+     * @return The buffer holding the next batch of rows.
+     */
+    final ByteBuffer fetch() throws SQLException {
+        int rows = 0;
+        int pos = HEADER_SIZE;
+        boolean eof = false;
+        while (rows < batchSize) {
+            row.clear(position);
+            if (!next(row)) {
+                eof = true;
+                break;
+            }
+            pos = write(pos);
+            rows++;
+            position++;
+        }
+        buffer.putInt(0, rows);
+        buffer.putInt(4, eof ? 1 : 0);
+        return buffer;
+    }
+
+    /**
+     * Copies the row into the buffer.
+     * @param pos Position of the row.
+     * @return Position after the row.
+     */
+    private int write(int pos) {
+        int columns = row.columns;
+        int data = ROW_HEADER_SIZE + SLOT_SIZE * columns;
+        int bound = data;
+        for (int i = 0; i < columns; i++) {
+            if (row.types[i] == Codes.SQLITE_TEXT) {
+                bound += ((String) row.objects[i]).length() * Utf8.MAX_BYTES_PER_CHAR;
+            }
+            else if (row.types[i] == Codes.SQLITE_BLOB) {
+                bound += ((byte[]) row.objects[i]).length;
+            }
+        }
+        reserve(pos + bound + 8, pos);
+
+        for (int i = 0; i < columns; i++) {
+            int slot = pos + ROW_HEADER_SIZE + SLOT_SIZE * i;
+            int type = row.types[i];
+            int length = 0;
+            switch (type) {
+            case Codes.SQLITE_INTEGER:
+                buffer.putLong(slot + 8, row.longs[i]);
+                break;
+            case Codes.SQLITE_FLOAT:
+                buffer.putDouble(slot + 8, row.doubles[i]);
+                break;
+            case Codes.SQLITE_TEXT:
+                String s = (String) row.objects[i];
+                int capacity = s.length() * Utf8.MAX_BYTES_PER_CHAR;
+                if (text.length < capacity) {
+                    text = new byte[Math.max(capacity, 2 * text.length)];
+                }
+                length = Utf8.encode(s, text);
+                put(pos + data, text, length);
+                buffer.putLong(slot + 8, data);
+                data += length;
+                break;
+            case Codes.SQLITE_BLOB:
+                byte[] b = (byte[]) row.objects[i];
+                length = b.length;
+                put(pos + data, b, length);
+                buffer.putLong(slot + 8, data);
+                data += length;
+                break;
+            }
+            buffer.putInt(slot, type);
+            buffer.putInt(slot + 4, length);
+        }
+
+        int size = (data + 7) & ~7;
+        buffer.putInt(pos, size);
+        buffer.putInt(pos + 4, columns);
+        buffer.putLong(pos + 8, row.rowid);
+        return pos + size;
+    }
+
+    private void put(int pos, byte[] value, int length) {
+        if (length > 0) {
+            buffer.position(pos);
+            buffer.put(value, 0, length);
+            buffer.position(0);
+        }
+    }
+
+    /**
+     * Makes room for a number of bytes, keeping the rows already in the buffer.
+     */
+    private void reserve(int size, int keep) {
+        if (size <= buffer.capacity()) {
+            return;
+        }
+        ByteBuffer old = buffer;
+        buffer = allocate(Math.max(size, 2 * old.capacity()));
+        ByteBuffer kept = old.duplicate();
+        kept.position(0);
+        kept.limit(keep);
+        buffer.put(kept);
+        buffer.position(0);
+    }
+
+    /**
+     * The values of a row produced by {@link VirtualCursor#next(Row)}. Columns are numbered
+     * from 0 in the order of the schema of the table; columns that are not set are NULL.
+     */
+    public static final class Row
+    {
+        int columns = 0;
+        long rowid = 0;
+        int[] types = new int[8];
+        long[] longs = new long[8];
+        double[] doubles = new double[8];
+        Object[] objects = new Object[8];
+
+        Row() {}
+
+        void clear(long defaultRowid) {
+            for (int i = 0; i < columns; i++) {
+                objects[i] = null;
+            }
+            columns = 0;
+            rowid = defaultRowid;
+        }
+
+        /**
+         * Sets a column, making room for it.
+         */
+        private void slot(int col, int type) {
+            if (col < 0) {
+                throw new IndexOutOfBoundsException("column " + col);
+            }
+            if (col >= types.length) {
+                int length = Math.max(col + 1, 2 * types.length);
+                int[] t = new int[length];
+                long[] l = new long[length];
+                double[] d = new double[length];
+                Object[] o = new Object[length];
+                System.arraycopy(types, 0, t, 0, columns);
+                System.arraycopy(longs, 0, l, 0, columns);
+                System.arraycopy(doubles, 0, d, 0, columns);
+                System.arraycopy(objects, 0, o, 0, columns);
+                types = t;
+                longs = l;
+                doubles = d;
+                objects = o;
+            }
+            for (int i = columns; i < col; i++) {
+                types[i] = Codes.SQLITE_NULL;
+            }
+            if (col >= columns) {
+                columns = col + 1;
+            }
+            types[col] = type;
+            objects[col] = null;
+        }
+
+        /**
+         * @param rowid The rowid of the row.
+         */
+        public void setRowid(long rowid) {
+            this.rowid = rowid;
+        }
+
+        /**
+         * @param col Index of the column.
+         * @param value The value of the column.
+         */
+        public void set(int col, long value) {
+            slot(col, Codes.SQLITE_INTEGER);
+            longs[col] = value;
+        }
+
+        /**
+         * @param col Index of the column.
+         * @param value The value of the column.
+         */
+        public void set(int col, double value) {
+            slot(col, Codes.SQLITE_FLOAT);
+            doubles[col] = value;
+        }
+
+        /**
+         * @param col Index of the column.
+         * @param value The value of the column, or null.
+         */
+        public void set(int col, String value) {
+            slot(col, value == null ? Codes.SQLITE_NULL : Codes.SQLITE_TEXT);
+            objects[col] = value;
+        }
+
+        /**
+         * @param col Index of the column.
+         * @param value The value of the column, or null.
+         */
+        public void set(int col, byte[] value) {
+            slot(col, value == null ? Codes.SQLITE_NULL : Codes.SQLITE_BLOB);
+            objects[col] = value;
+        }
+
+        /**
+         * @param col Index of the column.
+         */
+        public void setNull(int col) {
+            slot(col, Codes.SQLITE_NULL);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.sqlite.core.Codes;
+import org.sqlite.core.DB;
+
+/**
+ * A read-only virtual table whose rows come from Java, e.g. a cache, columnar arrays or a
+ * memory-mapped file, so that SQL can query and join them without inserting them into a
+ * real table first.
+ *
+ * <p>A {@link Module} registered with {@link #createModule(Connection, String, Module)}
+ * creates the tables of the statements
+ * <tt>CREATE VIRTUAL TABLE name USING module(arguments)</tt>, and connects them again
+ * each time the schema is loaded. SQLite asks the table how to run each query with
+ * {@link #bestIndex(IndexInfo)}, which may take over constraints of the WHERE clause so
+ * that the {@link VirtualCursor} only produces matching rows. Rows are passed to SQLite in
+ * batches, see {@link VirtualCursor}.</p>
+ *
+ * <pre>
+ *      VirtualTable.createModule(conn, "points", new VirtualTable.Module() {
+ *          public VirtualTable connect(String[] args) {
+ *              return new PointTable(cache);
+ *          }
+ *      });
+ *      conn.createStatement().executeUpdate("create virtual table temp.pts using points");
+ * </pre>
+ * @see <a href="http://www.sqlite.org/vtab.html">http://www.sqlite.org/vtab.html</a>
+ */
+public abstract class VirtualTable
+{
+    /**
+     * Creates the tables of a module.
+     */
+    public interface Module
+    {
+        /**
+         * Creates or connects a table.
+         * @param args Name of the module, name of the database, name of the table, then the
+         *        arguments of the module given in CREATE VIRTUAL TABLE, if any.
+         * @return The table.
+         * @throws SQLException
+         */
+        VirtualTable connect(String[] args) throws SQLException;
+    }
+
+    /**
+     * Registers a module with a connection.
+     * @param conn The connection.
+     * @param name The name of the module.
+     * @param module The module.
+     * @throws SQLException
+     */
+    public static final void createModule(Connection conn, String name, Module module) throws SQLException {
+        if (conn == null || !(conn instanceof SQLiteConnection)) {
+            throw new SQLException("connection must be to an SQLite db");
+        }
+        if (conn.isClosed()) {
+            throw new SQLException("connection closed");
+        }
+        if (name == null || name.length() > 255) {
+            throw new SQLException("invalid module name: '" + name + "'");
+        }
+        if (module == null) {
+            throw new SQLException("module is null");
+        }
+
+        DB db = ((SQLiteConnection) conn).db();
+        db.requireExtended("virtual tables are");
+        if (db.create_module(name, module) != Codes.SQLITE_OK) {
+            throw new SQLException("error creating module");
+        }
+    }
+
+    /**
+     * @return The CREATE TABLE statement declaring the columns of the table, e.g.
+     *         <tt>CREATE TABLE x(id INTEGER, name TEXT)</tt>; the name of the table is ignored.
+     */
+    public abstract String getSchema();
+
+    /**
+     * Opens a cursor on the rows of the table.
+     * @return The cursor.
+     * @throws SQLException
+     */
+    public abstract VirtualCursor open() throws SQLException;
+
+    /**
+     * Chooses how to run a query: which constraints are passed to
+     * {@link VirtualCursor#filter(int, String, Object[])}, whether the rows come in the
+     * requested order and how much it costs. The default uses no constraint and estimates a
+     * full scan of a million rows.
+     * @param info The constraints and order of the query, which receive the plan.
+     * @throws SQLException
+     */
+    protected void bestIndex(IndexInfo info) throws SQLException {
+        info.setEstimatedCost(1e6);
+        info.setEstimatedRows(1000000);
+    }
+
+    /**
+     * Called when the connection lets go of the table, e.g. when it is closed.
+     * @throws SQLException
+     */
+    protected void disconnect() throws SQLException {}
+
+    /**
+     * Called when the table is dropped. The default calls {@link #disconnect()}.
+     * @throws SQLException
+     */
+    protected void destroy() throws SQLException {
+        disconnect();
+    }
+
+    /**
+     * Called from native code with the constraints and ORDER BY terms of a query.
+     * @return The plan chosen by {@link #bestIndex(IndexInfo)}.
+     */
+    final IndexInfo bestIndex(int[] columns, int[] ops, boolean[] usable, int[] orderByColumns,
+            boolean[] orderByDesc) throws SQLException {
+        IndexInfo info = new IndexInfo(columns, ops, usable, orderByColumns, orderByDesc);
+        bestIndex(info);
+        return info;
+    }
+
+    /**
+     * The constraints and ORDER BY terms of a query, and the plan chosen to run it.
+     * @see <a href="http://www.sqlite.org/c3ref/index_info.html">http://www.sqlite.org/c3ref/index_info.html</a>
+     */
+    public static final class IndexInfo
+    {
+        /** Operator of a constraint: column = value. */
+        public static final int EQ = 2;
+        /** Operator of a constraint: column &gt; value. */
+        public static final int GT = 4;
+        /** Operator of a constraint: column &lt;= value. */
+        public static final int LE = 8;
+        /** Operator of a constraint: column &lt; value. */
+        public static final int LT = 16;
+        /** Operator of a constraint: column &gt;= value. */
+        public static final int GE = 32;
+        /** Operator of a constraint: column MATCH value. */
+        public static final int MATCH = 64;
+
+        private final int[] columns;
+        private final int[] ops;
+        private final boolean[] usable;
+        private final int[] orderByColumns;
+        private final boolean[] orderByDesc;
+
+        final int[] argvIndex;
+        final boolean[] omit;
+        int indexNumber = 0;
+        String indexString = null;
+        boolean orderByConsumed = false;
+        double estimatedCost = 1e6;
+        long estimatedRows = 1000000;
+
+        IndexInfo(int[] columns, int[] ops, boolean[] usable, int[] orderByColumns, boolean[] orderByDesc) {
+            this.columns = columns;
+            this.ops = ops;
+            this.usable = usable;
+            this.orderByColumns = orderByColumns;
+            this.orderByDesc = orderByDesc;
+            argvIndex = new int[columns.length];
+            omit = new boolean[columns.length];
+        }
+
+        /**
+         * @return The number of constraints of the WHERE clause on the table.
+         */
+        public int getConstraintCount() {
+            return columns.length;
+        }
+
+        /**
+         * @param i Index of the constraint.
+         * @return The column constrained, -1 for the rowid.
+         */
+        public int getConstraintColumn(int i) {
+            return columns[i];
+        }
+
+        /**
+         * @param i Index of the constraint.
+         * @return The operator of the constraint, e.g. {@link #EQ}.
+         */
+        public int getConstraintOp(int i) {
+            return ops[i];
+        }
+
+        /**
+         * @param i Index of the constraint.
+         * @return False if the constraint cannot be used by this plan, e.g. because its value
+         *         comes from a table joined later.
+         */
+        public boolean isConstraintUsable(int i) {
+            return usable[i];
+        }
+
+        /**
+         * Passes the value of a usable constraint to
+         * {@link VirtualCursor#filter(int, String, Object[])}.
+         * @param i Index of the constraint.
+         * @param argvIndex Position of the value among the values passed, from 1.
+         * @param omit True if the cursor only returns rows meeting the constraint, so that
+         *        SQLite need not check it again.
+         */
+        public void useConstraint(int i, int argvIndex, boolean omit) {
+            this.argvIndex[i] = argvIndex;
+            this.omit[i] = omit;
+        }
+
+        /**
+         * @return The number of ORDER BY terms.
+         */
+        public int getOrderByCount() {
+            return orderByColumns.length;
+        }
+
+        /**
+         * @param i Index of the term.
+         * @return The column of the term.
+         */
+        public int getOrderByColumn(int i) {
+            return orderByColumns[i];
+        }
+
+        /**
+         * @param i Index of the term.
+         * @return True if the term is descending.
+         */
+        public boolean isOrderByDesc(int i) {
+            return orderByDesc[i];
+        }
+
+        /**
+         * @param indexNumber Number passed to {@link VirtualCursor#filter(int, String, Object[])}
+         *        to identify the plan.
+         */
+        public void setIndexNumber(int indexNumber) {
+            this.indexNumber = indexNumber;
+        }
+
+        /**
+         * @param indexString String passed to {@link VirtualCursor#filter(int, String, Object[])}
+         *        to identify the plan.
+         */
+        public void setIndexString(String indexString) {
+            this.indexString = indexString;
+        }
+
+        /**
+         * @param orderByConsumed True if the cursor returns the rows in the order of the
+         *        ORDER BY terms, so that SQLite need not sort them.
+         */
+        public void setOrderByConsumed(boolean orderByConsumed) {
+            this.orderByConsumed = orderByConsumed;
+        }
+
+        /**
+         * @param estimatedCost Estimated cost of the plan, compared with the other plans;
+         *        roughly the number of disk accesses of an equivalent table.
+         */
+        public void setEstimatedCost(double estimatedCost) {
+            this.estimatedCost = estimatedCost;
+        }
+
+        /**
+         * @param estimatedRows Estimated number of rows returned by the plan; ignored by
+         *        SQLite before 3.8.2.
+         */
+        public void setEstimatedRows(long estimatedRows) {
+            this.estimatedRows = estimatedRows;
+        }
+    }
+}
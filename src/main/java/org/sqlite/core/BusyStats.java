@@ -0,0 +1,76 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite.core;
+
+/**
+ * Counters of the busy handler of a connection, which waits for the locks held by other
+ * connections. Instances returned by {@link CoreConnection#getBusyStats()} are snapshots
+ * which do not change afterwards.
+ * @see org.sqlite.SQLiteConfig#setBusyHandler(org.sqlite.SQLiteConfig.BusyHandler)
+ */
+public final class BusyStats
+{
+    private final long callbacks;
+    private final long waits;
+    private final long waitMicros;
+    private final long timeouts;
+
+    /**
+     * @param values Number of callbacks, of waits, time slept in microseconds and number of
+     *        waits given up, as filled in by {@link DB#busy_stats(long, boolean, long[])}.
+     */
+    BusyStats(long[] values) {
+        callbacks = values[0];
+        waits = values[1];
+        waitMicros = values[2];
+        timeouts = values[3];
+    }
+
+    /**
+     * @return Number of times SQLite called the busy handler, i.e. found a lock held.
+     */
+    public long getCallbacks() {
+        return callbacks;
+    }
+
+    /**
+     * @return Number of waits for a lock, each made of one or more callbacks.
+     */
+    public long getWaits() {
+        return waits;
+    }
+
+    /**
+     * @return Total time slept waiting for locks, in microseconds.
+     */
+    public long getWaitMicros() {
+        return waitMicros;
+    }
+
+    /**
+     * @return Number of waits given up after the busy timeout, which failed with SQLITE_BUSY.
+     */
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("[callbacks=%d, waits=%d, waitMicros=%d, timeouts=%d]", callbacks, waits, waitMicros,
+                timeouts);
+    }
+}
@@ -0,0 +1,122 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite.core;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+
+/**
+ * Handle on a BLOB for incremental I/O with sqlite3_blob_open(), reading and writing
+ * the BLOB piece by piece through direct buffers rather than as one array.
+ */
+public abstract class CoreBlob implements Codes
+{
+    /** Default size of the direct buffers moving bytes in and out of a BLOB. */
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    protected final DB db;
+    protected final boolean writable;
+
+    /** Size of the BLOB in bytes, which incremental I/O cannot change. */
+    protected final int length;
+
+    /** Pointer to the BLOB handle, 0 once closed. */
+    long pointer = 0;
+
+    /**
+     * Opens a handle on a BLOB.
+     * @param db The database.
+     * @param database Symbolic name of the database, e.g. "main".
+     * @param table Name of the table.
+     * @param column Name of the column.
+     * @param rowid Rowid of the row.
+     * @param writable True to open the BLOB for reading and writing.
+     * @throws SQLException
+     */
+    protected CoreBlob(DB db, String database, String table, String column, long rowid, boolean writable)
+            throws SQLException {
+        this.db = db;
+        this.writable = writable;
+        synchronized (db) {
+            db.openBlob(this, database, table, column, rowid, writable);
+            length = db.blob_bytes(pointer);
+        }
+    }
+
+    /**
+     * @return True if the handle has not been closed.
+     */
+    public boolean isOpen() {
+        synchronized (db) {
+            return pointer != 0;
+        }
+    }
+
+    /**
+     * @throws SQLException if the handle has been closed.
+     */
+    protected void checkOpen() throws SQLException {
+        if (pointer == 0) {
+            throw new SQLException("BLOB is closed");
+        }
+    }
+
+    /**
+     * Reads bytes of the BLOB into the start of a direct buffer, which is left ready to be
+     * read from.
+     * @param buf Direct buffer of at least n bytes.
+     * @param n Number of bytes to read.
+     * @param offset Offset in the BLOB of the first byte.
+     * @throws SQLException
+     */
+    protected void read(ByteBuffer buf, int n, int offset) throws SQLException {
+        synchronized (db) {
+            checkOpen();
+            int rc = db.blob_read(pointer, buf, n, offset);
+            if (rc != SQLITE_OK) {
+                db.throwex(rc);
+            }
+        }
+        buf.clear();
+        buf.limit(n);
+    }
+
+    /**
+     * Writes the bytes at the start of a direct buffer into the BLOB.
+     * @param buf Direct buffer of at least n bytes.
+     * @param n Number of bytes to write.
+     * @param offset Offset in the BLOB of the first byte.
+     * @throws SQLException
+     */
+    protected void write(ByteBuffer buf, int n, int offset) throws SQLException {
+        if (!writable) {
+            throw new SQLException("BLOB is read-only");
+        }
+        synchronized (db) {
+            checkOpen();
+            int rc = db.blob_write(pointer, buf, n, offset);
+            if (rc != SQLITE_OK) {
+                db.throwex(rc);
+            }
+        }
+    }
+
+    /**
+     * Closes the handle; does nothing if it already is.
+     * @throws SQLException
+     */
+    public void close() throws SQLException {
+        db.closeBlob(this);
+    }
+}
@@ -10,7 +10,9 @@ import java.net.URL;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -24,6 +26,9 @@ import org.sqlite.SQLiteConfig.DatePrecision;
 import org.sqlite.SQLiteConfig.Pragma;
 import org.sqlite.SQLiteConfig.TransactionMode;
 import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteConnectionStatus;
+import org.sqlite.SQLiteDbStatus;
+import org.sqlite.SQLiteStatus;
 
 public abstract class CoreConnection {
     private static final String RESOURCE_NAME_PREFIX = ":resource:";
@@ -37,6 +42,8 @@ public abstract class CoreConnection {
     private int busyTimeout = 0;
     protected final int openModeFlags;
     protected TransactionMode transactionMode = TransactionMode.DEFFERED;
+    private boolean batchTransaction = false;
+    private SQLiteConnectionStatus status = null; // registered MBean, if any
 
     protected final static Map<TransactionMode, String> beginCommandMap =
         new EnumMap<SQLiteConfig.TransactionMode, String>(SQLiteConfig.TransactionMode.class);
@@ -72,6 +79,7 @@ public abstract class CoreConnection {
         this.datePrecision = config.datePrecision;
         this.transactionMode = config.getTransactionMode();
         this.openModeFlags = config.getOpenModeFlags();
+        this.batchTransaction = config.isEnabledBatchTransaction();
 
         open(openModeFlags, config.busyTimeout);
 
@@ -80,6 +88,15 @@ public abstract class CoreConnection {
             db.shared_cache(config.isEnabledSharedCache());
         }
         db.enable_load_extension(config.isEnabledLoadExtension());
+        db.setStatementCacheSize(config.getStatementCacheSize());
+        db.setMetricsEnabled(config.isEnabledMetrics());
+        db.setSlowQueryThreshold(config.getSlowQueryThreshold());
+        db.setQueryTimeoutInterval(config.getQueryTimeoutInterval());
+        db.setBusyHandler(config.getBusyHandler(), config.getBusySpins(), config.getBusyBackoffInitial(),
+                config.getBusyBackoffMax(), config.isEnabledBusyJitter());
+        if (config.isEnabledJmx()) {
+            status = SQLiteConnectionStatus.register((SQLiteConnection) this);
+        }
 
         // set pragmas
         config.apply((Connection)this);
@@ -291,15 +308,228 @@ public abstract class CoreConnection {
     }
 
     /**
-     * Sets the timeout value for the connection.
-     * A timeout value less than or equal to zero turns off all busy handlers.
+     * Sets the timeout value for the connection, the longest time the busy handler waits for
+     * a lock. A timeout value less than or equal to zero turns off all busy handlers.
      * @see <a href="http://www.sqlite.org/c3ref/busy_timeout.html">http://www.sqlite.org/c3ref/busy_timeout.html</a>
+     * @see SQLiteConfig#setBusyHandler(SQLiteConfig.BusyHandler)
      * @param milliseconds The timeout value in milliseconds.
      * @throws SQLException
      */
     public void setBusyTimeout(int milliseconds) throws SQLException {
         busyTimeout = milliseconds;
-        db.busy_timeout(busyTimeout);
+        db.setBusyTimeout(busyTimeout);
+    }
+
+    /**
+     * Returns the counters of the busy handler: how often and how long the connection waited
+     * for locks held by other connections.
+     * @return Snapshot of the counters.
+     * @throws SQLException
+     */
+    public BusyStats getBusyStats() throws SQLException {
+        checkOpen();
+        return db.getBusyStats(false);
+    }
+
+    /**
+     * Sets the counters of the busy handler back to zero.
+     * @throws SQLException
+     */
+    public void resetBusyStats() throws SQLException {
+        checkOpen();
+        db.getBusyStats(true);
+    }
+
+    /**
+     * @return True if each executeBatch() runs in a transaction of its own.
+     * @see SQLiteConfig#setBatchTransaction(boolean)
+     */
+    public boolean isBatchTransaction() {
+        return batchTransaction;
+    }
+
+    /**
+     * Enables or disables running each executeBatch() in a transaction of its own.
+     * @param enable True to enable; false to disable.
+     * @see SQLiteConfig#setBatchTransaction(boolean)
+     */
+    public void setBatchTransaction(boolean enable) {
+        batchTransaction = enable;
+    }
+
+    /**
+     * Sets the number of closed prepared statements this connection keeps for reuse.
+     * @param size Number of statements; 0 disables the cache.
+     * @throws SQLException
+     * @see SQLiteConfig#setStatementCacheSize(int)
+     */
+    public void setStatementCacheSize(int size) throws SQLException {
+        checkOpen();
+        db.setStatementCacheSize(size);
+    }
+
+    /**
+     * @return Number of prepareStatement() calls that reused a cached statement.
+     */
+    public long getStatementCacheHits() {
+        return db == null ? 0 : db.getStatementCacheHits();
+    }
+
+    /**
+     * @return Number of prepareStatement() calls that compiled their SQL while the
+     *         statement cache was enabled.
+     */
+    public long getStatementCacheMisses() {
+        return db == null ? 0 : db.getStatementCacheMisses();
+    }
+
+    /**
+     * Reads a status value SQLite keeps for this connection, e.g. the page cache hits.
+     * @param status The status value.
+     * @param reset True to reset it after reading: the highwater value, and the current
+     *        value of the counters CACHE_HIT, CACHE_MISS, CACHE_WRITE and CACHE_SPILL.
+     * @return The current value.
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/db_status.html">http://www.sqlite.org/c3ref/db_status.html</a>
+     */
+    public long getDbStatus(SQLiteDbStatus status, boolean reset) throws SQLException {
+        return dbStatus(status, reset)[0];
+    }
+
+    /**
+     * Reads the highwater value of a status value SQLite keeps for this connection.
+     * @param status The status value.
+     * @param reset True to reset it after reading.
+     * @return The highest value since the connection was opened or last reset.
+     * @throws SQLException
+     * @see #getDbStatus(SQLiteDbStatus, boolean)
+     */
+    public long getDbStatusHighwater(SQLiteDbStatus status, boolean reset) throws SQLException {
+        return dbStatus(status, reset)[1];
+    }
+
+    private long[] dbStatus(SQLiteDbStatus status, boolean reset) throws SQLException {
+        checkOpen();
+        db.requireExtended("status counters are");
+        long[] values = new long[2];
+        int rc = db.db_status(status.code, reset, values);
+        if (rc != Codes.SQLITE_OK) {
+            db.throwex(rc);
+        }
+        return values;
+    }
+
+    /**
+     * Reads a status value the SQLite library keeps for the whole process, e.g. the memory
+     * in use.
+     * @param status The status value.
+     * @param reset True to reset the highwater value after reading.
+     * @return The current value.
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/status.html">http://www.sqlite.org/c3ref/status.html</a>
+     */
+    public long getStatus(SQLiteStatus status, boolean reset) throws SQLException {
+        return status(status, reset)[0];
+    }
+
+    /**
+     * Reads the highwater value of a status value the SQLite library keeps for the whole
+     * process.
+     * @param status The status value.
+     * @param reset True to reset it after reading.
+     * @return The highest value since the process started or the value was last reset.
+     * @throws SQLException
+     * @see #getStatus(SQLiteStatus, boolean)
+     */
+    public long getStatusHighwater(SQLiteStatus status, boolean reset) throws SQLException {
+        return status(status, reset)[1];
+    }
+
+    private long[] status(SQLiteStatus status, boolean reset) throws SQLException {
+        checkOpen();
+        db.requireExtended("status counters are");
+        long[] values = new long[2];
+        int rc = db.status(status.code, reset, values);
+        if (rc != Codes.SQLITE_OK) {
+            db.throwex(rc);
+        }
+        return values;
+    }
+
+    /**
+     * Enables or disables collecting execution statistics of the statements of this
+     * connection.
+     * @param enable True to enable; false to disable.
+     * @throws SQLException
+     * @see SQLiteConfig#setMetrics(boolean)
+     */
+    public void setMetricsEnabled(boolean enable) throws SQLException {
+        checkOpen();
+        db.setMetricsEnabled(enable);
+    }
+
+    /**
+     * @return True if execution statistics are collected.
+     */
+    public boolean isMetricsEnabled() {
+        return db != null && db.isMetricsEnabled();
+    }
+
+    /**
+     * Sets the time in native code from which an execution of a statement is logged as a
+     * slow query.
+     * @param millis Threshold in milliseconds; negative to log no executions.
+     * @throws SQLException
+     * @see SQLiteConfig#setSlowQueryThreshold(long)
+     */
+    public void setSlowQueryThreshold(long millis) throws SQLException {
+        checkOpen();
+        db.setSlowQueryThreshold(millis);
+    }
+
+    /**
+     * @return The slow query threshold in milliseconds; negative if slow queries are not
+     *         logged.
+     */
+    public long getSlowQueryThreshold() {
+        return db == null ? -1 : db.getSlowQueryThreshold();
+    }
+
+    /**
+     * Sets how often the query timeout of a statement is checked while it runs.
+     * @param opcodes Number of virtual machine instructions between checks.
+     * @throws SQLException
+     * @see SQLiteConfig#setQueryTimeoutInterval(int)
+     */
+    public void setQueryTimeoutInterval(int opcodes) throws SQLException {
+        checkOpen();
+        db.setQueryTimeoutInterval(opcodes);
+    }
+
+    /**
+     * @return Number of virtual machine instructions between checks of a query timeout.
+     */
+    public int getQueryTimeoutInterval() {
+        return db == null ? DB.DEFAULT_QUERY_TIMEOUT_INTERVAL : db.getQueryTimeoutInterval();
+    }
+
+    /**
+     * Returns the execution statistics collected since metrics were enabled or last reset,
+     * one entry per normalized SQL.
+     * @return Snapshot of the statistics, the statements which spent the most time in
+     *         native code first; empty if metrics are disabled.
+     */
+    public List<QueryStats> getQueryStats() {
+        return db == null ? new ArrayList<QueryStats>() : db.getQueryStats();
+    }
+
+    /**
+     * Discards the execution statistics collected so far.
+     */
+    public void resetQueryStats() {
+        if (db != null) {
+            db.resetQueryStats();
+        }
     }
 
     /**
@@ -399,6 +629,10 @@ public abstract class CoreConnection {
     public void realClose() throws SQLException {
         if (db == null)
             return;
+        if (status != null) {
+            status.unregister();
+            status = null;
+        }
         if (meta != null)
             meta.close();
 
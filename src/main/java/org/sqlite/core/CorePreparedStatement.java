@@ -16,6 +16,7 @@
 
 package org.sqlite.core;
 
+import java.io.InputStream;
 import java.sql.Date;
 import java.sql.SQLException;
 
@@ -26,6 +27,10 @@ public abstract class CorePreparedStatement extends JDBC4Statement
 {
     protected int columnCount;
     protected int paramCount;
+    protected ParameterBuffer params;
+
+    private InsertTarget insertTarget;
+    private boolean insertTargetParsed = false;
 
     /**
      * Constructs a prepared statement on a provided connection.
@@ -37,11 +42,13 @@ public abstract class CorePreparedStatement extends JDBC4Statement
         super(conn);
 
         this.sql = sql;
-        db.prepare(this);
-        rs.colsMeta = db.column_names(pointer);
-        columnCount = db.column_count(pointer);
-        paramCount = db.bind_parameter_count(pointer);
-        batch = null;
+        synchronized (db) {
+            db.prepare(this, true);
+            rs.colsMeta = db.column_names(pointer);
+            columnCount = db.column_count(pointer);
+            paramCount = db.bind_parameter_count(pointer);
+        }
+        params = null;
         batchPos = 0;
     }
 
@@ -53,12 +60,21 @@ public abstract class CorePreparedStatement extends JDBC4Statement
         close();
     }
 
+    /**
+     * Hands the native statement back to the statement cache of the connection.
+     * @see org.sqlite.core.CoreStatement#finalizeStatement()
+     */
+    @Override
+    protected int finalizeStatement() throws SQLException {
+        return db.release(this);
+    }
+
     /**
      * Checks if values are bound to statement parameters.
      * @throws SQLException
      */
     protected void checkParameters() throws SQLException {
-        if (batch == null && paramCount > 0)
+        if (params == null && paramCount > 0)
             throw new SQLException("Values not bound to statement");
     }
 
@@ -73,11 +89,41 @@ public abstract class CorePreparedStatement extends JDBC4Statement
 
         checkParameters();
 
-        try {
-            return db.executeBatch(pointer, batchPos / paramCount, batch);
+        int count = batchPos / paramCount;
+        synchronized (db) {
+            int wrapped = db.beginBatch();
+            boolean timed = db.metrics.timing;
+            long start = 0;
+            if (timed) {
+                db.metrics.begin(this);
+                start = System.nanoTime();
+            }
+            try {
+                int[] changes = db.executeBatch(this, count, params);
+                db.commitBatch(wrapped);
+                return changes;
+            }
+            catch (SQLException e) {
+                throw db.rollbackBatch(wrapped, e, count);
+            }
+            finally {
+                if (timed) {
+                    db.metrics.stepped(this, System.nanoTime() - start, count, 0, SQLITE_DONE);
+                    db.metrics.end(this);
+                }
+                clearBatch();
+            }
         }
-        finally {
-            clearBatch();
+    }
+
+    /**
+     * @see org.sqlite.jdbc3.JDBC3Statement#clearBatch()
+     */
+    @Override
+    public void clearBatch() throws SQLException {
+        batchPos = 0;
+        if (params != null) {
+            params.clear();
         }
     }
 
@@ -90,43 +136,132 @@ public abstract class CorePreparedStatement extends JDBC4Statement
             return -1;
         }
 
-        return db.changes();
+        synchronized (db) {
+            return db.changes();
+        }
     }
 
     // PARAMETER FUNCTIONS //////////////////////////////////////////
 
     /**
-     * Assigns the object value to the element at the specific position of array
-     * batch.
+     * Returns the buffer of parameter values, allocated on first use.
+     * @return The buffer.
+     * @throws SQLException
+     */
+    private ParameterBuffer params() throws SQLException {
+        checkOpen();
+        if (params == null) {
+            params = new ParameterBuffer(paramCount);
+        }
+        return params;
+    }
+
+    /**
+     * Assigns the object value to the parameter at the given position of the current
+     * row of the batch.
      * @param pos
      * @param value
      * @throws SQLException
      */
     protected void batch(int pos, Object value) throws SQLException {
-        checkOpen();
-        if (batch == null) {
-            batch = new Object[paramCount];
+        if (value == null) {
+            batchNull(pos);
+        }
+        else if (value instanceof String) {
+            batchText(pos, (String) value);
+        }
+        else if (value instanceof byte[]) {
+            batchBlob(pos, (byte[]) value);
+        }
+        else if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+            batchLong(pos, ((Number) value).longValue());
+        }
+        else if (value instanceof Double || value instanceof Float) {
+            batchDouble(pos, ((Number) value).doubleValue());
+        }
+        else {
+            throw new SQLException("unexpected param type: " + value.getClass());
+        }
+    }
+
+    protected void batchNull(int pos) throws SQLException {
+        params().setNull(batchPos + pos - 1);
+    }
+
+    protected void batchLong(int pos, long value) throws SQLException {
+        params().setLong(batchPos + pos - 1, value);
+    }
+
+    protected void batchDouble(int pos, double value) throws SQLException {
+        params().setDouble(batchPos + pos - 1, value);
+    }
+
+    protected void batchText(int pos, String value) throws SQLException {
+        params().setText(batchPos + pos - 1, value);
+    }
+
+    protected void batchBlob(int pos, byte[] value) throws SQLException {
+        params().setBlob(batchPos + pos - 1, value);
+    }
+
+    /**
+     * Sets a parameter to the bytes of a stream, which is read when the statement is
+     * executed. If the statement inserts the parameter into a column, the row is inserted
+     * with a zeroblob and the stream then copied into it a chunk at a time.
+     * @param pos The parameter.
+     * @param value The stream.
+     * @param length Number of bytes to read from the stream.
+     * @throws SQLException
+     */
+    protected void batchBlobStream(int pos, InputStream value, int length) throws SQLException {
+        if (length < 0) {
+            throw new SQLException("Error reading stream. Length should be non-negative");
+        }
+        params().setBlobStream(batchPos + pos - 1, value, length);
+    }
+
+    /**
+     * Reads the streams set as parameters of the current row of the batch, which are not
+     * kept until the batch is executed.
+     * @throws SQLException
+     */
+    protected void batchReadStreams() throws SQLException {
+        if (params != null) {
+            params.readStreams(batchPos, paramCount);
+        }
+    }
+
+    /**
+     * @return Where the statement inserts its parameters, or null if that is not known.
+     */
+    InsertTarget insertTarget() {
+        if (!insertTargetParsed) {
+            insertTarget = InsertTarget.parse(sql);
+            if (insertTarget != null && insertTarget.columns.length != paramCount) {
+                insertTarget = null;
+            }
+            insertTargetParsed = true;
         }
-        batch[batchPos + pos - 1] = value;
+        return insertTarget;
     }
 
 
     /**
     * Store the date in the user's preferred format (text, int, or real)
     */
-   protected void setDateByMilliseconds(int pos, Long value) throws SQLException {
+   protected void setDateByMilliseconds(int pos, long value) throws SQLException {
        switch(conn.dateClass) {
            case TEXT:
-               batch(pos, conn.dateFormat.format(new Date(value)));
+               batchText(pos, conn.dateFormat.format(new Date(value)));
                break;
 
            case REAL:
                // long to Julian date
-               batch(pos, new Double((value/86400000.0) + 2440587.5));
+               batchDouble(pos, (value/86400000.0) + 2440587.5);
                break;
 
            default: //INTEGER:
-               batch(pos, new Long(value / conn.dateMultiplier));
+               batchLong(pos, value / conn.dateMultiplier);
        }
    }
 }
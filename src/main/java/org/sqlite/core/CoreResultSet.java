@@ -15,15 +15,30 @@
  */
 package org.sqlite.core;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.Statement;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Locale;
 import java.util.Map;
 
 /**
  * Implements a JDBC ResultSet.
+ * <p>
+ * Column values are read from a row buffer filled by {@link DB#row_fetch(long, ByteBuffer, int, boolean)},
+ * which steps the statement and copies up to fetch size rows in one native call. The buffer
+ * starts with the number of rows copied and a flag telling whether the statement is left on a
+ * row that did not fit (two ints). Each row starts with its size and column count (two ints),
+ * followed by a 32 byte slot per column holding its type, the offset (from the start of the row)
+ * and length of its text/blob data (ints, one unused), and the value of an INTEGER (long) or
+ * of a REAL (double). Only the value of the storage class is copied: the text of a REAL and
+ * the number a TEXT or BLOB starts with are converted by SQLite when they are asked for. When the native library cannot fetch
+ * rows, see {@link DB#extended()}, the values are read from the statement column by column instead.
  */
 public abstract class CoreResultSet implements Codes
 {
@@ -50,7 +65,26 @@ public abstract class CoreResultSet implements Codes
     protected boolean doingUpdates = false;
 
     public boolean closeStmt;
-    protected Map<String, Integer> columnNameToIndex = null;
+    protected Map<String, Integer> columnNameToIndex = null; // names as given to findColumn
+    private Map<String, Integer>   columnIndex = null;       // lower cased names, see columnIndex()
+    private String[]               indexedCols = null;       // columns of columnIndex
+
+    private static final int AMBIGUOUS_COLUMN = -1;
+
+    private static final int BLOCK_HEADER_SIZE = 8;
+    private static final int ROW_HEADER_SIZE = 8;
+    private static final int ROW_COLUMN_SIZE = 32;
+    private static final int INITIAL_ROW_CAPACITY = 4096;
+    private static final int MAX_BLOCK_CAPACITY = 1 << 20;
+
+    private ByteBuffer   rowData      = null;  // reused for every block, see the class comment
+    private boolean      rowLoaded    = false; // true if rowData holds the current row
+    private int          rowOffset;            // start of the current row in rowData
+    private int          blockRows;            // rows of the block after the current one
+    private int          blockStatus;          // result of the last step made for the block
+    private boolean      blockPending;         // statement is on a row that did not fit the block
+    private SQLException blockError;           // error that ended the block
+    private byte[]       textData;             // reused to decode text values
 
     /**
      * Default constructor for a given statement.
@@ -71,28 +105,58 @@ public abstract class CoreResultSet implements Codes
     }
 
     public String getString(int col) throws SQLException {
-	return db.column_text(stmt.pointer, markCol(col));
+	return columnText(markCol(col));
     }
 
     public int findColumn(String col) throws SQLException {
-	checkOpen();
-	int c = -1;
-	for (int i = 0; i < cols.length; i++) {
-	    if (col.equalsIgnoreCase(cols[i])
-		    || (cols[i].toUpperCase().endsWith(col.toUpperCase()) && cols[i]
-			    .charAt(cols[i].length() - col.length()) == '.')) {
-		if (c == -1) {
-		    c = i;
-		} else {
-		    throw new SQLException("ambiguous column: '" + col + "'");
-		}
-	    }
-	}
-	if (c == -1) {
-	    throw new SQLException("no such column: '" + col + "'");
-	} else {
-	    return c + 1;
-	}
+        checkOpen();
+        Integer index = findColumnIndexInCache(col);
+        if (index == null) {
+            index = columnIndex().get(col.toLowerCase(Locale.ENGLISH));
+            if (index == null) {
+                throw new SQLException("no such column: '" + col + "'");
+            }
+            addColumnIndexInCache(col, index);
+        }
+        if (index == AMBIGUOUS_COLUMN) {
+            throw new SQLException("ambiguous column: '" + col + "'");
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index of the lower cased column names, built when a column is first
+     * looked up by name. A column "t.c" is indexed both as "t.c" and as "c". The index
+     * is kept when the statement is executed again with the same columns.
+     * @return The map of lower cased names to column numbers.
+     */
+    private Map<String, Integer> columnIndex() {
+        if (indexedCols != cols) {
+            if (indexedCols == null || !Arrays.equals(indexedCols, cols)) {
+                columnIndex = null;
+                columnNameToIndex = null;
+            }
+            indexedCols = cols;
+        }
+
+        if (columnIndex == null) {
+            columnIndex = new HashMap<String, Integer>(cols.length * 2);
+            for (int i = 0; i < cols.length; i++) {
+                String name = cols[i].toLowerCase(Locale.ENGLISH);
+                indexColumn(name, i + 1);
+                for (int dot = name.indexOf('.'); dot >= 0; dot = name.indexOf('.', dot + 1)) {
+                    indexColumn(name.substring(dot + 1), i + 1);
+                }
+            }
+        }
+        return columnIndex;
+    }
+
+    private void indexColumn(String name, int index) {
+        Integer previous = columnIndex.put(name, index);
+        if (previous != null && previous != index) {
+            columnIndex.put(name, AMBIGUOUS_COLUMN);
+        }
     }
 
     protected void clearRowBuffer(boolean copyCurrentRow) throws SQLException {
@@ -295,26 +359,462 @@ public abstract class CoreResultSet implements Codes
     public void checkMeta() throws SQLException {
         checkCol(1);
         if (meta == null) {
-            meta = db.column_metadata(stmt.pointer);
+            synchronized (db) {
+                meta = db.column_metadata(stmt.pointer);
+            }
+        }
+    }
+
+    // ROW BUFFER ///////////////////////////////////////////////////
+
+    /**
+     * Moves to the next row, which is taken from the current block of rows if
+     * there is one, otherwise the statement is stepped and a new block fetched.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a> of the step.
+     * @throws SQLException
+     */
+    protected int stepRow() throws SQLException {
+        boolean step = true;
+        if (rowLoaded) {
+            if (blockRows > 0) {
+                rowOffset += rowData.getInt(rowOffset);
+                blockRows--;
+                return SQLITE_ROW;
+            }
+            if (blockError != null) {
+                SQLException e = blockError;
+                invalidateRow();
+                throw e;
+            }
+            if (blockStatus != SQLITE_ROW) {
+                invalidateRow();
+                return blockStatus;
+            }
+            step = !blockPending;
+        }
+
+        synchronized (db) {
+            try {
+                return db.extended() ? fetchRows(step, row + 1) : db.step(stmt);
+            }
+            catch (SQLTimeoutException e) {
+                // the statement has been reset, stepping it again would start over
+                close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Marks the row buffer as stale, e.g. for the first row which has already
+     * been stepped by execute(). It is filled again on first column access.
+     */
+    protected void invalidateRow() {
+        rowLoaded = false;
+        blockRows = 0;
+        blockPending = false;
+        blockError = null;
+    }
+
+    /**
+     * Copies a block of rows, starting with the current one of the statement, into the row
+     * buffer. The block holds as many rows as the fetch size asks for, as long as they fit.
+     * The caller must hold the lock of the connection.
+     * @param step True to step the statement first.
+     * @param first Number of the first row of the block, used to respect maxRows.
+     * @return Result code of the native call.
+     * @throws SQLException
+     */
+    private int fetchRows(boolean step, int first) throws SQLException {
+        int count = limitRows > 1 ? limitRows : 1;
+        if (maxRows != 0) {
+            count = Math.max(1, Math.min(count, maxRows - first + 1));
+        }
+
+        if (rowData == null) {
+            rowData = allocateRowData(INITIAL_ROW_CAPACITY);
+        }
+        else if (blockPending && rowData.capacity() < MAX_BLOCK_CAPACITY) {
+            // the last block was cut short by the size of the buffer
+            rowData = allocateRowData(2 * rowData.capacity());
+        }
+        invalidateRow();
+
+        int statusCode = rowFetch(count, step);
+
+        int rows = rowData.getInt(0);
+        if (rows == 0 && statusCode == SQLITE_ROW) {
+            // a single row larger than the buffer, still current in the statement
+            int size = BLOCK_HEADER_SIZE + rowData.getInt(BLOCK_HEADER_SIZE);
+            rowData = allocateRowData(Math.max(size, 2 * rowData.capacity()));
+            statusCode = rowFetch(count, false);
+            rows = rowData.getInt(0);
+        }
+        if (rows == 0) {
+            return statusCode;
+        }
+
+        if (statusCode != SQLITE_ROW && statusCode != SQLITE_DONE) {
+            // report the error once the rows copied before it have been read
+            blockError = DB.newSQLException(statusCode, db.errmsg());
+        }
+        blockStatus = statusCode;
+        blockPending = rowData.getInt(4) != 0;
+        blockRows = rows - 1;
+        rowOffset = BLOCK_HEADER_SIZE;
+        rowLoaded = true;
+        return SQLITE_ROW;
+    }
+
+    /**
+     * Fetches a block of rows into the row buffer, interrupting the call once the query
+     * timeout of the statement has passed.
+     * @see DB#row_fetch(long, ByteBuffer, int, boolean)
+     */
+    private int rowFetch(int count, boolean step) throws SQLException {
+        if (!step || !db.startTimeout(stmt)) {
+            return fetchBlock(count, step);
+        }
+        int statusCode;
+        try {
+            statusCode = fetchBlock(count, step);
+        }
+        catch (SQLException e) {
+            throw db.timeoutException(stmt, e);
+        }
+        SQLException e = db.timeoutException(stmt, null);
+        if (e != null) {
+            db.reset(stmt.pointer);
+            throw e;
+        }
+        return statusCode;
+    }
+
+    /**
+     * Fetches a block of rows into the row buffer, recording the call in the execution
+     * statistics of the statement.
+     * @see DB#row_fetch(long, ByteBuffer, int, boolean)
+     */
+    private int fetchBlock(int count, boolean step) throws SQLException {
+        if (!db.metrics.timing) {
+            return db.row_fetch(stmt.pointer, rowData, count, step);
+        }
+        long start = System.nanoTime();
+        int statusCode = db.row_fetch(stmt.pointer, rowData, count, step);
+        long nanos = System.nanoTime() - start;
+
+        int rows = rowData.getInt(0);
+        boolean pending = rows > 0 && rowData.getInt(4) != 0;
+        int stepped; // rows made current by a step, including one left pending
+        if (rows == 0) {
+            stepped = step && statusCode == SQLITE_ROW ? 1 : 0;
+        }
+        else {
+            stepped = rows - (step ? 0 : 1) + (pending ? 1 : 0);
+        }
+        int steps = stepped + (statusCode != SQLITE_ROW && (rows > 0 || step) ? 1 : 0);
+        db.metrics.stepped(stmt, nanos, steps, stepped, statusCode);
+
+        long bytes = 0;
+        int offset = BLOCK_HEADER_SIZE;
+        for (int i = 0; i < rows; i++) {
+            int columns = rowData.getInt(offset + 4);
+            for (int col = 0; col < columns; col++) {
+                int slot = offset + ROW_HEADER_SIZE + col * ROW_COLUMN_SIZE;
+                int type = rowData.getInt(slot);
+                if (type == SQLITE_TEXT || type == SQLITE_BLOB) {
+                    bytes += rowData.getInt(slot + 8);
+                }
+            }
+            offset += rowData.getInt(offset);
+        }
+        db.metrics.read(stmt, bytes);
+        return statusCode;
+    }
+
+    private static ByteBuffer allocateRowData(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @return True if the values of the current row are available from the row buffer.
+     * @throws SQLException
+     */
+    private boolean loadRow() throws SQLException {
+        if (!rowLoaded && db.extended()) {
+            synchronized (db) {
+                fetchRows(false, row);
+            }
+        }
+        return rowLoaded;
+    }
+
+    /**
+     * @param col Column in [0,x-1] form.
+     * @return Offset of the column slot of the current row in the row buffer.
+     */
+    private int slot(int col) {
+        return rowOffset + ROW_HEADER_SIZE + col * ROW_COLUMN_SIZE;
+    }
+
+    /**
+     * Datatype of a column for the metadata functions, which may be called before
+     * next() or after the statement has already moved on to fetch a block of rows.
+     * @param col Column in [0,x-1] form.
+     * @return Datatype code of the value in the current row.
+     * @throws SQLException
+     */
+    protected int currentColumnType(int col) throws SQLException {
+        if (open && row > 0) {
+            return columnType(col);
+        }
+        synchronized (db) {
+            return db.column_type(stmt.pointer, col);
+        }
+    }
+
+    /**
+     * @param col Column in [0,x-1] form.
+     * @return Datatype code of the value in the current row.
+     * @throws SQLException
+     */
+    protected int columnType(int col) throws SQLException {
+        if (!loadRow()) {
+            synchronized (db) {
+                return db.column_type(stmt.pointer, col);
+            }
+        }
+        return rowData.getInt(slot(col));
+    }
+
+    /**
+     * @param col Column in [0,x-1] form.
+     * @return Value of the column converted to long as sqlite3_column_int64() does.
+     * @throws SQLException
+     */
+    protected long columnLong(int col) throws SQLException {
+        if (!loadRow()) {
+            synchronized (db) {
+                return db.column_long(stmt.pointer, col);
+            }
+        }
+        int slot = slot(col);
+        switch (rowData.getInt(slot)) {
+        case SQLITE_INTEGER:
+            return rowData.getLong(slot + 16);
+        case SQLITE_FLOAT:
+            // saturates like sqlite3_column_int64(), and REAL values are never NaN
+            return (long) rowData.getDouble(slot + 24);
+        case SQLITE_TEXT:
+        case SQLITE_BLOB:
+            return db.textLong(rowData.getInt(slot), columnBytes(slot), rowData.getInt(slot + 8));
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * @param col Column in [0,x-1] form.
+     * @return Value of the column converted to int as sqlite3_column_int() does.
+     * @throws SQLException
+     */
+    protected int columnInt(int col) throws SQLException {
+        if (!loadRow()) {
+            synchronized (db) {
+                return db.column_int(stmt.pointer, col);
+            }
+        }
+        return (int) columnLong(col);
+    }
+
+    /**
+     * @param col Column in [0,x-1] form.
+     * @return Value of the column converted to double as sqlite3_column_double() does.
+     * @throws SQLException
+     */
+    protected double columnDouble(int col) throws SQLException {
+        if (!loadRow()) {
+            synchronized (db) {
+                return db.column_double(stmt.pointer, col);
+            }
+        }
+        int slot = slot(col);
+        switch (rowData.getInt(slot)) {
+        case SQLITE_INTEGER:
+            return rowData.getLong(slot + 16);
+        case SQLITE_FLOAT:
+            return rowData.getDouble(slot + 24);
+        case SQLITE_TEXT:
+        case SQLITE_BLOB:
+            return db.textDouble(rowData.getInt(slot), columnBytes(slot), rowData.getInt(slot + 8));
+        default:
+            return 0;
         }
     }
 
+    /**
+     * @param col Column in [0,x-1] form.
+     * @return Value of the column as text, null for NULL values.
+     * @throws SQLException
+     */
+    protected String columnText(int col) throws SQLException {
+        if (!loadRow()) {
+            synchronized (db) {
+                String text = db.column_text(stmt.pointer, col);
+                if (text != null && db.metrics.timing) {
+                    db.metrics.read(stmt, text.length());
+                }
+                return text;
+            }
+        }
+        int slot = slot(col);
+        switch (rowData.getInt(slot)) {
+        case SQLITE_NULL:
+            return null;
+        case SQLITE_INTEGER:
+            return Long.toString(rowData.getLong(slot + 16));
+        case SQLITE_FLOAT:
+            return db.realText(rowData.getDouble(slot + 24));
+        default:
+            return Utf8.decode(columnBytes(slot), rowData.getInt(slot + 8));
+        }
+    }
+
+    /**
+     * @param slot Offset of the column slot.
+     * @return Array holding the text/blob data of the column from its start, reused for all
+     *         values up to the largest block.
+     */
+    private byte[] columnBytes(int slot) {
+        int length = rowData.getInt(slot + 8);
+        byte[] data = textData;
+        if (data == null || data.length < length) {
+            data = new byte[Math.max(length, 64)];
+            if (length <= MAX_BLOCK_CAPACITY) {
+                textData = data;
+            }
+        }
+        rowData.position(rowOffset + rowData.getInt(slot + 4));
+        rowData.get(data, 0, length);
+        return data;
+    }
+
+    /**
+     * @param col Column in [0,x-1] form.
+     * @return Value of the column as bytes, null for NULL and empty values.
+     * @throws SQLException
+     */
+    protected byte[] columnBlob(int col) throws SQLException {
+        if (!loadRow()) {
+            synchronized (db) {
+                return columnBlobNative(col);
+            }
+        }
+        int slot = slot(col);
+        switch (rowData.getInt(slot)) {
+        case SQLITE_NULL:
+            return null;
+        case SQLITE_INTEGER:
+        case SQLITE_FLOAT:
+            return columnText(col).getBytes(Utf8.UTF8);
+        default:
+            // sqlite3_column_blob() returns NULL for zero-length values
+            return rowData.getInt(slot + 8) == 0 ? null : columnData(slot);
+        }
+    }
+
+    /**
+     * @param col Column in [0,x-1] form.
+     * @return Read-only view of the value of the column as bytes, valid until the cursor
+     *         moves; null for NULL values.
+     * @throws SQLException
+     */
+    protected ByteBuffer columnBlobBuffer(int col) throws SQLException {
+        if (!loadRow()) {
+            byte[] data;
+            synchronized (db) {
+                data = columnBlobNative(col);
+            }
+            if (data == null) {
+                return columnType(col) == SQLITE_NULL ? null : ByteBuffer.allocate(0);
+            }
+            return ByteBuffer.wrap(data).asReadOnlyBuffer();
+        }
+        int slot = slot(col);
+        switch (rowData.getInt(slot)) {
+        case SQLITE_NULL:
+            return null;
+        case SQLITE_INTEGER:
+        case SQLITE_FLOAT:
+            return ByteBuffer.wrap(columnText(col).getBytes(Utf8.UTF8)).asReadOnlyBuffer();
+        default:
+            ByteBuffer view = rowData.asReadOnlyBuffer();
+            int start = rowOffset + rowData.getInt(slot + 4);
+            view.limit(start + rowData.getInt(slot + 8)).position(start);
+            return view.slice();
+        }
+    }
+
+    /**
+     * Copies the value of a column as bytes into a given array.
+     * @param col Column in [0,x-1] form.
+     * @param dst Array receiving the value.
+     * @param offset Index in dst of the first byte.
+     * @return Length of the value, of which only the part fitting into dst is copied;
+     *         -1 for NULL values.
+     * @throws SQLException
+     */
+    protected int columnBlobInto(int col, byte[] dst, int offset) throws SQLException {
+        ByteBuffer value = columnBlobBuffer(col);
+        if (value == null) {
+            return -1;
+        }
+        int length = value.remaining();
+        value.get(dst, offset, Math.min(length, dst.length - offset));
+        return length;
+    }
+
+    /**
+     * Reads the value of a column with sqlite3_column_blob(). The caller must hold the lock
+     * of the connection.
+     * @param col Column in [0,x-1] form.
+     * @return The value, null for NULL and empty values.
+     * @throws SQLException
+     */
+    private byte[] columnBlobNative(int col) throws SQLException {
+        byte[] data = db.column_blob(stmt.pointer, col);
+        if (data != null && db.metrics.timing) {
+            db.metrics.read(stmt, data.length);
+        }
+        return data;
+    }
+
+    private byte[] columnData(int slot) {
+        byte[] data = new byte[rowData.getInt(slot + 8)];
+        rowData.position(rowOffset + rowData.getInt(slot + 4));
+        rowData.get(data);
+        return data;
+    }
+
     public void close() throws SQLException {
         cols = null;
         colsMeta = null;
         meta = null;
         open = false;
-        limitRows = 0;
+        limitRows = stmt == null ? 0 : stmt.fetchSize;
         row = 0;
         lastCol = -1;
-        columnNameToIndex = null;
+        invalidateRow();
 
         if (stmt == null) {
             return;
         }
 
         if (stmt != null && stmt.pointer != 0) {
-            db.reset(stmt.pointer);
+            synchronized (db) {
+                db.reset(stmt.pointer);
+                db.metrics.end(stmt);
+            }
 
             if (closeStmt) {
                 closeStmt = false; // break recursive call
@@ -324,7 +824,7 @@ public abstract class CoreResultSet implements Codes
     }
 
     protected Integer findColumnIndexInCache(String col) {
-        if (columnNameToIndex == null) {
+        if (columnNameToIndex == null || indexedCols != cols) {
             return null;
         }
         return columnNameToIndex.get(col);
@@ -19,6 +19,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteStmtStatus;
 import org.sqlite.jdbc4.JDBC4ResultSet;
 
 public abstract class CoreStatement implements Codes
@@ -32,9 +33,17 @@ public abstract class CoreStatement implements Codes
     public long       pointer;
     public String     sql            = null;
 
+    protected int        fetchSize      = 0;
     protected int        batchPos;
     protected Object[]   batch          = null;
     protected boolean    resultsWaiting = false;
+    protected int        queryTimeout   = 0;  // seconds, see DB.startTimeout()
+
+    // see QueryMetrics
+    QueryStats execution = null;  // counters of the execution in progress
+    boolean    executing = false;
+    String     statsSql  = null;  // SQL of which statsKey is the normalized form
+    String     statsKey  = null;
 
     protected CoreStatement(SQLiteConnection c) {
         conn = c;
@@ -71,16 +80,18 @@ public abstract class CoreStatement implements Codes
 
         boolean success = false;
         boolean rc = false;
-        try {
-            rc = db.execute(this, null);
-            success = true;
-        }
-        finally {
-            resultsWaiting = rc;
-            if (!success) db.finalize(this);
+        synchronized (db) {
+            try {
+                rc = db.execute(this, null);
+                success = true;
+            }
+            finally {
+                resultsWaiting = rc;
+                if (!success) db.finalize(this);
+            }
+
+            return db.column_count(pointer) != 0;
         }
-
-        return db.column_count(pointer) != 0;
     }
 
     /**
@@ -98,16 +109,36 @@ public abstract class CoreStatement implements Codes
 
         boolean rc = false;
         boolean success = false;
-        try {
-            rc = db.execute(sql);
-            success = true;
-        }
-        finally {
-            resultsWaiting = rc;
-            if (!success) db.finalize(this);
+        synchronized (db) {
+            try {
+                rc = db.execute(sql);
+                success = true;
+            }
+            finally {
+                resultsWaiting = rc;
+                if (!success) db.finalize(this);
+            }
+
+            return db.column_count(pointer) != 0;
         }
+    }
 
-        return db.column_count(pointer) != 0;
+    /**
+     * Reads a counter SQLite keeps for this statement, e.g. the number of steps taken by
+     * full table scans, which hints at a missing index. A PreparedStatement gives access to
+     * it with <code>unwrap(CoreStatement.class)</code>.
+     * @param counter The counter.
+     * @param reset True to set the counter back to zero after reading.
+     * @return Value of the counter, accumulated over the executions of the statement.
+     * @throws SQLException if the statement is not prepared.
+     * @see <a href="http://www.sqlite.org/c3ref/stmt_status.html">http://www.sqlite.org/c3ref/stmt_status.html</a>
+     */
+    public int getStatus(SQLiteStmtStatus counter, boolean reset) throws SQLException {
+        synchronized (db) {
+            checkOpen();
+            db.requireExtended("status counters are");
+            return db.stmt_status(pointer, counter.code, reset);
+        }
     }
 
     protected void internalClose() throws SQLException {
@@ -117,13 +148,24 @@ public abstract class CoreStatement implements Codes
         if (pointer == 0)
             return;
 
-        rs.close();
-        batch = null;
-        batchPos = 0;
-        int resp = db.finalize(this);
+        synchronized (db) {
+            rs.close();
+            batch = null;
+            batchPos = 0;
+            int resp = finalizeStatement();
+
+            if (resp != SQLITE_OK && resp != SQLITE_MISUSE)
+                db.throwex();
+        }
+    }
 
-        if (resp != SQLITE_OK && resp != SQLITE_MISUSE)
-            db.throwex();
+    /**
+     * Destroys the native statement when this statement is closed.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>
+     * @throws SQLException
+     */
+    protected int finalizeStatement() throws SQLException {
+        return db.finalize(this);
     }
 
     public abstract ResultSet executeQuery(String sql, boolean closeStmt) throws SQLException;
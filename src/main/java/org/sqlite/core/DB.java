@@ -15,15 +15,27 @@
  */
 package org.sqlite.core;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.sql.BatchUpdateException;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.sqlite.Function;
+import org.sqlite.SQLiteConfig.BusyHandler;
 import org.sqlite.SQLiteConnection;
 import org.sqlite.SQLiteErrorCode;
+import org.sqlite.VirtualTable;
 
 /*
  * This class is the interface to SQLite. It provides some helper functions
@@ -36,6 +48,10 @@ import org.sqlite.SQLiteErrorCode;
  * implicit contract conversions. Sorry.
  *
  * The subclass, NativeDB, provides the actual access to SQLite functions.
+ *
+ * Calls on a statement are not synchronized one by one. Callers hold the lock of
+ * this instance for the whole operation on the statement (execute, step, fetch of
+ * a row), which the synchronized helper functions here take as well.
  */
 public abstract class DB implements Codes
 {
@@ -49,6 +65,36 @@ public abstract class DB implements Codes
     /** Tracer for statements to avoid unfinalized statements on db close. */
     private final Map<Long, CoreStatement> stmts  = new HashMap<Long, CoreStatement>();
 
+    /** Idle prepared statements by SQL, least recently used first. */
+    private final LinkedHashMap<String, Long> statementCache = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private int statementCacheSize = 0;
+    private long statementCacheHits = 0;
+    private long statementCacheMisses = 0;
+
+    /** Open BLOB handles, closed along with the database. */
+    private final Map<Long, CoreBlob> blobs = new HashMap<Long, CoreBlob>();
+
+    /** Execution statistics and slow query log. */
+    final QueryMetrics metrics = new QueryMetrics();
+
+    /** Deadline of the query timeout of the statement being run, see {@link #startTimeout(CoreStatement)}. */
+    private long progressData = 0;
+    private int queryTimeoutInterval = DEFAULT_QUERY_TIMEOUT_INTERVAL;
+
+    /** Default number of virtual machine instructions between checks of a query timeout. */
+    public static final int DEFAULT_QUERY_TIMEOUT_INTERVAL = 1000;
+
+    /** Busy handler, see {@link #setBusyHandler(BusyHandler, int, int, int, boolean)}. */
+    private long        busyData     = 0;
+    private int         busyTimeout  = 0;
+    private BusyHandler busyStrategy = BusyHandler.TIMEOUT;
+    private int         busySpins    = 0;
+    private int         busyInitial  = 1;
+    private int         busyMaxSleep = 100;
+    private boolean     busyJitter   = true;
+    /** True while the busy timeout is the query timeout of the statement being run. */
+    private boolean     busyQueryTimeout = false;
+
     // WRAPPER FUNCTIONS ////////////////////////////////////////////
 
     /**
@@ -85,6 +131,18 @@ public abstract class DB implements Codes
      */
     public abstract String libversion() throws SQLException;
 
+    /**
+     * Tells whether the native library has the entry points added along with row fetching.
+     * The libraries built before them only have the column-at-a-time API: the driver then
+     * reads rows column by column, binds text as UTF-16 and batches row by row, reads streams
+     * and BLOBs into memory, registers Function.Scalar and Function.BatchAggregate as plain
+     * functions, bounds query timeouts by the busy timeout alone and waits for locks with
+     * sqlite3_busy_timeout(); window functions, function flags, virtual tables, BLOB handles
+     * and status counters are not supported.
+     * @return True if the native library has all the entry points declared here.
+     */
+    public abstract boolean extended();
+
     /**
      * @return Number of rows that were changed, inserted or deleted by the last
      * SQL statement
@@ -168,6 +226,13 @@ public abstract class DB implements Codes
      * @see <a href="http://www.sqlite.org/c3ref/close.html">http://www.sqlite.org/c3ref/close.html</a>
      */
     public final synchronized void close() throws SQLException {
+        // close the BLOB handles, which would keep the database open
+        for (Map.Entry<Long, CoreBlob> entry : blobs.entrySet()) {
+            blob_close(entry.getKey().longValue());
+            entry.getValue().pointer = 0;
+        }
+        blobs.clear();
+
         // finalize any remaining statements before closing db
         synchronized (stmts) {
             Iterator<Map.Entry<Long, CoreStatement>> i = stmts.entrySet().iterator();
@@ -182,6 +247,12 @@ public abstract class DB implements Codes
             }
         }
 
+        // finalize the idle statements of the cache
+        for (Long pointer : statementCache.values()) {
+            finalize(pointer.longValue());
+        }
+        statementCache.clear();
+
         // remove memory used by user-defined functions
         free_functions();
 
@@ -194,8 +265,22 @@ public abstract class DB implements Codes
             finalize(commit);
             commit = 0;
         }
+        if (convert != 0) {
+            finalize(convert);
+            convert = 0;
+        }
 
         _close();
+
+        // free the handlers once the database cannot call them anymore
+        if (progressData != 0) {
+            free_progress(progressData);
+            progressData = 0;
+        }
+        if (busyData != 0) {
+            free_busy_handler(busyData);
+            busyData = 0;
+        }
     }
 
     /**
@@ -205,13 +290,233 @@ public abstract class DB implements Codes
      * @see <a href="http://www.sqlite.org/c3ref/prepare.html">http://www.sqlite.org/c3ref/prepare.html</a>
      */
     public final synchronized void prepare(CoreStatement stmt) throws SQLException {
+        prepare(stmt, false);
+    }
+
+    /**
+     * Complies the an SQL statement, or takes an idle one for the same SQL from the
+     * statement cache.
+     * @param stmt The SQL statement to compile.
+     * @param useCache True to look up the statement cache first.
+     * @throws SQLException
+     * @see #release(CoreStatement)
+     */
+    public final synchronized void prepare(CoreStatement stmt, boolean useCache) throws SQLException {
         if (stmt.pointer != 0) {
             finalize(stmt);
         }
-        stmt.pointer = prepare(stmt.sql);
+
+        Long cached = null;
+        if (useCache && statementCacheSize > 0) {
+            cached = statementCache.remove(stmt.sql);
+            if (cached != null) {
+                statementCacheHits++;
+            }
+            else {
+                statementCacheMisses++;
+            }
+        }
+
+        if (cached != null) {
+            stmt.pointer = cached.longValue();
+        }
+        else if (metrics.timing) {
+            long start = System.nanoTime();
+            stmt.pointer = prepare(stmt.sql);
+            metrics.prepared(stmt, System.nanoTime() - start);
+        }
+        else {
+            stmt.pointer = prepare(stmt.sql);
+        }
         stmts.put(new Long(stmt.pointer), stmt);
     }
 
+    /**
+     * Hands a statement which is no longer used back to the statement cache, reset and
+     * with its bindings cleared. The statement is destroyed instead if the cache is
+     * disabled or already holds one for the same SQL. The least recently used statements
+     * are destroyed when the cache is full.
+     * @param stmt The statement to release.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>
+     * @throws SQLException
+     */
+    public final synchronized int release(CoreStatement stmt) throws SQLException {
+        metrics.end(stmt);
+        if (stmt.pointer == 0 || statementCacheSize <= 0 || statementCache.containsKey(stmt.sql)) {
+            return finalize(stmt);
+        }
+
+        long pointer = stmt.pointer;
+        int rc = reset(pointer);
+        if (rc != SQLITE_OK) {
+            return finalize(stmt);
+        }
+        clear_bindings(pointer);
+
+        stmts.remove(new Long(pointer));
+        stmt.pointer = 0;
+        statementCache.put(stmt.sql, new Long(pointer));
+        trimStatementCache();
+        return SQLITE_OK;
+    }
+
+    /**
+     * Sets the maximum number of idle prepared statements kept for reuse.
+     * @param size Number of statements; 0 disables the cache.
+     * @throws SQLException
+     */
+    public final synchronized void setStatementCacheSize(int size) throws SQLException {
+        statementCacheSize = Math.max(0, size);
+        trimStatementCache();
+    }
+
+    /**
+     * @return The maximum number of idle prepared statements kept for reuse.
+     */
+    public final synchronized int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * @return Number of prepared statements taken from the statement cache.
+     */
+    public final synchronized long getStatementCacheHits() {
+        return statementCacheHits;
+    }
+
+    /**
+     * @return Number of prepared statements compiled because the statement cache had none.
+     */
+    public final synchronized long getStatementCacheMisses() {
+        return statementCacheMisses;
+    }
+
+    /**
+     * Enables or disables collecting execution statistics.
+     * @param enable True to enable; false to disable.
+     * @see org.sqlite.SQLiteConfig#setMetrics(boolean)
+     */
+    public final synchronized void setMetricsEnabled(boolean enable) {
+        metrics.setEnabled(enable);
+    }
+
+    /**
+     * @return True if execution statistics are collected.
+     */
+    public final synchronized boolean isMetricsEnabled() {
+        return metrics.isEnabled();
+    }
+
+    /**
+     * Sets the time in native code from which executions are logged as slow queries.
+     * @param millis Threshold in milliseconds; negative to log no executions.
+     * @see org.sqlite.SQLiteConfig#setSlowQueryThreshold(long)
+     */
+    public final synchronized void setSlowQueryThreshold(long millis) {
+        metrics.setSlowQueryThreshold(millis);
+    }
+
+    /**
+     * @return The slow query threshold in milliseconds; negative if slow queries are not
+     *         logged.
+     */
+    public final synchronized long getSlowQueryThreshold() {
+        return metrics.getSlowQueryThreshold();
+    }
+
+    /**
+     * @return Snapshot of the execution statistics, the statements which spent the most
+     *         time in native code first.
+     */
+    public final synchronized List<QueryStats> getQueryStats() {
+        return metrics.snapshot();
+    }
+
+    /**
+     * Discards the execution statistics collected so far.
+     */
+    public final synchronized void resetQueryStats() {
+        metrics.reset();
+    }
+
+    /**
+     * Sets the longest time to wait for a lock held by another connection, with the busy
+     * handler set by {@link #setBusyHandler(BusyHandler, int, int, int, boolean)}.
+     * @param milliseconds The timeout; less than or equal to zero turns off all busy handlers.
+     * @throws SQLException
+     */
+    public final synchronized void setBusyTimeout(int milliseconds) throws SQLException {
+        busyTimeout = milliseconds;
+        installBusyHandler(busyTimeout);
+    }
+
+    /**
+     * Sets how the connection waits for a lock held by another connection.
+     * @param strategy The sleeps between attempts to take the lock.
+     * @param spins Number of attempts made after yielding the processor, before sleeping.
+     * @param initialMillis First sleep of {@link BusyHandler#BACKOFF}.
+     * @param maxSleepMillis Longest sleep of {@link BusyHandler#BACKOFF}.
+     * @param jitter True to randomize the sleeps of {@link BusyHandler#BACKOFF}.
+     * @throws SQLException
+     * @see org.sqlite.SQLiteConfig#setBusyHandler(BusyHandler)
+     */
+    public final synchronized void setBusyHandler(BusyHandler strategy, int spins, int initialMillis,
+            int maxSleepMillis, boolean jitter) throws SQLException {
+        busyStrategy = strategy;
+        busySpins = spins;
+        busyInitial = initialMillis;
+        busyMaxSleep = maxSleepMillis;
+        busyJitter = jitter;
+        installBusyHandler(busyTimeout);
+    }
+
+    private void installBusyHandler(long timeout) throws SQLException {
+        if (!extended()) {
+            busy_timeout((int) timeout);
+            return;
+        }
+        busyData = busy_handler(busyData, busyStrategy == BusyHandler.BACKOFF ? BUSY_BACKOFF : BUSY_TIMEOUT,
+                (int) timeout, busySpins, busyInitial, busyMaxSleep, busyJitter);
+    }
+
+    /**
+     * @param reset True to set the counters back to zero after reading them.
+     * @return Snapshot of the counters of the busy handler; all zero before it is installed.
+     * @throws SQLException
+     */
+    public final synchronized BusyStats getBusyStats(boolean reset) throws SQLException {
+        long[] values = new long[4];
+        if (busyData != 0) {
+            busy_stats(busyData, reset, values);
+        }
+        return new BusyStats(values);
+    }
+
+    /**
+     * Sets how often the deadline of a query timeout is checked while a statement runs.
+     * @param opcodes Number of virtual machine instructions between checks.
+     * @see org.sqlite.SQLiteConfig#setQueryTimeoutInterval(int)
+     */
+    public final synchronized void setQueryTimeoutInterval(int opcodes) {
+        queryTimeoutInterval = Math.max(1, opcodes);
+    }
+
+    /**
+     * @return Number of virtual machine instructions between checks of a query timeout.
+     */
+    public final synchronized int getQueryTimeoutInterval() {
+        return queryTimeoutInterval;
+    }
+
+    private void trimStatementCache() throws SQLException {
+        Iterator<Long> i = statementCache.values().iterator();
+        while (statementCache.size() > statementCacheSize && i.hasNext()) {
+            long pointer = i.next().longValue();
+            i.remove();
+            finalize(pointer);
+        }
+    }
+
     /**
      * Destroys a statement.
      * @param stmt The statement to destroy.
@@ -220,6 +525,7 @@ public abstract class DB implements Codes
      * @see <a href="http://www.sqlite.org/c3ref/finalize.html">http://www.sqlite.org/c3ref/finalize.html</a>
      */
     public final synchronized int finalize(CoreStatement stmt) throws SQLException {
+        metrics.end(stmt);
         if (stmt.pointer == 0) {
             return 0;
         }
@@ -461,6 +767,19 @@ public abstract class DB implements Codes
      */
     abstract int bind_text(long stmt, int pos, String v) throws SQLException;
 
+    /**
+     * Binds text already encoded as UTF-8 to a prepared statement, so that SQLite does not
+     * have to transcode it from UTF-16.
+     * @param stmt Pointer to the statement.
+     * @param pos Index of the SQL parameter to be set.
+     * @param v UTF-8 bytes of the value.
+     * @param length Number of bytes of the value.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>.
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/bind_blob.html">http://www.sqlite.org/c3ref/bind_blob.html</a>
+     */
+    abstract int bind_text_utf8(long stmt, int pos, byte[] v, int length) throws SQLException;
+
     /**
      * Binds blob value to prepared statements with the pointer to the statement object, the index
      * of the SQL parameter to be set and the value to bind to the parameter.
@@ -473,6 +792,24 @@ public abstract class DB implements Codes
      */
     abstract int bind_blob(long stmt, int pos, byte[] v) throws SQLException;
 
+    /**
+     * Binds a BLOB of zeros to a parameter, to be filled in with incremental BLOB I/O.
+     * @param stmt Pointer to the statement.
+     * @param pos Index of the SQL parameter to be set to a zeroblob.
+     * @param length Number of bytes of the BLOB.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>.
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/bind_blob.html">http://www.sqlite.org/c3ref/bind_blob.html</a>
+     */
+    abstract int bind_zeroblob(long stmt, int pos, int length) throws SQLException;
+
+    /**
+     * @return Rowid of the most recent successful INSERT.
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/last_insert_rowid.html">http://www.sqlite.org/c3ref/last_insert_rowid.html</a>
+     */
+    public abstract long last_insert_rowid() throws SQLException;
+
     /**
      * Sets the result of an SQL function as NULL with the pointer to the SQLite database context.
      * @param context Pointer to the SQLite database context.
@@ -616,6 +953,83 @@ public abstract class DB implements Codes
      */
     public abstract int create_function(String name, Function f) throws SQLException;
 
+    /**
+     * Create a user defined function with given function name, the function object and
+     * flags.
+     * @param name The function name to be created.
+     * @param f SQLite function object.
+     * @param flags Function.FLAG_* constants.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/create_function.html">http://www.sqlite.org/c3ref/create_function.html</a>
+     */
+    public abstract int create_function(String name, Function f, int flags) throws SQLException;
+
+    /**
+     * Creates a user defined scalar function called with its arguments copied into a direct
+     * buffer, laid out as described in {@link Function.Arguments}, and a single call of
+     * Function.Scalar.call(int) per row; the result is read back from the same buffer.
+     * @param name The function name to be created.
+     * @param f SQLite function object, a Function.Scalar.
+     * @param flags Function.FLAG_* constants; the function always uses UTF-8.
+     * @param buf Direct buffer in native byte order, replaced by the ones returned by the
+     *        function when it needs a larger one.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>.
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/create_function.html">http://www.sqlite.org/c3ref/create_function.html</a>
+     */
+    public abstract int create_scalar(String name, Function f, int flags, ByteBuffer buf) throws SQLException;
+
+    /**
+     * Returned by {@link #create_window_function(String, Function, int)} if the SQLite the native
+     * library is built with (before 3.25.0) cannot register window functions.
+     */
+    public static final int WINDOW_UNSUPPORTED = -1;
+
+    /**
+     * Creates a user defined aggregate window function, whose xValue() and xInverse() let
+     * SQLite slide the frame of a window by adding and removing rows instead of running the
+     * aggregate again over each frame.
+     * @param name The function name to be created.
+     * @param f SQLite function object, a Function.Window.
+     * @param flags Function.FLAG_* constants.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>, or
+     *         WINDOW_UNSUPPORTED if nothing has been done.
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/create_function.html">http://www.sqlite.org/c3ref/create_function.html</a>
+     */
+    public abstract int create_window_function(String name, Function f, int flags) throws SQLException;
+
+    /**
+     * Creates a user defined aggregate function whose arguments are buffered natively for
+     * each group, then copied into the arrays of the rows and passed to
+     * Function.BatchAggregate.stepBatch(int) on the clone of the function for the group, when
+     * batchSize rows have been buffered, when the number of arguments changes and before
+     * xFinal().
+     * @param name The function name to be created.
+     * @param f SQLite function object, a Function.BatchAggregate.
+     * @param flags Function.FLAG_* constants; the function always uses UTF-8.
+     * @param rows The rows passed to the function, shared by its clones.
+     * @param batchSize Maximum number of rows per batch.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>.
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/create_function.html">http://www.sqlite.org/c3ref/create_function.html</a>
+     */
+    public abstract int create_batch_aggregate(String name, Function f, int flags, Function.Rows rows, int batchSize)
+            throws SQLException;
+
+    /**
+     * Registers a virtual table module whose tables are created by the given module. The
+     * native library reads the rows of their cursors from the buffers returned by
+     * VirtualCursor.start() and VirtualCursor.fetch().
+     * @param name The name of the module.
+     * @param module The module.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>.
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/create_module.html">http://www.sqlite.org/c3ref/create_module.html</a>
+     */
+    public abstract int create_module(String name, VirtualTable.Module module) throws SQLException;
+
     /**
      * De-registers a user defined function
      * @param name Name of the function to de-registered.
@@ -666,137 +1080,631 @@ public abstract class DB implements Codes
      */
     abstract boolean[][] column_metadata(long stmt) throws SQLException;
 
-    // COMPOUND FUNCTIONS ////////////////////////////////////////////
-
     /**
-     * Returns an array of column names in the result set of the SELECT statement.
-     * @param stmt Stmt object.
-     * @return String array of column names.
+     * Copies the current row of a statement and up to maxRows - 1 following ones into a direct
+     * buffer with a single call, optionally stepping the statement first. The layout of the
+     * copied rows is described in {@link CoreResultSet}. Copying stops early when the next row
+     * does not fit, leaving the statement on that row; if not even the first row fits, no row
+     * is copied but its size is reported, so the call can be repeated without stepping using a
+     * larger buffer.
+     * @param stmt Pointer to the statement.
+     * @param buf Direct buffer in native byte order.
+     * @param maxRows Maximum number of rows to copy.
+     * @param step True to call sqlite3_step() before copying the first row.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a> of the last
+     *         step made; SQLITE_ROW if the statement may have more rows.
      * @throws SQLException
      */
-    public final synchronized String[] column_names(long stmt) throws SQLException {
-        String[] names = new String[column_count(stmt)];
-        for (int i = 0; i < names.length; i++) {
-            names[i] = column_name(stmt, i);
-        }
-        return names;
-    }
+    public abstract int row_fetch(long stmt, ByteBuffer buf, int maxRows, boolean step) throws SQLException;
 
     /**
-     * Bind values to prepared statements
+     * Executes a prepared statement once for each row of parameters packed in a direct buffer
+     * by {@link ParameterBuffer#pack(ByteBuffer, int, int, int)}, with a single call. The number
+     * of rows executed and the result code are written back into the header of the buffer.
+     * Execution stops at the first row that fails to bind or does not step to SQLITE_DONE; the
+     * statement is reset in that case.
      * @param stmt Pointer to the statement.
-     * @param pos Index of the SQL parameter to be set to NULL.
-     * @param v Value to bind to the parameter.
-     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>
+     * @param buf Direct buffer in native byte order.
+     * @param rows Number of rows packed in the buffer.
+     * @param changes Receives the number of rows changed by each executed row.
+     * @param offset Index in changes for the first row.
+     * @return SQLITE_DONE if all rows were executed, otherwise the
+     *         <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Code</a> of the failing
+     *         one.
      * @throws SQLException
-     * @see <a href="http://www.sqlite.org/c3ref/bind_blob.html">http://www.sqlite.org/c3ref/bind_blob.html</a>
      */
-    final synchronized int sqlbind(long stmt, int pos, Object v) throws SQLException {
-        pos++;
-        if (v == null) {
-            return bind_null(stmt, pos);
-        }
-        else if (v instanceof Integer) {
-            return bind_int(stmt, pos, ((Integer) v).intValue());
-        }
-        else if (v instanceof Short) {
-            return bind_int(stmt, pos, ((Short) v).intValue());
-        }
-        else if (v instanceof Long) {
-            return bind_long(stmt, pos, ((Long) v).longValue());
-        }
-        else if (v instanceof Float) {
-            return bind_double(stmt, pos, ((Float) v).doubleValue());
-        }
-        else if (v instanceof Double) {
-            return bind_double(stmt, pos, ((Double) v).doubleValue());
-        }
-        else if (v instanceof String) {
-            return bind_text(stmt, pos, (String) v);
-        }
-        else if (v instanceof byte[]) {
-            return bind_blob(stmt, pos, (byte[]) v);
-        }
-        else {
-            throw new SQLException("unexpected param type: " + v.getClass());
-        }
-    }
+    public abstract int batch_execute(long stmt, ByteBuffer buf, int rows, int[] changes, int offset)
+            throws SQLException;
 
     /**
-     * Submits a batch of commands to the database for execution.
-     * @see java.sql.Statement#executeBatch()
-     * @param stmt Pointer of Stmt object.
-     * @param count Number of SQL statements.
-     * @param vals Array of parameter values.
-     * @return Array of the number of rows changed or inserted or deleted for each command if all
-     *         commands execute successfully;
+     * Opens a handle on a BLOB for incremental I/O.
+     * @param database Symbolic name of the database, e.g. "main".
+     * @param table Name of the table.
+     * @param column Name of the column.
+     * @param rowid Rowid of the row.
+     * @param write True to open the BLOB for reading and writing.
+     * @return Pointer to the BLOB handle.
      * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/blob_open.html">http://www.sqlite.org/c3ref/blob_open.html</a>
      */
-    final synchronized int[] executeBatch(long stmt, int count, Object[] vals) throws SQLException {
-        if (count < 1) {
-            throw new SQLException("count (" + count + ") < 1");
-        }
-
-        final int params = bind_parameter_count(stmt);
+    abstract long blob_open(String database, String table, String column, long rowid, boolean write)
+            throws SQLException;
 
-        int rc;
-        int[] changes = new int[count];
+    /**
+     * Closes a BLOB handle.
+     * @param blob Pointer to the BLOB handle.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/blob_close.html">http://www.sqlite.org/c3ref/blob_close.html</a>
+     */
+    abstract int blob_close(long blob) throws SQLException;
 
-        try {
-            for (int i = 0; i < count; i++) {
-                reset(stmt);
-                for (int j = 0; j < params; j++) {
-                    if (sqlbind(stmt, j, vals[(i * params) + j]) != SQLITE_OK) {
-                        throwex();
-                    }
-                }
+    /**
+     * @param blob Pointer to the BLOB handle.
+     * @return Size of the BLOB in bytes.
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/blob_bytes.html">http://www.sqlite.org/c3ref/blob_bytes.html</a>
+     */
+    public abstract int blob_bytes(long blob) throws SQLException;
 
-                rc = step(stmt);
-                if (rc != SQLITE_DONE) {
-                    reset(stmt);
-                    if (rc == SQLITE_ROW) {
-                        throw new BatchUpdateException("batch entry " + i + ": query returns results", changes);
-                    }
-                    throwex();
-                }
+    /**
+     * Reads bytes of a BLOB into the start of a direct buffer.
+     * @param blob Pointer to the BLOB handle.
+     * @param buf Direct buffer of at least length bytes.
+     * @param length Number of bytes to read.
+     * @param offset Offset in the BLOB of the first byte.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/blob_read.html">http://www.sqlite.org/c3ref/blob_read.html</a>
+     */
+    public abstract int blob_read(long blob, ByteBuffer buf, int length, int offset) throws SQLException;
 
-                changes[i] = changes();
-            }
-        }
-        finally {
-            ensureAutoCommit();
-        }
+    /**
+     * Writes bytes from the start of a direct buffer into a BLOB.
+     * @param blob Pointer to the BLOB handle.
+     * @param buf Direct buffer of at least length bytes.
+     * @param length Number of bytes to write.
+     * @param offset Offset in the BLOB of the first byte.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/blob_write.html">http://www.sqlite.org/c3ref/blob_write.html</a>
+     */
+    public abstract int blob_write(long blob, ByteBuffer buf, int length, int offset) throws SQLException;
 
-        reset(stmt);
-        return changes;
-    }
+    /**
+     * @param stmt Pointer to the statement.
+     * @param col Number of column.
+     * @return The database, table and column names a result column is taken from, or null
+     *         if it is an expression.
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/column_database_name.html">http://www.sqlite.org/c3ref/column_database_name.html</a>
+     */
+    public abstract String[] column_origin(long stmt, int col) throws SQLException;
 
     /**
-     * @see <a href="http://www.sqlite.org/c_interface.html#sqlite_exec">http://www.sqlite.org/c_interface.html#sqlite_exec</a>
-     * @param stmt Stmt object.
-     * @param vals Array of parameter values.
-     * @return True if a row of ResultSet is ready; false otherwise.
+     * @param stmt Pointer to the statement.
+     * @param col Number of column.
+     * @return Number of a result column holding the rowid of the table a column is taken
+     *         from, or -1 if there is none. It may be read from another row of the table.
      * @throws SQLException
+     * @see #rowidColumn(CoreStatement, int, String[])
      */
-    public final synchronized boolean execute(CoreStatement stmt, Object[] vals) throws SQLException {
-        if (vals != null) {
-            final int params = bind_parameter_count(stmt.pointer);
-            if (params != vals.length) {
-                throw new SQLException("assertion failure: param count (" + params + ") != value count (" + vals.length
-                        + ")");
-            }
+    public abstract int column_rowid(long stmt, int col) throws SQLException;
 
-            for (int i = 0; i < params; i++) {
-                if (sqlbind(stmt.pointer, i, vals[i]) != SQLITE_OK) {
-                    throwex();
+    /**
+     * Finds the result column holding the rowid of the row a column is taken from. This is
+     * only known for a plain SELECT from a single table, see {@link SelectSource}, as any
+     * other statement may read the table several times, e.g. in a self-join, a subquery or
+     * through a view.
+     * @param stmt The statement.
+     * @param col Number of column.
+     * @param origin Database, table and column the column is taken from.
+     * @return Number of the result column, or -1 if there is none or it is not known.
+     * @throws SQLException
+     */
+    public int rowidColumn(CoreStatement stmt, int col, String[] origin) throws SQLException {
+        SelectSource source = SelectSource.parse(stmt.sql);
+        if (source == null || !source.table.equalsIgnoreCase(origin[1])
+                || (source.database != null && !source.database.equalsIgnoreCase(origin[0]))) {
+            return -1;
+        }
+        return column_rowid(stmt.pointer, col);
+    }
+
+    /**
+     * Reads a counter of a prepared statement.
+     * @param stmt Pointer to the statement.
+     * @param op Counter, see {@link org.sqlite.SQLiteStmtStatus}.
+     * @param reset True to set the counter back to zero.
+     * @return Value of the counter.
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/stmt_status.html">http://www.sqlite.org/c3ref/stmt_status.html</a>
+     */
+    public abstract int stmt_status(long stmt, int op, boolean reset) throws SQLException;
+
+    /**
+     * Reads a status value of the database connection.
+     * @param op Status value, see {@link org.sqlite.SQLiteDbStatus}.
+     * @param reset True to reset the highwater value.
+     * @param values Array receiving the current and the highwater value.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/db_status.html">http://www.sqlite.org/c3ref/db_status.html</a>
+     */
+    public abstract int db_status(int op, boolean reset, long[] values) throws SQLException;
+
+    /**
+     * Reads a status value of the SQLite library, shared by all connections of the process.
+     * @param op Status value, see {@link org.sqlite.SQLiteStatus}.
+     * @param reset True to reset the highwater value.
+     * @param values Array receiving the current and the highwater value.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/status.html">http://www.sqlite.org/c3ref/status.html</a>
+     */
+    public abstract int status(int op, boolean reset, long[] values) throws SQLException;
+
+    /**
+     * Installs a progress handler which interrupts the statement being run once a deadline
+     * has passed, making it fail with SQLITE_INTERRUPT.
+     * @param data Deadline returned by the previous call, or 0 to allocate one; it is freed
+     *        with {@link #free_progress(long)}.
+     * @param millis Time from now to the deadline, in milliseconds.
+     * @param interval Number of virtual machine instructions between checks of the deadline.
+     * @return The deadline.
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/progress_handler.html">http://www.sqlite.org/c3ref/progress_handler.html</a>
+     */
+    abstract long progress_deadline(long data, long millis, int interval) throws SQLException;
+
+    /**
+     * Removes the progress handler installed by {@link #progress_deadline(long, long, int)}.
+     * @param data The deadline.
+     * @return True if the deadline has passed and the statement was interrupted.
+     * @throws SQLException
+     */
+    abstract boolean progress_clear(long data) throws SQLException;
+
+    /**
+     * Frees a deadline returned by {@link #progress_deadline(long, long, int)}.
+     * @param data The deadline.
+     * @throws SQLException
+     */
+    abstract void free_progress(long data) throws SQLException;
+
+    /** Strategy of {@link #busy_handler(long, int, int, int, int, int, boolean)}: the sleeps of sqlite3_busy_timeout(). */
+    static final int BUSY_TIMEOUT = 0;
+    /** Strategy of {@link #busy_handler(long, int, int, int, int, int, boolean)}: exponential backoff. */
+    static final int BUSY_BACKOFF = 1;
+
+    /**
+     * Installs a busy handler which sleeps while a table is locked, until the lock is released
+     * or the timeout is reached; a timeout less than or equal to zero turns off all busy
+     * handlers.
+     * @param data Handler returned by the previous call, or 0 to allocate one; it is freed
+     *        with {@link #free_busy_handler(long)}.
+     * @param strategy BUSY_TIMEOUT or BUSY_BACKOFF.
+     * @param timeout Longest time to wait for a lock, in milliseconds.
+     * @param spins Number of times to yield the processor before sleeping.
+     * @param initial First sleep of the backoff, in milliseconds.
+     * @param maxSleep Longest sleep of the backoff, in milliseconds.
+     * @param jitter True to sleep a random time between half and all of each backoff delay.
+     * @return The handler.
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/busy_handler.html">http://www.sqlite.org/c3ref/busy_handler.html</a>
+     */
+    abstract long busy_handler(long data, int strategy, int timeout, int spins, int initial, int maxSleep,
+            boolean jitter) throws SQLException;
+
+    /**
+     * Reads the counters of a busy handler.
+     * @param data The handler.
+     * @param reset True to set the counters back to zero.
+     * @param values Array receiving the number of callbacks, of waits for a lock, the time
+     *        slept in microseconds and the number of waits given up.
+     * @throws SQLException
+     */
+    abstract void busy_stats(long data, boolean reset, long[] values) throws SQLException;
+
+    /**
+     * Frees a busy handler returned by {@link #busy_handler(long, int, int, int, int, int, boolean)}.
+     * @param data The handler.
+     * @throws SQLException
+     */
+    abstract void free_busy_handler(long data) throws SQLException;
+
+    // COMPOUND FUNCTIONS ////////////////////////////////////////////
+
+    /**
+     * Returns an array of column names in the result set of the SELECT statement.
+     * @param stmt Stmt object.
+     * @return String array of column names.
+     * @throws SQLException
+     */
+    public final synchronized String[] column_names(long stmt) throws SQLException {
+        String[] names = new String[column_count(stmt)];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = column_name(stmt, i);
+        }
+        return names;
+    }
+
+    /**
+     * Bind values to prepared statements. The caller must hold the lock of this instance.
+     * @param stmt Pointer to the statement.
+     * @param pos Index of the SQL parameter to be set.
+     * @param vals Buffer of parameter values.
+     * @param index Slot of the value in the buffer.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/bind_blob.html">http://www.sqlite.org/c3ref/bind_blob.html</a>
+     */
+    final int sqlbind(long stmt, int pos, ParameterBuffer vals, int index) throws SQLException {
+        pos++;
+        switch (vals.getType(index)) {
+        case SQLITE_INTEGER:
+            return bind_long(stmt, pos, vals.getLong(index));
+        case SQLITE_FLOAT:
+            return bind_double(stmt, pos, vals.getDouble(index));
+        case SQLITE_TEXT:
+            return bindText(stmt, pos, vals.getText(index));
+        case SQLITE_BLOB:
+            return bind_blob(stmt, pos, vals.getBlob(index));
+        case ParameterBuffer.BLOB_STREAM:
+            vals.readStreams(index, 1);
+            return bind_blob(stmt, pos, vals.getBlob(index));
+        default:
+            return bind_null(stmt, pos);
+        }
+    }
+
+    /**
+     * Binds text as UTF-8 encoded into a buffer reused for the whole connection.
+     * The caller must hold the lock of this instance.
+     */
+    private int bindText(long stmt, int pos, String v) throws SQLException {
+        if (!extended()) {
+            return bind_text(stmt, pos, v);
+        }
+        int capacity = v.length() * Utf8.MAX_BYTES_PER_CHAR;
+        byte[] data = textData;
+        if (data == null || data.length < capacity) {
+            data = new byte[Math.max(capacity, 256)];
+            if (capacity <= MAX_TEXT_DATA) {
+                textData = data;
+            }
+        }
+        return bind_text_utf8(stmt, pos, data, Utf8.encode(v, data));
+    }
+
+    private byte[]  textData = null; // reused by bindText()
+    private static final int MAX_TEXT_DATA = 1 << 20;
+
+    /** The "select ?;" statement handle of the conversions, see {@link #realText(double)}. */
+    private long convert = 0;
+
+    /**
+     * Converts a REAL value to text as sqlite3_column_text() does, for values copied by
+     * {@link #row_fetch(long, ByteBuffer, int, boolean)} without their text.
+     * @param v The value.
+     * @return Its text.
+     * @throws SQLException
+     */
+    final synchronized String realText(double v) throws SQLException {
+        long stmt = convertStatement();
+        try {
+            if (bind_double(stmt, 1, v) != SQLITE_OK || step(stmt) != SQLITE_ROW) {
+                throwex();
+            }
+            return column_text(stmt, 0);
+        }
+        finally {
+            reset(stmt);
+        }
+    }
+
+    /**
+     * Converts a TEXT or BLOB value to a long as sqlite3_column_int64() does, for values
+     * copied by {@link #row_fetch(long, ByteBuffer, int, boolean)} without their numbers.
+     * @param type SQLITE_TEXT or SQLITE_BLOB.
+     * @param data The UTF-8 text or the bytes of the value.
+     * @param length Number of bytes of the value.
+     * @return The number it starts with, 0 if none.
+     * @throws SQLException
+     */
+    final synchronized long textLong(int type, byte[] data, int length) throws SQLException {
+        long stmt = convertText(type, data, length);
+        try {
+            return column_long(stmt, 0);
+        }
+        finally {
+            reset(stmt);
+            clear_bindings(stmt);
+        }
+    }
+
+    /**
+     * Converts a TEXT or BLOB value to a double as sqlite3_column_double() does.
+     * @see #textLong(int, byte[], int)
+     */
+    final synchronized double textDouble(int type, byte[] data, int length) throws SQLException {
+        long stmt = convertText(type, data, length);
+        try {
+            return column_double(stmt, 0);
+        }
+        finally {
+            reset(stmt);
+            clear_bindings(stmt);
+        }
+    }
+
+    /**
+     * Selects a TEXT or BLOB value with the conversion statement, which the caller must reset.
+     * @return The conversion statement, on the row of the value.
+     */
+    private long convertText(int type, byte[] data, int length) throws SQLException {
+        long stmt = convertStatement();
+        int rc;
+        if (type == SQLITE_TEXT) {
+            rc = bind_text_utf8(stmt, 1, data, length);
+        }
+        else {
+            rc = bind_blob(stmt, 1, data.length == length ? data : Arrays.copyOf(data, length));
+        }
+        if (rc != SQLITE_OK || step(stmt) != SQLITE_ROW) {
+            reset(stmt);
+            throwex();
+        }
+        return stmt;
+    }
+
+    private long convertStatement() throws SQLException {
+        if (convert == 0) {
+            convert = prepare("select ?;");
+        }
+        return convert;
+    }
+
+    /**
+     * Submits a batch of commands to the database for execution.
+     * @see java.sql.Statement#executeBatch()
+     * @param st Stmt object.
+     * @param count Number of SQL statements.
+     * @param vals Buffer of parameter values, one row after the other.
+     * @return Array of the number of rows changed or inserted or deleted for each command if all
+     *         commands execute successfully;
+     * @throws SQLException
+     */
+    final synchronized int[] executeBatch(CoreStatement st, int count, ParameterBuffer vals) throws SQLException {
+        if (count < 1) {
+            throw new SQLException("count (" + count + ") < 1");
+        }
+
+        final long stmt = st.pointer;
+        final int params = bind_parameter_count(stmt);
+
+        int[] changes = new int[count];
+
+        boolean deadline = startTimeout(st);
+        try {
+            if (vals != null && extended()) {
+                executeBatchBlocks(stmt, params, count, vals, changes);
+            }
+            else {
+                // a statement without parameters, or a library which cannot execute batches
+                for (int i = 0; i < count; i++) {
+                    reset(stmt);
+                    for (int j = 0; j < params; j++) {
+                        if (sqlbind(stmt, j, vals, (i * params) + j) != SQLITE_OK) {
+                            throwex();
+                        }
+                    }
+
+                    int rc = step(stmt);
+                    if (rc != SQLITE_DONE) {
+                        reset(stmt);
+                        if (rc == SQLITE_ROW) {
+                            throw new BatchUpdateException("batch entry " + i + ": query returns results", changes);
+                        }
+                        throwex();
+                    }
+
+                    changes[i] = changes();
                 }
             }
         }
+        catch (SQLException e) {
+            if (deadline) {
+                deadline = false;
+                throw timeoutException(st, e);
+            }
+            throw e;
+        }
+        finally {
+            if (deadline) {
+                timeoutException(st, null);
+            }
+            ensureAutoCommit();
+        }
 
-        int statusCode = step(stmt.pointer);
+        reset(stmt);
+        return changes;
+    }
+
+    /** Packed parameter rows, see {@link ParameterBuffer#pack(ByteBuffer, int, int, int)}. */
+    private ByteBuffer batchData = null;
+    private static final int INITIAL_BATCH_CAPACITY = 1 << 16;
+    private static final int MAX_BATCH_CAPACITY = 1 << 20;
+
+    /**
+     * Executes the rows of a batch natively, a block of packed rows per call.
+     * @throws SQLException
+     */
+    private void executeBatchBlocks(long stmt, int params, int count, ParameterBuffer vals, int[] changes)
+            throws SQLException {
+        if (batchData == null) {
+            batchData = ByteBuffer.allocateDirect(INITIAL_BATCH_CAPACITY).order(ByteOrder.nativeOrder());
+        }
+
+        int done = 0;
+        try {
+            while (done < count) {
+                int rows = vals.pack(batchData, params, done, count - done);
+                if (rows == 0) {
+                    // a single row larger than the buffer
+                    batchData = ByteBuffer.allocateDirect(2 * batchData.capacity()).order(ByteOrder.nativeOrder());
+                    continue;
+                }
+
+                int rc = batch_execute(stmt, batchData, rows, changes, done);
+                done += batchData.getInt(0);
+                if (rc != SQLITE_DONE) {
+                    if (rc == SQLITE_ROW) {
+                        throw new BatchUpdateException("batch entry " + done + ": query returns results", changes);
+                    }
+                    throwex();
+                }
+            }
+        }
+        finally {
+            if (batchData.capacity() > MAX_BATCH_CAPACITY) {
+                batchData = null;
+            }
+        }
+    }
+
+    /** Returned by {@link #beginBatch()} if the batch is not wrapped. */
+    static final int BATCH_NOT_WRAPPED = 0;
+    /** Returned by {@link #beginBatch()} if the batch runs in a transaction of its own. */
+    static final int BATCH_IN_TRANSACTION = 1;
+    /** Returned by {@link #beginBatch()} if the batch runs in a savepoint. */
+    static final int BATCH_IN_SAVEPOINT = 2;
+
+    private static final String BATCH_SAVEPOINT = "sqlite_jdbc_batch";
+
+    /**
+     * Starts the transaction that wraps a batch, if the connection is configured to wrap
+     * batches: a new transaction in auto-commit mode, otherwise a savepoint in the open one.
+     * @return How the batch is wrapped, to be passed to {@link #commitBatch(int)} or
+     *         {@link #rollbackBatch(int, SQLException, int)}.
+     * @throws SQLException
+     * @see org.sqlite.SQLiteConfig#setBatchTransaction(boolean)
+     */
+    public final synchronized int beginBatch() throws SQLException {
+        if (!conn.isBatchTransaction()) {
+            return BATCH_NOT_WRAPPED;
+        }
+        if (conn.getAutoCommit()) {
+            exec(CoreConnection.beginCommandMap.get(conn.transactionMode));
+            return BATCH_IN_TRANSACTION;
+        }
+        exec("savepoint " + BATCH_SAVEPOINT + ";");
+        return BATCH_IN_SAVEPOINT;
+    }
+
+    /**
+     * Commits the transaction or releases the savepoint wrapping a batch which succeeded.
+     * @param wrapped Value returned by {@link #beginBatch()}.
+     * @throws SQLException
+     */
+    public final synchronized void commitBatch(int wrapped) throws SQLException {
+        switch (wrapped) {
+        case BATCH_IN_TRANSACTION:
+            exec("commit;");
+            break;
+        case BATCH_IN_SAVEPOINT:
+            exec("release savepoint " + BATCH_SAVEPOINT + ";");
+            break;
+        }
+    }
+
+    /**
+     * Rolls back the transaction or savepoint wrapping a batch in which an entry failed.
+     * @param wrapped Value returned by {@link #beginBatch()}.
+     * @param cause The failure.
+     * @param count Number of entries of the batch.
+     * @return The exception to throw: the cause itself if the batch was not wrapped or timed
+     *         out, otherwise a BatchUpdateException reporting every entry as failed.
+     * @throws SQLException
+     */
+    public final synchronized SQLException rollbackBatch(int wrapped, SQLException cause, int count)
+            throws SQLException {
+        if (wrapped == BATCH_NOT_WRAPPED) {
+            return cause;
+        }
+
+        try {
+            if (wrapped == BATCH_IN_TRANSACTION) {
+                exec("rollback;");
+            }
+            else {
+                exec("rollback to savepoint " + BATCH_SAVEPOINT + ";");
+                exec("release savepoint " + BATCH_SAVEPOINT + ";");
+            }
+        }
+        catch (SQLException e) {
+            cause.setNextException(e);
+        }
+        if (cause instanceof SQLTimeoutException) {
+            return cause;
+        }
+
+        int[] changes = new int[count];
+        Arrays.fill(changes, Statement.EXECUTE_FAILED);
+        BatchUpdateException e = new BatchUpdateException(cause.getMessage() + " (batch rolled back)",
+                cause.getSQLState(), cause.getErrorCode(), changes);
+        e.initCause(cause);
+        return e;
+    }
+
+    /**
+     * @see <a href="http://www.sqlite.org/c_interface.html#sqlite_exec">http://www.sqlite.org/c_interface.html#sqlite_exec</a>
+     * @param stmt Stmt object.
+     * @param vals Buffer of parameter values; those of the current row of the batch are bound.
+     * @return True if a row of ResultSet is ready; false otherwise.
+     * @throws SQLException
+     */
+    public final synchronized boolean execute(CoreStatement stmt, ParameterBuffer vals) throws SQLException {
+        if (metrics.timing) {
+            metrics.begin(stmt);
+        }
+        if (vals != null) {
+            final int params = bind_parameter_count(stmt.pointer);
+            if (stmt.batchPos + params > vals.capacity()) {
+                throw new SQLException("assertion failure: param count (" + params + ") > value count ("
+                        + (vals.capacity() - stmt.batchPos) + ")");
+            }
+
+            InsertTarget target = null;
+            if (stmt instanceof CorePreparedStatement && extended() && vals.hasStreams(stmt.batchPos, params)) {
+                target = streamTarget((CorePreparedStatement) stmt, vals);
+            }
+
+            for (int i = 0; i < params; i++) {
+                int index = stmt.batchPos + i;
+                int rc;
+                if (target != null && isStreamed(target, vals, stmt.batchPos, i)) {
+                    rc = bind_zeroblob(stmt.pointer, i + 1, vals.getBlobStreamLength(index));
+                }
+                else {
+                    rc = sqlbind(stmt.pointer, i, vals, index);
+                }
+                if (rc != SQLITE_OK) {
+                    throwex();
+                }
+            }
+
+            if (target != null) {
+                executeStreaming(stmt, vals, target);
+                return false;
+            }
+        }
+
+        int statusCode = step(stmt);
         switch (statusCode) {
         case SQLITE_DONE:
             reset(stmt.pointer);
+            metrics.end(stmt);
             ensureAutoCommit();
             return false;
         case SQLITE_ROW:
@@ -812,6 +1720,418 @@ public abstract class DB implements Codes
 
     }
 
+    private static final String STREAM_SAVEPOINT = "sqlite_jdbc_stream";
+
+    private byte[]     streamData  = null; // reused by writeStream()
+    private ByteBuffer streamChunk = null;
+
+    /**
+     * @param stmt A statement with streams set as parameters.
+     * @param vals The parameters.
+     * @return Where the statement inserts its parameters, if one of the streams can be
+     *         written there with incremental BLOB I/O; null otherwise.
+     */
+    private InsertTarget streamTarget(CorePreparedStatement stmt, ParameterBuffer vals) {
+        InsertTarget target = stmt.insertTarget();
+        if (target == null) {
+            return null;
+        }
+        try {
+            long version = (queryLong("pragma " + quote(target.database) + ".schema_version;") << 32)
+                    | queryLong("pragma temp.schema_version;");
+            if (target.streamable == null || target.schemaVersion != version) {
+                target.streamable = streamableColumns(target);
+                target.schemaVersion = version;
+            }
+        }
+        catch (SQLException e) {
+            return null;
+        }
+        for (int i = 0; i < target.columns.length; i++) {
+            if (isStreamed(target, vals, stmt.batchPos, i)) {
+                return target;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Whether a parameter is a stream written into the inserted row after the insert.
+     */
+    private static boolean isStreamed(InsertTarget target, ParameterBuffer vals, int first, int param) {
+        return param < target.streamable.length && target.streamable[param]
+                && vals.getType(first + param) == ParameterBuffer.BLOB_STREAM;
+    }
+
+    /**
+     * Finds the columns an INSERT can fill with zeroblobs and write afterwards: SQLite must
+     * not see the zeros in place of the values, so the columns must not be part of an
+     * index or a foreign key, as listed by the pragmas. Expression and partial indexes,
+     * CHECK constraints, generated columns and triggers may read any column, so a table
+     * with any of them has no such columns. WITHOUT ROWID tables cannot be opened with
+     * blob_open() at all.
+     * @param target Where the statement inserts its parameters.
+     * @return Whether each column can be streamed.
+     * @throws SQLException
+     */
+    private boolean[] streamableColumns(InsertTarget target) throws SQLException {
+        boolean[] streamable = new boolean[target.columns.length];
+        String schema = quote(target.database);
+        String table = quote(target.table);
+        String name = target.table.replace("'", "''");
+        String master = "temp".equalsIgnoreCase(target.database) ? "sqlite_temp_master" : schema + ".sqlite_master";
+
+        try {
+            finalize(prepare("select rowid from " + schema + "." + table + ";"));
+        }
+        catch (SQLException e) {
+            return streamable;
+        }
+        if (queryLong("select count(*) from " + master + " where type = 'trigger' and tbl_name = '" + name
+                + "' collate nocase;") > 0
+                || queryLong("select count(*) from sqlite_temp_master where type = 'trigger' and tbl_name = '"
+                        + name + "' collate nocase;") > 0) {
+            return streamable;
+        }
+        if (hasCheck(master, name) || hasGeneratedColumns(schema, table)) {
+            return streamable;
+        }
+
+        List<String> keys = new ArrayList<String>();
+        for (String[] index : queryRows("pragma " + schema + ".index_list(" + table + ");", 1, 4)) {
+            if ("1".equals(index[1])) {
+                return streamable;
+            }
+            List<String[]> columns = queryRows("pragma " + schema + ".index_xinfo(" + quote(index[0]) + ");", 1, 2);
+            if (columns.isEmpty()) {
+                // index_xinfo is not known before 3.9.0
+                return streamable;
+            }
+            for (String[] column : columns) {
+                // -2 stands for an expression, -1 for the rowid
+                if ("-2".equals(column[0])) {
+                    return streamable;
+                }
+                if (column[1] != null) {
+                    keys.add(column[1]);
+                }
+            }
+        }
+        keys.addAll(queryTexts("pragma " + schema + ".foreign_key_list(" + table + ");", 3));
+
+        for (int i = 0; i < streamable.length; i++) {
+            streamable[i] = !containsIgnoreCase(keys, target.columns[i]);
+        }
+        return streamable;
+    }
+
+    /**
+     * @return Whether the definition of a table has a CHECK constraint, or cannot be read.
+     */
+    private boolean hasCheck(String master, String name) throws SQLException {
+        List<String> definition = queryTexts("select sql from " + master + " where type = 'table' and name = '"
+                + name + "' collate nocase;", 0);
+        List<String> tokens = definition.size() == 1 ? InsertTarget.tokenize(definition.get(0)) : null;
+        if (tokens == null) {
+            return true;
+        }
+        for (String token : tokens) {
+            if (token.equalsIgnoreCase("CHECK")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether a table has generated columns, which pragma table_xinfo lists as
+     *         hidden columns of kind 2 or 3. SQLite versions without the pragma have no
+     *         generated columns.
+     */
+    private boolean hasGeneratedColumns(String schema, String table) throws SQLException {
+        List<String> hidden;
+        try {
+            hidden = queryTexts("pragma " + schema + ".table_xinfo(" + table + ");", 6);
+        }
+        catch (SQLException e) {
+            return false;
+        }
+        for (String kind : hidden) {
+            if ("2".equals(kind) || "3".equals(kind)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsIgnoreCase(List<String> names, String name) {
+        for (String n : names) {
+            if (name.equalsIgnoreCase(n)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String quote(String name) {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * @param sql A query returning a number.
+     * @return The number in the first column of the first row, or 0 if there is no row.
+     * @throws SQLException
+     */
+    private long queryLong(String sql) throws SQLException {
+        long pointer = prepare(sql);
+        try {
+            int rc = step(pointer);
+            if (rc != SQLITE_ROW && rc != SQLITE_DONE) {
+                throwex(rc);
+            }
+            return rc == SQLITE_ROW ? column_long(pointer, 0) : 0;
+        }
+        finally {
+            finalize(pointer);
+        }
+    }
+
+    /**
+     * @param sql A query.
+     * @param col Column of the result.
+     * @return The column of each row as text.
+     * @throws SQLException
+     */
+    private List<String> queryTexts(String sql, int col) throws SQLException {
+        List<String> values = new ArrayList<String>();
+        for (String[] row : queryRows(sql, col)) {
+            values.add(row[0]);
+        }
+        return values;
+    }
+
+    /**
+     * @param sql A query.
+     * @param cols Columns of the result.
+     * @return The columns of each row as text.
+     * @throws SQLException
+     */
+    private List<String[]> queryRows(String sql, int... cols) throws SQLException {
+        long pointer = prepare(sql);
+        try {
+            List<String[]> rows = new ArrayList<String[]>();
+            int rc;
+            while ((rc = step(pointer)) == SQLITE_ROW) {
+                String[] row = new String[cols.length];
+                for (int i = 0; i < cols.length; i++) {
+                    row[i] = column_text(pointer, cols[i]);
+                }
+                rows.add(row);
+            }
+            if (rc != SQLITE_DONE) {
+                throwex(rc);
+            }
+            return rows;
+        }
+        finally {
+            finalize(pointer);
+        }
+    }
+
+    /**
+     * Steps an INSERT whose streams are bound as zeroblobs, then copies each stream into the
+     * inserted row, all in a savepoint so that the row is not left behind if a stream fails.
+     * If the row cannot be opened with blob_open(), the insert is rolled back and run again
+     * with the streams read into memory and bound as BLOBs.
+     * @param stmt The statement, with parameters bound.
+     * @param vals The parameters.
+     * @param target Where the statement inserts its parameters.
+     * @throws SQLException
+     */
+    private void executeStreaming(CoreStatement stmt, ParameterBuffer vals, InsertTarget target)
+            throws SQLException {
+        exec("savepoint " + STREAM_SAVEPOINT + ";");
+        try {
+            int statusCode = step(stmt);
+            if (statusCode != SQLITE_DONE) {
+                throw newSQLException(statusCode);
+            }
+            if (changes() > 0 && !writeStreams(stmt, vals, target)) {
+                reset(stmt.pointer);
+                exec("rollback to savepoint " + STREAM_SAVEPOINT + ";");
+                for (int i = 0; i < target.columns.length; i++) {
+                    if (vals.getType(stmt.batchPos + i) == ParameterBuffer.BLOB_STREAM) {
+                        int rc = sqlbind(stmt.pointer, i, vals, stmt.batchPos + i);
+                        if (rc != SQLITE_OK) {
+                            throwex(rc);
+                        }
+                    }
+                }
+                statusCode = step(stmt);
+                if (statusCode != SQLITE_DONE) {
+                    throw newSQLException(statusCode);
+                }
+            }
+        }
+        catch (SQLException e) {
+            reset(stmt.pointer);
+            try {
+                exec("rollback to savepoint " + STREAM_SAVEPOINT + ";");
+                exec("release savepoint " + STREAM_SAVEPOINT + ";");
+            }
+            catch (SQLException ex) {
+                e.setNextException(ex);
+            }
+            throw e;
+        }
+        reset(stmt.pointer);
+        metrics.end(stmt);
+        exec("release savepoint " + STREAM_SAVEPOINT + ";");
+        ensureAutoCommit();
+    }
+
+    /**
+     * Steps a statement, recording the call in its execution statistics.
+     * @param stmt The statement.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>
+     * @throws SQLException
+     */
+    final int step(CoreStatement stmt) throws SQLException {
+        boolean deadline = startTimeout(stmt);
+        int statusCode;
+        if (!metrics.timing) {
+            statusCode = step(stmt.pointer);
+        }
+        else {
+            long start = System.nanoTime();
+            statusCode = step(stmt.pointer);
+            metrics.stepped(stmt, System.nanoTime() - start, 1, statusCode == SQLITE_ROW ? 1 : 0, statusCode);
+        }
+        if (deadline) {
+            SQLException e = timeoutException(stmt, null);
+            if (e != null) {
+                reset(stmt.pointer);
+                throw e;
+            }
+        }
+        return statusCode;
+    }
+
+    /**
+     * Sets the deadline of the query timeout of a statement, if it has one, before a native
+     * call running the statement. The deadline is checked by a progress handler which
+     * interrupts the call once it has passed, and the busy handler waits for locks for the
+     * query timeout instead of the busy timeout. Without {@link #extended()} entry points
+     * only the wait for locks is bounded. The caller must hold the lock of the database
+     * and remove the deadline with {@link #timeoutException(CoreStatement, SQLException)}
+     * after the call.
+     * @param stmt The statement.
+     * @return True if a deadline was set; false if the statement has no query timeout.
+     * @throws SQLException
+     * @see java.sql.Statement#setQueryTimeout(int)
+     */
+    final boolean startTimeout(CoreStatement stmt) throws SQLException {
+        if (stmt.queryTimeout <= 0) {
+            return false;
+        }
+        long timeout = Math.min(stmt.queryTimeout * 1000L, Integer.MAX_VALUE);
+        if (timeout != busyTimeout) {
+            installBusyHandler(timeout);
+            busyQueryTimeout = true;
+        }
+        if (extended()) {
+            progressData = progress_deadline(progressData, timeout, queryTimeoutInterval);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the deadline set by {@link #startTimeout(CoreStatement)} and restores the busy
+     * timeout.
+     * @param stmt The statement.
+     * @param cause The failure of the call, if any.
+     * @return A SQLTimeoutException if the call was interrupted by the deadline; otherwise
+     *         the cause.
+     * @throws SQLException
+     */
+    final SQLException timeoutException(CoreStatement stmt, SQLException cause) throws SQLException {
+        if (busyQueryTimeout) {
+            busyQueryTimeout = false;
+            installBusyHandler(busyTimeout);
+        }
+        if (!extended() || !progress_clear(progressData)) {
+            return cause;
+        }
+        SQLTimeoutException e = new SQLTimeoutException("query timeout of " + stmt.queryTimeout
+                + " seconds exceeded", null, SQLITE_INTERRUPT);
+        if (cause != null) {
+            e.initCause(cause);
+        }
+        return e;
+    }
+
+    /**
+     * Copies the streams of an INSERT into the zeroblobs of the inserted row. The BLOBs are
+     * all opened before any stream is read, so that the streams can still be bound as BLOBs
+     * if one cannot be opened.
+     * @return False if a BLOB could not be opened and nothing has been written.
+     * @throws SQLException
+     */
+    private boolean writeStreams(CoreStatement stmt, ParameterBuffer vals, InsertTarget target)
+            throws SQLException {
+        long rowid = last_insert_rowid();
+        long[] blobs = new long[target.columns.length];
+        try {
+            for (int i = 0; i < blobs.length; i++) {
+                if (isStreamed(target, vals, stmt.batchPos, i) && vals.getBlobStreamLength(stmt.batchPos + i) > 0) {
+                    try {
+                        blobs[i] = blob_open(target.database, target.table, target.columns[i], rowid, true);
+                    }
+                    catch (SQLException e) {
+                        target.streamable[i] = false;
+                        return false;
+                    }
+                }
+            }
+            for (int i = 0; i < blobs.length; i++) {
+                if (blobs[i] != 0) {
+                    writeStream(blobs[i], vals.getBlobStream(stmt.batchPos + i),
+                            vals.getBlobStreamLength(stmt.batchPos + i));
+                }
+            }
+            return true;
+        }
+        finally {
+            for (long blob : blobs) {
+                if (blob != 0) {
+                    blob_close(blob);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies a stream into a zeroblob of the same length, a chunk at a time.
+     * @throws SQLException
+     */
+    private void writeStream(long blob, InputStream in, int length) throws SQLException {
+        if (streamData == null) {
+            streamData = new byte[CoreBlob.CHUNK_SIZE];
+            streamChunk = ByteBuffer.allocateDirect(CoreBlob.CHUNK_SIZE);
+        }
+        for (int done = 0; done < length;) {
+            int n = Math.min(streamData.length, length - done);
+            ParameterBuffer.readFully(in, streamData, n);
+            streamChunk.clear();
+            streamChunk.put(streamData, 0, n);
+            int rc = blob_write(blob, streamChunk, n, done);
+            if (rc != SQLITE_OK) {
+                throwex(rc);
+            }
+            done += n;
+        }
+    }
+
     /**
      * Executes the given SQL statement using the one-step query execution interface.
      * @param sql SQL statement to be executed.
@@ -834,22 +2154,63 @@ public abstract class DB implements Codes
         }
     }
 
+    /**
+     * Executes the SQL of a statement, which may hold several SQL statements, with
+     * {@link #_exec(String)}, recording the call in the execution statistics.
+     * @param stmt The statement.
+     * @return <a href="http://www.sqlite.org/c3ref/c_abort.html">Result Codes</a>
+     * @throws SQLException
+     */
+    public final synchronized int exec(CoreStatement stmt) throws SQLException {
+        if (!metrics.timing && stmt.queryTimeout <= 0) {
+            return _exec(stmt.sql);
+        }
+        boolean timed = metrics.timing;
+        if (timed) {
+            metrics.begin(stmt);
+        }
+        boolean deadline = startTimeout(stmt);
+        long start = System.nanoTime();
+        int statusCode = SQLITE_ERROR;
+        try {
+            statusCode = _exec(stmt.sql);
+        }
+        catch (SQLException e) {
+            if (deadline) {
+                deadline = false;
+                throw timeoutException(stmt, e);
+            }
+            throw e;
+        }
+        finally {
+            if (deadline) {
+                timeoutException(stmt, null);
+            }
+            if (timed) {
+                metrics.stepped(stmt, System.nanoTime() - start, 0, 0, statusCode);
+                metrics.end(stmt);
+            }
+        }
+        return statusCode;
+    }
+
     /**
      * Execute an SQL INSERT, UPDATE or DELETE statement with the Stmt object and an array of
      * parameter values of the SQL statement..
      * @param stmt Stmt object.
-     * @param vals Array of parameter values.
+     * @param vals Buffer of parameter values.
      * @return Number of database rows that were changed or inserted or deleted by the most
      *         recently completed SQL.
      * @throws SQLException
      */
-    public final synchronized int executeUpdate(CoreStatement stmt, Object[] vals) throws SQLException {
+    public final synchronized int executeUpdate(CoreStatement stmt, ParameterBuffer vals) throws SQLException {
         try {
             if (execute(stmt, vals)) {
                 throw new SQLException("query returns results");
             }
         } finally {
             reset(stmt.pointer);
+            metrics.end(stmt);
         }
         return changes();
     }
@@ -858,16 +2219,58 @@ public abstract class DB implements Codes
      * Throws SQLException with error message.
      * @throws SQLException
      */
-    final void throwex() throws SQLException {
+    final synchronized void throwex() throws SQLException {
         throw new SQLException(errmsg());
     }
 
+    /**
+     * @param feature What needs the entry points, followed by "is" or "are".
+     * @throws SQLFeatureNotSupportedException if the native library does not have the
+     *         {@link #extended()} entry points.
+     */
+    public final void requireExtended(String feature) throws SQLFeatureNotSupportedException {
+        if (!extended()) {
+            throw new SQLFeatureNotSupportedException(feature + " not supported by the native library");
+        }
+    }
+
+    /**
+     * Opens a handle on a BLOB for a blob object, which is closed at the latest with the
+     * database.
+     * @param blob The blob object to receive the handle.
+     * @see #blob_open(String, String, String, long, boolean)
+     */
+    final synchronized void openBlob(CoreBlob blob, String database, String table, String column, long rowid,
+            boolean write) throws SQLException {
+        requireExtended("BLOB handles are");
+        blob.pointer = blob_open(database, table, column, rowid, write);
+        blobs.put(blob.pointer, blob);
+    }
+
+    /**
+     * Closes the handle of a blob object opened by
+     * {@link #openBlob(CoreBlob, String, String, String, long, boolean)}.
+     * @param blob The blob object.
+     * @throws SQLException
+     */
+    final synchronized void closeBlob(CoreBlob blob) throws SQLException {
+        if (blob.pointer == 0) {
+            return;
+        }
+        blobs.remove(blob.pointer);
+        int rc = blob_close(blob.pointer);
+        blob.pointer = 0;
+        if (rc != SQLITE_OK) {
+            throwex(rc);
+        }
+    }
+
     /**
      * Throws SQLException with error code.
      * @param errorCode Error code to be passed.
      * @throws SQLException
      */
-    public final void throwex(int errorCode) throws SQLException {
+    public final synchronized void throwex(int errorCode) throws SQLException {
         throw newSQLException(errorCode);
     }
 
@@ -0,0 +1,244 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The table and columns a single-row INSERT writes its parameters to, found by parsing
+ * statements of the form
+ * <pre>
+ * INSERT [OR conflict] INTO [schema.]table (column, ...) VALUES (value, ...)
+ * REPLACE INTO [schema.]table (column, ...) VALUES (value, ...)
+ * </pre>
+ * in which each value is either a lone positional "?" parameter or an expression without
+ * parameters. Anything else, e.g. an upsert clause, several rows or named parameters, is not
+ * recognized, and the parameters are then bound in the usual way.
+ */
+final class InsertTarget
+{
+    /** Symbolic name of the database. */
+    final String database;
+    /** Name of the table. */
+    final String table;
+    /** Column each parameter is inserted into, by parameter index from 0. */
+    final String[] columns;
+
+    /**
+     * Whether each column can be written with blob_open() once the row is inserted, by
+     * parameter index from 0; null until the schema has been checked.
+     */
+    boolean[] streamable = null;
+    /** Versions of the schema the columns were checked against. */
+    long schemaVersion = -1;
+
+    private InsertTarget(String database, String table, String[] columns) {
+        this.database = database;
+        this.table = table;
+        this.columns = columns;
+    }
+
+    /**
+     * @param sql An SQL statement.
+     * @return Where the statement inserts its parameters, or null if it has not one of
+     *         the recognized forms.
+     */
+    static InsertTarget parse(String sql) {
+        List<String> tokens = tokenize(sql);
+        if (tokens == null) {
+            return null;
+        }
+        int i = 0;
+        int n = tokens.size();
+        while (n > 0 && tokens.get(n - 1).equals(";")) {
+            n--;
+        }
+
+        if (is(tokens, i, "REPLACE")) {
+            i++;
+        }
+        else if (is(tokens, i, "INSERT")) {
+            i++;
+            if (is(tokens, i, "OR")) {
+                i += 2;
+            }
+        }
+        else {
+            return null;
+        }
+        if (!is(tokens, i++, "INTO") || i >= n) {
+            return null;
+        }
+
+        String database = "main";
+        String table = name(tokens.get(i++));
+        if (i + 1 < n && tokens.get(i).equals(".")) {
+            database = table;
+            table = name(tokens.get(i + 1));
+            i += 2;
+        }
+        if (table == null || database == null || !is(tokens, i++, "(")) {
+            return null;
+        }
+
+        List<String> columnList = new ArrayList<String>();
+        while (i < n) {
+            String column = name(tokens.get(i++));
+            if (column == null) {
+                return null;
+            }
+            columnList.add(column);
+            if (is(tokens, i, ",")) {
+                i++;
+            }
+            else {
+                break;
+            }
+        }
+        if (!is(tokens, i++, ")") || !is(tokens, i++, "VALUES") || !is(tokens, i++, "(")) {
+            return null;
+        }
+
+        // values, separated by commas outside of parentheses
+        List<String> columns = new ArrayList<String>();
+        int value = 0;
+        int depth = 0;
+        int start = i;
+        for (; i < n; i++) {
+            String token = tokens.get(i);
+            if (token.equals("(")) {
+                depth++;
+            }
+            else if (depth > 0 && token.equals(")")) {
+                depth--;
+            }
+            else if (depth == 0 && (token.equals(",") || token.equals(")"))) {
+                if (value >= columnList.size()) {
+                    return null;
+                }
+                if (i == start + 1 && tokens.get(start).equals("?")) {
+                    columns.add(columnList.get(value));
+                }
+                else {
+                    for (int j = start; j < i; j++) {
+                        if (isParameter(tokens.get(j))) {
+                            return null;
+                        }
+                    }
+                }
+                value++;
+                start = i + 1;
+                if (token.equals(")")) {
+                    break;
+                }
+            }
+        }
+        if (i != n - 1 || value != columnList.size()) {
+            return null;
+        }
+        return new InsertTarget(database, table, columns.toArray(new String[columns.size()]));
+    }
+
+    static boolean is(List<String> tokens, int i, String keyword) {
+        return i < tokens.size() && tokens.get(i).equalsIgnoreCase(keyword);
+    }
+
+    private static boolean isParameter(String token) {
+        char c = token.charAt(0);
+        return c == '?' || c == ':' || c == '@' || c == '$';
+    }
+
+    /**
+     * @param token A token.
+     * @return The identifier the token stands for, or null if it is not one.
+     */
+    static String name(String token) {
+        char c = token.charAt(0);
+        if (c == '"' || c == '`') {
+            return token.substring(1, token.length() - 1).replace(token.substring(0, 1) + c, String.valueOf(c));
+        }
+        if (c == '[') {
+            return token.substring(1, token.length() - 1);
+        }
+        if (Character.isLetter(c) || c == '_') {
+            return token;
+        }
+        return null;
+    }
+
+    /**
+     * Splits SQL into words, numbers, quoted strings and identifiers, parameters and single
+     * punctuation characters, dropping white space and comments.
+     * @param sql The SQL.
+     * @return The tokens, or null if a quote or comment is not terminated.
+     */
+    static List<String> tokenize(String sql) {
+        List<String> tokens = new ArrayList<String>();
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (c == '-' && sql.startsWith("--", i)) {
+                i = sql.indexOf('\n', i);
+                if (i < 0) {
+                    break;
+                }
+                continue;
+            }
+            if (c == '/' && sql.startsWith("/*", i)) {
+                i = sql.indexOf("*/", i + 2);
+                if (i < 0) {
+                    return null;
+                }
+                i += 2;
+                continue;
+            }
+
+            if (c == '\'' || c == '"' || c == '`' || c == '[') {
+                char end = c == '[' ? ']' : c;
+                i++;
+                while (true) {
+                    if (i >= length) {
+                        return null;
+                    }
+                    if (sql.charAt(i++) == end) {
+                        // a doubled quote stands for itself
+                        if (end != ']' && i < length && sql.charAt(i) == end) {
+                            i++;
+                            continue;
+                        }
+                        break;
+                    }
+                }
+            }
+            else if (Character.isLetterOrDigit(c) || c == '_' || c == '?' || c == ':' || c == '@' || c == '$') {
+                i++;
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_')) {
+                    i++;
+                }
+            }
+            else {
+                i++;
+            }
+            tokens.add(sql.substring(start, i));
+        }
+        return tokens;
+    }
+}
@@ -119,8 +119,29 @@ struct UDFData {
     JavaVM *vm;
     jobject func;
     struct UDFData *next;  // linked list of all UDFData instances
+    jobject buf;           // argument buffer of a Function.Scalar, or 0
+    char *bufaddr;
+    jlong bufsize;
+    jobject rows;          // Function.Rows of a Function.BatchAggregate, or 0
+    jint batchsize;
+    jint rowsargs;         // arguments the arrays of rows have room for
 };
 
+/* Returns the JNIEnv of the calling thread, attaching the thread only if
+ * it is not attached yet, which is the case for all calls made from Java. */
+static JNIEnv * vm_env(JavaVM *vm)
+{
+    JNIEnv *env = 0;
+    if ((*vm)->GetEnv(vm, (void **)&env, JNI_VERSION_1_2) != JNI_OK)
+        (*vm)->AttachCurrentThread(vm, (void **)&env, 0);
+    return env;
+}
+
+static JNIEnv * udf_env(struct UDFData *udf)
+{
+    return vm_env(udf->vm);
+}
+
 /* Returns the sqlite3_value for the given arg of the given function.
  * If 0 is returned, an exception has been thrown to report the reason. */
 static sqlite3_value * tovalue(JNIEnv *env, jobject function, jint arg)
@@ -179,24 +200,17 @@ static void xFunc_error(sqlite3_context *context, JNIEnv *env)
     (*env)->ReleaseStringCritical(env, msg, msgstr);
 }
 
-/* used to call xFunc, xStep and xFinal */
-static void xCall(
+/* sets the call the value_*() and result*() methods of a Function apply to */
+static void set_call(
+    JNIEnv *env,
+    jobject func,
     sqlite3_context *context,
     int args,
-    sqlite3_value** value,
-    jobject func,
-    jmethodID method)
+    sqlite3_value** value)
 {
     static jfieldID fld_context = 0,
                      fld_value = 0,
                      fld_args = 0;
-    JNIEnv *env = 0;
-    struct UDFData *udf = 0;
-
-    udf = (struct UDFData*)sqlite3_user_data(context);
-    assert(udf);
-    (*udf->vm)->AttachCurrentThread(udf->vm, (void **)&env, 0);
-    if (!func) func = udf->func;
 
     if (!fld_context || !fld_value || !fld_args) {
         fld_context = (*env)->GetFieldID(env, fclass, "context", "J");
@@ -204,9 +218,28 @@ static void xCall(
         fld_args    = (*env)->GetFieldID(env, fclass, "args", "I");
     }
 
-    (*env)->SetLongField(env, func, fld_context, fromref(context));
+    (*env)->SetLongField(env, func, fld_context, context ? fromref(context) : 0);
     (*env)->SetLongField(env, func, fld_value, value ? fromref(value) : 0);
     (*env)->SetIntField(env, func, fld_args, args);
+}
+
+/* used to call xFunc, xStep and xFinal */
+static void xCall(
+    sqlite3_context *context,
+    int args,
+    sqlite3_value** value,
+    jobject func,
+    jmethodID method)
+{
+    JNIEnv *env = 0;
+    struct UDFData *udf = 0;
+
+    udf = (struct UDFData*)sqlite3_user_data(context);
+    assert(udf);
+    env = udf_env(udf);
+    if (!func) func = udf->func;
+
+    set_call(env, func, context, args, value);
 
     (*env)->CallVoidMethod(env, func, method);
 
@@ -215,9 +248,7 @@ static void xCall(
         xFunc_error(context, env);
     }
 
-    (*env)->SetLongField(env, func, fld_context, 0);
-    (*env)->SetLongField(env, func, fld_value, 0);
-    (*env)->SetIntField(env, func, fld_args, 0);
+    set_call(env, func, 0, 0, 0);
 }
 
 
@@ -227,7 +258,7 @@ void xFunc(sqlite3_context *context, int args, sqlite3_value** value)
     if (!mth) {
         JNIEnv *env;
         struct UDFData *udf = (struct UDFData*)sqlite3_user_data(context);
-        (*udf->vm)->AttachCurrentThread(udf->vm, (void **)&env, 0);
+        env = udf_env(udf);
         mth = (*env)->GetMethodID(env, fclass, "xFunc", "()V");
     }
     xCall(context, args, value, 0, mth);
@@ -243,7 +274,7 @@ void xStep(sqlite3_context *context, int args, sqlite3_value** value)
 
     if (!mth || !clone) {
         udf = (struct UDFData*)sqlite3_user_data(context);
-        (*udf->vm)->AttachCurrentThread(udf->vm, (void **)&env, 0);
+        env = udf_env(udf);
 
         mth = (*env)->GetMethodID(env, aclass, "xStep", "()V");
         clone = (*env)->GetMethodID(env, aclass, "clone",
@@ -255,7 +286,7 @@ void xStep(sqlite3_context *context, int args, sqlite3_value** value)
     func = sqlite3_aggregate_context(context, sizeof(jobject));
     if (!*func) {
         udf = (struct UDFData*)sqlite3_user_data(context);
-        (*udf->vm)->AttachCurrentThread(udf->vm, (void **)&env, 0);
+        env = udf_env(udf);
 
         *func = (*env)->CallObjectMethod(env, udf->func, clone);
         *func = (*env)->NewGlobalRef(env, *func);
@@ -272,7 +303,7 @@ void xFinal(sqlite3_context *context)
     static jmethodID mth = 0;
 
     udf = (struct UDFData*)sqlite3_user_data(context);
-    (*udf->vm)->AttachCurrentThread(udf->vm, (void **)&env, 0);
+    env = udf_env(udf);
 
     if (!mth) mth = (*env)->GetMethodID(env, aclass, "xFinal", "()V");
 
@@ -286,6 +317,314 @@ void xFinal(sqlite3_context *context)
 }
 
 
+#if SQLITE_VERSION_NUMBER >= 3025000
+/* Function.Window calls, on the clone made by xStep() for the window; a
+ * window without rows yet is handled by the registered instance. */
+
+static jmethodID window_value = 0;
+static jmethodID window_inverse = 0;
+
+void xValue(sqlite3_context *context)
+{
+    jobject *func = sqlite3_aggregate_context(context, sizeof(jobject));
+    if (!func) { sqlite3_result_error_nomem(context); return; }
+    xCall(context, 0, 0, *func, window_value);
+}
+
+void xInverse(sqlite3_context *context, int args, sqlite3_value** value)
+{
+    jobject *func = sqlite3_aggregate_context(context, sizeof(jobject));
+    if (!func) { sqlite3_result_error_nomem(context); return; }
+    xCall(context, args, value, *func, window_inverse);
+}
+
+void xWindowFinal(sqlite3_context *context)
+{
+    struct UDFData *udf = (struct UDFData*)sqlite3_user_data(context);
+    JNIEnv *env = udf_env(udf);
+    static jmethodID mth = 0;
+    jobject *func = sqlite3_aggregate_context(context, sizeof(jobject));
+
+    if (!func) { sqlite3_result_error_nomem(context); return; }
+    if (!mth) mth = (*env)->GetMethodID(env, aclass, "xFinal", "()V");
+
+    xCall(context, 0, 0, *func, mth);
+    if (*func) (*env)->DeleteGlobalRef(env, *func);
+}
+#endif
+
+/* Function.Scalar calls: the arguments are copied into the direct buffer of
+ * the function and the result read back from it, see Function.Arguments.
+ * The buffer holds a slot for the result then one per argument, each of
+ * UDF_SLOT bytes: jint type, jint length, then a jlong, a jdouble or, for
+ * text and BLOBs, the jlong offset of their bytes after the slots. */
+
+#define UDF_SLOT 16
+#define UDF_ERROR -1
+
+static jmethodID scalar_call = 0;
+static jmethodID scalar_reserve = 0;
+
+/* Makes the buffer returned by Function.Scalar the one of the function. */
+static int udf_setbuf(JNIEnv *env, struct UDFData *udf, jobject buf)
+{
+    char *addr;
+    if (!buf) return 0;
+    addr = (*env)->GetDirectBufferAddress(env, buf);
+    if (!addr) return 0;
+    if (udf->buf) (*env)->DeleteGlobalRef(env, udf->buf);
+    udf->buf = (*env)->NewGlobalRef(env, buf);
+    udf->bufaddr = addr;
+    udf->bufsize = (*env)->GetDirectBufferCapacity(env, buf);
+    return 1;
+}
+
+static void put_jint(char *p, jint v) { memcpy(p, &v, sizeof(jint)); }
+static jint get_jint(const char *p) { jint v; memcpy(&v, p, sizeof(jint)); return v; }
+static void put_jlong(char *p, jlong v) { memcpy(p, &v, sizeof(jlong)); }
+static jlong get_jlong(const char *p) { jlong v; memcpy(&v, p, sizeof(jlong)); return v; }
+
+void xScalar(sqlite3_context *context, int args, sqlite3_value** value)
+{
+    struct UDFData *udf = (struct UDFData*)sqlite3_user_data(context);
+    JNIEnv *env = udf_env(udf);
+    sqlite3_int64 size = (sqlite3_int64)UDF_SLOT * (args + 1);
+    jlong offset = size;
+    jobject buf;
+    char *p;
+    jint length;
+    int i, failed;
+
+    for (i = 0; i < args; i++) {
+        switch (sqlite3_value_type(value[i])) {
+            case SQLITE_TEXT:
+                sqlite3_value_text(value[i]);  // converts to UTF-8 before sizing
+                // fall through
+            case SQLITE_BLOB:
+                size += sqlite3_value_bytes(value[i]);
+        }
+    }
+    if (size > 0x7fffffff) { sqlite3_result_error_toobig(context); return; }
+    if (size > udf->bufsize) {
+        buf = (*env)->CallObjectMethod(env, udf->func, scalar_reserve, (jint)size);
+        if ((*env)->ExceptionCheck(env)) { xFunc_error(context, env); return; }
+        if (!udf_setbuf(env, udf, buf)) { sqlite3_result_error_nomem(context); return; }
+    }
+
+    for (i = 0; i < args; i++) {
+        int type = sqlite3_value_type(value[i]);
+        const void *data = 0;
+        p = udf->bufaddr + UDF_SLOT * (i + 1);
+        length = 0;
+        switch (type) {
+            case SQLITE_INTEGER:
+                put_jlong(p + 8, sqlite3_value_int64(value[i]));
+                break;
+            case SQLITE_FLOAT: {
+                jdouble d = sqlite3_value_double(value[i]);
+                memcpy(p + 8, &d, sizeof(jdouble));
+                break;
+            }
+            case SQLITE_TEXT:
+            case SQLITE_BLOB:
+                data = type == SQLITE_TEXT ? (const void *)sqlite3_value_text(value[i])
+                                           : sqlite3_value_blob(value[i]);
+                length = sqlite3_value_bytes(value[i]);
+                if (length > 0) memcpy(udf->bufaddr + offset, data, length);
+                put_jlong(p + 8, offset);
+                offset += length;
+                break;
+        }
+        put_jint(p, type);
+        put_jint(p + 4, length);
+    }
+
+    // the result is NULL unless set, its data going after the arguments
+    put_jint(udf->bufaddr, SQLITE_NULL);
+    put_jint(udf->bufaddr + 4, 0);
+    put_jlong(udf->bufaddr + 8, offset);
+
+    // the arguments stay readable through value_*() for SQLite to convert them
+    set_call(env, udf->func, context, args, value);
+    buf = (*env)->CallObjectMethod(env, udf->func, scalar_call, (jint)args);
+    failed = (*env)->ExceptionCheck(env);
+    if (failed) xFunc_error(context, env);
+    set_call(env, udf->func, 0, 0, 0);
+    if (failed) return;
+    if (buf && !udf_setbuf(env, udf, buf)) { sqlite3_result_error_nomem(context); return; }
+    if (buf) (*env)->DeleteLocalRef(env, buf);
+
+    p = udf->bufaddr;
+    length = get_jint(p + 4);
+    switch (get_jint(p)) {
+        case SQLITE_INTEGER:
+            sqlite3_result_int64(context, get_jlong(p + 8));
+            break;
+        case SQLITE_FLOAT: {
+            jdouble d;
+            memcpy(&d, p + 8, sizeof(jdouble));
+            sqlite3_result_double(context, d);
+            break;
+        }
+        case SQLITE_TEXT:
+            sqlite3_result_text(context, p + get_jlong(p + 8), length, SQLITE_TRANSIENT);
+            break;
+        case SQLITE_BLOB:
+            sqlite3_result_blob(context, p + get_jlong(p + 8), length, SQLITE_TRANSIENT);
+            break;
+        case UDF_ERROR:
+            sqlite3_result_error(context, p + get_jlong(p + 8), length);
+            break;
+        default:
+            sqlite3_result_null(context);
+    }
+}
+
+
+/* Function.BatchAggregate calls: the arguments of the rows of each group
+ * are buffered in its aggregate context, argument by argument, then copied
+ * into the arrays of the Function.Rows of the function and passed to the
+ * clone of the group with a single call per batch. */
+
+struct AggGroup {
+    jobject func;      // clone of the function for the group
+    jint args;         // arguments of the buffered rows
+    jint count;        // buffered rows
+    jint capacity;     // rows the buffers have room for
+    jlong *longs;      // capacity values per argument
+    jdouble *doubles;
+    jbyte *types;
+};
+
+static jmethodID batch_step = 0;
+static jmethodID batch_clone = 0;
+static jmethodID rows_reserve = 0;
+static jfieldID rows_longs = 0;
+static jfieldID rows_doubles = 0;
+static jfieldID rows_types = 0;
+static jmethodID batch_final = 0;
+
+/* Passes the buffered rows of a group to Java. Returns 0 if an error has
+ * been set on context. */
+static int batch_flush(JNIEnv *env, sqlite3_context *context, struct UDFData *udf, struct AggGroup *g)
+{
+    jobjectArray longs, doubles, types;
+    jobject array;
+    jint count = g->count;
+    int i;
+
+    g->count = 0;
+    if (!count) return 1;
+
+    // Function.Rows.reserve() keeps the arrays for the same number of arguments
+    if (udf->rowsargs != g->args) {
+        (*env)->CallVoidMethod(env, udf->rows, rows_reserve, g->args);
+        if ((*env)->ExceptionCheck(env)) { xFunc_error(context, env); return 0; }
+        udf->rowsargs = g->args;
+    }
+    longs = (*env)->GetObjectField(env, udf->rows, rows_longs);
+    doubles = (*env)->GetObjectField(env, udf->rows, rows_doubles);
+    types = (*env)->GetObjectField(env, udf->rows, rows_types);
+    for (i = 0; i < g->args; i++) {
+        array = (*env)->GetObjectArrayElement(env, longs, i);
+        (*env)->SetLongArrayRegion(env, array, 0, count, g->longs + i * g->capacity);
+        (*env)->DeleteLocalRef(env, array);
+        array = (*env)->GetObjectArrayElement(env, doubles, i);
+        (*env)->SetDoubleArrayRegion(env, array, 0, count, g->doubles + i * g->capacity);
+        (*env)->DeleteLocalRef(env, array);
+        array = (*env)->GetObjectArrayElement(env, types, i);
+        (*env)->SetByteArrayRegion(env, array, 0, count, g->types + i * g->capacity);
+        (*env)->DeleteLocalRef(env, array);
+    }
+    (*env)->DeleteLocalRef(env, longs);
+    (*env)->DeleteLocalRef(env, doubles);
+    (*env)->DeleteLocalRef(env, types);
+
+    (*env)->CallVoidMethod(env, g->func, batch_step, count);
+    if ((*env)->ExceptionCheck(env)) { xFunc_error(context, env); return 0; }
+    return 1;
+}
+
+/* Makes room for one more row of args arguments, growing the buffers of the
+ * group from 16 rows up to the batch size so that small groups stay small.
+ * Returns 0 if out of memory. */
+static int batch_reserve(struct AggGroup *g, jint args, jint batchsize)
+{
+    jint capacity;
+    void *data;
+    int i;
+
+    if (g->args == args && g->count < g->capacity) return 1;
+    capacity = g->capacity && g->args == args ? g->capacity * 2 : 16;
+    if (capacity > batchsize) capacity = batchsize;
+
+    data = malloc((size_t)capacity * (args ? args : 1)
+            * (sizeof(jlong) + sizeof(jdouble) + sizeof(jbyte)));
+    if (!data) return 0;
+    for (i = 0; i < args && g->count; i++) {
+        memcpy((jlong *)data + i * capacity, g->longs + i * g->capacity, g->count * sizeof(jlong));
+        memcpy((jdouble *)((jlong *)data + capacity * args) + i * capacity,
+                g->doubles + i * g->capacity, g->count * sizeof(jdouble));
+        memcpy((jbyte *)((jdouble *)((jlong *)data + capacity * args) + capacity * args) + i * capacity,
+                g->types + i * g->capacity, g->count);
+    }
+    free(g->longs);
+    g->longs = data;
+    g->doubles = (jdouble *)(g->longs + capacity * args);
+    g->types = (jbyte *)(g->doubles + capacity * args);
+    g->capacity = capacity;
+    g->args = args;
+    return 1;
+}
+
+void xBatchStep(sqlite3_context *context, int args, sqlite3_value** value)
+{
+    struct UDFData *udf = (struct UDFData*)sqlite3_user_data(context);
+    JNIEnv *env = udf_env(udf);
+    struct AggGroup *g = sqlite3_aggregate_context(context, sizeof(struct AggGroup));
+    jint row;
+    int i;
+
+    if (!g) { sqlite3_result_error_nomem(context); return; }
+    if (!g->func) {
+        jobject func = (*env)->CallObjectMethod(env, udf->func, batch_clone);
+        if ((*env)->ExceptionCheck(env)) { xFunc_error(context, env); return; }
+        g->func = (*env)->NewGlobalRef(env, func);
+        (*env)->DeleteLocalRef(env, func);
+    }
+
+    // a batch holds rows of the same number of arguments
+    if (g->count && (g->args != args || g->count == udf->batchsize)) {
+        if (!batch_flush(env, context, udf, g)) return;
+    }
+    if (!batch_reserve(g, args, udf->batchsize)) { sqlite3_result_error_nomem(context); return; }
+
+    row = g->count++;
+    for (i = 0; i < args; i++) {
+        g->types[i * g->capacity + row] = (jbyte)sqlite3_value_type(value[i]);
+        g->longs[i * g->capacity + row] = sqlite3_value_int64(value[i]);
+        g->doubles[i * g->capacity + row] = sqlite3_value_double(value[i]);
+    }
+}
+
+void xBatchFinal(sqlite3_context *context)
+{
+    struct UDFData *udf = (struct UDFData*)sqlite3_user_data(context);
+    JNIEnv *env = udf_env(udf);
+    struct AggGroup *g = sqlite3_aggregate_context(context, sizeof(struct AggGroup));
+
+    if (!g) { sqlite3_result_error_nomem(context); return; }
+
+    // a group without rows is finished by the registered instance, like xFinal()
+    if (!g->func || batch_flush(env, context, udf, g)) {
+        xCall(context, 0, 0, g->func, batch_final);
+    }
+
+    (*env)->DeleteGlobalRef(env, g->func);
+    free(g->longs);
+}
+
+
 // INITIALISATION ///////////////////////////////////////////////////
 
 JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *reserved)
@@ -490,6 +829,14 @@ JNIEXPORT jstring JNICALL Java_org_sqlite_core_NativeDB_libversion(
     return (*env)->NewStringUTF(env, sqlite3_libversion());
 }
 
+// Version of the entry points of this library, see NativeDB.extended(). The
+// libraries built before they were added do not export this function.
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_api_1version(
+        JNIEnv *env, jclass cls)
+{
+    return 1;
+}
+
 JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_changes(
         JNIEnv *env, jobject this)
 {
@@ -649,6 +996,18 @@ JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_bind_1text(
     return rc;
 }
 
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_bind_1text_1utf8(
+        JNIEnv *env, jobject this, jlong stmt, jint pos, jbyteArray v, jint length)
+{
+    jint rc;
+    void *a;
+    a = (*env)->GetPrimitiveArrayCritical(env, v, 0);
+    if (!a) { throwex_outofmemory(env); return 0; }
+    rc = sqlite3_bind_text(toref(stmt), pos, a, length, SQLITE_TRANSIENT);
+    (*env)->ReleasePrimitiveArrayCritical(env, v, a, JNI_ABORT);
+    return rc;
+}
+
 JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_bind_1blob(
         JNIEnv *env, jobject this, jlong stmt, jint pos, jbyteArray v)
 {
@@ -784,13 +1143,10 @@ JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_value_1type(
 }
 
 
-JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_create_1function(
-        JNIEnv *env, jobject this, jstring name, jobject func)
+/* Allocates the UDFData of func and adds it to the list of the database.
+ * If 0 is returned, an exception has been thrown. */
+static struct UDFData * udf_new(JNIEnv *env, jobject this, jobject func)
 {
-    jint ret = 0;
-    const char *strname = 0;
-    int isAgg = 0;
-
     static jfieldID udfdatalist = 0;
     struct UDFData *udf = malloc(sizeof(struct UDFData));
 
@@ -799,14 +1155,41 @@ JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_create_1function(
     if (!udfdatalist)
         udfdatalist = (*env)->GetFieldID(env, dbclass, "udfdatalist", "J");
 
-    isAgg = (*env)->IsInstanceOf(env, func, aclass);
     udf->func = (*env)->NewGlobalRef(env, func);
+    udf->buf = 0;
+    udf->bufaddr = 0;
+    udf->bufsize = 0;
+    udf->rows = 0;
+    udf->batchsize = 0;
+    udf->rowsargs = -1;
     (*env)->GetJavaVM(env, &udf->vm);
 
     // add new function def to linked list
     udf->next = toref((*env)->GetLongField(env, this, udfdatalist));
     (*env)->SetLongField(env, this, udfdatalist, fromref(udf));
 
+    return udf;
+}
+
+/* Text encoding and flags of a function registered with the given
+ * Function.FLAG_* flags: UTF-16 unless FLAG_UTF8, which is SQLITE_UTF8, is
+ * set. Older SQLite versions ignore the flags they do not know. */
+static int function_textrep(jint flags)
+{
+    return (flags & SQLITE_UTF8 ? SQLITE_UTF8 : SQLITE_UTF16) | (flags & ~SQLITE_UTF8);
+}
+
+static jint create_function(JNIEnv *env, jobject this, jstring name, jobject func, int textrep)
+{
+    jint ret = 0;
+    const char *strname = 0;
+    int isAgg = 0;
+    struct UDFData *udf = udf_new(env, this, func);
+
+    if (!udf) return 0;
+
+    isAgg = (*env)->IsInstanceOf(env, func, aclass);
+
     strname = (*env)->GetStringUTFChars(env, name, 0);
     if (!strname) { throwex_outofmemory(env); return 0; }
 
@@ -814,7 +1197,7 @@ JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_create_1function(
             gethandle(env, this),
             strname,       // function name
             -1,            // number of args
-            SQLITE_UTF16,  // preferred chars
+            textrep,       // preferred chars and flags
             udf,
             isAgg ? 0 :&xFunc,
             isAgg ? &xStep : 0,
@@ -826,6 +1209,138 @@ JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_create_1function(
     return ret;
 }
 
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_create_1function(
+        JNIEnv *env, jobject this, jstring name, jobject func)
+{
+    return create_function(env, this, name, func, SQLITE_UTF16);
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_create_1function_1flags(
+        JNIEnv *env, jobject this, jstring name, jobject func, jint flags)
+{
+    return create_function(env, this, name, func, function_textrep(flags));
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_create_1scalar(
+        JNIEnv *env, jobject this, jstring name, jobject func, jint flags, jobject buf)
+{
+    jint ret = 0;
+    const char *strname = 0;
+    struct UDFData *udf;
+
+    if (!scalar_call || !scalar_reserve) {
+        jclass sclass = (*env)->FindClass(env, "org/sqlite/Function$Scalar");
+        if (!sclass) return 0;
+        scalar_call = (*env)->GetMethodID(
+                env, sclass, "call", "(I)Ljava/nio/ByteBuffer;");
+        if (!scalar_call) return 0;
+        scalar_reserve = (*env)->GetMethodID(
+                env, sclass, "reserve", "(I)Ljava/nio/ByteBuffer;");
+        if (!scalar_reserve) return 0;
+    }
+
+    udf = udf_new(env, this, func);
+    if (!udf) return 0;
+    if (!udf_setbuf(env, udf, buf)) {
+        throwex_msg(env, "argument buffer is not a direct buffer");
+        return 0;
+    }
+
+    strname = (*env)->GetStringUTFChars(env, name, 0);
+    if (!strname) { throwex_outofmemory(env); return 0; }
+
+    // UTF-8 text is copied into the buffer as SQLite stores it
+    ret = sqlite3_create_function(
+            gethandle(env, this), strname, -1, SQLITE_UTF8 | flags, udf, &xScalar, 0, 0);
+
+    (*env)->ReleaseStringUTFChars(env, name, strname);
+
+    return ret;
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_create_1window_1function(
+        JNIEnv *env, jobject this, jstring name, jobject func, jint flags)
+{
+#if SQLITE_VERSION_NUMBER >= 3025000
+    jint ret = 0;
+    const char *strname = 0;
+    struct UDFData *udf;
+
+    if (!window_value || !window_inverse) {
+        jclass wclass = (*env)->FindClass(env, "org/sqlite/Function$Window");
+        if (!wclass) return 0;
+        window_value = (*env)->GetMethodID(env, wclass, "xValue", "()V");
+        window_inverse = (*env)->GetMethodID(env, wclass, "xInverse", "()V");
+        if (!window_value || !window_inverse) return 0;
+    }
+
+    udf = udf_new(env, this, func);
+    if (!udf) return 0;
+
+    strname = (*env)->GetStringUTFChars(env, name, 0);
+    if (!strname) { throwex_outofmemory(env); return 0; }
+
+    ret = sqlite3_create_window_function(
+            gethandle(env, this),
+            strname,       // function name
+            -1,            // number of args
+            function_textrep(flags),
+            udf,
+            &xStep,
+            &xWindowFinal,
+            &xValue,
+            &xInverse,
+            0
+    );
+
+    (*env)->ReleaseStringUTFChars(env, name, strname);
+
+    return ret;
+#else
+    // SQLite without window functions, see DB.WINDOW_UNSUPPORTED
+    return -1;
+#endif
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_create_1batch_1aggregate(
+        JNIEnv *env, jobject this, jstring name, jobject func, jint flags, jobject rows, jint batchsize)
+{
+    jint ret = 0;
+    const char *strname = 0;
+    struct UDFData *udf;
+
+    if (!batch_step) {
+        jclass bclass = (*env)->FindClass(env, "org/sqlite/Function$BatchAggregate");
+        jclass rclass = (*env)->FindClass(env, "org/sqlite/Function$Rows");
+        if (!bclass || !rclass) return 0;
+        batch_clone = (*env)->GetMethodID(env, aclass, "clone", "()Ljava/lang/Object;");
+        batch_final = (*env)->GetMethodID(env, aclass, "xFinal", "()V");
+        rows_reserve = (*env)->GetMethodID(env, rclass, "reserve", "(I)V");
+        rows_longs = (*env)->GetFieldID(env, rclass, "longs", "[[J");
+        rows_doubles = (*env)->GetFieldID(env, rclass, "doubles", "[[D");
+        rows_types = (*env)->GetFieldID(env, rclass, "types", "[[B");
+        if (!batch_clone || !batch_final || !rows_reserve
+                || !rows_longs || !rows_doubles || !rows_types) return 0;
+        batch_step = (*env)->GetMethodID(env, bclass, "stepBatch", "(I)V");
+        if (!batch_step) return 0;
+    }
+
+    udf = udf_new(env, this, func);
+    if (!udf) return 0;
+    udf->rows = (*env)->NewGlobalRef(env, rows);
+    udf->batchsize = batchsize;
+
+    strname = (*env)->GetStringUTFChars(env, name, 0);
+    if (!strname) { throwex_outofmemory(env); return 0; }
+
+    ret = sqlite3_create_function(
+            gethandle(env, this), strname, -1, SQLITE_UTF8 | flags, udf, 0, &xBatchStep, &xBatchFinal);
+
+    (*env)->ReleaseStringUTFChars(env, name, strname);
+
+    return ret;
+}
+
 JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_destroy_1function(
         JNIEnv *env, jobject this, jstring name)
 {
@@ -855,6 +1370,8 @@ JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_free_1functions(
     while (udf) {
         udfpass = udf->next;
         (*env)->DeleteGlobalRef(env, udf->func);
+        if (udf->buf) (*env)->DeleteGlobalRef(env, udf->buf);
+        if (udf->rows) (*env)->DeleteGlobalRef(env, udf->rows);
         free(udf);
         udf = udfpass;
     }
@@ -919,8 +1436,616 @@ JNIEXPORT jobjectArray JNICALL Java_org_sqlite_core_NativeDB_column_1metadata(
     return array;
 }
 
+/* Layout of a block of rows copied by _row_fetch, mirrored by CoreResultSet:
+ *
+ *   block    jint number of rows, jint 1 if the statement is left on a row
+ *            that did not fit, followed by the rows
+ *   row      jint row size in bytes, jint column count, followed by
+ *   per col  jint type, jint data offset, jint data length, jint unused,
+ *            jlong value of an INTEGER, jdouble value of a REAL
+ *   data     text (UTF-8) and blob bytes, addressed from the start of the row
+ *
+ * Only the value of the storage class of each column is copied; CoreResultSet
+ * has SQLite convert it when another type is asked for.
+ *
+ * The size of a row that does not fit is still written, so the caller can
+ * retry with a large enough buffer. */
+#define BLOCK_HEADER_SIZE 8
+#define ROW_HEADER_SIZE 8
+#define ROW_COLUMN_SIZE 32
+
+/* Copies the current row of dbstmt into buf. Returns the size of the row,
+ * which is larger than capacity if only part of it has been copied. */
+static jlong copy_row(sqlite3_stmt *dbstmt, char *buf, jlong capacity)
+{
+    int i, type, length, colCount;
+    const void *data;
+    char *slot;
+    jlong size;
+    sqlite3_int64 lval;
+    double dval;
+
+    colCount = sqlite3_column_count(dbstmt);
+    size = ROW_HEADER_SIZE + (jlong) colCount * ROW_COLUMN_SIZE;
+    if (size > capacity) goto done;
+
+    for (i = 0; i < colCount; i++) {
+        slot = buf + ROW_HEADER_SIZE + i * ROW_COLUMN_SIZE;
+        type = sqlite3_column_type(dbstmt, i);
+        data = 0;
+        length = 0;
+
+        lval = 0;
+        dval = 0;
+
+        switch (type) {
+            case SQLITE_INTEGER:
+                lval = sqlite3_column_int64(dbstmt, i);
+                break;
+            case SQLITE_FLOAT:
+                dval = sqlite3_column_double(dbstmt, i);
+                break;
+            case SQLITE_TEXT:
+                data = sqlite3_column_text(dbstmt, i);
+                length = sqlite3_column_bytes(dbstmt, i);
+                break;
+            case SQLITE_BLOB:
+                data = sqlite3_column_blob(dbstmt, i);
+                length = sqlite3_column_bytes(dbstmt, i);
+                break;
+        }
+
+        put_jint(slot, type);
+        put_jint(slot + 4, (jint) size);
+        put_jint(slot + 8, length);
+        put_jint(slot + 12, 0);
+        memcpy(slot + 16, &lval, sizeof(jlong));
+        memcpy(slot + 24, &dval, sizeof(jdouble));
+
+        if (data && size + length <= capacity)
+            memcpy(buf + size, data, length);
+        size += length;
+    }
+
+    // keep rows 8 byte aligned
+    size = (size + 7) & ~((jlong) 7);
+
+done:
+    if (size <= 0x7fffffff && capacity >= ROW_HEADER_SIZE) {
+        put_jint(buf, (jint) size);
+        put_jint(buf + 4, colCount);
+    }
+    return size;
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_row_1fetch(
+        JNIEnv *env, jobject this, jlong stmt, jobject buffer, jint maxRows, jboolean step)
+{
+    sqlite3_stmt *dbstmt = toref(stmt);
+    char *buf;
+    jlong capacity, offset, size;
+    jint rows = 0, pending = 0, rc = SQLITE_ROW;
+
+    buf = (*env)->GetDirectBufferAddress(env, buffer);
+    capacity = (*env)->GetDirectBufferCapacity(env, buffer);
+    if (!buf || capacity < BLOCK_HEADER_SIZE + ROW_HEADER_SIZE) {
+        throwex_msg(env, "row buffer is not a direct buffer");
+        return 0;
+    }
+
+    offset = BLOCK_HEADER_SIZE;
+    while (rows < maxRows || rows == 0) {
+        if (step) {
+            rc = sqlite3_step(dbstmt);
+            if (rc != SQLITE_ROW) break;
+        }
+        step = 1;
+
+        size = copy_row(dbstmt, buf + offset, capacity - offset);
+        if (size > 0x7fffffff) {
+            throwex_msg(env, "row too large");
+            return 0;
+        }
+        if (size > capacity - offset) {
+            // leave the row current, it is copied first by the next call
+            pending = 1;
+            break;
+        }
+        offset += size;
+        rows++;
+    }
+
+    put_jint(buf, rows);
+    put_jint(buf + 4, pending);
+    return rc;
+}
+
+/* Layout of a block of parameter rows for _batch_execute, packed by
+ * ParameterBuffer.pack():
+ *
+ *   block    jint number of rows executed, jint result code, both written
+ *            back here, followed by the rows
+ *   value    jint type, jint data length, jlong or jdouble value, followed
+ *            by the text (UTF-8) or blob bytes padded to 8 bytes */
+#define VALUE_HEADER_SIZE 16
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_batch_1execute(
+        JNIEnv *env, jobject this, jlong stmt, jobject buffer, jint rows, jintArray changes, jint offset)
+{
+    sqlite3 *db = gethandle(env, this);
+    sqlite3_stmt *dbstmt = toref(stmt);
+    char *buf, *p, *end;
+    jint i, count, type, length, rc = SQLITE_DONE;
+    int j, params;
+    sqlite3_int64 lval;
+    double dval;
+
+    buf = (*env)->GetDirectBufferAddress(env, buffer);
+    end = buf + (*env)->GetDirectBufferCapacity(env, buffer);
+    if (!buf || end - buf < BLOCK_HEADER_SIZE) {
+        throwex_msg(env, "parameter buffer is not a direct buffer");
+        return 0;
+    }
+
+    params = sqlite3_bind_parameter_count(dbstmt);
+    p = buf + BLOCK_HEADER_SIZE;
+    for (i = 0; i < rows; i++) {
+        sqlite3_reset(dbstmt);
+        for (j = 1; j <= params; j++) {
+            if (end - p < VALUE_HEADER_SIZE) {
+                throwex_msg(env, "parameter buffer overflow");
+                return 0;
+            }
+            type = get_jint(p);
+            length = get_jint(p + 4);
+            if (length < 0 || end - p - VALUE_HEADER_SIZE < length) {
+                throwex_msg(env, "parameter buffer overflow");
+                return 0;
+            }
+
+            switch (type) {
+                case SQLITE_INTEGER:
+                    memcpy(&lval, p + 8, sizeof(lval));
+                    rc = sqlite3_bind_int64(dbstmt, j, lval);
+                    break;
+                case SQLITE_FLOAT:
+                    memcpy(&dval, p + 8, sizeof(dval));
+                    rc = sqlite3_bind_double(dbstmt, j, dval);
+                    break;
+                case SQLITE_TEXT:
+                    rc = sqlite3_bind_text(dbstmt, j, p + VALUE_HEADER_SIZE, length, SQLITE_TRANSIENT);
+                    break;
+                case SQLITE_BLOB:
+                    rc = sqlite3_bind_blob(dbstmt, j, p + VALUE_HEADER_SIZE, length, SQLITE_TRANSIENT);
+                    break;
+                default:
+                    rc = sqlite3_bind_null(dbstmt, j);
+            }
+            p += VALUE_HEADER_SIZE + ((length + 7) & ~7);
+            if (rc != SQLITE_OK) goto done;
+        }
+
+        rc = sqlite3_step(dbstmt);
+        if (rc != SQLITE_DONE) {
+            sqlite3_reset(dbstmt);
+            goto done;
+        }
+
+        count = sqlite3_changes(db);
+        (*env)->SetIntArrayRegion(env, changes, offset + i, 1, &count);
+    }
+
+done:
+    put_jint(buf, i);
+    put_jint(buf + 4, rc);
+    return rc;
+}
+
+// Incremental BLOB I/O ////////////////////////////////////////////
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_bind_1zeroblob(
+        JNIEnv *env, jobject this, jlong stmt, jint pos, jint length)
+{
+    return sqlite3_bind_zeroblob(toref(stmt), pos, length);
+}
+
+JNIEXPORT jlong JNICALL Java_org_sqlite_core_NativeDB_last_1insert_1rowid(
+        JNIEnv *env, jobject this)
+{
+    return sqlite3_last_insert_rowid(gethandle(env, this));
+}
+
+
+JNIEXPORT jlong JNICALL Java_org_sqlite_core_NativeDB_blob_1open(
+        JNIEnv *env, jobject this, jstring database, jstring table, jstring column,
+        jlong rowid, jboolean write)
+{
+    sqlite3 *db = gethandle(env, this);
+    sqlite3_blob *blob = 0;
+    const char *dbname, *tabname, *colname;
+    int rc;
+
+    if (!db) { throwex_errorcode(env, this, SQLITE_MISUSE); return 0; }
+
+    dbname = (*env)->GetStringUTFChars(env, database, 0);
+    tabname = (*env)->GetStringUTFChars(env, table, 0);
+    colname = (*env)->GetStringUTFChars(env, column, 0);
+    if (!dbname || !tabname || !colname) {
+        if (dbname) (*env)->ReleaseStringUTFChars(env, database, dbname);
+        if (tabname) (*env)->ReleaseStringUTFChars(env, table, tabname);
+        if (colname) (*env)->ReleaseStringUTFChars(env, column, colname);
+        throwex_outofmemory(env);
+        return 0;
+    }
+
+    rc = sqlite3_blob_open(db, dbname, tabname, colname, rowid, write ? 1 : 0, &blob);
+
+    (*env)->ReleaseStringUTFChars(env, database, dbname);
+    (*env)->ReleaseStringUTFChars(env, table, tabname);
+    (*env)->ReleaseStringUTFChars(env, column, colname);
+
+    if (rc != SQLITE_OK) {
+        throwex_errorcode(env, this, rc);
+        return 0;
+    }
+    return fromref(blob);
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_blob_1close(
+        JNIEnv *env, jobject this, jlong blob)
+{
+    return sqlite3_blob_close(toref(blob));
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_blob_1bytes(
+        JNIEnv *env, jobject this, jlong blob)
+{
+    return sqlite3_blob_bytes(toref(blob));
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_blob_1read(
+        JNIEnv *env, jobject this, jlong blob, jobject buf, jint length, jint offset)
+{
+    void *data = (*env)->GetDirectBufferAddress(env, buf);
+    if (!data || length > (*env)->GetDirectBufferCapacity(env, buf)) {
+        return SQLITE_MISUSE;
+    }
+    return sqlite3_blob_read(toref(blob), data, length, offset);
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_blob_1write(
+        JNIEnv *env, jobject this, jlong blob, jobject buf, jint length, jint offset)
+{
+    void *data = (*env)->GetDirectBufferAddress(env, buf);
+    if (!data || length > (*env)->GetDirectBufferCapacity(env, buf)) {
+        return SQLITE_MISUSE;
+    }
+    return sqlite3_blob_write(toref(blob), data, length, offset);
+}
+
+JNIEXPORT jobjectArray JNICALL Java_org_sqlite_core_NativeDB_column_1origin(
+        JNIEnv *env, jobject this, jlong stmt, jint col)
+{
+    const char *names[3];
+    jobjectArray origin;
+    jclass sclass;
+    int i;
+
+    names[0] = sqlite3_column_database_name(toref(stmt), col);
+    names[1] = sqlite3_column_table_name(toref(stmt), col);
+    names[2] = sqlite3_column_origin_name(toref(stmt), col);
+    if (!names[0] || !names[1] || !names[2]) {
+        return NULL;
+    }
+
+    sclass = (*env)->FindClass(env, "java/lang/String");
+    if (!sclass) return NULL;
+    origin = (*env)->NewObjectArray(env, 3, sclass, NULL);
+    if (!origin) { throwex_outofmemory(env); return NULL; }
+    for (i = 0; i < 3; i++) {
+        (*env)->SetObjectArrayElement(env, origin, i, (*env)->NewStringUTF(env, names[i]));
+    }
+    return origin;
+}
+
+/*
+ * Finds a column of the result holding the rowid of the table a column comes from.
+ * Selecting "rowid" resolves to the INTEGER PRIMARY KEY of a table if it has one, so a
+ * probe statement tells which origin name the rowid has. Whether both columns read the
+ * same row is up to the caller.
+ */
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_column_1rowid(
+        JNIEnv *env, jobject this, jlong stmt, jint col)
+{
+    sqlite3_stmt *dbstmt = toref(stmt);
+    sqlite3_stmt *probe = 0;
+    const char *dbname, *tabname, *rowidname;
+    char *sql;
+    int i, count, found = -1;
+
+    dbname = sqlite3_column_database_name(dbstmt, col);
+    tabname = sqlite3_column_table_name(dbstmt, col);
+    if (!dbname || !tabname) {
+        return -1;
+    }
+
+    sql = sqlite3_mprintf("SELECT rowid FROM \"%w\".\"%w\"", dbname, tabname);
+    if (!sql) { throwex_outofmemory(env); return -1; }
+    if (sqlite3_prepare_v2(gethandle(env, this), sql, -1, &probe, 0) == SQLITE_OK) {
+        rowidname = sqlite3_column_origin_name(probe, 0);
+        count = sqlite3_column_count(dbstmt);
+        for (i = 0; rowidname && i < count; i++) {
+            const char *d = sqlite3_column_database_name(dbstmt, i);
+            const char *t = sqlite3_column_table_name(dbstmt, i);
+            const char *o = sqlite3_column_origin_name(dbstmt, i);
+            if (d && t && o && !strcmp(d, dbname) && !strcmp(t, tabname) && !strcmp(o, rowidname)) {
+                found = i;
+                break;
+            }
+        }
+    }
+    sqlite3_finalize(probe);
+    sqlite3_free(sql);
+    return found;
+}
+
 // backup function
 
+// Status counters //////////////////////////////////////////////////
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_stmt_1status(
+        JNIEnv *env, jobject this, jlong stmt, jint op, jboolean reset)
+{
+    return sqlite3_stmt_status(toref(stmt), op, reset ? 1 : 0);
+}
+
+// values receives the current and highwater values
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_db_1status(
+        JNIEnv *env, jobject this, jint op, jboolean reset, jlongArray values)
+{
+    int current = 0;
+    int highwater = 0;
+    jlong result[2];
+    int rc = sqlite3_db_status(gethandle(env, this), op, &current, &highwater, reset ? 1 : 0);
+
+    result[0] = current;
+    result[1] = highwater;
+    (*env)->SetLongArrayRegion(env, values, 0, 2, result);
+    return rc;
+}
+
+// values receives the current and highwater values
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_status(
+        JNIEnv *env, jobject this, jint op, jboolean reset, jlongArray values)
+{
+    jlong result[2];
+    int rc;
+#if SQLITE_VERSION_NUMBER >= 3010000
+    sqlite3_int64 current = 0;
+    sqlite3_int64 highwater = 0;
+    rc = sqlite3_status64(op, &current, &highwater, reset ? 1 : 0);
+#else
+    int current = 0;
+    int highwater = 0;
+    rc = sqlite3_status(op, &current, &highwater, reset ? 1 : 0);
+#endif
+
+    result[0] = current;
+    result[1] = highwater;
+    (*env)->SetLongArrayRegion(env, values, 0, 2, result);
+    return rc;
+}
+
+// Query timeouts ///////////////////////////////////////////////////
+
+// deadline of the statement being run, in the milliseconds of the
+// clock of the default VFS
+struct ProgressDeadline {
+    sqlite3_int64 deadline;
+    int expired;
+};
+
+static int current_time(sqlite3_int64 *now)
+{
+    sqlite3_vfs *vfs = sqlite3_vfs_find(0);
+    double days;
+
+    if (!vfs) return SQLITE_ERROR;
+    if (vfs->iVersion >= 2 && vfs->xCurrentTimeInt64)
+        return vfs->xCurrentTimeInt64(vfs, now);
+    if (vfs->xCurrentTime(vfs, &days) != SQLITE_OK) return SQLITE_ERROR;
+    *now = (sqlite3_int64)(days * 86400000.0);
+    return SQLITE_OK;
+}
+
+// progress handler, interrupts the statement once the deadline has passed
+static int progress_deadline(void *arg)
+{
+    struct ProgressDeadline *d = (struct ProgressDeadline *)arg;
+    sqlite3_int64 now;
+
+    if (current_time(&now) == SQLITE_OK && now >= d->deadline)
+        d->expired = 1;
+    return d->expired;
+}
+
+// installs the progress handler with a deadline millis from now, checked
+// every interval virtual machine instructions; data is the deadline
+// returned by the previous call, or 0 to allocate one
+JNIEXPORT jlong JNICALL Java_org_sqlite_core_NativeDB_progress_1deadline(
+        JNIEnv *env, jobject this, jlong data, jlong millis, jint interval)
+{
+    struct ProgressDeadline *d = (struct ProgressDeadline *)toref(data);
+    sqlite3_int64 now;
+
+    if (!d) {
+        d = (struct ProgressDeadline *)malloc(sizeof(struct ProgressDeadline));
+        if (!d) { throwex_outofmemory(env); return 0; }
+    }
+    d->expired = 0;
+    if (current_time(&now) != SQLITE_OK) {
+        // without a clock the deadline cannot be enforced
+        sqlite3_progress_handler(gethandle(env, this), 0, 0, 0);
+        return fromref(d);
+    }
+    d->deadline = now + millis;
+    sqlite3_progress_handler(gethandle(env, this), interval > 0 ? interval : 1,
+            &progress_deadline, d);
+    return fromref(d);
+}
+
+// removes the progress handler, returns true if it interrupted a statement
+JNIEXPORT jboolean JNICALL Java_org_sqlite_core_NativeDB_progress_1clear(
+        JNIEnv *env, jobject this, jlong data)
+{
+    struct ProgressDeadline *d = (struct ProgressDeadline *)toref(data);
+
+    sqlite3_progress_handler(gethandle(env, this), 0, 0, 0);
+    return d && d->expired ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_free_1progress(
+        JNIEnv *env, jobject this, jlong data)
+{
+    free(toref(data));
+}
+
+// Busy handler /////////////////////////////////////////////////////
+
+// strategies, see DB.BUSY_TIMEOUT and DB.BUSY_BACKOFF
+#define BUSY_TIMEOUT 0
+#define BUSY_BACKOFF 1
+
+struct BusyHandler {
+    int strategy;
+    int timeout;            // longest wait for a lock, in milliseconds
+    int spins;              // calls that only yield before the first sleep
+    int initial;            // first sleep of the backoff, in milliseconds
+    int maxSleep;           // longest sleep of the backoff, in milliseconds
+    int jitter;             // randomize sleeps of the backoff
+    sqlite3_int64 waited;   // time slept for the current lock, in microseconds
+
+    // counters, see DB.busy_stats()
+    sqlite3_int64 callbacks;
+    sqlite3_int64 waits;
+    sqlite3_int64 waitedTotal;
+    sqlite3_int64 timeouts;
+};
+
+// sleeps of sqlite3_busy_timeout(), in milliseconds
+static const int busy_delays[] = { 1, 2, 5, 10, 15, 20, 25, 25, 25, 50, 50, 100 };
+#define BUSY_DELAYS (sizeof(busy_delays) / sizeof(busy_delays[0]))
+
+static int busy_handler(void *arg, int count)
+{
+    struct BusyHandler *h = (struct BusyHandler *)arg;
+    sqlite3_vfs *vfs = sqlite3_vfs_find(0);
+    sqlite3_int64 limit = (sqlite3_int64)h->timeout * 1000;
+    sqlite3_int64 delay;
+    int n;
+
+    h->callbacks++;
+    if (count == 0) {
+        h->waits++;
+        h->waited = 0;
+    }
+    if (!vfs || h->waited >= limit) {
+        h->timeouts++;
+        return 0;
+    }
+
+    if (count < h->spins) {
+        // the lock is often released within a time slice of its holder
+        vfs->xSleep(vfs, 0);
+        return 1;
+    }
+
+    n = count - h->spins;
+    if (h->strategy == BUSY_BACKOFF) {
+        delay = (sqlite3_int64)h->initial * 1000;
+        while (n-- > 0 && delay < (sqlite3_int64)h->maxSleep * 1000)
+            delay *= 2;
+        if (delay > (sqlite3_int64)h->maxSleep * 1000)
+            delay = (sqlite3_int64)h->maxSleep * 1000;
+        if (h->jitter && delay > 1) {
+            // between half and all of the delay, so that waiters do not retry together
+            unsigned int r;
+            sqlite3_randomness(sizeof(r), &r);
+            delay = delay / 2 + r % (delay - delay / 2 + 1);
+        }
+    }
+    else {
+        delay = (sqlite3_int64)busy_delays[n < (int)BUSY_DELAYS ? n : (int)BUSY_DELAYS - 1] * 1000;
+    }
+    if (delay > limit - h->waited)
+        delay = limit - h->waited;
+
+    delay = vfs->xSleep(vfs, (int)delay);
+    h->waited += delay;
+    h->waitedTotal += delay;
+    return 1;
+}
+
+// installs the busy handler, or removes all busy handlers if timeout is not
+// positive; data is the handler returned by the previous call, or 0 to
+// allocate one
+JNIEXPORT jlong JNICALL Java_org_sqlite_core_NativeDB_busy_1handler(
+        JNIEnv *env, jobject this, jlong data, jint strategy, jint timeout,
+        jint spins, jint initial, jint maxSleep, jboolean jitter)
+{
+    sqlite3 *db = gethandle(env, this);
+    struct BusyHandler *h = (struct BusyHandler *)toref(data);
+
+    if (timeout <= 0) {
+        sqlite3_busy_handler(db, 0, 0);
+        return data;
+    }
+
+    if (!h) {
+        h = (struct BusyHandler *)malloc(sizeof(struct BusyHandler));
+        if (!h) { throwex_outofmemory(env); return 0; }
+        memset(h, 0, sizeof(struct BusyHandler));
+    }
+    h->strategy = strategy;
+    h->timeout = timeout;
+    h->spins = spins;
+    h->initial = initial > 0 ? initial : 1;
+    h->maxSleep = maxSleep > h->initial ? maxSleep : h->initial;
+    h->jitter = jitter ? 1 : 0;
+    sqlite3_busy_handler(db, &busy_handler, h);
+    return fromref(h);
+}
+
+// values receives the number of callbacks, of waits for a lock, the time
+// slept in microseconds and the number of waits given up
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_busy_1stats(
+        JNIEnv *env, jobject this, jlong data, jboolean reset, jlongArray values)
+{
+    struct BusyHandler *h = (struct BusyHandler *)toref(data);
+    jlong result[4] = { 0, 0, 0, 0 };
+
+    if (h) {
+        result[0] = h->callbacks;
+        result[1] = h->waits;
+        result[2] = h->waitedTotal;
+        result[3] = h->timeouts;
+        if (reset) {
+            h->callbacks = 0;
+            h->waits = 0;
+            h->waitedTotal = 0;
+            h->timeouts = 0;
+        }
+    }
+    (*env)->SetLongArrayRegion(env, values, 0, 4, result);
+}
+
+JNIEXPORT void JNICALL Java_org_sqlite_core_NativeDB_free_1busy_1handler(
+        JNIEnv *env, jobject this, jlong data)
+{
+    free(toref(data));
+}
+
+
 void reportProgress(JNIEnv* env, jobject func, int remaining, int pageCount) {
 
   static jmethodID mth = 0;
@@ -1049,3 +2174,587 @@ JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_restore(
 #endif
 } 
 
+
+// Virtual tables ///////////////////////////////////////////////////
+
+/* A VirtualTable.Module, the client data of its sqlite3_module. */
+struct JavaModule {
+    JavaVM *vm;
+    jobject module;
+};
+
+struct JavaVTab {
+    sqlite3_vtab base;
+    JavaVM *vm;
+    jobject table;
+};
+
+/* The rows of a VirtualCursor are read from the buffer returned by its
+ * start() and fetch(), laid out as described in VirtualCursor. */
+struct JavaVCursor {
+    sqlite3_vtab_cursor base;
+    jobject cursor;
+    jobject buf;
+    char *addr;
+    char *row;       // current row
+    jint rows;       // rows left in the buffer, the current one included
+    jint last;       // true if the scan ends with the rows of the buffer
+};
+
+#define VTAB_HEADER_SIZE 8
+#define VTAB_ROW_HEADER_SIZE 16
+#define VTAB_SLOT_SIZE 16
+
+static jclass objectclass = 0, stringclass = 0, longclass = 0, doubleclass = 0;
+static jmethodID long_valueof = 0, double_valueof = 0, throwable_tostring = 0;
+static jmethodID module_connect = 0, table_schema = 0, table_bestindex = 0,
+                 table_open = 0, table_disconnect = 0, table_destroy = 0,
+                 cursor_start = 0, cursor_fetch = 0, cursor_close = 0;
+static jfieldID info_argv = 0, info_omit = 0, info_num = 0, info_str = 0,
+                info_consumed = 0, info_cost = 0, info_rows = 0;
+
+static JNIEnv * vtab_env(sqlite3_vtab *vtab)
+{
+    return vm_env(((struct JavaVTab *)vtab)->vm);
+}
+
+/* Clears the pending exception and returns its description, allocated
+ * with sqlite3_mprintf(). */
+static char * java_error(JNIEnv *env)
+{
+    jthrowable ex = (*env)->ExceptionOccurred(env);
+    jstring msg = 0;
+    const char *str = 0;
+    char *err;
+
+    (*env)->ExceptionClear(env);
+    if (ex) msg = (jstring)(*env)->CallObjectMethod(env, ex, throwable_tostring);
+    if ((*env)->ExceptionCheck(env)) { (*env)->ExceptionClear(env); msg = 0; }
+    if (msg) str = (*env)->GetStringUTFChars(env, msg, 0);
+
+    err = sqlite3_mprintf("%s", str ? str : "unknown error");
+
+    if (str) (*env)->ReleaseStringUTFChars(env, msg, str);
+    return err;
+}
+
+/* Reports the pending exception as the error of vtab. */
+static int vtab_error(JNIEnv *env, sqlite3_vtab *vtab)
+{
+    sqlite3_free(vtab->zErrMsg);
+    vtab->zErrMsg = java_error(env);
+    return SQLITE_ERROR;
+}
+
+static int vtab_release(sqlite3_vtab *base, jmethodID method);
+
+static int vtab_connect(sqlite3 *db, void *aux, int argc, const char *const *argv,
+        sqlite3_vtab **out, char **err)
+{
+    struct JavaModule *m = (struct JavaModule *)aux;
+    JNIEnv *env = vm_env(m->vm);
+    struct JavaVTab *vtab;
+    jobjectArray args;
+    jobject table;
+    jstring schema;
+    const char *sql;
+    int i, rc = SQLITE_OK;
+
+    args = (*env)->NewObjectArray(env, argc, stringclass, 0);
+    if (!args) { *err = java_error(env); return SQLITE_NOMEM; }
+    for (i = 0; i < argc; i++) {
+        jstring arg = (*env)->NewStringUTF(env, argv[i]);
+        (*env)->SetObjectArrayElement(env, args, i, arg);
+        (*env)->DeleteLocalRef(env, arg);
+    }
+
+    table = (*env)->CallObjectMethod(env, m->module, module_connect, args);
+    (*env)->DeleteLocalRef(env, args);
+    if ((*env)->ExceptionCheck(env)) { *err = java_error(env); return SQLITE_ERROR; }
+    if (!table) { *err = sqlite3_mprintf("module returned no table"); return SQLITE_ERROR; }
+
+    vtab = sqlite3_malloc(sizeof(struct JavaVTab));
+    if (!vtab) {
+        (*env)->CallVoidMethod(env, table, table_disconnect);
+        if ((*env)->ExceptionCheck(env)) (*env)->ExceptionClear(env);
+        (*env)->DeleteLocalRef(env, table);
+        return SQLITE_NOMEM;
+    }
+    memset(vtab, 0, sizeof(struct JavaVTab));
+    vtab->vm = m->vm;
+    vtab->table = (*env)->NewGlobalRef(env, table);
+    (*env)->DeleteLocalRef(env, table);
+
+    schema = (jstring)(*env)->CallObjectMethod(env, vtab->table, table_schema);
+    if ((*env)->ExceptionCheck(env)) {
+        *err = java_error(env);
+        rc = SQLITE_ERROR;
+    }
+    else if (!schema) {
+        *err = sqlite3_mprintf("virtual table has no schema");
+        rc = SQLITE_ERROR;
+    }
+    else {
+        sql = (*env)->GetStringUTFChars(env, schema, 0);
+        if (!sql) {
+            *err = java_error(env);
+            rc = SQLITE_NOMEM;
+        }
+        else {
+            rc = sqlite3_declare_vtab(db, sql);
+            (*env)->ReleaseStringUTFChars(env, schema, sql);
+            if (rc != SQLITE_OK) *err = sqlite3_mprintf("%s", sqlite3_errmsg(db));
+        }
+        (*env)->DeleteLocalRef(env, schema);
+    }
+
+    // SQLite never sees a table it was not given, so it is disconnected here
+    if (rc != SQLITE_OK) {
+        vtab_release(&vtab->base, table_disconnect);
+        return rc;
+    }
+    *out = &vtab->base;
+    return SQLITE_OK;
+}
+
+/* The table is released even if disconnect() or destroy() fails. */
+static int vtab_release(sqlite3_vtab *base, jmethodID method)
+{
+    struct JavaVTab *vtab = (struct JavaVTab *)base;
+    JNIEnv *env = vm_env(vtab->vm);
+
+    (*env)->CallVoidMethod(env, vtab->table, method);
+    if ((*env)->ExceptionCheck(env)) (*env)->ExceptionClear(env);
+
+    (*env)->DeleteGlobalRef(env, vtab->table);
+    sqlite3_free(vtab->base.zErrMsg);
+    sqlite3_free(vtab);
+    return SQLITE_OK;
+}
+
+static int vtab_disconnect(sqlite3_vtab *base)
+{
+    return vtab_release(base, table_disconnect);
+}
+
+static int vtab_destroy(sqlite3_vtab *base)
+{
+    return vtab_release(base, table_destroy);
+}
+
+static int vtab_best_index(sqlite3_vtab *base, sqlite3_index_info *info)
+{
+    JNIEnv *env = vtab_env(base);
+    int n = info->nConstraint;
+    int m = info->nOrderBy;
+    int i, rc = SQLITE_OK;
+    jint *ints;
+    jboolean *bools;
+    jintArray columns, ops, orderColumns;
+    jbooleanArray usable, orderDesc;
+    jobject result = 0;
+    jintArray argv = 0;
+    jbooleanArray omit = 0;
+    jstring str = 0;
+
+    ints = sqlite3_malloc(sizeof(jint) * (n + m + 1));
+    bools = sqlite3_malloc(sizeof(jboolean) * (n + m + 1));
+    columns = (*env)->NewIntArray(env, n);
+    ops = (*env)->NewIntArray(env, n);
+    usable = (*env)->NewBooleanArray(env, n);
+    orderColumns = (*env)->NewIntArray(env, m);
+    orderDesc = (*env)->NewBooleanArray(env, m);
+    if (!ints || !bools || !columns || !ops || !usable || !orderColumns || !orderDesc) {
+        if ((*env)->ExceptionCheck(env)) (*env)->ExceptionClear(env);
+        rc = SQLITE_NOMEM;
+        goto done;
+    }
+
+    for (i = 0; i < n; i++) ints[i] = info->aConstraint[i].iColumn;
+    (*env)->SetIntArrayRegion(env, columns, 0, n, ints);
+    for (i = 0; i < n; i++) ints[i] = info->aConstraint[i].op;
+    (*env)->SetIntArrayRegion(env, ops, 0, n, ints);
+    for (i = 0; i < n; i++) bools[i] = info->aConstraint[i].usable ? JNI_TRUE : JNI_FALSE;
+    (*env)->SetBooleanArrayRegion(env, usable, 0, n, bools);
+    for (i = 0; i < m; i++) ints[i] = info->aOrderBy[i].iColumn;
+    (*env)->SetIntArrayRegion(env, orderColumns, 0, m, ints);
+    for (i = 0; i < m; i++) bools[i] = info->aOrderBy[i].desc ? JNI_TRUE : JNI_FALSE;
+    (*env)->SetBooleanArrayRegion(env, orderDesc, 0, m, bools);
+
+    result = (*env)->CallObjectMethod(env, ((struct JavaVTab *)base)->table, table_bestindex,
+            columns, ops, usable, orderColumns, orderDesc);
+    if ((*env)->ExceptionCheck(env)) {
+        rc = vtab_error(env, base);
+        goto done;
+    }
+    if (!result) {
+        sqlite3_free(base->zErrMsg);
+        base->zErrMsg = sqlite3_mprintf("virtual table returned no index");
+        rc = SQLITE_ERROR;
+        goto done;
+    }
+
+    argv = (jintArray)(*env)->GetObjectField(env, result, info_argv);
+    omit = (jbooleanArray)(*env)->GetObjectField(env, result, info_omit);
+    if (!argv || !omit) {
+        sqlite3_free(base->zErrMsg);
+        base->zErrMsg = sqlite3_mprintf("virtual table returned an index without constraint usage");
+        rc = SQLITE_ERROR;
+        goto done;
+    }
+    // arrays shorter than the constraints throw ArrayIndexOutOfBoundsException
+    (*env)->GetIntArrayRegion(env, argv, 0, n, ints);
+    (*env)->GetBooleanArrayRegion(env, omit, 0, n, bools);
+    if ((*env)->ExceptionCheck(env)) {
+        rc = vtab_error(env, base);
+        goto done;
+    }
+    for (i = 0; i < n; i++) {
+        info->aConstraintUsage[i].argvIndex = ints[i];
+        info->aConstraintUsage[i].omit = bools[i] ? 1 : 0;
+    }
+
+    info->idxNum = (*env)->GetIntField(env, result, info_num);
+    str = (jstring)(*env)->GetObjectField(env, result, info_str);
+    if (str) {
+        const char *utf = (*env)->GetStringUTFChars(env, str, 0);
+        if (utf) {
+            info->idxStr = sqlite3_mprintf("%s", utf);
+            info->needToFreeIdxStr = 1;
+            (*env)->ReleaseStringUTFChars(env, str, utf);
+        }
+    }
+    info->orderByConsumed = (*env)->GetBooleanField(env, result, info_consumed) ? 1 : 0;
+    info->estimatedCost = (*env)->GetDoubleField(env, result, info_cost);
+#if SQLITE_VERSION_NUMBER >= 3008002
+    info->estimatedRows = (*env)->GetLongField(env, result, info_rows);
+#endif
+
+done:
+    (*env)->DeleteLocalRef(env, result);
+    (*env)->DeleteLocalRef(env, argv);
+    (*env)->DeleteLocalRef(env, omit);
+    (*env)->DeleteLocalRef(env, str);
+    (*env)->DeleteLocalRef(env, columns);
+    (*env)->DeleteLocalRef(env, ops);
+    (*env)->DeleteLocalRef(env, usable);
+    (*env)->DeleteLocalRef(env, orderColumns);
+    (*env)->DeleteLocalRef(env, orderDesc);
+    sqlite3_free(ints);
+    sqlite3_free(bools);
+    return rc;
+}
+
+static int vtab_open(sqlite3_vtab *base, sqlite3_vtab_cursor **out)
+{
+    JNIEnv *env = vtab_env(base);
+    struct JavaVCursor *c;
+    jobject cursor;
+
+    cursor = (*env)->CallObjectMethod(env, ((struct JavaVTab *)base)->table, table_open);
+    if ((*env)->ExceptionCheck(env)) return vtab_error(env, base);
+    if (!cursor) {
+        sqlite3_free(base->zErrMsg);
+        base->zErrMsg = sqlite3_mprintf("virtual table opened no cursor");
+        return SQLITE_ERROR;
+    }
+
+    c = sqlite3_malloc(sizeof(struct JavaVCursor));
+    if (!c) return SQLITE_NOMEM;
+    memset(c, 0, sizeof(struct JavaVCursor));
+    c->cursor = (*env)->NewGlobalRef(env, cursor);
+    (*env)->DeleteLocalRef(env, cursor);
+
+    *out = &c->base;
+    return SQLITE_OK;
+}
+
+static int vtab_close(sqlite3_vtab_cursor *base)
+{
+    struct JavaVCursor *c = (struct JavaVCursor *)base;
+    JNIEnv *env = vtab_env(base->pVtab);
+
+    (*env)->CallVoidMethod(env, c->cursor, cursor_close);
+    if ((*env)->ExceptionCheck(env)) (*env)->ExceptionClear(env);
+
+    (*env)->DeleteGlobalRef(env, c->cursor);
+    if (c->buf) (*env)->DeleteGlobalRef(env, c->buf);
+    sqlite3_free(c);
+    return SQLITE_OK;
+}
+
+/* Makes the buffer returned by start() or fetch() the rows of the cursor,
+ * reporting an error if the call failed. */
+static int cursor_rows(JNIEnv *env, struct JavaVCursor *c, jobject buf)
+{
+    char *addr;
+
+    if ((*env)->ExceptionCheck(env)) return vtab_error(env, c->base.pVtab);
+
+    addr = buf ? (*env)->GetDirectBufferAddress(env, buf) : 0;
+    if (!addr) {
+        sqlite3_free(c->base.pVtab->zErrMsg);
+        c->base.pVtab->zErrMsg = sqlite3_mprintf("virtual cursor returned no direct buffer");
+        return SQLITE_ERROR;
+    }
+    if (addr != c->addr) {
+        if (c->buf) (*env)->DeleteGlobalRef(env, c->buf);
+        c->buf = (*env)->NewGlobalRef(env, buf);
+        c->addr = addr;
+    }
+    (*env)->DeleteLocalRef(env, buf);
+
+    c->rows = get_jint(c->addr);
+    c->last = get_jint(c->addr + 4);
+    c->row = c->addr + VTAB_HEADER_SIZE;
+    return SQLITE_OK;
+}
+
+/* Returns the value as a Long, Double, String or byte[], or null. */
+static jobject value_object(JNIEnv *env, sqlite3_value *value)
+{
+    const jchar *text;
+    jbyteArray blob;
+    int length;
+
+    switch (sqlite3_value_type(value)) {
+        case SQLITE_INTEGER:
+            return (*env)->CallStaticObjectMethod(env, longclass, long_valueof,
+                    (jlong)sqlite3_value_int64(value));
+        case SQLITE_FLOAT:
+            return (*env)->CallStaticObjectMethod(env, doubleclass, double_valueof,
+                    (jdouble)sqlite3_value_double(value));
+        case SQLITE_TEXT:
+            text = sqlite3_value_text16(value);
+            length = sqlite3_value_bytes16(value) / sizeof(jchar);
+            return (*env)->NewString(env, text, text ? length : 0);
+        case SQLITE_BLOB:
+            length = sqlite3_value_bytes(value);
+            blob = (*env)->NewByteArray(env, length);
+            if (blob && length > 0)
+                (*env)->SetByteArrayRegion(env, blob, 0, length, sqlite3_value_blob(value));
+            return blob;
+        default:
+            return 0;
+    }
+}
+
+static int vtab_filter(sqlite3_vtab_cursor *base, int idxNum, const char *idxStr,
+        int argc, sqlite3_value **argv)
+{
+    struct JavaVCursor *c = (struct JavaVCursor *)base;
+    JNIEnv *env = vtab_env(base->pVtab);
+    jobjectArray args;
+    jstring str = 0;
+    jobject buf;
+    int i;
+
+    args = (*env)->NewObjectArray(env, argc, objectclass, 0);
+    if (!args) return vtab_error(env, base->pVtab);
+    for (i = 0; i < argc; i++) {
+        jobject arg = value_object(env, argv[i]);
+        if ((*env)->ExceptionCheck(env)) {
+            (*env)->DeleteLocalRef(env, args);
+            return vtab_error(env, base->pVtab);
+        }
+        (*env)->SetObjectArrayElement(env, args, i, arg);
+        if (arg) (*env)->DeleteLocalRef(env, arg);
+    }
+    if (idxStr) str = (*env)->NewStringUTF(env, idxStr);
+
+    buf = (*env)->CallObjectMethod(env, c->cursor, cursor_start, idxNum, str, args);
+    (*env)->DeleteLocalRef(env, args);
+    if (str) (*env)->DeleteLocalRef(env, str);
+    return cursor_rows(env, c, buf);
+}
+
+/* Moves to the next row of the buffer, fetching the next batch of rows
+ * from Java once the buffer has been read. */
+static int vtab_next(sqlite3_vtab_cursor *base)
+{
+    struct JavaVCursor *c = (struct JavaVCursor *)base;
+    JNIEnv *env;
+
+    if (c->rows > 0 && --c->rows > 0) {
+        c->row += get_jint(c->row);
+        return SQLITE_OK;
+    }
+    if (c->last) return SQLITE_OK;
+
+    env = vtab_env(base->pVtab);
+    return cursor_rows(env, c, (*env)->CallObjectMethod(env, c->cursor, cursor_fetch));
+}
+
+static int vtab_eof(sqlite3_vtab_cursor *base)
+{
+    return ((struct JavaVCursor *)base)->rows == 0;
+}
+
+static int vtab_column(sqlite3_vtab_cursor *base, sqlite3_context *context, int col)
+{
+    char *row = ((struct JavaVCursor *)base)->row;
+    char *slot;
+    jdouble d;
+
+    if (col < 0 || col >= get_jint(row + 4)) {
+        sqlite3_result_null(context);
+        return SQLITE_OK;
+    }
+
+    slot = row + VTAB_ROW_HEADER_SIZE + VTAB_SLOT_SIZE * col;
+    switch (get_jint(slot)) {
+        case SQLITE_INTEGER:
+            sqlite3_result_int64(context, get_jlong(slot + 8));
+            break;
+        case SQLITE_FLOAT:
+            memcpy(&d, slot + 8, sizeof(jdouble));
+            sqlite3_result_double(context, d);
+            break;
+        case SQLITE_TEXT:
+            sqlite3_result_text(context, row + get_jlong(slot + 8), get_jint(slot + 4),
+                    SQLITE_TRANSIENT);
+            break;
+        case SQLITE_BLOB:
+            sqlite3_result_blob(context, row + get_jlong(slot + 8), get_jint(slot + 4),
+                    SQLITE_TRANSIENT);
+            break;
+        default:
+            sqlite3_result_null(context);
+    }
+    return SQLITE_OK;
+}
+
+static int vtab_rowid(sqlite3_vtab_cursor *base, sqlite3_int64 *rowid)
+{
+    *rowid = get_jlong(((struct JavaVCursor *)base)->row + 8);
+    return SQLITE_OK;
+}
+
+/* Read-only, without transactions or renaming. */
+static sqlite3_module java_module = {
+    0,                  // iVersion
+    &vtab_connect,      // xCreate
+    &vtab_connect,      // xConnect
+    &vtab_best_index,
+    &vtab_disconnect,
+    &vtab_destroy,
+    &vtab_open,
+    &vtab_close,
+    &vtab_filter,
+    &vtab_next,
+    &vtab_eof,
+    &vtab_column,
+    &vtab_rowid,
+    0,                  // xUpdate
+    0,                  // xBegin
+    0,                  // xSync
+    0,                  // xCommit
+    0,                  // xRollback
+    0,                  // xFindFunction
+    0,                  // xRename
+    0,                  // xSavepoint
+    0,                  // xRelease
+    0,                  // xRollbackTo
+#if SQLITE_VERSION_NUMBER >= 3026000
+    0,                  // xShadowName
+#endif
+#if SQLITE_VERSION_NUMBER >= 3044000
+    0,                  // xIntegrity
+#endif
+};
+
+static void free_module(void *p)
+{
+    struct JavaModule *m = (struct JavaModule *)p;
+    JNIEnv *env = vm_env(m->vm);
+    (*env)->DeleteGlobalRef(env, m->module);
+    free(m);
+}
+
+/* Looks up the classes and members called by virtual tables. Returns 0
+ * with an exception pending if one is missing. */
+static int init_vtab(JNIEnv *env)
+{
+    jclass cls;
+
+#define GLOBAL_CLASS(var, name) \
+    if (!(cls = (*env)->FindClass(env, name))) return 0; \
+    var = (*env)->NewGlobalRef(env, cls);
+
+    GLOBAL_CLASS(objectclass, "java/lang/Object");
+    GLOBAL_CLASS(stringclass, "java/lang/String");
+    GLOBAL_CLASS(longclass, "java/lang/Long");
+    GLOBAL_CLASS(doubleclass, "java/lang/Double");
+#undef GLOBAL_CLASS
+
+    long_valueof = (*env)->GetStaticMethodID(env, longclass, "valueOf", "(J)Ljava/lang/Long;");
+    if (!long_valueof) return 0;
+    double_valueof = (*env)->GetStaticMethodID(env, doubleclass, "valueOf", "(D)Ljava/lang/Double;");
+    if (!double_valueof) return 0;
+    if (!(cls = (*env)->FindClass(env, "java/lang/Throwable"))) return 0;
+    throwable_tostring = (*env)->GetMethodID(env, cls, "toString", "()Ljava/lang/String;");
+    if (!throwable_tostring) return 0;
+
+    if (!(cls = (*env)->FindClass(env, "org/sqlite/VirtualTable$Module"))) return 0;
+    module_connect = (*env)->GetMethodID(env, cls, "connect",
+            "([Ljava/lang/String;)Lorg/sqlite/VirtualTable;");
+    if (!module_connect) return 0;
+
+    if (!(cls = (*env)->FindClass(env, "org/sqlite/VirtualTable"))) return 0;
+    table_schema = (*env)->GetMethodID(env, cls, "getSchema", "()Ljava/lang/String;");
+    table_bestindex = (*env)->GetMethodID(env, cls, "bestIndex",
+            "([I[I[Z[I[Z)Lorg/sqlite/VirtualTable$IndexInfo;");
+    table_open = (*env)->GetMethodID(env, cls, "open", "()Lorg/sqlite/VirtualCursor;");
+    table_disconnect = (*env)->GetMethodID(env, cls, "disconnect", "()V");
+    table_destroy = (*env)->GetMethodID(env, cls, "destroy", "()V");
+    if (!table_schema || !table_bestindex || !table_open || !table_disconnect || !table_destroy)
+        return 0;
+
+    if (!(cls = (*env)->FindClass(env, "org/sqlite/VirtualTable$IndexInfo"))) return 0;
+    info_argv = (*env)->GetFieldID(env, cls, "argvIndex", "[I");
+    info_omit = (*env)->GetFieldID(env, cls, "omit", "[Z");
+    info_num = (*env)->GetFieldID(env, cls, "indexNumber", "I");
+    info_str = (*env)->GetFieldID(env, cls, "indexString", "Ljava/lang/String;");
+    info_consumed = (*env)->GetFieldID(env, cls, "orderByConsumed", "Z");
+    info_cost = (*env)->GetFieldID(env, cls, "estimatedCost", "D");
+    info_rows = (*env)->GetFieldID(env, cls, "estimatedRows", "J");
+    if (!info_argv || !info_omit || !info_num || !info_str || !info_consumed || !info_cost || !info_rows)
+        return 0;
+
+    if (!(cls = (*env)->FindClass(env, "org/sqlite/VirtualCursor"))) return 0;
+    cursor_start = (*env)->GetMethodID(env, cls, "start",
+            "(ILjava/lang/String;[Ljava/lang/Object;)Ljava/nio/ByteBuffer;");
+    cursor_fetch = (*env)->GetMethodID(env, cls, "fetch", "()Ljava/nio/ByteBuffer;");
+    cursor_close = (*env)->GetMethodID(env, cls, "close", "()V");
+    return cursor_start && cursor_fetch && cursor_close;
+}
+
+JNIEXPORT jint JNICALL Java_org_sqlite_core_NativeDB_create_1module(
+        JNIEnv *env, jobject this, jstring name, jobject module)
+{
+    struct JavaModule *m;
+    const char *strname;
+    jint ret;
+
+    if (!cursor_close && !init_vtab(env)) return 0;
+
+    strname = (*env)->GetStringUTFChars(env, name, 0);
+    if (!strname) { throwex_outofmemory(env); return 0; }
+
+    m = malloc(sizeof(struct JavaModule));
+    if (!m) {
+        (*env)->ReleaseStringUTFChars(env, name, strname);
+        throwex_outofmemory(env);
+        return 0;
+    }
+    (*env)->GetJavaVM(env, &m->vm);
+    m->module = (*env)->NewGlobalRef(env, module);
+
+    // SQLite calls free_module() when the module is replaced or the
+    // database closed
+    ret = sqlite3_create_module_v2(gethandle(env, this), strname, &java_module, m, &free_module);
+
+    (*env)->ReleaseStringUTFChars(env, name, strname);
+
+    return ret;
+}
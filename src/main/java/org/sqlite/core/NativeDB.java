@@ -16,10 +16,12 @@
 
 package org.sqlite.core;
 
+import java.nio.ByteBuffer;
 import java.sql.SQLException;
 
 import org.sqlite.Function;
 import org.sqlite.SQLiteJDBCLoader;
+import org.sqlite.VirtualTable;
 
 /** This class provides a thin JNI layer over the SQLite3 C API. */
 public final class NativeDB extends DB
@@ -29,12 +31,14 @@ public final class NativeDB extends DB
 
     private static boolean isLoaded;
     private static boolean loadSucceeded;
+    private static boolean extended;
 
     static {
         if ("The Android Project".equals(System.getProperty("java.vm.vendor"))) {
             System.loadLibrary("sqlitejdbc");
             isLoaded = true;
             loadSucceeded = true;
+            extended = probeExtended();
         } else {
             // continue with non Android execution path
             isLoaded = false;
@@ -52,9 +56,38 @@ public final class NativeDB extends DB
 
         loadSucceeded = SQLiteJDBCLoader.initialize();
         isLoaded = true;
+        if (loadSucceeded) {
+            extended = probeExtended();
+        }
         return loadSucceeded;
     }
 
+    /**
+     * @return True if the loaded library exports the entry points added since the bundled
+     *         libraries were built, which do not have {@link #api_version()}.
+     */
+    private static boolean probeExtended() {
+        try {
+            return api_version() >= API_VERSION;
+        }
+        catch (UnsatisfiedLinkError e) {
+            return false;
+        }
+    }
+
+    /** Version of the entry points declared here. */
+    private static final int API_VERSION = 1;
+
+    private static native int api_version();
+
+    /**
+     * @see org.sqlite.core.DB#extended()
+     */
+    @Override
+    public boolean extended() {
+        return extended;
+    }
+
     /** linked list of all instanced UDFDatas */
     private final long udfdatalist = 0;
 
@@ -107,13 +140,13 @@ public final class NativeDB extends DB
      */
     //native synchronized void exec(String sql) throws SQLException;
     @Override
-    protected native synchronized long prepare(String sql) throws SQLException;
+    protected native long prepare(String sql) throws SQLException;
 
     /**
      * @see org.sqlite.core.DB#errmsg()
      */
     @Override
-    native synchronized String errmsg();
+    native String errmsg();
 
     /**
      * @see org.sqlite.core.DB#libversion()
@@ -125,229 +158,266 @@ public final class NativeDB extends DB
      * @see org.sqlite.core.DB#changes()
      */
     @Override
-    public native synchronized int changes();
+    public native int changes();
 
     /**
      * @see org.sqlite.core.DB#total_changes()
      */
     @Override
-    public native synchronized int total_changes();
+    public native int total_changes();
 
     /**
      * @see org.sqlite.core.DB#finalize(long)
      */
     @Override
-    protected native synchronized int finalize(long stmt);
+    protected native int finalize(long stmt);
 
     /**
      * @see org.sqlite.core.DB#step(long)
      */
     @Override
-    public native synchronized int step(long stmt);
+    public native int step(long stmt);
 
     /**
      * @see org.sqlite.core.DB#reset(long)
      */
     @Override
-    public native synchronized int reset(long stmt);
+    public native int reset(long stmt);
 
     /**
      * @see org.sqlite.core.DB#clear_bindings(long)
      */
     @Override
-    public native synchronized int clear_bindings(long stmt);
+    public native int clear_bindings(long stmt);
 
     /**
      * @see org.sqlite.core.DB#bind_parameter_count(long)
      */
     @Override
-    native synchronized int bind_parameter_count(long stmt);
+    native int bind_parameter_count(long stmt);
 
     /**
      * @see org.sqlite.core.DB#column_count(long)
      */
     @Override
-    public native synchronized int column_count(long stmt);
+    public native int column_count(long stmt);
 
     /**
      * @see org.sqlite.core.DB#column_type(long, int)
      */
     @Override
-    public native synchronized int column_type(long stmt, int col);
+    public native int column_type(long stmt, int col);
 
     /**
      * @see org.sqlite.core.DB#column_decltype(long, int)
      */
     @Override
-    public native synchronized String column_decltype(long stmt, int col);
+    public native String column_decltype(long stmt, int col);
 
     /**
      * @see org.sqlite.core.DB#column_table_name(long, int)
      */
     @Override
-    public native synchronized String column_table_name(long stmt, int col);
+    public native String column_table_name(long stmt, int col);
 
     /**
      * @see org.sqlite.core.DB#column_name(long, int)
      */
     @Override
-    public native synchronized String column_name(long stmt, int col);
+    public native String column_name(long stmt, int col);
 
     /**
      * @see org.sqlite.core.DB#column_text(long, int)
      */
     @Override
-    public native synchronized String column_text(long stmt, int col);
+    public native String column_text(long stmt, int col);
 
     /**
      * @see org.sqlite.core.DB#column_blob(long, int)
      */
     @Override
-    public native synchronized byte[] column_blob(long stmt, int col);
+    public native byte[] column_blob(long stmt, int col);
 
     /**
      * @see org.sqlite.core.DB#column_double(long, int)
      */
     @Override
-    public native synchronized double column_double(long stmt, int col);
+    public native double column_double(long stmt, int col);
 
     /**
      * @see org.sqlite.core.DB#column_long(long, int)
      */
     @Override
-    public native synchronized long column_long(long stmt, int col);
+    public native long column_long(long stmt, int col);
 
     /**
      * @see org.sqlite.core.DB#column_int(long, int)
      */
     @Override
-    public native synchronized int column_int(long stmt, int col);
+    public native int column_int(long stmt, int col);
 
     /**
      * @see org.sqlite.core.DB#bind_null(long, int)
      */
     @Override
-    native synchronized int bind_null(long stmt, int pos);
+    native int bind_null(long stmt, int pos);
 
     /**
      * @see org.sqlite.core.DB#bind_int(long, int, int)
      */
     @Override
-    native synchronized int bind_int(long stmt, int pos, int v);
+    native int bind_int(long stmt, int pos, int v);
 
     /**
      * @see org.sqlite.core.DB#bind_long(long, int, long)
      */
     @Override
-    native synchronized int bind_long(long stmt, int pos, long v);
+    native int bind_long(long stmt, int pos, long v);
 
     /**
      * @see org.sqlite.core.DB#bind_double(long, int, double)
      */
     @Override
-    native synchronized int bind_double(long stmt, int pos, double v);
+    native int bind_double(long stmt, int pos, double v);
 
     /**
      * @see org.sqlite.core.DB#bind_text(long, int, java.lang.String)
      */
     @Override
-    native synchronized int bind_text(long stmt, int pos, String v);
+    native int bind_text(long stmt, int pos, String v);
 
     /**
      * @see org.sqlite.core.DB#bind_blob(long, int, byte[])
      */
     @Override
-    native synchronized int bind_blob(long stmt, int pos, byte[] v);
+    native int bind_blob(long stmt, int pos, byte[] v);
 
     /**
      * @see org.sqlite.core.DB#result_null(long)
      */
     @Override
-    public native synchronized void result_null(long context);
+    public native void result_null(long context);
 
     /**
      * @see org.sqlite.core.DB#result_text(long, java.lang.String)
      */
     @Override
-    public native synchronized void result_text(long context, String val);
+    public native void result_text(long context, String val);
 
     /**
      * @see org.sqlite.core.DB#result_blob(long, byte[])
      */
     @Override
-    public native synchronized void result_blob(long context, byte[] val);
+    public native void result_blob(long context, byte[] val);
 
     /**
      * @see org.sqlite.core.DB#result_double(long, double)
      */
     @Override
-    public native synchronized void result_double(long context, double val);
+    public native void result_double(long context, double val);
 
     /**
      * @see org.sqlite.core.DB#result_long(long, long)
      */
     @Override
-    public native synchronized void result_long(long context, long val);
+    public native void result_long(long context, long val);
 
     /**
      * @see org.sqlite.core.DB#result_int(long, int)
      */
     @Override
-    public native synchronized void result_int(long context, int val);
+    public native void result_int(long context, int val);
 
     /**
      * @see org.sqlite.core.DB#result_error(long, java.lang.String)
      */
     @Override
-    public native synchronized void result_error(long context, String err);
+    public native void result_error(long context, String err);
 
     /**
      * @see org.sqlite.core.DB#value_bytes(org.sqlite.Function, int)
      */
     @Override
-    public native synchronized int value_bytes(Function f, int arg);
+    public native int value_bytes(Function f, int arg);
 
     /**
      * @see org.sqlite.core.DB#value_text(org.sqlite.Function, int)
      */
     @Override
-    public native synchronized String value_text(Function f, int arg);
+    public native String value_text(Function f, int arg);
 
     /**
      * @see org.sqlite.core.DB#value_blob(org.sqlite.Function, int)
      */
     @Override
-    public native synchronized byte[] value_blob(Function f, int arg);
+    public native byte[] value_blob(Function f, int arg);
 
     /**
      * @see org.sqlite.core.DB#value_double(org.sqlite.Function, int)
      */
     @Override
-    public native synchronized double value_double(Function f, int arg);
+    public native double value_double(Function f, int arg);
 
     /**
      * @see org.sqlite.core.DB#value_long(org.sqlite.Function, int)
      */
     @Override
-    public native synchronized long value_long(Function f, int arg);
+    public native long value_long(Function f, int arg);
 
     /**
      * @see org.sqlite.core.DB#value_int(org.sqlite.Function, int)
      */
     @Override
-    public native synchronized int value_int(Function f, int arg);
+    public native int value_int(Function f, int arg);
 
     /**
      * @see org.sqlite.core.DB#value_type(org.sqlite.Function, int)
      */
     @Override
-    public native synchronized int value_type(Function f, int arg);
+    public native int value_type(Function f, int arg);
 
     /**
      * @see org.sqlite.core.DB#create_function(java.lang.String, org.sqlite.Function)
      */
     @Override
-    public native synchronized int create_function(String name, Function func);
+    public native synchronized int create_function(String name, Function func) throws SQLException;
+
+    /**
+     * @see org.sqlite.core.DB#create_function(java.lang.String, org.sqlite.Function, int)
+     */
+    @Override
+    public synchronized int create_function(String name, Function func, int flags) throws SQLException {
+        return create_function_flags(name, func, flags);
+    }
+
+    private native int create_function_flags(String name, Function func, int flags) throws SQLException;
+
+    /**
+     * @see org.sqlite.core.DB#create_scalar(java.lang.String, org.sqlite.Function, int, java.nio.ByteBuffer)
+     */
+    @Override
+    public native synchronized int create_scalar(String name, Function func, int flags, ByteBuffer buf)
+            throws SQLException;
+
+    /**
+     * @see org.sqlite.core.DB#create_window_function(java.lang.String, org.sqlite.Function, int)
+     */
+    @Override
+    public native synchronized int create_window_function(String name, Function func, int flags)
+            throws SQLException;
+
+    /**
+     * @see org.sqlite.core.DB#create_batch_aggregate(java.lang.String, org.sqlite.Function, int, org.sqlite.Function.Rows, int)
+     */
+    @Override
+    public native synchronized int create_batch_aggregate(String name, Function func, int flags, Function.Rows rows,
+            int batchSize) throws SQLException;
+
+    /**
+     * @see org.sqlite.core.DB#create_module(java.lang.String, org.sqlite.VirtualTable.Module)
+     */
+    @Override
+    public native synchronized int create_module(String name, VirtualTable.Module module) throws SQLException;
 
     /**
      * @see org.sqlite.core.DB#destroy_function(java.lang.String)
@@ -386,7 +456,136 @@ public final class NativeDB extends DB
      * @see org.sqlite.core.DB#column_metadata(long)
      */
     @Override
-    native synchronized boolean[][] column_metadata(long stmt);
+    native boolean[][] column_metadata(long stmt);
+
+    /**
+     * @see org.sqlite.core.DB#bind_text_utf8(long, int, byte[], int)
+     */
+    @Override
+    native int bind_text_utf8(long stmt, int pos, byte[] v, int length);
+
+    /**
+     * @see org.sqlite.core.DB#row_fetch(long, java.nio.ByteBuffer, int, boolean)
+     */
+    @Override
+    public native int row_fetch(long stmt, ByteBuffer buf, int maxRows, boolean step) throws SQLException;
+
+    /**
+     * @see org.sqlite.core.DB#batch_execute(long, java.nio.ByteBuffer, int, int[], int)
+     */
+    @Override
+    public native int batch_execute(long stmt, ByteBuffer buf, int rows, int[] changes, int offset)
+            throws SQLException;
+
+    /**
+     * @see org.sqlite.core.DB#bind_zeroblob(long, int, int)
+     */
+    @Override
+    native int bind_zeroblob(long stmt, int pos, int length);
+
+    /**
+     * @see org.sqlite.core.DB#last_insert_rowid()
+     */
+    @Override
+    public native long last_insert_rowid();
+
+    /**
+     * @see org.sqlite.core.DB#blob_open(String, String, String, long, boolean)
+     */
+    @Override
+    native long blob_open(String database, String table, String column, long rowid, boolean write)
+            throws SQLException;
+
+    /**
+     * @see org.sqlite.core.DB#blob_close(long)
+     */
+    @Override
+    native int blob_close(long blob);
+
+    /**
+     * @see org.sqlite.core.DB#blob_bytes(long)
+     */
+    @Override
+    public native int blob_bytes(long blob);
+
+    /**
+     * @see org.sqlite.core.DB#blob_read(long, java.nio.ByteBuffer, int, int)
+     */
+    @Override
+    public native int blob_read(long blob, ByteBuffer buf, int length, int offset);
+
+    /**
+     * @see org.sqlite.core.DB#blob_write(long, java.nio.ByteBuffer, int, int)
+     */
+    @Override
+    public native int blob_write(long blob, ByteBuffer buf, int length, int offset);
+
+    /**
+     * @see org.sqlite.core.DB#column_origin(long, int)
+     */
+    @Override
+    public native String[] column_origin(long stmt, int col);
+
+    /**
+     * @see org.sqlite.core.DB#column_rowid(long, int)
+     */
+    @Override
+    public native int column_rowid(long stmt, int col) throws SQLException;
+
+    /**
+     * @see org.sqlite.core.DB#stmt_status(long, int, boolean)
+     */
+    @Override
+    public native int stmt_status(long stmt, int op, boolean reset);
+
+    /**
+     * @see org.sqlite.core.DB#db_status(int, boolean, long[])
+     */
+    @Override
+    public native synchronized int db_status(int op, boolean reset, long[] values);
+
+    /**
+     * @see org.sqlite.core.DB#status(int, boolean, long[])
+     */
+    @Override
+    public native int status(int op, boolean reset, long[] values);
+
+    /**
+     * @see org.sqlite.core.DB#progress_deadline(long, long, int)
+     */
+    @Override
+    native long progress_deadline(long data, long millis, int interval) throws SQLException;
+
+    /**
+     * @see org.sqlite.core.DB#progress_clear(long)
+     */
+    @Override
+    native boolean progress_clear(long data);
+
+    /**
+     * @see org.sqlite.core.DB#free_progress(long)
+     */
+    @Override
+    native void free_progress(long data);
+
+    /**
+     * @see org.sqlite.core.DB#busy_handler(long, int, int, int, int, int, boolean)
+     */
+    @Override
+    native long busy_handler(long data, int strategy, int timeout, int spins, int initial, int maxSleep,
+            boolean jitter) throws SQLException;
+
+    /**
+     * @see org.sqlite.core.DB#busy_stats(long, boolean, long[])
+     */
+    @Override
+    native void busy_stats(long data, boolean reset, long[] values);
+
+    /**
+     * @see org.sqlite.core.DB#free_busy_handler(long)
+     */
+    @Override
+    native void free_busy_handler(long data);
 
     /**
      * Throws an SQLException
@@ -0,0 +1,314 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Holds the parameter values of a prepared statement, one slot for each parameter
+ * of each row of a batch. Numbers are kept in primitive arrays next to a type tag,
+ * so that setting them allocates nothing and binding them is a switch on the tag.
+ * Text and blob values are kept as references, binary streams along with their length
+ * until they are read.
+ */
+public final class ParameterBuffer implements Codes
+{
+    /** Type tag of a slot that has not been set, bound as NULL. */
+    static final int UNSET = 0;
+
+    /** Type tag of a binary stream, written into the row with incremental BLOB I/O if possible. */
+    static final int BLOB_STREAM = 6;
+
+    /** Size of the header of a block of packed rows, see {@link #pack(ByteBuffer, int, int, int)}. */
+    static final int BLOCK_HEADER_SIZE = 8;
+    private static final int VALUE_HEADER_SIZE = 16;
+    private static final int MAX_TEXT_DATA = 1 << 20;
+
+    private byte[]   types;
+    private long[]   longs;
+    private double[] doubles;
+    private Object[] objects;
+    private byte[]   textData; // reused to encode text by pack()
+
+    /**
+     * Constructs a buffer for the given number of values.
+     * @param capacity Initial number of slots.
+     */
+    ParameterBuffer(int capacity) {
+        capacity = Math.max(1, capacity);
+        types = new byte[capacity];
+        longs = new long[capacity];
+        doubles = new double[capacity];
+        objects = new Object[capacity];
+    }
+
+    /**
+     * @return Number of slots of the buffer.
+     */
+    public int capacity() {
+        return types.length;
+    }
+
+    /**
+     * Grows the buffer so that it holds at least the given number of slots.
+     * @param capacity Number of slots needed.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity <= types.length) {
+            return;
+        }
+        capacity = Math.max(capacity, types.length * 2);
+        int size = types.length;
+
+        byte[] nt = new byte[capacity];
+        System.arraycopy(types, 0, nt, 0, size);
+        types = nt;
+        long[] nl = new long[capacity];
+        System.arraycopy(longs, 0, nl, 0, size);
+        longs = nl;
+        double[] nd = new double[capacity];
+        System.arraycopy(doubles, 0, nd, 0, size);
+        doubles = nd;
+        Object[] no = new Object[capacity];
+        System.arraycopy(objects, 0, no, 0, size);
+        objects = no;
+    }
+
+    /**
+     * Copies the values of a range of slots, e.g. the last row of a batch into the next one.
+     * @param from First slot to copy.
+     * @param to First slot to copy to.
+     * @param count Number of slots.
+     */
+    public void copy(int from, int to, int count) {
+        System.arraycopy(types, from, types, to, count);
+        System.arraycopy(longs, from, longs, to, count);
+        System.arraycopy(doubles, from, doubles, to, count);
+        System.arraycopy(objects, from, objects, to, count);
+    }
+
+    /**
+     * Resets all slots to unset.
+     */
+    public void clear() {
+        Arrays.fill(types, (byte) UNSET);
+        Arrays.fill(objects, null);
+    }
+
+    void setNull(int index) {
+        types[index] = SQLITE_NULL;
+        objects[index] = null;
+    }
+
+    void setLong(int index, long value) {
+        types[index] = SQLITE_INTEGER;
+        longs[index] = value;
+        objects[index] = null;
+    }
+
+    void setDouble(int index, double value) {
+        types[index] = SQLITE_FLOAT;
+        doubles[index] = value;
+        objects[index] = null;
+    }
+
+    void setText(int index, String value) {
+        if (value == null) {
+            setNull(index);
+            return;
+        }
+        types[index] = SQLITE_TEXT;
+        objects[index] = value;
+    }
+
+    void setBlob(int index, byte[] value) {
+        if (value == null) {
+            setNull(index);
+            return;
+        }
+        types[index] = SQLITE_BLOB;
+        objects[index] = value;
+    }
+
+    void setBlobStream(int index, InputStream value, int length) {
+        if (value == null) {
+            setNull(index);
+            return;
+        }
+        types[index] = BLOB_STREAM;
+        longs[index] = length;
+        objects[index] = value;
+    }
+
+    /**
+     * Replaces the binary streams in a range of slots with the bytes read from them.
+     * @param first First slot.
+     * @param count Number of slots.
+     * @throws SQLException if a stream cannot be read or ends early.
+     */
+    void readStreams(int first, int count) throws SQLException {
+        for (int index = first; index < first + count; index++) {
+            if (types[index] == BLOB_STREAM) {
+                byte[] bytes = new byte[getBlobStreamLength(index)];
+                readFully(getBlobStream(index), bytes, bytes.length);
+                setBlob(index, bytes);
+            }
+        }
+    }
+
+    /**
+     * Reads the given number of bytes from a stream.
+     * @param in The stream.
+     * @param bytes Array to read into.
+     * @param length Number of bytes to read.
+     * @throws SQLException if the stream cannot be read or ends early.
+     */
+    static void readFully(InputStream in, byte[] bytes, int length) throws SQLException {
+        try {
+            for (int done = 0; done < length;) {
+                int read = in.read(bytes, done, length - done);
+                if (read == -1) {
+                    throw new IOException("End of stream has been reached");
+                }
+                done += read;
+            }
+        }
+        catch (IOException cause) {
+            SQLException exception = new SQLException("Error reading stream");
+            exception.initCause(cause);
+            throw exception;
+        }
+    }
+
+    /**
+     * @param index The slot.
+     * @return SQLITE_INTEGER, SQLITE_FLOAT, SQLITE_TEXT, SQLITE_BLOB, BLOB_STREAM, SQLITE_NULL
+     *         or UNSET.
+     */
+    int getType(int index) {
+        return types[index];
+    }
+
+    long getLong(int index) {
+        return longs[index];
+    }
+
+    double getDouble(int index) {
+        return doubles[index];
+    }
+
+    String getText(int index) {
+        return (String) objects[index];
+    }
+
+    byte[] getBlob(int index) {
+        return (byte[]) objects[index];
+    }
+
+    InputStream getBlobStream(int index) {
+        return (InputStream) objects[index];
+    }
+
+    int getBlobStreamLength(int index) {
+        return (int) longs[index];
+    }
+
+    /**
+     * @param first First slot.
+     * @param count Number of slots.
+     * @return True if a slot of the range holds a binary stream.
+     */
+    boolean hasStreams(int first, int count) {
+        for (int index = first; index < first + count; index++) {
+            if (types[index] == BLOB_STREAM) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Packs rows of values into a direct buffer for the native executeBatch. The block starts
+     * with two ints left for the native side to report the number of rows executed and the
+     * result code. Each value then takes an int type, an int length and a long or double,
+     * followed for text (UTF-8) and blobs by their bytes, padded to 8 bytes. Binary streams
+     * must have been read with {@link #readStreams(int, int)}.
+     * @param buf Direct buffer in native byte order.
+     * @param params Number of parameters of a row.
+     * @param row First row to pack.
+     * @param count Maximum number of rows to pack.
+     * @return Number of rows packed, 0 if the first one does not fit.
+     */
+    int pack(ByteBuffer buf, int params, int row, int count) {
+        buf.clear();
+        buf.position(BLOCK_HEADER_SIZE);
+
+        int rows = 0;
+        while (rows < count && packRow(buf, (row + rows) * params, params)) {
+            rows++;
+        }
+        return rows;
+    }
+
+    private boolean packRow(ByteBuffer buf, int first, int params) {
+        for (int index = first; index < first + params; index++) {
+            if (buf.remaining() < VALUE_HEADER_SIZE) {
+                return false;
+            }
+
+            switch (types[index]) {
+            case SQLITE_INTEGER:
+                buf.putInt(SQLITE_INTEGER).putInt(0).putLong(longs[index]);
+                break;
+            case SQLITE_FLOAT:
+                buf.putInt(SQLITE_FLOAT).putInt(0).putDouble(doubles[index]);
+                break;
+            case SQLITE_TEXT:
+            case SQLITE_BLOB:
+                byte[] data;
+                int length;
+                if (types[index] == SQLITE_TEXT) {
+                    String text = getText(index);
+                    int capacity = text.length() * Utf8.MAX_BYTES_PER_CHAR;
+                    data = textData;
+                    if (data == null || data.length < capacity) {
+                        data = new byte[Math.max(capacity, 256)];
+                        if (capacity <= MAX_TEXT_DATA) {
+                            textData = data;
+                        }
+                    }
+                    length = Utf8.encode(text, data);
+                }
+                else {
+                    data = getBlob(index);
+                    length = data.length;
+                }
+                int padded = (length + 7) & ~7;
+                if (buf.remaining() < VALUE_HEADER_SIZE + padded) {
+                    return false;
+                }
+                buf.putInt(types[index]).putInt(length).putLong(0).put(data, 0, length);
+                buf.position(buf.position() + padded - length);
+                break;
+            default:
+                buf.putInt(SQLITE_NULL).putInt(0).putLong(0);
+            }
+        }
+        return true;
+    }
+}
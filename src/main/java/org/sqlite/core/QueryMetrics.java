@@ -0,0 +1,298 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects the {@link QueryStats} of a connection and logs slow executions. An execution
+ * starts when a statement is executed and ends when its result has been read to the end,
+ * its ResultSet is closed, or it is reset, executed again or destroyed. Its counters are
+ * collected on the statement and added to the statistics of its SQL when it ends. All
+ * methods are called with the lock of the database held.
+ */
+final class QueryMetrics
+{
+    /** Maximum number of distinct statements with statistics of their own. */
+    static final int MAX_QUERIES = 1000;
+
+    /** Receives a warning for each execution which takes at least the threshold. */
+    static final Logger slowQueryLog = Logger.getLogger("org.sqlite.SlowQuery");
+
+    private final Map<String, QueryStats> stats = new HashMap<String, QueryStats>();
+    private boolean enabled = false;
+    private long slowQueryNanos = -1;
+
+    /** True if executions are timed, i.e. statistics are collected or slow queries logged. */
+    boolean timing = false;
+
+    void setEnabled(boolean enable) {
+        enabled = enable;
+        timing = enabled || slowQueryNanos >= 0;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param millis Threshold in milliseconds; negative to log no executions.
+     */
+    void setSlowQueryThreshold(long millis) {
+        slowQueryNanos = millis < 0 ? -1 : millis * 1000000L;
+        timing = enabled || slowQueryNanos >= 0;
+    }
+
+    long getSlowQueryThreshold() {
+        return slowQueryNanos < 0 ? -1 : slowQueryNanos / 1000000L;
+    }
+
+    /**
+     * @return Copies of the statistics, the statements which spent the most time in native
+     *         code first.
+     */
+    List<QueryStats> snapshot() {
+        List<QueryStats> copies = new ArrayList<QueryStats>(stats.size());
+        for (QueryStats each : stats.values()) {
+            copies.add(each.copy());
+        }
+        Collections.sort(copies, new Comparator<QueryStats>() {
+            public int compare(QueryStats a, QueryStats b) {
+                long x = a.nativeNanos + a.prepareNanos;
+                long y = b.nativeNanos + b.prepareNanos;
+                return x > y ? -1 : (x < y ? 1 : a.sql.compareTo(b.sql));
+            }
+        });
+        return copies;
+    }
+
+    void reset() {
+        stats.clear();
+    }
+
+    /**
+     * @return The statistics of the SQL of a statement, created on first use.
+     */
+    private QueryStats statsOf(CoreStatement stmt) {
+        if (stmt.statsSql != stmt.sql) {
+            stmt.statsKey = normalize(stmt.sql);
+            stmt.statsSql = stmt.sql;
+        }
+        QueryStats s = stats.get(stmt.statsKey);
+        if (s == null) {
+            String key = stats.size() < MAX_QUERIES ? stmt.statsKey : QueryStats.OTHER;
+            s = stats.get(key);
+            if (s == null) {
+                s = new QueryStats(key);
+                stats.put(key, s);
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Records the compilation of the SQL of a statement.
+     * @param nanos Time taken by sqlite3_prepare().
+     */
+    void prepared(CoreStatement stmt, long nanos) {
+        if (enabled) {
+            QueryStats s = statsOf(stmt);
+            s.prepares++;
+            s.prepareNanos += nanos;
+        }
+    }
+
+    /**
+     * Starts an execution of a statement, ending the one in progress, if any.
+     */
+    void begin(CoreStatement stmt) {
+        end(stmt);
+        if (stmt.execution == null) {
+            stmt.execution = new QueryStats(null);
+        }
+        stmt.executing = true;
+    }
+
+    /**
+     * Records native calls made for the execution of a statement.
+     * @param nanos Time taken by the calls.
+     * @param steps Number of sqlite3_step() calls made.
+     * @param rows Number of result rows returned.
+     * @param statusCode Result code of the last step.
+     */
+    void stepped(CoreStatement stmt, long nanos, int steps, int rows, int statusCode) {
+        if (!stmt.executing) {
+            begin(stmt);
+        }
+        QueryStats e = stmt.execution;
+        e.nativeNanos += nanos;
+        e.steps += steps;
+        e.rows += rows;
+        if (statusCode == Codes.SQLITE_BUSY) {
+            e.busyNanos += nanos;
+        }
+    }
+
+    /**
+     * Records result rows returned without a native call, e.g. from a block of rows.
+     */
+    void returned(CoreStatement stmt, int rows) {
+        if (stmt.executing) {
+            stmt.execution.rows += rows;
+        }
+    }
+
+    /**
+     * Records text or BLOB data copied out of native code for the execution of a statement.
+     */
+    void read(CoreStatement stmt, long bytes) {
+        if (stmt.executing) {
+            stmt.execution.bytesRead += bytes;
+        }
+    }
+
+    /**
+     * Ends the execution of a statement in progress, if any, adding its counters to the
+     * statistics of its SQL and logging it if it was slow.
+     */
+    void end(CoreStatement stmt) {
+        if (!stmt.executing) {
+            return;
+        }
+        stmt.executing = false;
+        QueryStats e = stmt.execution;
+        boolean slow = slowQueryNanos >= 0 && e.nativeNanos >= slowQueryNanos;
+        if (enabled && stmt.sql != null) {
+            QueryStats s = statsOf(stmt);
+            s.add(e);
+            if (slow) {
+                s.slowExecutions++;
+            }
+        }
+        if (slow && slowQueryLog.isLoggable(Level.WARNING)) {
+            slowQueryLog.warning(String.format("slow query: %.3f ms in native code, %d steps, %d rows: %s",
+                    e.nativeNanos / 1e6, e.steps, e.rows, stmt.sql));
+        }
+        e.clear();
+    }
+
+    /**
+     * Normalizes SQL so that executions of the same statement with different literals share
+     * their statistics: string, BLOB and numeric literals are replaced by "?", comments
+     * removed and runs of white space replaced by a single space.
+     * @param sql The SQL.
+     * @return The normalized SQL.
+     */
+    static String normalize(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        int length = sql.length();
+        StringBuilder sb = new StringBuilder(length);
+        boolean space = false;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(c)) {
+                space = true;
+                i++;
+                continue;
+            }
+            if (c == '-' && sql.startsWith("--", i)) {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? length : end;
+                space = true;
+                continue;
+            }
+            if (c == '/' && sql.startsWith("/*", i)) {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                space = true;
+                continue;
+            }
+            if (space && sb.length() > 0) {
+                sb.append(' ');
+            }
+            space = false;
+
+            if ((c == 'x' || c == 'X') && i + 1 < length && sql.charAt(i + 1) == '\'') {
+                i = skipQuoted(sql, i + 1, '\'');
+                sb.append('?');
+            }
+            else if (c == '\'') {
+                i = skipQuoted(sql, i, '\'');
+                sb.append('?');
+            }
+            else if (c == '"' || c == '`' || c == '[') {
+                i = skipQuoted(sql, i, c == '[' ? ']' : c);
+                sb.append(sql, start, i);
+            }
+            else if (Character.isDigit(c) || (c == '.' && i + 1 < length && Character.isDigit(sql.charAt(i + 1)))) {
+                i++;
+                while (i < length) {
+                    char d = sql.charAt(i);
+                    if (Character.isLetterOrDigit(d) || d == '.'
+                            || ((d == '+' || d == '-') && (sql.charAt(i - 1) == 'e' || sql.charAt(i - 1) == 'E'))) {
+                        i++;
+                    }
+                    else {
+                        break;
+                    }
+                }
+                sb.append('?');
+            }
+            else if (Character.isLetter(c) || c == '_' || c == '$' || c == '@' || c == ':' || c == '?') {
+                i++;
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_'
+                        || sql.charAt(i) == '$')) {
+                    i++;
+                }
+                sb.append(sql, start, i);
+            }
+            else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param i Index of the opening quote.
+     * @return Index after the closing quote, or the length of the SQL if there is none.
+     */
+    private static int skipQuoted(String sql, int i, char end) {
+        int length = sql.length();
+        i++;
+        while (i < length) {
+            if (sql.charAt(i++) == end) {
+                // a doubled quote stands for itself
+                if (end != ']' && i < length && sql.charAt(i) == end) {
+                    i++;
+                    continue;
+                }
+                break;
+            }
+        }
+        return i;
+    }
+}
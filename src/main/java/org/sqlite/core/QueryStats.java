@@ -0,0 +1,183 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite.core;
+
+/**
+ * Execution statistics of the statements of a connection sharing the same normalized SQL,
+ * i.e. the SQL with literals replaced by "?", white space collapsed and comments removed.
+ * Times are the wall-clock time spent in native calls, not the time the application spends
+ * between calls, e.g. while iterating a ResultSet. Instances returned by
+ * {@link CoreConnection#getQueryStats()} are snapshots which do not change afterwards.
+ * @see org.sqlite.SQLiteConfig#setMetrics(boolean)
+ */
+public final class QueryStats
+{
+    /** SQL of the statistics collecting statements beyond the limit of distinct statements. */
+    public static final String OTHER = "(other)";
+
+    final String sql;
+
+    long executions;
+    long prepares;
+    long prepareNanos;
+    long steps;
+    long rows;
+    long nativeNanos;
+    long maxNativeNanos;
+    long bytesRead;
+    long busyNanos;
+    long slowExecutions;
+
+    QueryStats(String sql) {
+        this.sql = sql;
+    }
+
+    /**
+     * Adds the counters of an execution.
+     * @param execution The execution, of the same SQL.
+     */
+    void add(QueryStats execution) {
+        executions++;
+        steps += execution.steps;
+        rows += execution.rows;
+        nativeNanos += execution.nativeNanos;
+        maxNativeNanos = Math.max(maxNativeNanos, execution.nativeNanos);
+        bytesRead += execution.bytesRead;
+        busyNanos += execution.busyNanos;
+    }
+
+    /** Sets the counters back to zero. */
+    void clear() {
+        executions = 0;
+        prepares = 0;
+        prepareNanos = 0;
+        steps = 0;
+        rows = 0;
+        nativeNanos = 0;
+        maxNativeNanos = 0;
+        bytesRead = 0;
+        busyNanos = 0;
+        slowExecutions = 0;
+    }
+
+    QueryStats copy() {
+        QueryStats copy = new QueryStats(sql);
+        copy.executions = executions;
+        copy.prepares = prepares;
+        copy.prepareNanos = prepareNanos;
+        copy.steps = steps;
+        copy.rows = rows;
+        copy.nativeNanos = nativeNanos;
+        copy.maxNativeNanos = maxNativeNanos;
+        copy.bytesRead = bytesRead;
+        copy.busyNanos = busyNanos;
+        copy.slowExecutions = slowExecutions;
+        return copy;
+    }
+
+    /**
+     * @return The normalized SQL, or {@link #OTHER} for the statements which did not get
+     *         statistics of their own because too many distinct statements were seen.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return Number of completed executions, i.e. executeUpdate(), executeBatch() and
+     *         queries whose ResultSet was read to the end or closed.
+     */
+    public long getExecutions() {
+        return executions;
+    }
+
+    /**
+     * @return Number of times the SQL was compiled; statements taken from the statement
+     *         cache are not compiled again.
+     */
+    public long getPrepares() {
+        return prepares;
+    }
+
+    /**
+     * @return Total time spent compiling the SQL, in nanoseconds.
+     */
+    public long getPrepareNanos() {
+        return prepareNanos;
+    }
+
+    /**
+     * @return Number of calls to sqlite3_step(), including the one that ends each execution;
+     *         the steps of executeUpdate(String), which may run several SQL statements in
+     *         one native call, are not counted.
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return Number of result rows returned to the application.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return Total time spent executing the statements in native code, in nanoseconds.
+     */
+    public long getNativeNanos() {
+        return nativeNanos;
+    }
+
+    /**
+     * @return Longest time spent in native code by a single execution, in nanoseconds.
+     */
+    public long getMaxNativeNanos() {
+        return maxNativeNanos;
+    }
+
+    /**
+     * @return Number of bytes of text and BLOB values copied out of native code.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return Time spent in the steps which gave up waiting for a lock of the database
+     *         with SQLITE_BUSY, in nanoseconds.
+     */
+    public long getBusyNanos() {
+        return busyNanos;
+    }
+
+    /**
+     * @return Number of executions which took at least the slow query threshold.
+     * @see org.sqlite.SQLiteConfig#setSlowQueryThreshold(long)
+     */
+    public long getSlowExecutions() {
+        return slowExecutions;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s [executions=%d, prepares=%d, prepareNanos=%d, steps=%d, rows=%d, "
+                + "nativeNanos=%d, maxNativeNanos=%d, bytesRead=%d, busyNanos=%d, slowExecutions=%d]", sql,
+                executions, prepares, prepareNanos, steps, rows, nativeNanos, maxNativeNanos, bytesRead, busyNanos,
+                slowExecutions);
+    }
+}
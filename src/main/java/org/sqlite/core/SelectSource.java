@@ -0,0 +1,105 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite.core;
+
+import java.util.List;
+
+/**
+ * The table a plain SELECT reads each of its rows from, found by parsing statements of the
+ * form
+ * <pre>
+ * SELECT [DISTINCT|ALL] result, ... FROM [schema.]table [[AS] alias]
+ *     [INDEXED BY index | NOT INDEXED] [WHERE ...] [ORDER BY ...] [LIMIT ...]
+ * </pre>
+ * with no other SELECT in them. Such a statement reads a single row of the table for each
+ * row of its result. Anything else, e.g. a join, a subquery, a compound select or grouping,
+ * is not recognized.
+ */
+final class SelectSource
+{
+    /** Symbolic name of the database, or null if the table is not qualified. */
+    final String database;
+    /** Name of the table. */
+    final String table;
+
+    private SelectSource(String database, String table) {
+        this.database = database;
+        this.table = table;
+    }
+
+    /**
+     * @param sql An SQL statement.
+     * @return The table the statement selects from, or null if it has not the recognized
+     *         form.
+     */
+    static SelectSource parse(String sql) {
+        List<String> tokens = sql == null ? null : InsertTarget.tokenize(sql);
+        if (tokens == null || !InsertTarget.is(tokens, 0, "SELECT")) {
+            return null;
+        }
+        int n = tokens.size();
+        while (n > 0 && tokens.get(n - 1).equals(";")) {
+            n--;
+        }
+
+        int from = -1;
+        for (int i = 1; i < n; i++) {
+            String token = tokens.get(i);
+            if (token.equalsIgnoreCase("SELECT") || token.equalsIgnoreCase("JOIN")
+                    || token.equalsIgnoreCase("UNION") || token.equalsIgnoreCase("INTERSECT")
+                    || token.equalsIgnoreCase("EXCEPT") || token.equalsIgnoreCase("GROUP")
+                    || token.equalsIgnoreCase("HAVING") || token.equals(";")) {
+                return null;
+            }
+            if (from < 0 && token.equalsIgnoreCase("FROM")) {
+                from = i;
+            }
+        }
+        if (from < 0) {
+            return null;
+        }
+
+        int i = from + 1;
+        String database = null;
+        String table = i < n ? InsertTarget.name(tokens.get(i++)) : null;
+        if (i + 1 < n && tokens.get(i).equals(".")) {
+            database = table;
+            table = InsertTarget.name(tokens.get(i + 1));
+            i += 2;
+        }
+        if (table == null || isClause(tokens, from + 1)) {
+            return null;
+        }
+
+        if (InsertTarget.is(tokens, i, "AS")) {
+            i += 2;
+        }
+        else if (i < n && InsertTarget.name(tokens.get(i)) != null && !isClause(tokens, i)) {
+            i++;
+        }
+        if (i < n && !isClause(tokens, i)) {
+            return null;
+        }
+        return new SelectSource(database, table);
+    }
+
+    /**
+     * @return Whether a token starts one of the clauses allowed after the table.
+     */
+    private static boolean isClause(List<String> tokens, int i) {
+        return InsertTarget.is(tokens, i, "WHERE") || InsertTarget.is(tokens, i, "ORDER")
+                || InsertTarget.is(tokens, i, "LIMIT") || InsertTarget.is(tokens, i, "INDEXED")
+                || InsertTarget.is(tokens, i, "NOT");
+    }
+}
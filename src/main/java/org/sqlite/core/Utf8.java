@@ -0,0 +1,97 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite.core;
+
+import java.nio.charset.Charset;
+
+/**
+ * Converts text between Java strings and the UTF-8 that SQLite stores, so that text does
+ * not go through sqlite3_column_text16() and sqlite3_bind_text16(), which make SQLite
+ * transcode every value. Text that is pure ASCII, the common case, is converted byte
+ * for byte without a charset decoder.
+ */
+public final class Utf8
+{
+    public static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Maximum number of bytes a char encodes to; a surrogate pair takes 4 bytes for 2 chars. */
+    public static final int MAX_BYTES_PER_CHAR = 3;
+
+    private Utf8() {}
+
+    /**
+     * @param data UTF-8 bytes.
+     * @param length Number of bytes to decode.
+     * @return The decoded string.
+     */
+    @SuppressWarnings("deprecation")
+    public static String decode(byte[] data, int length) {
+        for (int i = 0; i < length; i++) {
+            if (data[i] < 0) {
+                return new String(data, 0, length, UTF8);
+            }
+        }
+        // ASCII bytes are their own chars
+        return new String(data, 0, 0, length);
+    }
+
+    /**
+     * Encodes a string like String.getBytes("UTF-8") does, unpaired surrogates becoming '?'.
+     * @param text The string to encode.
+     * @param data Buffer of at least MAX_BYTES_PER_CHAR bytes per char of the string.
+     * @return Number of bytes written.
+     */
+    public static int encode(String text, byte[] data) {
+        int length = text.length();
+        int pos = 0;
+        int i = 0;
+
+        // ASCII prefix
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            data[pos++] = (byte) c;
+            i++;
+        }
+
+        while (i < length) {
+            char c = text.charAt(i++);
+            if (c < 0x80) {
+                data[pos++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                data[pos++] = (byte) (0xc0 | (c >> 6));
+                data[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+            else if (Character.isHighSurrogate(c) && i < length && Character.isLowSurrogate(text.charAt(i))) {
+                int cp = Character.toCodePoint(c, text.charAt(i++));
+                data[pos++] = (byte) (0xf0 | (cp >> 18));
+                data[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                data[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                data[pos++] = (byte) (0x80 | (cp & 0x3f));
+            }
+            else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                data[pos++] = '?';
+            }
+            else {
+                data[pos++] = (byte) (0xe0 | (c >> 12));
+                data[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                data[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return pos;
+    }
+}
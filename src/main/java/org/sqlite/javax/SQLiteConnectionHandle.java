@@ -0,0 +1,786 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite.javax;
+
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * The logical connection handed out by {@link SQLitePooledConnection#getConnection()}.
+ * Calls are forwarded to the physical connection. Closing the handle closes the
+ * statements created through it and resets the physical connection instead of
+ * closing it.
+ */
+class SQLiteConnectionHandle implements Connection
+{
+    private final SQLitePooledConnection pooledConn;
+    private final Connection physicalConn;
+    private final Set<Statement> statements = new HashSet<Statement>();
+    private volatile boolean isClosed;
+
+    /**
+     * Constructor.
+     * @param pooledConn The pooled connection handing out the handle.
+     * @param physicalConn The physical connection.
+     */
+    SQLiteConnectionHandle(SQLitePooledConnection pooledConn, Connection physicalConn) {
+        this.pooledConn = pooledConn;
+        this.physicalConn = physicalConn;
+    }
+
+    /**
+     * @return The physical connection.
+     * @throws SQLException if the handle is closed.
+     */
+    private Connection conn() throws SQLException {
+        if (isClosed) {
+            throw new SQLException("Connection is closed");
+        }
+        return physicalConn;
+    }
+
+    /**
+     * Notifies the listeners of the pooled connection when the physical connection
+     * turns out to be closed.
+     * @param e The exception thrown by the physical connection.
+     * @return The exception.
+     */
+    private <E extends SQLException> E error(E e) {
+        if ("database connection closed".equals(e.getMessage())) {
+            pooledConn.connectionErrorOccurred(e);
+        }
+        return e;
+    }
+
+    private Statement track(Statement stmt) {
+        synchronized (statements) {
+            statements.add(stmt);
+        }
+        return stmt;
+    }
+
+    private PreparedStatement track(PreparedStatement prep) {
+        track((Statement) prep);
+        return prep;
+    }
+
+    /**
+     * Called when a statement created through the handle is closed.
+     * @param stmt The statement.
+     */
+    void statementClosed(Statement stmt) {
+        synchronized (statements) {
+            statements.remove(stmt);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#close()
+     */
+    public void close() throws SQLException {
+        if (isClosed) {
+            return;
+        }
+
+        boolean reset = false;
+        SQLException error = null;
+        try {
+            ArrayList<Statement> open;
+            synchronized (statements) {
+                open = new ArrayList<Statement>(statements);
+                statements.clear();
+            }
+            for (Statement stmt : open) {
+                stmt.close();
+            }
+
+            // reset the connection before listeners may hand it out again
+            if (!physicalConn.getAutoCommit()) {
+                physicalConn.rollback();
+            }
+            physicalConn.setAutoCommit(true);
+            reset = true;
+        }
+        catch (SQLException e) {
+            error = e;
+            throw e;
+        }
+        finally {
+            isClosed = true;
+            // a connection which could not be reset is discarded rather than handed out again
+            if (reset) {
+                pooledConn.connectionClosed();
+            }
+            else {
+                pooledConn.connectionErrorOccurred(error != null ? error
+                        : new SQLException("connection could not be reset"));
+            }
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#isClosed()
+     */
+    public boolean isClosed() throws SQLException {
+        if (!isClosed) {
+            isClosed = physicalConn.isClosed();
+        }
+        return isClosed;
+    }
+
+    /**
+     * @see java.sql.Connection#createStatement()
+     */
+    public Statement createStatement() throws SQLException {
+        try {
+            return track(new SQLiteStatementHandle(this, conn().createStatement()));
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#createStatement(int, int)
+     */
+    public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+        try {
+            return track(new SQLiteStatementHandle(this, conn().createStatement(resultSetType, resultSetConcurrency)));
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#createStatement(int, int, int)
+     */
+    public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability)
+            throws SQLException {
+        try {
+            return track(new SQLiteStatementHandle(this,
+                    conn().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability)));
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#prepareStatement(java.lang.String)
+     */
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        try {
+            return track(new SQLitePreparedStatementHandle(this, conn().prepareStatement(sql)));
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#prepareStatement(java.lang.String, int)
+     */
+    public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+        try {
+            return track(new SQLitePreparedStatementHandle(this, conn().prepareStatement(sql, autoGeneratedKeys)));
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#prepareStatement(java.lang.String, int[])
+     */
+    public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+        try {
+            return track(new SQLitePreparedStatementHandle(this, conn().prepareStatement(sql, columnIndexes)));
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#prepareStatement(java.lang.String, java.lang.String[])
+     */
+    public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+        try {
+            return track(new SQLitePreparedStatementHandle(this, conn().prepareStatement(sql, columnNames)));
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#prepareStatement(java.lang.String, int, int)
+     */
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
+            throws SQLException {
+        try {
+            return track(new SQLitePreparedStatementHandle(this,
+                    conn().prepareStatement(sql, resultSetType, resultSetConcurrency)));
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#prepareStatement(java.lang.String, int, int, int)
+     */
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency,
+            int resultSetHoldability) throws SQLException {
+        try {
+            return track(new SQLitePreparedStatementHandle(this,
+                    conn().prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability)));
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#setClientInfo(java.lang.String, java.lang.String)
+     */
+    public void setClientInfo(String name, String value) throws SQLClientInfoException {
+        if (isClosed) {
+            throw new SQLClientInfoException("Connection is closed", null);
+        }
+        try {
+            physicalConn.setClientInfo(name, value);
+        }
+        catch (SQLClientInfoException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#setClientInfo(java.util.Properties)
+     */
+    public void setClientInfo(Properties properties) throws SQLClientInfoException {
+        if (isClosed) {
+            throw new SQLClientInfoException("Connection is closed", null);
+        }
+        try {
+            physicalConn.setClientInfo(properties);
+        }
+        catch (SQLClientInfoException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#prepareCall(java.lang.String)
+     */
+    public CallableStatement prepareCall(String sql) throws SQLException {
+        try {
+            return conn().prepareCall(sql);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#nativeSQL(java.lang.String)
+     */
+    public String nativeSQL(String sql) throws SQLException {
+        try {
+            return conn().nativeSQL(sql);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#setAutoCommit(boolean)
+     */
+    public void setAutoCommit(boolean autoCommit) throws SQLException {
+        try {
+            conn().setAutoCommit(autoCommit);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#getAutoCommit()
+     */
+    public boolean getAutoCommit() throws SQLException {
+        try {
+            return conn().getAutoCommit();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#commit()
+     */
+    public void commit() throws SQLException {
+        try {
+            conn().commit();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#rollback()
+     */
+    public void rollback() throws SQLException {
+        try {
+            conn().rollback();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#getMetaData()
+     */
+    public DatabaseMetaData getMetaData() throws SQLException {
+        try {
+            return conn().getMetaData();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#setReadOnly(boolean)
+     */
+    public void setReadOnly(boolean readOnly) throws SQLException {
+        try {
+            conn().setReadOnly(readOnly);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#isReadOnly()
+     */
+    public boolean isReadOnly() throws SQLException {
+        try {
+            return conn().isReadOnly();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#setCatalog(java.lang.String)
+     */
+    public void setCatalog(String catalog) throws SQLException {
+        try {
+            conn().setCatalog(catalog);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#getCatalog()
+     */
+    public String getCatalog() throws SQLException {
+        try {
+            return conn().getCatalog();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#setTransactionIsolation(int)
+     */
+    public void setTransactionIsolation(int level) throws SQLException {
+        try {
+            conn().setTransactionIsolation(level);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#getTransactionIsolation()
+     */
+    public int getTransactionIsolation() throws SQLException {
+        try {
+            return conn().getTransactionIsolation();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#getWarnings()
+     */
+    public SQLWarning getWarnings() throws SQLException {
+        try {
+            return conn().getWarnings();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#clearWarnings()
+     */
+    public void clearWarnings() throws SQLException {
+        try {
+            conn().clearWarnings();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#prepareCall(java.lang.String, int, int)
+     */
+    public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+        try {
+            return conn().prepareCall(sql, resultSetType, resultSetConcurrency);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#getTypeMap()
+     */
+    public Map<String, Class<?>> getTypeMap() throws SQLException {
+        try {
+            return conn().getTypeMap();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#setTypeMap(java.util.Map)
+     */
+    public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+        try {
+            conn().setTypeMap(map);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#setHoldability(int)
+     */
+    public void setHoldability(int holdability) throws SQLException {
+        try {
+            conn().setHoldability(holdability);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#getHoldability()
+     */
+    public int getHoldability() throws SQLException {
+        try {
+            return conn().getHoldability();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#setSavepoint()
+     */
+    public Savepoint setSavepoint() throws SQLException {
+        try {
+            return conn().setSavepoint();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#setSavepoint(java.lang.String)
+     */
+    public Savepoint setSavepoint(String name) throws SQLException {
+        try {
+            return conn().setSavepoint(name);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#rollback(java.sql.Savepoint)
+     */
+    public void rollback(Savepoint savepoint) throws SQLException {
+        try {
+            conn().rollback(savepoint);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#releaseSavepoint(java.sql.Savepoint)
+     */
+    public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+        try {
+            conn().releaseSavepoint(savepoint);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#prepareCall(java.lang.String, int, int, int)
+     */
+    public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+        try {
+            return conn().prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#createClob()
+     */
+    public Clob createClob() throws SQLException {
+        try {
+            return conn().createClob();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#createBlob()
+     */
+    public Blob createBlob() throws SQLException {
+        try {
+            return conn().createBlob();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#createNClob()
+     */
+    public NClob createNClob() throws SQLException {
+        try {
+            return conn().createNClob();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#createSQLXML()
+     */
+    public SQLXML createSQLXML() throws SQLException {
+        try {
+            return conn().createSQLXML();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#isValid(int)
+     */
+    public boolean isValid(int timeout) throws SQLException {
+        try {
+            return conn().isValid(timeout);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#getClientInfo(java.lang.String)
+     */
+    public String getClientInfo(String name) throws SQLException {
+        try {
+            return conn().getClientInfo(name);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#getClientInfo()
+     */
+    public Properties getClientInfo() throws SQLException {
+        try {
+            return conn().getClientInfo();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#createArrayOf(java.lang.String, java.lang.Object[])
+     */
+    public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+        try {
+            return conn().createArrayOf(typeName, elements);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#createStruct(java.lang.String, java.lang.Object[])
+     */
+    public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
+        try {
+            return conn().createStruct(typeName, attributes);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#setSchema(java.lang.String)
+     */
+    public void setSchema(String schema) throws SQLException {
+        try {
+            conn().setSchema(schema);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#getSchema()
+     */
+    public String getSchema() throws SQLException {
+        try {
+            return conn().getSchema();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#abort(java.util.concurrent.Executor)
+     */
+    public void abort(Executor executor) throws SQLException {
+        try {
+            conn().abort(executor);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#setNetworkTimeout(java.util.concurrent.Executor, int)
+     */
+    public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
+        try {
+            conn().setNetworkTimeout(executor, milliseconds);
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Connection#getNetworkTimeout()
+     */
+    public int getNetworkTimeout() throws SQLException {
+        try {
+            return conn().getNetworkTimeout();
+        }
+        catch (SQLException e) {
+            throw error(e);
+        }
+    }
+
+    /**
+     * @see java.sql.Wrapper#isWrapperFor(java.lang.Class)
+     */
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || conn().isWrapperFor(iface);
+    }
+
+    /**
+     * @see java.sql.Wrapper#unwrap(java.lang.Class)
+     */
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : conn().unwrap(iface);
+    }
+}
@@ -18,10 +18,6 @@ import javax.sql.ConnectionEventListener;
 import javax.sql.PooledConnection;
 import org.sqlite.jdbc4.JDBC4PooledConnection;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -67,61 +63,33 @@ public class SQLitePooledConnection extends JDBC4PooledConnection implements Poo
         if (handleConn != null)
             handleConn.close();
 
-        handleConn = (Connection)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
-            new InvocationHandler() {
-                boolean isClosed;
-
-                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-                    try {
-                        String name = method.getName();
-                        if ("close".equals(name)) {
-                            ConnectionEvent event = new ConnectionEvent(SQLitePooledConnection.this);
-
-                            for (int i = listeners.size() - 1; i >= 0; i--) {
-                                listeners.get(i).connectionClosed(event);
-                            }
-
-                            if (!physicalConn.getAutoCommit()) {
-                                physicalConn.rollback();
-                            }
-                            physicalConn.setAutoCommit(true);
-                            isClosed = true;
-
-                            return null; // don't close physical connection
-                        }
-                        else if ("isClosed".equals(name)) {
-                            if (!isClosed)
-                                isClosed = ((Boolean)method.invoke(physicalConn, args)).booleanValue();
-
-                            return isClosed;
-                        }
-
-                        if (isClosed) {
-                            throw new SQLException ("Connection is closed");
-                        }
-
-                        return method.invoke(physicalConn, args);
-                    }
-                    catch (SQLException e){
-                        if ("database connection closed".equals(e.getMessage())) {
-                            ConnectionEvent event = new ConnectionEvent(SQLitePooledConnection.this, e);
-
-                            for (int i = listeners.size() - 1; i >= 0; i--) {
-                                listeners.get(i).connectionErrorOccurred(event);
-                            }
-                        }
-
-                        throw e;
-                    }
-                    catch (InvocationTargetException ex) {
-                        throw ex.getCause();
-                    }
-                }
-            });
-
+        handleConn = new SQLiteConnectionHandle(this, physicalConn);
         return handleConn;
     }
 
+    /**
+     * Notifies the listeners that the current handle was closed.
+     */
+    void connectionClosed() {
+        ConnectionEvent event = new ConnectionEvent(this);
+
+        for (int i = listeners.size() - 1; i >= 0; i--) {
+            listeners.get(i).connectionClosed(event);
+        }
+    }
+
+    /**
+     * Notifies the listeners that the physical connection can no longer be used.
+     * @param e The exception thrown by the physical connection.
+     */
+    void connectionErrorOccurred(SQLException e) {
+        ConnectionEvent event = new ConnectionEvent(this, e);
+
+        for (int i = listeners.size() - 1; i >= 0; i--) {
+            listeners.get(i).connectionErrorOccurred(event);
+        }
+    }
+
     /**
      * @see javax.sql.PooledConnection#addConnectionEventListener(javax.sql.ConnectionEventListener)
      */
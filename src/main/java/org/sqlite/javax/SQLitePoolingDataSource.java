@@ -0,0 +1,494 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite.javax;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Properties;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+
+import org.sqlite.JDBC;
+import org.sqlite.SQLiteConfig;
+
+/**
+ * A {@link javax.sql.DataSource} that keeps its physical connections open and hands them
+ * out again, so that a logical connection does not pay for opening the database and
+ * applying the configuration each time.
+ * <p>
+ * SQLite allows a single writer at a time, so connections are kept in two pools:
+ * {@link #getConnection()} borrows from a small pool of read-write connections and
+ * {@link #getReadOnlyConnection()} from a separate pool of connections opened in
+ * read-only mode. Readers only see the same database as the writers when the URL
+ * names a file, or a shared in-memory database.
+ * <p>
+ * Connections above the minimum pool size are closed once they have been idle for
+ * longer than the idle timeout. Idle connections are evicted whenever a connection is
+ * borrowed or returned, or when {@link #evictIdleConnections()} is called.
+ */
+public class SQLitePoolingDataSource extends SQLiteConnectionPoolDataSource {
+
+    private int minPoolSize = 0;
+    private int maxPoolSize = 1;
+    private int minReadOnlyPoolSize = 0;
+    private int maxReadOnlyPoolSize = 4;
+    private long idleTimeout = 60000;
+    private long maxWait = 30000;
+    private String validationQuery;
+
+    private Pool writers;
+    private Pool readers;
+    private boolean closed;
+
+    /**
+     * Default constructor.
+     */
+    public SQLitePoolingDataSource() {
+        super();
+    }
+
+    /**
+     * Creates a data source based on the provided configuration.
+     * @param config The configuration for the data source.
+     */
+    public SQLitePoolingDataSource(SQLiteConfig config) {
+        super(config);
+    }
+
+    /**
+     * Sets the number of read-write connections kept open even when idle.
+     * @param size The minimum size of the pool.
+     */
+    public void setMinPoolSize(int size) {
+        minPoolSize = size;
+    }
+
+    /**
+     * @return The number of read-write connections kept open even when idle.
+     */
+    public int getMinPoolSize() {
+        return minPoolSize;
+    }
+
+    /**
+     * Sets the maximum number of read-write connections. Defaults to 1, as SQLite
+     * allows a single writer at a time.
+     * @param size The maximum size of the pool.
+     */
+    public void setMaxPoolSize(int size) {
+        maxPoolSize = size;
+    }
+
+    /**
+     * @return The maximum number of read-write connections.
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * Sets the number of read-only connections kept open even when idle.
+     * @param size The minimum size of the pool.
+     */
+    public void setMinReadOnlyPoolSize(int size) {
+        minReadOnlyPoolSize = size;
+    }
+
+    /**
+     * @return The number of read-only connections kept open even when idle.
+     */
+    public int getMinReadOnlyPoolSize() {
+        return minReadOnlyPoolSize;
+    }
+
+    /**
+     * Sets the maximum number of read-only connections.
+     * @param size The maximum size of the pool.
+     */
+    public void setMaxReadOnlyPoolSize(int size) {
+        maxReadOnlyPoolSize = size;
+    }
+
+    /**
+     * @return The maximum number of read-only connections.
+     */
+    public int getMaxReadOnlyPoolSize() {
+        return maxReadOnlyPoolSize;
+    }
+
+    /**
+     * Sets how long a connection above the minimum pool size may stay idle before it
+     * is closed.
+     * @param millis The timeout in milliseconds; 0 or less to never close idle connections.
+     */
+    public void setIdleTimeout(long millis) {
+        idleTimeout = millis;
+    }
+
+    /**
+     * @return The idle timeout in milliseconds.
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Sets how long {@link #getConnection()} waits for a connection when the pool is
+     * exhausted.
+     * @param millis The time to wait in milliseconds; 0 to wait forever.
+     */
+    public void setMaxWait(long millis) {
+        maxWait = millis;
+    }
+
+    /**
+     * @return The time to wait for a connection in milliseconds.
+     */
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * Sets a query run on an idle connection before it is handed out again. A connection
+     * for which the query fails is closed and replaced. Without a query, connections are
+     * only checked for being closed.
+     * @param sql The validation query, e.g. "select 1"; null to disable.
+     */
+    public void setValidationQuery(String sql) {
+        validationQuery = sql;
+    }
+
+    /**
+     * @return The validation query.
+     */
+    public String getValidationQuery() {
+        return validationQuery;
+    }
+
+    /**
+     * Borrows a read-write connection from the pool. Closing it returns it to the pool.
+     * @see javax.sql.DataSource#getConnection()
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return writers().borrow();
+    }
+
+    /**
+     * Borrows a read-write connection from the pool. SQLite does not authenticate users,
+     * so the credentials are ignored.
+     * @see javax.sql.DataSource#getConnection(java.lang.String, java.lang.String)
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection();
+    }
+
+    /**
+     * Borrows a connection from the read-only pool. Closing it returns it to the pool.
+     * @return The connection.
+     * @throws SQLException
+     */
+    public Connection getReadOnlyConnection() throws SQLException {
+        return readers().borrow();
+    }
+
+    /**
+     * @return The number of idle connections in both pools.
+     */
+    public synchronized int getIdleCount() {
+        return (writers == null ? 0 : writers.idleCount()) + (readers == null ? 0 : readers.idleCount());
+    }
+
+    /**
+     * @return The number of open physical connections in both pools.
+     */
+    public synchronized int getOpenCount() {
+        return (writers == null ? 0 : writers.openCount()) + (readers == null ? 0 : readers.openCount());
+    }
+
+    /**
+     * Closes the connections above the minimum pool size that have been idle for longer
+     * than the idle timeout.
+     */
+    public synchronized void evictIdleConnections() {
+        if (writers != null) {
+            writers.evict();
+        }
+        if (readers != null) {
+            readers.evict();
+        }
+    }
+
+    /**
+     * Closes the idle connections of both pools. Connections in use are closed when they
+     * are returned, and no new connection can be borrowed.
+     * @throws SQLException
+     */
+    public synchronized void close() throws SQLException {
+        closed = true;
+        if (writers != null) {
+            writers.close();
+        }
+        if (readers != null) {
+            readers.close();
+        }
+    }
+
+    private synchronized Pool writers() throws SQLException {
+        checkOpen();
+        if (writers == null) {
+            writers = new Pool(copyConfig(false), minPoolSize, maxPoolSize);
+        }
+        return writers;
+    }
+
+    private synchronized Pool readers() throws SQLException {
+        checkOpen();
+        if (readers == null) {
+            readers = new Pool(copyConfig(true), minReadOnlyPoolSize, maxReadOnlyPoolSize);
+        }
+        return readers;
+    }
+
+    private void checkOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("data source closed");
+        }
+    }
+
+    /**
+     * The configuration is copied when a pool is created, so that changing the data
+     * source afterwards does not leave the pool with connections set up differently.
+     */
+    private Properties copyConfig(boolean readOnly) {
+        Properties prop = new Properties();
+        prop.putAll(getConfig().toProperties());
+        if (readOnly) {
+            SQLiteConfig config = new SQLiteConfig(prop);
+            config.setReadOnly(true);
+            prop = config.toProperties();
+        }
+        return prop;
+    }
+
+    /**
+     * A physical connection waiting in a pool.
+     */
+    private static class Entry {
+        final SQLitePooledConnection conn;
+        long idleSince;
+
+        Entry(SQLitePooledConnection conn) {
+            this.conn = conn;
+        }
+    }
+
+    /**
+     * A pool of connections sharing the same configuration. Idle connections are reused
+     * most recently returned first, so that the ones left over after a burst stay idle
+     * and are evicted.
+     */
+    private class Pool implements ConnectionEventListener {
+        private final Properties prop;
+        private final int minSize;
+        private final int maxSize;
+        private final LinkedList<Entry> idle = new LinkedList<Entry>();
+        private int open;
+        private boolean poolClosed;
+
+        Pool(Properties prop, int minSize, int maxSize) {
+            this.prop = prop;
+            this.minSize = minSize;
+            this.maxSize = Math.max(1, maxSize);
+        }
+
+        Connection borrow() throws SQLException {
+            SQLitePooledConnection conn = take();
+            try {
+                return conn.getConnection();
+            }
+            catch (SQLException e) {
+                discard(conn);
+                throw e;
+            }
+        }
+
+        private SQLitePooledConnection take() throws SQLException {
+            long deadline = maxWait > 0 ? System.currentTimeMillis() + maxWait : 0;
+
+            while (true) {
+                Entry entry = null;
+                synchronized (this) {
+                    if (poolClosed) {
+                        throw new SQLException("data source closed");
+                    }
+                    evict();
+
+                    if (!idle.isEmpty()) {
+                        entry = idle.removeFirst();
+                    }
+                    else if (open < maxSize) {
+                        open++;
+                    }
+                    else {
+                        long wait = deadline == 0 ? 0 : deadline - System.currentTimeMillis();
+                        if (deadline != 0 && wait <= 0) {
+                            throw new SQLTimeoutException("timed out waiting for a pooled connection");
+                        }
+                        try {
+                            wait(wait);
+                        }
+                        catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new SQLException("interrupted while waiting for a pooled connection");
+                        }
+                        continue;
+                    }
+                }
+
+                if (entry == null) {
+                    return open();
+                }
+                if (validate(entry.conn)) {
+                    return entry.conn;
+                }
+                discard(entry.conn);
+            }
+        }
+
+        /**
+         * Opens a physical connection for a slot already counted in {@link #open}.
+         */
+        private SQLitePooledConnection open() throws SQLException {
+            try {
+                Connection physical = JDBC.createConnection(getUrl(), prop);
+                if (physical == null) {
+                    throw new SQLException("invalid database address: " + getUrl());
+                }
+                SQLitePooledConnection conn = new SQLitePooledConnection(physical);
+                conn.addConnectionEventListener(this);
+                return conn;
+            }
+            catch (SQLException e) {
+                release();
+                throw e;
+            }
+            catch (RuntimeException e) {
+                release();
+                throw e;
+            }
+        }
+
+        private boolean validate(SQLitePooledConnection conn) {
+            try {
+                if (conn.physicalConn == null || conn.physicalConn.isClosed()) {
+                    return false;
+                }
+                if (validationQuery != null) {
+                    Statement stat = conn.physicalConn.createStatement();
+                    try {
+                        stat.execute(validationQuery);
+                    }
+                    finally {
+                        stat.close();
+                    }
+                }
+                return true;
+            }
+            catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private void discard(SQLitePooledConnection conn) {
+            try {
+                conn.close();
+            }
+            catch (SQLException e) {
+                // the connection is dropped from the pool either way
+            }
+            finally {
+                release();
+            }
+        }
+
+        private synchronized void release() {
+            open--;
+            notifyAll();
+        }
+
+        /**
+         * Closes the connections idle for longer than the idle timeout, oldest first,
+         * while keeping the minimum pool size.
+         */
+        synchronized void evict() {
+            if (idleTimeout <= 0) {
+                return;
+            }
+            long limit = System.currentTimeMillis() - idleTimeout;
+            while (open > minSize && !idle.isEmpty() && idle.getLast().idleSince < limit) {
+                Entry entry = idle.removeLast();
+                discard(entry.conn);
+            }
+        }
+
+        synchronized int idleCount() {
+            return idle.size();
+        }
+
+        synchronized int openCount() {
+            return open;
+        }
+
+        synchronized void close() {
+            poolClosed = true;
+            for (Iterator<Entry> i = idle.iterator(); i.hasNext();) {
+                Entry entry = i.next();
+                i.remove();
+                discard(entry.conn);
+            }
+        }
+
+        /**
+         * @see javax.sql.ConnectionEventListener#connectionClosed(javax.sql.ConnectionEvent)
+         */
+        public void connectionClosed(ConnectionEvent event) {
+            SQLitePooledConnection conn = (SQLitePooledConnection) event.getSource();
+            synchronized (this) {
+                if (!poolClosed) {
+                    Entry entry = new Entry(conn);
+                    entry.idleSince = System.currentTimeMillis();
+                    idle.addFirst(entry);
+                    notifyAll();
+                    evict();
+                    return;
+                }
+            }
+            discard(conn);
+        }
+
+        /**
+         * @see javax.sql.ConnectionEventListener#connectionErrorOccurred(javax.sql.ConnectionEvent)
+         */
+        public void connectionErrorOccurred(ConnectionEvent event) {
+            discard((SQLitePooledConnection) event.getSource());
+        }
+    }
+}
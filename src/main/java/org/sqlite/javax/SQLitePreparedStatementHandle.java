@@ -0,0 +1,439 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite.javax;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+/**
+ * A prepared statement created through a pooled connection handle, forwarding its
+ * calls to the prepared statement of the physical connection.
+ */
+class SQLitePreparedStatementHandle extends SQLiteStatementHandle implements PreparedStatement
+{
+    private final PreparedStatement prep;
+
+    /**
+     * Constructor.
+     * @param conn The connection handle creating the statement.
+     * @param prep The prepared statement of the physical connection.
+     */
+    SQLitePreparedStatementHandle(SQLiteConnectionHandle conn, PreparedStatement prep) {
+        super(conn, prep);
+        this.prep = prep;
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#executeQuery()
+     */
+    public ResultSet executeQuery() throws SQLException {
+        return prep.executeQuery();
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#executeUpdate()
+     */
+    public int executeUpdate() throws SQLException {
+        return prep.executeUpdate();
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setNull(int, int)
+     */
+    public void setNull(int parameterIndex, int sqlType) throws SQLException {
+        prep.setNull(parameterIndex, sqlType);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setBoolean(int, boolean)
+     */
+    public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+        prep.setBoolean(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setByte(int, byte)
+     */
+    public void setByte(int parameterIndex, byte x) throws SQLException {
+        prep.setByte(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setShort(int, short)
+     */
+    public void setShort(int parameterIndex, short x) throws SQLException {
+        prep.setShort(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setInt(int, int)
+     */
+    public void setInt(int parameterIndex, int x) throws SQLException {
+        prep.setInt(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setLong(int, long)
+     */
+    public void setLong(int parameterIndex, long x) throws SQLException {
+        prep.setLong(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setFloat(int, float)
+     */
+    public void setFloat(int parameterIndex, float x) throws SQLException {
+        prep.setFloat(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setDouble(int, double)
+     */
+    public void setDouble(int parameterIndex, double x) throws SQLException {
+        prep.setDouble(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setBigDecimal(int, java.math.BigDecimal)
+     */
+    public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+        prep.setBigDecimal(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setString(int, java.lang.String)
+     */
+    public void setString(int parameterIndex, String x) throws SQLException {
+        prep.setString(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setBytes(int, byte[])
+     */
+    public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+        prep.setBytes(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setDate(int, java.sql.Date)
+     */
+    public void setDate(int parameterIndex, Date x) throws SQLException {
+        prep.setDate(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setTime(int, java.sql.Time)
+     */
+    public void setTime(int parameterIndex, Time x) throws SQLException {
+        prep.setTime(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setTimestamp(int, java.sql.Timestamp)
+     */
+    public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+        prep.setTimestamp(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setAsciiStream(int, java.io.InputStream, int)
+     */
+    public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
+        prep.setAsciiStream(parameterIndex, x, length);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setUnicodeStream(int, java.io.InputStream, int)
+     */
+    public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
+        prep.setUnicodeStream(parameterIndex, x, length);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setBinaryStream(int, java.io.InputStream, int)
+     */
+    public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
+        prep.setBinaryStream(parameterIndex, x, length);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#clearParameters()
+     */
+    public void clearParameters() throws SQLException {
+        prep.clearParameters();
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setObject(int, java.lang.Object, int)
+     */
+    public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+        prep.setObject(parameterIndex, x, targetSqlType);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setObject(int, java.lang.Object)
+     */
+    public void setObject(int parameterIndex, Object x) throws SQLException {
+        prep.setObject(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#execute()
+     */
+    public boolean execute() throws SQLException {
+        return prep.execute();
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#addBatch()
+     */
+    public void addBatch() throws SQLException {
+        prep.addBatch();
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setCharacterStream(int, java.io.Reader, int)
+     */
+    public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
+        prep.setCharacterStream(parameterIndex, reader, length);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setRef(int, java.sql.Ref)
+     */
+    public void setRef(int parameterIndex, Ref x) throws SQLException {
+        prep.setRef(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setBlob(int, java.sql.Blob)
+     */
+    public void setBlob(int parameterIndex, Blob x) throws SQLException {
+        prep.setBlob(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setClob(int, java.sql.Clob)
+     */
+    public void setClob(int parameterIndex, Clob x) throws SQLException {
+        prep.setClob(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setArray(int, java.sql.Array)
+     */
+    public void setArray(int parameterIndex, Array x) throws SQLException {
+        prep.setArray(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#getMetaData()
+     */
+    public ResultSetMetaData getMetaData() throws SQLException {
+        return prep.getMetaData();
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setDate(int, java.sql.Date, java.util.Calendar)
+     */
+    public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
+        prep.setDate(parameterIndex, x, cal);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setTime(int, java.sql.Time, java.util.Calendar)
+     */
+    public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
+        prep.setTime(parameterIndex, x, cal);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setTimestamp(int, java.sql.Timestamp, java.util.Calendar)
+     */
+    public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
+        prep.setTimestamp(parameterIndex, x, cal);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setNull(int, int, java.lang.String)
+     */
+    public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+        prep.setNull(parameterIndex, sqlType, typeName);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setURL(int, java.net.URL)
+     */
+    public void setURL(int parameterIndex, URL x) throws SQLException {
+        prep.setURL(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#getParameterMetaData()
+     */
+    public ParameterMetaData getParameterMetaData() throws SQLException {
+        return prep.getParameterMetaData();
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setRowId(int, java.sql.RowId)
+     */
+    public void setRowId(int parameterIndex, RowId x) throws SQLException {
+        prep.setRowId(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setNString(int, java.lang.String)
+     */
+    public void setNString(int parameterIndex, String value) throws SQLException {
+        prep.setNString(parameterIndex, value);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setNCharacterStream(int, java.io.Reader, long)
+     */
+    public void setNCharacterStream(int parameterIndex, Reader value, long length) throws SQLException {
+        prep.setNCharacterStream(parameterIndex, value, length);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setNClob(int, java.sql.NClob)
+     */
+    public void setNClob(int parameterIndex, NClob x) throws SQLException {
+        prep.setNClob(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setClob(int, java.io.Reader, long)
+     */
+    public void setClob(int parameterIndex, Reader reader, long length) throws SQLException {
+        prep.setClob(parameterIndex, reader, length);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setBlob(int, java.io.InputStream, long)
+     */
+    public void setBlob(int parameterIndex, InputStream inputStream, long length) throws SQLException {
+        prep.setBlob(parameterIndex, inputStream, length);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setNClob(int, java.io.Reader, long)
+     */
+    public void setNClob(int parameterIndex, Reader reader, long length) throws SQLException {
+        prep.setNClob(parameterIndex, reader, length);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setSQLXML(int, java.sql.SQLXML)
+     */
+    public void setSQLXML(int parameterIndex, SQLXML x) throws SQLException {
+        prep.setSQLXML(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setObject(int, java.lang.Object, int, int)
+     */
+    public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
+        prep.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setAsciiStream(int, java.io.InputStream, long)
+     */
+    public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
+        prep.setAsciiStream(parameterIndex, x, length);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setBinaryStream(int, java.io.InputStream, long)
+     */
+    public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
+        prep.setBinaryStream(parameterIndex, x, length);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setCharacterStream(int, java.io.Reader, long)
+     */
+    public void setCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
+        prep.setCharacterStream(parameterIndex, reader, length);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setAsciiStream(int, java.io.InputStream)
+     */
+    public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
+        prep.setAsciiStream(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setBinaryStream(int, java.io.InputStream)
+     */
+    public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
+        prep.setBinaryStream(parameterIndex, x);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setCharacterStream(int, java.io.Reader)
+     */
+    public void setCharacterStream(int parameterIndex, Reader reader) throws SQLException {
+        prep.setCharacterStream(parameterIndex, reader);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setNCharacterStream(int, java.io.Reader)
+     */
+    public void setNCharacterStream(int parameterIndex, Reader value) throws SQLException {
+        prep.setNCharacterStream(parameterIndex, value);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setClob(int, java.io.Reader)
+     */
+    public void setClob(int parameterIndex, Reader reader) throws SQLException {
+        prep.setClob(parameterIndex, reader);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setBlob(int, java.io.InputStream)
+     */
+    public void setBlob(int parameterIndex, InputStream inputStream) throws SQLException {
+        prep.setBlob(parameterIndex, inputStream);
+    }
+
+    /**
+     * @see java.sql.PreparedStatement#setNClob(int, java.io.Reader)
+     */
+    public void setNClob(int parameterIndex, Reader reader) throws SQLException {
+        prep.setNClob(parameterIndex, reader);
+    }
+}
@@ -35,8 +35,10 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
      */
     public void clearParameters() throws SQLException {
         checkOpen();
-        db.clear_bindings(pointer);
-        batch = null;
+        synchronized (db) {
+            db.clear_bindings(pointer);
+        }
+        params = null;
     }
 
     /**
@@ -44,17 +46,19 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
      */
     public boolean execute() throws SQLException {
         checkOpen();
-        rs.close();
-        db.reset(pointer);
-        checkParameters();
-
-        boolean success = false;
-        try {
-            resultsWaiting = db.execute(this, batch);
-            success = true;
-            return columnCount != 0;
-        } finally {
-            if (!success) db.reset(pointer);
+        synchronized (db) {
+            rs.close();
+            db.reset(pointer);
+            checkParameters();
+
+            boolean success = false;
+            try {
+                resultsWaiting = db.execute(this, params);
+                success = true;
+                return columnCount != 0;
+            } finally {
+                if (!success) db.reset(pointer);
+            }
         }
     }
 
@@ -68,18 +72,20 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
             throw new SQLException("Query does not return results");
         }
 
-        rs.close();
-        db.reset(pointer);
-        checkParameters();
-
-        boolean success = false;
-        try {
-            resultsWaiting = db.execute(this, batch);
-            success = true;
-        } finally {
-            if (!success) db.reset(pointer);
+        synchronized (db) {
+            rs.close();
+            db.reset(pointer);
+            checkParameters();
+
+            boolean success = false;
+            try {
+                resultsWaiting = db.execute(this, params);
+                success = true;
+            } finally {
+                if (!success) db.reset(pointer);
+            }
+            return getResultSet();
         }
-        return getResultSet();
     }
 
     /**
@@ -92,11 +98,13 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
             throw new SQLException("Query returns results");
         }
 
-        rs.close();
-        db.reset(pointer);
-        checkParameters();
+        synchronized (db) {
+            rs.close();
+            db.reset(pointer);
+            checkParameters();
 
-        return db.executeUpdate(this, batch);
+            return db.executeUpdate(this, params);
+        }
     }
 
     /**
@@ -104,13 +112,14 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
      */
     public void addBatch() throws SQLException {
         checkOpen();
+        checkParameters();
+        batchReadStreams();
         batchPos += paramCount;
-        if (batchPos + paramCount > batch.length) {
-            Object[] nb = new Object[batch.length * 2];
-            System.arraycopy(batch, 0, nb, 0, batch.length);
-            batch = nb;
+        if (params == null) {
+            return;
         }
-        System.arraycopy(batch, batchPos - paramCount, batch, batchPos, paramCount);
+        params.ensureCapacity(batchPos + paramCount);
+        params.copy(batchPos - paramCount, batchPos, paramCount);
     }
 
     // ParameterMetaData FUNCTIONS //////////////////////////////////
@@ -198,7 +207,7 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
      * @see java.sql.PreparedStatement#setBigDecimal(int, java.math.BigDecimal)
      */
     public void setBigDecimal(int pos, BigDecimal value) throws SQLException {
-        batch(pos, value == null ? null : value.toString());
+        batchText(pos, value == null ? null : value.toString());
     }
 
     /**
@@ -243,14 +252,13 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
     }
 
     /**
+     * Sets a parameter to the bytes of a stream without reading them into memory as a whole
+     * if the statement inserts the parameter into a column of a table with a rowid, see
+     * {@link org.sqlite.core.CorePreparedStatement#batchBlobStream(int, InputStream, int)}.
      * @see java.sql.PreparedStatement#setBinaryStream(int, java.io.InputStream, int)
      */
     public void setBinaryStream(int pos, InputStream istream, int length) throws SQLException {
-        if (istream == null && length == 0) {
-            setBytes(pos, null);
-        }
-
-        setBytes(pos, readBytes(istream, length));
+        batchBlobStream(pos, istream, length);
     }
 
     /**
@@ -278,6 +286,23 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
         }
     }
 
+    /**
+     * Sets a parameter to the bytes of a Blob, streamed as by
+     * {@link #setBinaryStream(int, InputStream, int)}.
+     * @see java.sql.PreparedStatement#setBlob(int, java.sql.Blob)
+     */
+    public void setBlob(int pos, Blob x) throws SQLException {
+        if (x == null) {
+            batchNull(pos);
+            return;
+        }
+        long length = x.length();
+        if (length > Integer.MAX_VALUE) {
+            throw new SQLException("Blob of " + length + " bytes is too large for SQLite");
+        }
+        batchBlobStream(pos, x.getBinaryStream(), (int) length);
+    }
+
     /**
      * @see java.sql.PreparedStatement#setBoolean(int, boolean)
      */
@@ -296,35 +321,35 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
      * @see java.sql.PreparedStatement#setBytes(int, byte[])
      */
     public void setBytes(int pos, byte[] value) throws SQLException {
-        batch(pos, value);
+        batchBlob(pos, value);
     }
 
     /**
      * @see java.sql.PreparedStatement#setDouble(int, double)
      */
     public void setDouble(int pos, double value) throws SQLException {
-        batch(pos, new Double(value));
+        batchDouble(pos, value);
     }
 
     /**
      * @see java.sql.PreparedStatement#setFloat(int, float)
      */
     public void setFloat(int pos, float value) throws SQLException {
-        batch(pos, new Float(value));
+        batchDouble(pos, value);
     }
 
     /**
      * @see java.sql.PreparedStatement#setInt(int, int)
      */
     public void setInt(int pos, int value) throws SQLException {
-        batch(pos, new Integer(value));
+        batchLong(pos, value);
     }
 
     /**
      * @see java.sql.PreparedStatement#setLong(int, long)
      */
     public void setLong(int pos, long value) throws SQLException {
-        batch(pos, new Long(value));
+        batchLong(pos, value);
     }
 
     /**
@@ -338,7 +363,7 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
      * @see java.sql.PreparedStatement#setNull(int, int, java.lang.String)
      */
     public void setNull(int pos, int u1, String u2) throws SQLException {
-        batch(pos, null);
+        batchNull(pos);
     }
 
     /**
@@ -346,46 +371,37 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
      */
     public void setObject(int pos, Object value) throws SQLException {
         if (value == null) {
-            batch(pos, null);
+            batchNull(pos);
         }
         else if (value instanceof java.util.Date) {
             setDateByMilliseconds(pos, ((java.util.Date) value).getTime());
         }
-        else if (value instanceof Date) {
-            setDateByMilliseconds(pos, new Long(((Date) value).getTime()));
-        }
-        else if (value instanceof Time) {
-            setDateByMilliseconds(pos, new Long(((Time) value).getTime()));
-        }
-        else if (value instanceof Timestamp) {
-            setDateByMilliseconds(pos, new Long(((Timestamp) value).getTime()));
-        }
         else if (value instanceof Long) {
-            batch(pos, value);
+            batchLong(pos, ((Long) value).longValue());
         }
         else if (value instanceof Integer) {
-            batch(pos, value);
+            batchLong(pos, ((Integer) value).intValue());
         }
         else if (value instanceof Short) {
-            batch(pos, new Integer(((Short) value).intValue()));
+            batchLong(pos, ((Short) value).shortValue());
         }
         else if (value instanceof Float) {
-            batch(pos, value);
+            batchDouble(pos, ((Float) value).floatValue());
         }
         else if (value instanceof Double) {
-            batch(pos, value);
+            batchDouble(pos, ((Double) value).doubleValue());
         }
         else if (value instanceof Boolean) {
             setBoolean(pos, ((Boolean) value).booleanValue());
         }
         else if (value instanceof byte[]) {
-            batch(pos, value);
+            batchBlob(pos, (byte[]) value);
         }
         else if (value instanceof BigDecimal) {
             setBigDecimal(pos, (BigDecimal)value);
         }
         else {
-            batch(pos, value.toString());
+            batchText(pos, value.toString());
         }
     }
 
@@ -414,25 +430,31 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
      * @see java.sql.PreparedStatement#setString(int, java.lang.String)
      */
     public void setString(int pos, String value) throws SQLException {
-        batch(pos, value);
+        batchText(pos, value);
     }
 
     /**
      * @see java.sql.PreparedStatement#setCharacterStream(int, java.io.Reader, int)
      */
     public void setCharacterStream(int pos, Reader reader, int length) throws SQLException {
-        try {
-            // copy chars from reader to StringBuffer
-            StringBuffer sb = new StringBuffer();
-            char[] cbuf = new char[8192];
-            int cnt;
+        if (reader == null) {
+            setString(pos, null);
+            return;
+        }
+        if (length < 0) {
+            throw new SQLException("Error reading stream. Length should be non-negative");
+        }
 
-            while ((cnt = reader.read(cbuf)) > 0) {
-                sb.append(cbuf, 0, cnt);
+        try {
+            // read the chars straight into the array of the string
+            char[] cbuf = new char[length];
+            int cnt = 0;
+            int read;
+            while (cnt < length && (read = reader.read(cbuf, cnt, length - cnt)) > 0) {
+                cnt += read;
             }
 
-            // set as string
-            setString(pos, sb.toString());
+            setString(pos, new String(cbuf, 0, cnt));
         }
         catch (IOException e) {
             throw new SQLException("Cannot read from character stream, exception message: " + e.getMessage());
@@ -502,8 +524,6 @@ public abstract class JDBC3PreparedStatement extends CorePreparedStatement {
         throws SQLException { throw unused(); }
 //    public void setBigDecimal(int parameterIndex, BigDecimal x)
 //        throws SQLException { throw unused(); }
-    public void setBlob(int i, Blob x)
-        throws SQLException { throw unused(); }
     public void setClob(int i, Clob x)
         throws SQLException { throw unused(); }
     public void setRef(int i, Ref x)
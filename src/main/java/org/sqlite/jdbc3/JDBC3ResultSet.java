@@ -1,6 +1,5 @@
 package org.sqlite.jdbc3;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -8,6 +7,7 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.sql.Date;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
@@ -234,6 +234,7 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
         // first row is loaded by execute(), so do not step() again
         if (row == 0) {
             row++;
+            invalidateRow();
             return true;
         }
 
@@ -243,7 +244,7 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
         }
 
         // do the real work
-        int statusCode = db.step(stmt.pointer);
+        int statusCode = stepRow();
         switch (statusCode) {
         case SQLITE_DONE:
             close(); // agressive closing to avoid writer starvation
@@ -347,7 +348,7 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
      * @see java.sql.ResultSet#wasNull()
      */
     public boolean wasNull() throws SQLException {
-        return db.column_type(stmt.pointer, markCol(lastCol)) == SQLITE_NULL;
+        return columnType(markCol(lastCol)) == SQLITE_NULL;
     }
 
     // DATA ACCESS FUNCTIONS ////////////////////////////////////////
@@ -395,9 +396,10 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
      * @see java.sql.ResultSet#getBinaryStream(int)
      */
     public InputStream getBinaryStream(int col) throws SQLException {
-        byte[] bytes = getBytes(col);
-        if (bytes != null) {
-            return new ByteArrayInputStream(bytes);
+        // like getBytes(), no stream for empty values
+        ByteBuffer bytes = getBlobBuffer(col);
+        if (bytes != null && bytes.hasRemaining()) {
+            return new ByteBufferInputStream(bytes);
         }
         else {
             return null;
@@ -429,7 +431,7 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
      * @see java.sql.ResultSet#getBytes(int)
      */
     public byte[] getBytes(int col) throws SQLException {
-        return db.column_blob(stmt.pointer, markCol(col));
+        return columnBlob(markCol(col));
     }
 
     /**
@@ -439,6 +441,46 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
         return getBytes(findColumn(col));
     }
 
+    /**
+     * Copies the value of a column as bytes into an array supplied by the caller, avoiding
+     * the allocation of {@link #getBytes(int)}.
+     * @param col The first column is 1, the second is 2, ...
+     * @param dst The array receiving the value.
+     * @param offset The index in dst of the first byte.
+     * @return The length of the value, of which only the part fitting into dst is copied;
+     *         -1 if the value is SQL NULL.
+     * @throws SQLException
+     */
+    public int getBytes(int col, byte[] dst, int offset) throws SQLException {
+        return columnBlobInto(markCol(col), dst, offset);
+    }
+
+    /**
+     * @see #getBytes(int, byte[], int)
+     */
+    public int getBytes(String col, byte[] dst, int offset) throws SQLException {
+        return getBytes(findColumn(col), dst, offset);
+    }
+
+    /**
+     * Returns the value of a column as a read-only view of the row buffer of the result set,
+     * without copying it. The view is only valid until the cursor moves or the result set
+     * is closed; copy what is needed beyond that.
+     * @param col The first column is 1, the second is 2, ...
+     * @return The value as bytes; null if the value is SQL NULL.
+     * @throws SQLException
+     */
+    public ByteBuffer getBlobBuffer(int col) throws SQLException {
+        return columnBlobBuffer(markCol(col));
+    }
+
+    /**
+     * @see #getBlobBuffer(int)
+     */
+    public ByteBuffer getBlobBuffer(String col) throws SQLException {
+        return getBlobBuffer(findColumn(col));
+    }
+
     /**
      * @see java.sql.ResultSet#getCharacterStream(int)
      */
@@ -457,13 +499,13 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
      * @see java.sql.ResultSet#getDate(int)
      */
     public Date getDate(int col) throws SQLException {
-        switch(db.column_type(stmt.pointer, markCol(col))) {
+        switch(columnType(markCol(col))) {
             case SQLITE_NULL:
                 return null;
     
             case SQLITE_TEXT:
                 try {
-                    return new Date(stmt.conn.dateFormat.parse(db.column_text(stmt.pointer, markCol(col))).getTime());
+                    return new Date(stmt.conn.dateFormat.parse(columnText(markCol(col))).getTime());
                 }
                 catch (Exception e) {
                     SQLException error = new SQLException("Error parsing date");
@@ -473,10 +515,10 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
                 }
     
             case SQLITE_FLOAT:
-                return new Date(julianDateToCalendar(db.column_double(stmt.pointer, markCol(col))).getTimeInMillis());
+                return new Date(julianDateToCalendar(columnDouble(markCol(col))).getTimeInMillis());
     
             default: //SQLITE_INTEGER:
-                return new Date(db.column_long(stmt.pointer, markCol(col)) * stmt.conn.dateMultiplier);
+                return new Date(columnLong(markCol(col)) * stmt.conn.dateMultiplier);
         }
     }
 
@@ -486,7 +528,7 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
     public Date getDate(int col, Calendar cal) throws SQLException {
         checkCalendar(cal);
 
-        switch (db.column_type(stmt.pointer, markCol(col))) {
+        switch (columnType(markCol(col))) {
             case SQLITE_NULL:
                 return null;
     
@@ -494,7 +536,7 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
                 try {
                 	FastDateFormat dateFormat = FastDateFormat.getInstance(stmt.conn.dateStringFormat, cal.getTimeZone());
 
-                    return new java.sql.Date(dateFormat.parse(db.column_text(stmt.pointer, markCol(col))).getTime());
+                    return new java.sql.Date(dateFormat.parse(columnText(markCol(col))).getTime());
                 }
                 catch (Exception e) {
                     SQLException error = new SQLException("Error parsing time stamp");
@@ -504,10 +546,10 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
                 }
     
             case SQLITE_FLOAT:
-                return new Date(julianDateToCalendar(db.column_double(stmt.pointer, markCol(col)), cal).getTimeInMillis());
+                return new Date(julianDateToCalendar(columnDouble(markCol(col)), cal).getTimeInMillis());
     
             default: // SQLITE_INTEGER: 
-                cal.setTimeInMillis(db.column_long(stmt.pointer, markCol(col)) * stmt.conn.dateMultiplier);
+                cal.setTimeInMillis(columnLong(markCol(col)) * stmt.conn.dateMultiplier);
                 return new Date(cal.getTime().getTime());
         }
     }
@@ -530,10 +572,10 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
      * @see java.sql.ResultSet#getDouble(int)
      */
     public double getDouble(int col) throws SQLException {
-        if (db.column_type(stmt.pointer, markCol(col)) == SQLITE_NULL) {
+        if (columnType(markCol(col)) == SQLITE_NULL) {
             return 0;
         }
-        return db.column_double(stmt.pointer, markCol(col));
+        return columnDouble(markCol(col));
     }
 
     /**
@@ -547,10 +589,10 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
      * @see java.sql.ResultSet#getFloat(int)
      */
     public float getFloat(int col) throws SQLException {
-        if (db.column_type(stmt.pointer, markCol(col)) == SQLITE_NULL) {
+        if (columnType(markCol(col)) == SQLITE_NULL) {
             return 0;
         }
-        return (float) db.column_double(stmt.pointer, markCol(col));
+        return (float) columnDouble(markCol(col));
     }
 
     /**
@@ -564,7 +606,7 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
      * @see java.sql.ResultSet#getInt(int)
      */
     public int getInt(int col) throws SQLException {
-        return db.column_int(stmt.pointer, markCol(col));
+        return columnInt(markCol(col));
     }
 
     /**
@@ -578,7 +620,7 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
      * @see java.sql.ResultSet#getLong(int)
      */
     public long getLong(int col) throws SQLException {
-        return db.column_long(stmt.pointer, markCol(col));
+        return columnLong(markCol(col));
     }
 
     /**
@@ -606,7 +648,7 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
      * @see java.sql.ResultSet#getString(int)
      */
     public String getString(int col) throws SQLException {
-        return db.column_text(stmt.pointer, markCol(col));
+        return columnText(markCol(col));
     }
 
     /**
@@ -620,13 +662,13 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
      * @see java.sql.ResultSet#getTime(int)
      */
     public Time getTime(int col) throws SQLException {
-        switch (db.column_type(stmt.pointer, markCol(col))) {
+        switch (columnType(markCol(col))) {
             case SQLITE_NULL:
                 return null;
     
             case SQLITE_TEXT:
                 try {
-                    return new Time(stmt.conn.dateFormat.parse(db.column_text(stmt.pointer, markCol(col))).getTime());
+                    return new Time(stmt.conn.dateFormat.parse(columnText(markCol(col))).getTime());
                 }
                 catch (Exception e) {
                     SQLException error = new SQLException("Error parsing time");
@@ -636,10 +678,10 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
                 }
     
             case SQLITE_FLOAT:
-                return new Time(julianDateToCalendar(db.column_double(stmt.pointer, markCol(col))).getTimeInMillis());
+                return new Time(julianDateToCalendar(columnDouble(markCol(col))).getTimeInMillis());
     
             default:// SQLITE_INTEGER
-                return new Time(db.column_long(stmt.pointer, markCol(col)) * stmt.conn.dateMultiplier);
+                return new Time(columnLong(markCol(col)) * stmt.conn.dateMultiplier);
         }
     }
 
@@ -649,7 +691,7 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
     public Time getTime(int col, Calendar cal) throws SQLException {
         checkCalendar(cal);
 
-        switch (db.column_type(stmt.pointer, markCol(col))) {
+        switch (columnType(markCol(col))) {
             case SQLITE_NULL:
                 return null;
 
@@ -657,7 +699,7 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
                 try {
                 	FastDateFormat dateFormat = FastDateFormat.getInstance(stmt.conn.dateStringFormat, cal.getTimeZone());
 
-                    return new Time(dateFormat.parse(db.column_text(stmt.pointer, markCol(col))).getTime());
+                    return new Time(dateFormat.parse(columnText(markCol(col))).getTime());
                 }
                 catch (Exception e) {
                     SQLException error = new SQLException("Error parsing time");
@@ -667,10 +709,10 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
                 }
     
             case SQLITE_FLOAT:
-                return new Time(julianDateToCalendar(db.column_double(stmt.pointer, markCol(col)), cal).getTimeInMillis());
+                return new Time(julianDateToCalendar(columnDouble(markCol(col)), cal).getTimeInMillis());
 
             default: //SQLITE_INTEGER
-                cal.setTimeInMillis(db.column_long(stmt.pointer, markCol(col)) * stmt.conn.dateMultiplier);
+                cal.setTimeInMillis(columnLong(markCol(col)) * stmt.conn.dateMultiplier);
                 return new Time(cal.getTime().getTime());
         }
     }
@@ -693,13 +735,13 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
      * @see java.sql.ResultSet#getTimestamp(int)
      */
     public Timestamp getTimestamp(int col) throws SQLException {
-        switch (db.column_type(stmt.pointer, markCol(col))) {
+        switch (columnType(markCol(col))) {
             case SQLITE_NULL:
                 return null;
     
             case SQLITE_TEXT:
                 try {
-                    return new Timestamp(stmt.conn.dateFormat.parse(db.column_text(stmt.pointer, markCol(col))).getTime());
+                    return new Timestamp(stmt.conn.dateFormat.parse(columnText(markCol(col))).getTime());
                 }
                 catch (Exception e) {
                     SQLException error = new SQLException("Error parsing time stamp");
@@ -709,10 +751,10 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
                 }
     
             case SQLITE_FLOAT:
-                return new Timestamp(julianDateToCalendar(db.column_double(stmt.pointer, markCol(col))).getTimeInMillis());
+                return new Timestamp(julianDateToCalendar(columnDouble(markCol(col))).getTimeInMillis());
     
             default: //SQLITE_INTEGER:
-                return new Timestamp(db.column_long(stmt.pointer, markCol(col)) * stmt.conn.dateMultiplier);
+                return new Timestamp(columnLong(markCol(col)) * stmt.conn.dateMultiplier);
         }
     }
 
@@ -724,7 +766,7 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
             return getTimestamp(col);
         }
 
-        switch (db.column_type(stmt.pointer, markCol(col))) {
+        switch (columnType(markCol(col))) {
             case SQLITE_NULL:
                 return null;
     
@@ -732,7 +774,7 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
                 try {
                 	FastDateFormat dateFormat = FastDateFormat.getInstance(stmt.conn.dateStringFormat, cal.getTimeZone());
 
-                    return new Timestamp(dateFormat.parse(db.column_text(stmt.pointer, markCol(col))).getTime());
+                    return new Timestamp(dateFormat.parse(columnText(markCol(col))).getTime());
                 }
                 catch (Exception e) {
                     SQLException error = new SQLException("Error parsing time stamp");
@@ -742,10 +784,10 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
                 }
             
             case SQLITE_FLOAT:
-                return new Timestamp(julianDateToCalendar(db.column_double(stmt.pointer, markCol(col)), cal).getTimeInMillis());
+                return new Timestamp(julianDateToCalendar(columnDouble(markCol(col)), cal).getTimeInMillis());
     
             default: //SQLITE_INTEGER
-                cal.setTimeInMillis(db.column_long(stmt.pointer, markCol(col)) * stmt.conn.dateMultiplier);
+                cal.setTimeInMillis(columnLong(markCol(col)) * stmt.conn.dateMultiplier);
 
                 return new Timestamp(cal.getTime().getTime());
         }
@@ -769,7 +811,7 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
      * @see java.sql.ResultSet#getObject(int)
      */
     public Object getObject(int col) throws SQLException {
-        switch (db.column_type(stmt.pointer, markCol(col))) {
+        switch (columnType(markCol(col))) {
         case SQLITE_INTEGER:
             long val = getLong(col);
             if (val > Integer.MAX_VALUE || val < Integer.MIN_VALUE) {
@@ -854,7 +896,9 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
      * @see java.sql.ResultSetMetaData#getCatalogName(int)
      */
     public String getCatalogName(int col) throws SQLException {
-        return db.column_table_name(stmt.pointer, checkCol(col));
+        synchronized (db) {
+            return db.column_table_name(stmt.pointer, checkCol(col));
+        }
     }
 
     /**
@@ -891,7 +935,9 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
      * @see java.sql.ResultSetMetaData#getColumnName(int)
      */
     public String getColumnName(int col) throws SQLException {
-        return db.column_name(stmt.pointer, checkCol(col));
+        synchronized (db) {
+            return db.column_name(stmt.pointer, checkCol(col));
+        }
     }
 
     /**
@@ -899,7 +945,7 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
      */
     public int getColumnType(int col) throws SQLException {
         String typeName = getColumnTypeName(col);
-        int valueType = db.column_type(stmt.pointer, checkCol(col));
+        int valueType = currentColumnType(checkCol(col));
 
         if (valueType == SQLITE_INTEGER || valueType == SQLITE_NULL) {
             if ("BOOLEAN".equals(typeName)) {
@@ -1015,7 +1061,7 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
             return matcher.group(1).toUpperCase(Locale.ENGLISH);
         }
 
-        switch (db.column_type(stmt.pointer, checkCol(col))) {
+        switch (currentColumnType(checkCol(col))) {
         case SQLITE_INTEGER:
             return "INTEGER";
         case SQLITE_FLOAT:
@@ -1046,14 +1092,16 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
     }
 
     private String getColumnDeclType(int col) throws SQLException {
-        String declType = db.column_decltype(stmt.pointer, checkCol(col));
+        synchronized (db) {
+            String declType = db.column_decltype(stmt.pointer, checkCol(col));
 
-        if (declType == null) {
-            Matcher matcher = COLUMN_TYPECAST.matcher(db.column_name(stmt.pointer, checkCol(col)));
-            declType = matcher.find() ? matcher.group(1) : null;
-        }
+            if (declType == null) {
+                Matcher matcher = COLUMN_TYPECAST.matcher(db.column_name(stmt.pointer, checkCol(col)));
+                declType = matcher.find() ? matcher.group(1) : null;
+            }
 
-        return declType;
+            return declType;
+        }
     }
     /**
      * @see java.sql.ResultSetMetaData#getScale(int)
@@ -1087,7 +1135,9 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
      * @see java.sql.ResultSetMetaData#getTableName(int)
      */
     public String getTableName(int col) throws SQLException {
-        return db.column_table_name(stmt.pointer, checkCol(col));
+        synchronized (db) {
+            return db.column_table_name(stmt.pointer, checkCol(col));
+        }
     }
 
     /**
@@ -1551,4 +1601,46 @@ public abstract class JDBC3ResultSet extends CoreResultSet {
 	updateValues.put(cols[columnIndex - 1], value);
     }
 
+
+    /**
+     * Reads the bytes of a column from a view of the row buffer. As JDBC requires, the stream
+     * must be read before the cursor moves.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        ByteBufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buf.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buf.remaining());
+            buf.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buf.remaining()));
+            buf.position(buf.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+    }
 }
@@ -4,6 +4,7 @@ import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.SQLWarning;
 
 import org.sqlite.ExtendedCommand;
@@ -57,8 +58,10 @@ public abstract class JDBC3Statement extends CoreStatement {
 
         this.sql = sql;
 
-        db.prepare(this);
-        return exec();
+        synchronized (db) {
+            db.prepare(this);
+            return exec();
+        }
     }
 
     /**
@@ -78,14 +81,16 @@ public abstract class JDBC3Statement extends CoreStatement {
         internalClose();
         this.sql = sql;
 
-        db.prepare(this);
+        synchronized (db) {
+            db.prepare(this);
 
-        if (!exec()) {
-            internalClose();
-            throw new SQLException("query does not return ResultSet", "SQLITE_DONE", SQLITE_DONE);
-        }
+            if (!exec()) {
+                internalClose();
+                throw new SQLException("query does not return ResultSet", "SQLITE_DONE", SQLITE_DONE);
+            }
 
-        return getResultSet();
+            return getResultSet();
+        }
     }
 
     public ResultSet executeQuery() throws SQLException {
@@ -113,18 +118,20 @@ public abstract class JDBC3Statement extends CoreStatement {
             ext.execute(db);
         }
         else {
-            try {
-                changes = db.total_changes();
+            synchronized (db) {
+                try {
+                    changes = db.total_changes();
 
-                // directly invokes the exec API to support multiple SQL statements 
-                int statusCode = db._exec(sql);
-                if (statusCode != SQLITE_OK)
-                    throw DB.newSQLException(statusCode, "");
+                    // directly invokes the exec API to support multiple SQL statements 
+                    int statusCode = db.exec(this);
+                    if (statusCode != SQLITE_OK)
+                        throw DB.newSQLException(statusCode, "");
 
-                changes = db.total_changes() - changes;
-            }
-            finally {
-                internalClose();
+                    changes = db.total_changes() - changes;
+                }
+                finally {
+                    internalClose();
+                }
             }
         }
         return changes;
@@ -140,12 +147,14 @@ public abstract class JDBC3Statement extends CoreStatement {
             throw new SQLException("ResultSet already requested");
         }
 
-        if (db.column_count(pointer) == 0) {
-            return null;
-        }
+        synchronized (db) {
+            if (db.column_count(pointer) == 0) {
+                return null;
+            }
 
-        if (rs.colsMeta == null) {
-            rs.colsMeta = db.column_names(pointer);
+            if (rs.colsMeta == null) {
+                rs.colsMeta = db.column_names(pointer);
+            }
         }
 
         rs.cols = rs.colsMeta;
@@ -162,8 +171,10 @@ public abstract class JDBC3Statement extends CoreStatement {
      * @see java.sql.Statement#getUpdateCount()
      */
     public int getUpdateCount() throws SQLException {
-        if (pointer != 0 && !rs.isOpen() && !resultsWaiting && db.column_count(pointer) == 0)
-            return db.changes();
+        synchronized (db) {
+            if (pointer != 0 && !rs.isOpen() && !resultsWaiting && db.column_count(pointer) == 0)
+                return db.changes();
+        }
         return -1;
     }
 
@@ -203,6 +214,7 @@ public abstract class JDBC3Statement extends CoreStatement {
         int[] changes = new int[batchPos];
 
         synchronized (db) {
+            int wrapped = db.beginBatch();
             try {
                 for (int i = 0; i < changes.length; i++) {
                     try {
@@ -210,6 +222,9 @@ public abstract class JDBC3Statement extends CoreStatement {
                         db.prepare(this);
                         changes[i] = db.executeUpdate(this, null);
                     }
+                    catch (SQLTimeoutException e) {
+                        throw e;
+                    }
                     catch (SQLException e) {
                         throw new BatchUpdateException("batch entry " + i + ": " + e.getMessage(), changes);
                     }
@@ -217,6 +232,10 @@ public abstract class JDBC3Statement extends CoreStatement {
                         db.finalize(this);
                     }
                 }
+                db.commitBatch(wrapped);
+            }
+            catch (SQLException e) {
+                throw db.rollbackBatch(wrapped, e, changes.length);
             }
             finally {
                 clearBatch();
@@ -261,16 +280,23 @@ public abstract class JDBC3Statement extends CoreStatement {
      * @see java.sql.Statement#getQueryTimeout()
      */
     public int getQueryTimeout() throws SQLException {
-        return conn.getBusyTimeout();
+        return queryTimeout;
     }
 
     /**
+     * Sets the time each call that runs the statement (executing it, or stepping it from
+     * ResultSet.next()) may take; the call is then interrupted and fails with a
+     * SQLTimeoutException. The timeout applies to this statement only. While the statement
+     * runs, it also replaces the busy timeout of the connection set by
+     * {@link SQLiteConnection#setBusyTimeout(int)}: waiting for a lock held by another
+     * connection fails with SQLITE_BUSY after the query timeout.
      * @see java.sql.Statement#setQueryTimeout(int)
+     * @see org.sqlite.SQLiteConfig#setQueryTimeoutInterval(int)
      */
     public void setQueryTimeout(int seconds) throws SQLException {
         if (seconds < 0)
             throw new SQLException("query timeout must be >= 0");
-        conn.setBusyTimeout(1000 * seconds);
+        queryTimeout = seconds;
     }
 
     // TODO: write test
@@ -319,6 +345,7 @@ public abstract class JDBC3Statement extends CoreStatement {
      */
     public void setFetchSize(int r) throws SQLException {
         ((ResultSet)rs).setFetchSize(r);
+        fetchSize = r;
     }
 
     /**
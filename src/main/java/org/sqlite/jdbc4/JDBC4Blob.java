@@ -0,0 +1,312 @@
+/*--------------------------------------------------------------------------
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *--------------------------------------------------------------------------*/
+package org.sqlite.jdbc4;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+import org.sqlite.core.CoreBlob;
+import org.sqlite.core.DB;
+
+/**
+ * A Blob reading and writing a BLOB of the database in place, in chunks of at most
+ * {@link CoreBlob#CHUNK_SIZE} bytes, so that large values never have to be held in memory
+ * as a whole. The size of the BLOB is fixed; it can only be overwritten, not extended or
+ * truncated. A change of the row by other means than this Blob makes it throw
+ * SQLITE_ABORT.
+ */
+public class JDBC4Blob extends CoreBlob implements Blob
+{
+    /** Direct buffer for getBytes() and setBytes(), allocated on first use. */
+    private ByteBuffer chunk;
+
+    /**
+     * Opens a BLOB for incremental I/O.
+     * @see CoreBlob#CoreBlob(DB, String, String, String, long, boolean)
+     */
+    public JDBC4Blob(DB db, String database, String table, String column, long rowid, boolean writable)
+            throws SQLException {
+        super(db, database, table, column, rowid, writable);
+    }
+
+    /**
+     * @return A direct buffer of at most CHUNK_SIZE bytes for transfers of n bytes.
+     */
+    private ByteBuffer allocate(long n) {
+        return ByteBuffer.allocateDirect((int) Math.max(1, Math.min(CHUNK_SIZE, n)));
+    }
+
+    /**
+     * @param pos Position of a byte, starting at 1.
+     * @param n Number of bytes from the position.
+     * @return Offset of the position.
+     * @throws SQLException if the bytes are not all within the BLOB.
+     */
+    private int offset(long pos, long n) throws SQLException {
+        if (pos < 1 || n < 0 || pos - 1 + n > length) {
+            throw new SQLException("position " + pos + " and length " + n + " out of bounds of a BLOB of "
+                    + length + " bytes");
+        }
+        return (int) (pos - 1);
+    }
+
+    /**
+     * @see java.sql.Blob#length()
+     */
+    public long length() throws SQLException {
+        synchronized (db) {
+            checkOpen();
+        }
+        return length;
+    }
+
+    /**
+     * @see java.sql.Blob#getBytes(long, int)
+     */
+    public byte[] getBytes(long pos, int len) throws SQLException {
+        int offset = offset(pos, 0);
+        int n = Math.min(Math.max(len, 0), length - offset);
+        byte[] bytes = new byte[n];
+        if (chunk == null) {
+            chunk = allocate(length);
+        }
+        for (int done = 0; done < n;) {
+            int size = Math.min(chunk.capacity(), n - done);
+            read(chunk, size, offset + done);
+            chunk.get(bytes, done, size);
+            done += size;
+        }
+        return bytes;
+    }
+
+    /**
+     * @see java.sql.Blob#getBinaryStream()
+     */
+    public InputStream getBinaryStream() throws SQLException {
+        return new BlobInputStream(0, length);
+    }
+
+    /**
+     * @see java.sql.Blob#getBinaryStream(long, long)
+     */
+    public InputStream getBinaryStream(long pos, long len) throws SQLException {
+        int offset = offset(pos, len);
+        return new BlobInputStream(offset, offset + (int) len);
+    }
+
+    /**
+     * @see java.sql.Blob#setBytes(long, byte[])
+     */
+    public int setBytes(long pos, byte[] bytes) throws SQLException {
+        return setBytes(pos, bytes, 0, bytes.length);
+    }
+
+    /**
+     * @see java.sql.Blob#setBytes(long, byte[], int, int)
+     */
+    public int setBytes(long pos, byte[] bytes, int offset, int len) throws SQLException {
+        int start = offset(pos, len);
+        if (chunk == null) {
+            chunk = allocate(length);
+        }
+        for (int done = 0; done < len;) {
+            int size = Math.min(chunk.capacity(), len - done);
+            chunk.clear();
+            chunk.put(bytes, offset + done, size);
+            write(chunk, size, start + done);
+            done += size;
+        }
+        return len;
+    }
+
+    /**
+     * @see java.sql.Blob#setBinaryStream(long)
+     */
+    public OutputStream setBinaryStream(long pos) throws SQLException {
+        int offset = offset(pos, 0);
+        if (!writable) {
+            throw new SQLException("BLOB is read-only");
+        }
+        return new BlobOutputStream(offset);
+    }
+
+    /**
+     * @see java.sql.Blob#position(byte[], long)
+     */
+    public long position(byte[] pattern, long start) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    /**
+     * @see java.sql.Blob#position(java.sql.Blob, long)
+     */
+    public long position(Blob pattern, long start) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    /**
+     * Not supported, as incremental I/O cannot change the size of a BLOB.
+     * @see java.sql.Blob#truncate(long)
+     */
+    public void truncate(long len) throws SQLException {
+        throw new SQLFeatureNotSupportedException("the size of a BLOB opened for incremental I/O is fixed");
+    }
+
+    /**
+     * Closes the BLOB handle.
+     * @see java.sql.Blob#free()
+     */
+    public void free() throws SQLException {
+        close();
+    }
+
+    /** Reads a range of the BLOB one chunk at a time. */
+    private class BlobInputStream extends InputStream
+    {
+        private final ByteBuffer buf;
+        private int pos;
+        private final int end;
+
+        BlobInputStream(int pos, int end) {
+            this.buf = allocate(end - pos);
+            this.buf.limit(0);
+            this.pos = pos;
+            this.end = end;
+        }
+
+        /**
+         * @return False at the end of the range.
+         */
+        private boolean fill() throws IOException {
+            if (buf.hasRemaining()) {
+                return true;
+            }
+            if (pos >= end) {
+                return false;
+            }
+            int n = Math.min(buf.capacity(), end - pos);
+            try {
+                JDBC4Blob.this.read(buf, n, pos);
+            }
+            catch (SQLException e) {
+                IOException ioe = new IOException(e.getMessage());
+                ioe.initCause(e);
+                throw ioe;
+            }
+            pos += n;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? buf.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = Math.min(Math.max(n, 0), available() + (long) (end - pos));
+            int fromBuf = (int) Math.min(skipped, buf.remaining());
+            buf.position(buf.position() + fromBuf);
+            pos += (int) (skipped - fromBuf);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+    }
+
+    /** Writes to the BLOB from a position on, one chunk at a time. */
+    private class BlobOutputStream extends OutputStream
+    {
+        private final ByteBuffer buf;
+        private int pos;
+
+        BlobOutputStream(int pos) {
+            this.buf = allocate(length - pos);
+            this.pos = pos;
+        }
+
+        private void ensure(int n) throws IOException {
+            if (pos + buf.position() + n > length) {
+                throw new IOException("write past the end of a BLOB of " + length + " bytes");
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensure(1);
+            if (!buf.hasRemaining()) {
+                flush();
+            }
+            buf.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensure(len);
+            while (len > 0) {
+                if (!buf.hasRemaining()) {
+                    flush();
+                }
+                int n = Math.min(len, buf.remaining());
+                buf.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            int n = buf.position();
+            if (n == 0) {
+                return;
+            }
+            try {
+                JDBC4Blob.this.write(buf, n, pos);
+            }
+            catch (SQLException e) {
+                IOException ioe = new IOException(e.getMessage());
+                ioe.initCause(e);
+                throw ioe;
+            }
+            pos += n;
+            buf.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
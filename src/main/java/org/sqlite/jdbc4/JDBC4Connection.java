@@ -65,6 +65,33 @@ public abstract class JDBC4Connection extends JDBC3Connection implements Connect
         return iface.isInstance(this);
     }
 
+    /**
+     * Opens a BLOB of the main database for incremental I/O.
+     * @see #openBlob(String, String, String, long, boolean)
+     */
+    public Blob openBlob(String table, String column, long rowid, boolean writable) throws SQLException {
+        return openBlob("main", table, column, rowid, writable);
+    }
+
+    /**
+     * Opens a BLOB for incremental I/O, which reads and writes it in place, piece by piece.
+     * A Blob that is no longer needed should be freed, as an open BLOB handle keeps the
+     * transaction it was opened in from committing.
+     * @param database Symbolic name of the database, e.g. "main".
+     * @param table Name of the table.
+     * @param column Name of the column.
+     * @param rowid Rowid of the row.
+     * @param writable True to open the BLOB for reading and writing.
+     * @return The Blob.
+     * @throws SQLException
+     * @see <a href="http://www.sqlite.org/c3ref/blob_open.html">http://www.sqlite.org/c3ref/blob_open.html</a>
+     */
+    public Blob openBlob(String database, String table, String column, long rowid, boolean writable)
+            throws SQLException {
+        checkOpen();
+        return new JDBC4Blob(db, database, table, column, rowid, writable);
+    }
+
     public Clob createClob() throws SQLException {
         // TODO Support this
         throw new SQLFeatureNotSupportedException();
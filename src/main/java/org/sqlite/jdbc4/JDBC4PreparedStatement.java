@@ -50,8 +50,7 @@ public class JDBC4PreparedStatement extends JDBC3PreparedStatement implements Pr
 
     public void setBlob(int parameterIndex, InputStream inputStream, long length)
             throws SQLException {
-        // TODO Support this
-        throw new SQLFeatureNotSupportedException();
+        setBinaryStream(parameterIndex, inputStream, length);
     }
 
     public void setNClob(int parameterIndex, Reader reader, long length)
@@ -68,20 +67,29 @@ public class JDBC4PreparedStatement extends JDBC3PreparedStatement implements Pr
 
     public void setAsciiStream(int parameterIndex, InputStream x, long length)
             throws SQLException {
-        // TODO Support this
-        throw new SQLFeatureNotSupportedException();
+        setAsciiStream(parameterIndex, x, intLength(length));
     }
 
     public void setBinaryStream(int parameterIndex, InputStream x, long length)
             throws SQLException {
-        // TODO Support this
-        throw new SQLFeatureNotSupportedException();
+        setBinaryStream(parameterIndex, x, intLength(length));
     }
 
     public void setCharacterStream(int parameterIndex, Reader reader,
             long length) throws SQLException {
-        // TODO Support this
-        throw new SQLFeatureNotSupportedException();
+        setCharacterStream(parameterIndex, reader, intLength(length));
+    }
+
+    /**
+     * @param length Length of a stream.
+     * @return The length as an int.
+     * @throws SQLException if the length exceeds what SQLite can store in a value.
+     */
+    private static int intLength(long length) throws SQLException {
+        if (length > Integer.MAX_VALUE) {
+            throw new SQLException("stream of length " + length + " is too large for SQLite");
+        }
+        return (int) length;
     }
 
     public void setAsciiStream(int parameterIndex, InputStream x)
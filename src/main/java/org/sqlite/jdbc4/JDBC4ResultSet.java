@@ -15,8 +15,11 @@ import java.sql.RowId;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.SQLXML;
+import java.util.Arrays;
 import java.util.Map;
 
+import javax.sql.rowset.serial.SerialBlob;
+
 import org.sqlite.core.CoreStatement;
 import org.sqlite.jdbc3.JDBC3ResultSet;
 
@@ -326,6 +329,68 @@ public class JDBC4ResultSet extends JDBC3ResultSet implements ResultSet, ResultS
         throw new SQLFeatureNotSupportedException();
     }
 
+    /** Marks a column of blobRowids which has not been looked up yet. */
+    private static final int ROWID_UNKNOWN = -2;
+
+    /** The cols the origins of columns have been looked up for. */
+    private String[] blobCols = null;
+    /** Database, table and column each column is taken from, if known. */
+    private String[][] blobOrigins = null;
+    /** Column holding the rowid of the row each column is taken from, or -1. */
+    private int[] blobRowids = null;
+
+    /**
+     * @param col Column in [0,x-1] form.
+     * @return Column holding the rowid of the row the column is taken from, or -1.
+     * @throws SQLException
+     */
+    private int blobRowid(int col) throws SQLException {
+        if (blobCols != cols) {
+            blobCols = cols;
+            blobOrigins = new String[cols.length][];
+            blobRowids = new int[cols.length];
+            Arrays.fill(blobRowids, ROWID_UNKNOWN);
+        }
+        if (blobRowids[col] == ROWID_UNKNOWN) {
+            synchronized (db) {
+                blobOrigins[col] = db.column_origin(stmt.pointer, col);
+                blobRowids[col] = blobOrigins[col] == null ? -1 : db.rowidColumn(stmt, col, blobOrigins[col]);
+            }
+        }
+        return blobRowids[col];
+    }
+
+    /**
+     * Returns a read-only Blob streaming the value from the database if the query is a
+     * plain SELECT from a single table which selects the rowid of the row, otherwise a Blob
+     * holding a copy of the value. JDBC4Connection.openBlob() streams any value given its
+     * table, column and rowid.
+     * @see java.sql.ResultSet#getBlob(int)
+     */
+    public Blob getBlob(int col) throws SQLException {
+        int c = markCol(col);
+        int type = columnType(c);
+        if (type == SQLITE_NULL) {
+            return null;
+        }
+        if ((type == SQLITE_BLOB || type == SQLITE_TEXT) && db.extended()) {
+            int rowidCol = blobRowid(c);
+            if (rowidCol >= 0 && columnType(rowidCol) == SQLITE_INTEGER) {
+                String[] origin = blobOrigins[c];
+                return new JDBC4Blob(db, origin[0], origin[1], origin[2], columnLong(rowidCol), false);
+            }
+        }
+        byte[] bytes = columnBlob(c);
+        return new SerialBlob(bytes != null ? bytes : new byte[0]);
+    }
+
+    /**
+     * @see #getBlob(int)
+     */
+    public Blob getBlob(String col) throws SQLException {
+        return getBlob(findColumn(col));
+    }
+
     protected SQLException unused() {
         return new SQLException("not implemented by SQLite JDBC driver");
     }
@@ -349,10 +414,6 @@ public class JDBC4ResultSet extends JDBC3ResultSet implements ResultSet, ResultS
 //        throws SQLException { throw unused(); }
     public BigDecimal getBigDecimal(String col, int s)
         throws SQLException { throw unused(); }
-    public Blob getBlob(int col)
-        throws SQLException { throw unused(); }
-    public Blob getBlob(String col)
-        throws SQLException { throw unused(); }
     public Clob getClob(int col)
         throws SQLException { throw unused(); }
     public Clob getClob(String col)
@@ -9,6 +9,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -16,13 +17,24 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assume;
 import org.junit.Test;
+import org.sqlite.SQLiteConfig.BusyHandler;
 import org.sqlite.SQLiteConfig.JournalMode;
 import org.sqlite.SQLiteConfig.Pragma;
 import org.sqlite.SQLiteConfig.SynchronousMode;
+import org.sqlite.SQLiteConfig.ThreadingMode;
+import org.sqlite.core.BusyStats;
 import org.sqlite.core.CoreConnection;
+import org.sqlite.core.CoreStatement;
 
 /**
  * These tests check whether access to files is woring correctly and some
@@ -382,4 +394,176 @@ public class ConnectionTest
     	stat.close();
     	((CoreConnection) conn).realClose();
     }
+
+    @Test
+    public void shareMultiThreadConnection() throws Exception {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setThreadingMode(ThreadingMode.MULTI_THREAD);
+        final Connection conn = config.createConnection("jdbc:sqlite:");
+        Statement stat = conn.createStatement();
+        stat.executeUpdate("create table t (id integer, name text)");
+        stat.close();
+
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int base = i * 1000;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        PreparedStatement insert = conn.prepareStatement("insert into t values (?, ?)");
+                        for (int j = 0; j < 200; j++) {
+                            insert.setInt(1, base + j);
+                            insert.setString(2, "name" + (base + j));
+                            insert.executeUpdate();
+                        }
+                        insert.close();
+
+                        PreparedStatement select = conn.prepareStatement("select id, name from t where id >= ? and id < ?");
+                        select.setInt(1, base);
+                        select.setInt(2, base + 1000);
+                        ResultSet rs = select.executeQuery();
+                        int count = 0;
+                        while (rs.next()) {
+                            assertEquals("name" + rs.getInt(1), rs.getString(2));
+                            count++;
+                        }
+                        rs.close();
+                        select.close();
+                        assertEquals(200, count);
+                    }
+                    catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(errors.toString(), errors.isEmpty());
+
+        ResultSet rs = conn.createStatement().executeQuery("select count(*) from t");
+        assertEquals(800, rs.getInt(1));
+        rs.close();
+        conn.close();
+    }
+
+    @Test
+    public void statusCounters() throws Exception {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setJmx(true);
+        SQLiteConnection conn = (SQLiteConnection) config.createConnection("jdbc:sqlite:");
+        Assume.assumeTrue(conn.db().extended());
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Set<ObjectName> names = server.queryNames(new ObjectName("org.sqlite:type=Connection,*"), null);
+        ObjectName name = null;
+        for (ObjectName each : names) {
+            if (conn.url().equals(server.getAttribute(each, "Url"))) {
+                name = each;
+            }
+        }
+        assertTrue(names.toString(), name != null);
+
+        try {
+            Statement stat = conn.createStatement();
+            stat.executeUpdate("create table t (id integer, name text)");
+            for (int i = 0; i < 100; i++) {
+                stat.executeUpdate("insert into t values (" + i + ", 'name" + i + "')");
+            }
+            PreparedStatement prep = conn.prepareStatement("select name from t where id = ? order by name");
+            prep.setInt(1, 50);
+            ResultSet rs = prep.executeQuery();
+            assertEquals("name50", rs.getString(1));
+            rs.close();
+
+            // a full scan without an index, and a sort
+            CoreStatement core = prep.unwrap(CoreStatement.class);
+            assertEquals(99, core.getStatus(SQLiteStmtStatus.FULLSCAN_STEP, true));
+            assertEquals(0, core.getStatus(SQLiteStmtStatus.FULLSCAN_STEP, false));
+            assertEquals(1, core.getStatus(SQLiteStmtStatus.SORT, false));
+            assertTrue(core.getStatus(SQLiteStmtStatus.VM_STEP, false) > 0);
+            prep.close();
+
+            assertTrue(conn.getDbStatus(SQLiteDbStatus.CACHE_USED, false) > 0);
+            assertTrue(conn.getDbStatus(SQLiteDbStatus.SCHEMA_USED, false) > 0);
+            assertTrue(conn.getStatus(SQLiteStatus.MEMORY_USED, false) > 0);
+            assertTrue(conn.getStatusHighwater(SQLiteStatus.MEMORY_USED, false)
+                    >= conn.getStatus(SQLiteStatus.MEMORY_USED, false));
+            assertTrue((Long) server.getAttribute(name, "CacheUsed") > 0);
+            assertTrue((Long) server.getAttribute(name, "MemoryUsed") > 0);
+            server.invoke(name, "resetCounters", null, null);
+        }
+        finally {
+            conn.realClose();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void busyHandler() throws Exception {
+        File tmp = File.createTempFile("busy", ".db", new File("target"));
+        tmp.deleteOnExit();
+        String url = "jdbc:sqlite:" + tmp.getAbsolutePath();
+        final SQLiteConnection holder = (SQLiteConnection) DriverManager.getConnection(url);
+        Assume.assumeTrue(holder.db().extended());
+        SQLiteConfig config = new SQLiteConfig();
+        config.setBusyTimeout("300");
+        config.setBusyHandler(BusyHandler.BACKOFF);
+        config.setBusySpins(2);
+        config.setBusyBackoff(1, 20);
+        SQLiteConnection waiter = (SQLiteConnection) config.createConnection(url);
+        try {
+            final Statement hold = holder.createStatement();
+            hold.executeUpdate("create table t (id)");
+            hold.execute("begin exclusive");
+            Statement stat = waiter.createStatement();
+            long start = System.currentTimeMillis();
+            try {
+                stat.executeUpdate("insert into t values (1)");
+                fail("the lock was taken");
+            }
+            catch (SQLException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("SQLITE_BUSY"));
+            }
+            long elapsed = System.currentTimeMillis() - start;
+
+            BusyStats stats = waiter.getBusyStats();
+            assertTrue(elapsed >= 250);
+            assertEquals(1, stats.getWaits());
+            assertEquals(1, stats.getTimeouts());
+            // the spins, then at least 15 sleeps of at most 20 ms
+            assertTrue(stats.toString(), stats.getCallbacks() >= 2 + 15);
+            assertTrue(stats.toString(), stats.getWaitMicros() > 250000 && stats.getWaitMicros() <= 300000);
+
+            // released while waiting
+            waiter.resetBusyStats();
+            Thread release = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(100);
+                        hold.execute("commit");
+                    }
+                    catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            release.start();
+            assertEquals(1, stat.executeUpdate("insert into t values (1)"));
+            release.join();
+            stats = waiter.getBusyStats();
+            assertEquals(1, stats.getWaits());
+            assertEquals(0, stats.getTimeouts());
+            assertTrue(stats.toString(), stats.getWaitMicros() >= 50000);
+        }
+        finally {
+            waiter.realClose();
+            holder.realClose();
+        }
+    }
 }
@@ -7,6 +7,7 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 import org.junit.After;
 import org.junit.Before;
@@ -59,4 +60,107 @@ public class FetchSizeTest
         assertFalse(rs.next());
     }
 
+    @Test
+    public void fetchBlocksOfRows() throws SQLException {
+        Statement stat = conn.createStatement();
+        stat.executeUpdate("create table t (id integer, data text)");
+        for (int i = 1; i <= 100; i++) {
+            stat.executeUpdate("insert into t values (" + i + ", '" + (i % 3 == 0 ? null : "row" + i) + "')");
+        }
+
+        for (int fetchSize : new int[] { 0, 1, 7, 100, 1000 }) {
+            stat.setFetchSize(fetchSize);
+            ResultSet rs = stat.executeQuery("select id, data, id * 0.5 from t order by id");
+            assertEquals(fetchSize, rs.getFetchSize());
+            for (int i = 1; i <= 100; i++) {
+                assertTrue(rs.next());
+                assertEquals(i, rs.getInt(1));
+                assertEquals(i % 3 == 0 ? "null" : "row" + i, rs.getString(2));
+                assertEquals(i * 0.5, rs.getDouble(3), 0.0);
+                assertEquals(i, rs.getRow());
+            }
+            assertFalse(rs.next());
+        }
+        stat.close();
+    }
+
+    @Test
+    public void fetchSizeWithMaxRows() throws SQLException {
+        Statement stat = conn.createStatement();
+        stat.executeUpdate("create table t (id integer)");
+        for (int i = 1; i <= 20; i++) {
+            stat.executeUpdate("insert into t values (" + i + ")");
+        }
+
+        stat.setMaxRows(5);
+        stat.setFetchSize(3);
+        ResultSet rs = stat.executeQuery("select id from t order by id");
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+        }
+        assertFalse(rs.next());
+        stat.close();
+    }
+
+    @Test
+    public void fetchRowsLargerThanBlock() throws SQLException {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            large.append((char) ('a' + i % 26));
+        }
+        conn.createStatement().executeUpdate("create table t (id integer, data text)");
+        PreparedStatement insert = conn.prepareStatement("insert into t values (?, ?)");
+        for (int i = 1; i <= 50; i++) {
+            insert.setInt(1, i);
+            insert.setString(2, large.substring(0, i * 2000));
+            insert.executeUpdate();
+        }
+        insert.close();
+
+        PreparedStatement select = conn.prepareStatement("select id, data from t order by id");
+        select.setFetchSize(50);
+        ResultSet rs = select.executeQuery();
+        for (int i = 1; i <= 50; i++) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+            assertEquals(large.substring(0, i * 2000), rs.getString(2));
+        }
+        assertFalse(rs.next());
+        select.close();
+    }
+
+    @Test
+    public void errorAfterFetchedRows() throws SQLException {
+        Function.create(conn, "fail_at_five", new Function() {
+            @Override
+            protected void xFunc() throws SQLException {
+                if (value_int(0) == 5) {
+                    throw new SQLException("five");
+                }
+                result(value_int(0));
+            }
+        });
+        Statement stat = conn.createStatement();
+        stat.executeUpdate("create table t (id integer)");
+        for (int i = 1; i <= 10; i++) {
+            stat.executeUpdate("insert into t values (" + i + ")");
+        }
+
+        stat.setFetchSize(10);
+        ResultSet rs = stat.executeQuery("select fail_at_five(id) from t");
+        for (int i = 1; i <= 4; i++) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+        }
+        try {
+            rs.next();
+            fail("expected an SQLException");
+        }
+        catch (SQLException e) {
+            assertTrue(e.getMessage().contains("five"));
+        }
+        stat.close();
+    }
+
 }
\ No newline at end of file
@@ -3,7 +3,10 @@ package org.sqlite;
 import static org.junit.Assert.*;
 
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.DriverManager;
@@ -12,12 +15,19 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.StringTokenizer;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
 
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.sqlite.core.QueryStats;
 
 /** These tests are designed to stress PreparedStatements on memory dbs. */
 public class PrepStmtTest
@@ -392,6 +402,297 @@ public class PrepStmtTest
         stat.executeUpdate("drop table test;");
     }
 
+    @Test
+    public void batchOfMixedTypes() throws SQLException {
+        stat.executeUpdate("create table test (c1, c2, c3, c4, c5);");
+        PreparedStatement prep = conn.prepareStatement("insert into test values (?,?,?,?,?);");
+        prep.setLong(1, Long.MAX_VALUE);
+        prep.setObject(2, new Short((short) 7));
+        prep.setObject(3, new Float(0.5f));
+        prep.setBytes(4, b1);
+        prep.setNull(5, 0);
+        prep.addBatch();
+        // values not set again are kept from the previous row
+        prep.setString(1, "text");
+        prep.setObject(5, "value");
+        prep.addBatch();
+        assertArrayEq(prep.executeBatch(), new int[] { 1, 1 });
+
+        // the statement is still usable on its own after the batch
+        prep.setInt(1, 3);
+        prep.setInt(2, 4);
+        prep.setDouble(3, 5.5);
+        prep.setString(4, "four");
+        prep.setNull(5, 0);
+        assertEquals(1, prep.executeUpdate());
+        prep.close();
+
+        ResultSet rs = stat.executeQuery("select typeof(c1), c1, c2, c3, c4, c5 from test;");
+        assertTrue(rs.next());
+        assertEquals("integer", rs.getString(1));
+        assertEquals(Long.MAX_VALUE, rs.getLong(2));
+        assertEquals(7, rs.getInt(3));
+        assertEquals(0.5, rs.getDouble(4), 0);
+        assertArrayEq(b1, rs.getBytes(5));
+        assertNull(rs.getObject(6));
+        assertTrue(rs.next());
+        assertEquals("text", rs.getString(2));
+        assertEquals(7, rs.getInt(3));
+        assertArrayEq(b1, rs.getBytes(5));
+        assertEquals("value", rs.getString(6));
+        assertTrue(rs.next());
+        assertEquals(3, rs.getInt(2));
+        assertEquals(5.5, rs.getDouble(4), 0);
+        assertEquals("four", rs.getString(5));
+        assertNull(rs.getObject(6));
+        assertFalse(rs.next());
+        rs.close();
+    }
+
+    @Test
+    public void largeBatch() throws SQLException {
+        stat.executeUpdate("create table test (id integer primary key, name text, data blob);");
+        PreparedStatement prep = conn.prepareStatement("insert into test values (?,?,?);");
+        byte[] large = new byte[300000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) i;
+        }
+        for (int i = 0; i < 5000; i++) {
+            prep.setInt(1, i);
+            prep.setString(2, "name é " + i);
+            prep.setBytes(3, i % 1000 == 0 ? large : b1);
+            prep.addBatch();
+        }
+        int[] changes = prep.executeBatch();
+        assertEquals(5000, changes.length);
+        for (int i = 0; i < changes.length; i++) {
+            assertEquals(1, changes[i]);
+        }
+        prep.close();
+
+        ResultSet rs = stat.executeQuery("select count(*), sum(length(data)), max(name) from test;");
+        assertEquals(5000, rs.getInt(1));
+        assertEquals(5 * large.length + 4995 * b1.length, rs.getLong(2));
+        assertEquals("name é 999", rs.getString(3));
+        rs.close();
+    }
+
+    @Test
+    public void batchFailingEntry() throws SQLException {
+        stat.executeUpdate("create table test (id integer primary key);");
+        PreparedStatement prep = conn.prepareStatement("insert into test values (?);");
+        for (int i = 0; i < 10; i++) {
+            prep.setInt(1, i == 7 ? 3 : i);
+            prep.addBatch();
+        }
+        try {
+            prep.executeBatch();
+            fail("duplicate key should fail the batch");
+        }
+        catch (SQLException e) {
+            // expected
+        }
+        prep.close();
+
+        ResultSet rs = stat.executeQuery("select count(*) from test;");
+        assertEquals(7, rs.getInt(1));
+        rs.close();
+    }
+
+    @Test
+    public void textEncodedAsUtf8() throws SQLException {
+        String[] values = { "", "ascii", "caf\u00e9", "\u20ac 5", utf06, "\u00ff\u0100\u07ff\u0800\ue000" };
+        PreparedStatement prep = conn.prepareStatement("select ?, hex(?), length(?);");
+        for (String value : values) {
+            prep.setString(1, value);
+            prep.setString(2, value);
+            prep.setString(3, value);
+            ResultSet rs = prep.executeQuery();
+            assertTrue(rs.next());
+            assertEquals(value, rs.getString(1));
+            assertEquals(toHex(value), rs.getString(2));
+            assertEquals(value.codePointCount(0, value.length()), rs.getInt(3));
+            rs.close();
+        }
+
+        prep.close();
+    }
+
+    private static String toHex(String value) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : value.getBytes(Charset.forName("UTF-8"))) {
+            hex.append(String.format("%02X", b & 0xff));
+        }
+        return hex.toString();
+    }
+
+    @Test
+    public void statementCache() throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setStatementCacheSize(2);
+        SQLiteConnection cached = (SQLiteConnection) config.createConnection("jdbc:sqlite:");
+        cached.createStatement().executeUpdate("create table test (id, name);");
+
+        for (int i = 0; i < 5; i++) {
+            PreparedStatement prep = cached.prepareStatement("insert into test values (?, ?);");
+            prep.setInt(1, i);
+            if (i == 0) {
+                prep.setString(2, "first");
+            }
+            prep.executeUpdate();
+            prep.close();
+        }
+        assertEquals(4, cached.getStatementCacheHits());
+        assertEquals(1, cached.getStatementCacheMisses());
+
+        // bindings are cleared before a statement is reused
+        ResultSet rs = cached.createStatement().executeQuery("select count(name) from test;");
+        assertEquals(1, rs.getInt(1));
+        rs.close();
+
+        // a statement in use is not handed out twice
+        PreparedStatement first = cached.prepareStatement("select id from test order by id;");
+        PreparedStatement second = cached.prepareStatement("select id from test order by id;");
+        ResultSet rs1 = first.executeQuery();
+        ResultSet rs2 = second.executeQuery();
+        assertTrue(rs1.next());
+        assertTrue(rs1.next());
+        assertTrue(rs2.next());
+        assertEquals(1, rs1.getInt(1));
+        assertEquals(0, rs2.getInt(1));
+        first.close();
+        second.close();
+
+        // the least recently used statement is evicted
+        cached.prepareStatement("select 1;").close();
+        cached.prepareStatement("select 2;").close();
+        cached.prepareStatement("insert into test values (?, ?);").close();
+        assertEquals(4, cached.getStatementCacheHits());
+        cached.close();
+        cached.realClose();
+    }
+
+    private static QueryStats findStats(List<QueryStats> stats, String sql) {
+        for (QueryStats each : stats) {
+            if (each.getSql().equals(sql)) {
+                return each;
+            }
+        }
+        fail("no statistics for " + sql + " in " + stats);
+        return null;
+    }
+
+    @Test
+    public void queryStats() throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setMetrics(true);
+        SQLiteConnection measured = (SQLiteConnection) config.createConnection("jdbc:sqlite:");
+        assertTrue(measured.isMetricsEnabled());
+        Statement s = measured.createStatement();
+        s.executeUpdate("create table test (id integer, name text);");
+
+        PreparedStatement prep = measured.prepareStatement("insert into test values (?, ?);");
+        for (int i = 0; i < 10; i++) {
+            prep.setInt(1, i);
+            prep.setString(2, "name" + i);
+            prep.addBatch();
+        }
+        prep.executeBatch();
+        prep.setInt(1, 10);
+        prep.setString(2, "x");
+        prep.executeUpdate();
+        prep.close();
+
+        // literals are normalized away, so the three queries share their statistics
+        for (int i = 0; i < 3; i++) {
+            ResultSet rs = s.executeQuery("select name from test   where id >= " + (2 * i) + "; -- comment");
+            while (rs.next()) {
+                rs.getString(1);
+            }
+        }
+
+        List<QueryStats> stats = measured.getQueryStats();
+        QueryStats select = findStats(stats, "select name from test where id >= ?;");
+        assertEquals(3, select.getExecutions());
+        assertEquals(3, select.getPrepares());
+        assertEquals(11 + 9 + 7, select.getRows());
+        assertEquals(11 + 9 + 7 + 3, select.getSteps());
+        assertEquals(51 + 41 + 31, select.getBytesRead());
+        assertTrue(select.getNativeNanos() > 0);
+        assertTrue(select.getMaxNativeNanos() <= select.getNativeNanos());
+        assertEquals(0, select.getBusyNanos());
+        assertEquals(0, select.getSlowExecutions());
+
+        QueryStats insert = findStats(stats, "insert into test values (?, ?);");
+        assertEquals(2, insert.getExecutions());
+        assertEquals(1, insert.getPrepares());
+        assertEquals(11, insert.getSteps());
+        assertEquals(0, insert.getRows());
+        assertEquals(1, findStats(stats, "create table test (id integer, name text);").getExecutions());
+
+        // snapshots do not change
+        s.executeQuery("select name from test where id >= 7;").close();
+        assertEquals(3, select.getExecutions());
+        assertEquals(4, findStats(measured.getQueryStats(), select.getSql()).getExecutions());
+
+        measured.resetQueryStats();
+        assertTrue(measured.getQueryStats().isEmpty());
+        measured.setMetricsEnabled(false);
+        s.executeQuery("select name from test;").close();
+        assertTrue(measured.getQueryStats().isEmpty());
+        s.close();
+        measured.realClose();
+    }
+
+    @Test
+    public void slowQueryLog() throws SQLException {
+        final List<String> logged = new ArrayList<String>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                logged.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        };
+        Logger log = Logger.getLogger("org.sqlite.SlowQuery");
+        boolean parentHandlers = log.getUseParentHandlers();
+        log.setUseParentHandlers(false);
+        log.addHandler(handler);
+        try {
+            SQLiteConnection measured = (SQLiteConnection) conn;
+            assertEquals(-1, measured.getSlowQueryThreshold());
+            stat.executeUpdate("create table test (id);");
+            assertTrue(logged.isEmpty());
+
+            measured.setSlowQueryThreshold(0);
+            measured.setMetricsEnabled(true);
+            PreparedStatement prep = conn.prepareStatement("select count(*) from test where id > ?;");
+            prep.setInt(1, 1);
+            ResultSet rs = prep.executeQuery();
+            assertEquals(0, rs.getInt(1));
+            assertTrue(logged.isEmpty());
+            rs.close();
+            assertEquals(1, logged.size());
+            assertTrue(logged.get(0), logged.get(0).endsWith("1 rows: select count(*) from test where id > ?;"));
+            assertEquals(1, findStats(measured.getQueryStats(), "select count(*) from test where id > ?;")
+                    .getSlowExecutions());
+
+            measured.setSlowQueryThreshold(-1);
+            prep.executeQuery().close();
+            assertEquals(1, logged.size());
+            prep.close();
+        }
+        finally {
+            log.removeHandler(handler);
+            log.setUseParentHandlers(parentHandlers);
+        }
+    }
+
     @Test
     public void testExecuteBatch() throws Exception {
         stat.executeUpdate("create table t (c text);");
@@ -598,6 +899,238 @@ public class PrepStmtTest
         prep.executeQuery();
     }
 
+    /** Produces bytes (byte) i without holding them, remembering the largest read asked for. */
+    private static class PatternStream extends InputStream
+    {
+        private final int length;
+        private int pos = 0;
+        int maxRead = 0;
+
+        PatternStream(int length) {
+            this.length = length;
+        }
+
+        @Override
+        public int read() {
+            return pos < length ? (pos++ & 0xff) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            maxRead = Math.max(maxRead, len);
+            if (pos >= length) {
+                return -1;
+            }
+            int n = Math.min(len, length - pos);
+            for (int i = 0; i < n; i++) {
+                b[off + i] = (byte) pos++;
+            }
+            return n;
+        }
+    }
+
+    private static void assertPattern(byte[] bytes, int length) {
+        assertEquals(length, bytes.length);
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] != (byte) i) {
+                fail("byte " + i + " is " + bytes[i]);
+            }
+        }
+    }
+
+    @Test
+    public void streamedInsert() throws SQLException {
+        int length = 3 * 1024 * 1024 + 17;
+        stat.executeUpdate("create table blobs (id integer primary key, name text, data blob);");
+
+        PreparedStatement prep = conn.prepareStatement("insert into blobs (id, name, data) values (?, 'a', ?);");
+        prep.setInt(1, 1);
+        prep.setBinaryStream(2, new PatternStream(length), length);
+        assertEquals(1, prep.executeUpdate());
+        prep.close();
+
+        // not an insert the parameters can be followed into, read up front
+        prep = conn.prepareStatement("insert into blobs (id, name, data) values (?, ?, ? || x'');");
+        prep.setInt(1, 2);
+        prep.setString(2, "b");
+        prep.setBinaryStream(3, new PatternStream(1000), 1000);
+        assertEquals(1, prep.executeUpdate());
+        prep.close();
+
+        prep = conn.prepareStatement("replace into \"main\".[blobs] (\"data\", id) values (?, ?);");
+        prep.setBinaryStream(1, new PatternStream(0), 0);
+        prep.setInt(2, 3);
+        assertEquals(1, prep.executeUpdate());
+        prep.close();
+
+        ResultSet rs = stat.executeQuery("select id, name, typeof(data), data from blobs order by id;");
+        assertTrue(rs.next());
+        assertEquals("blob", rs.getString(3));
+        assertPattern(rs.getBytes(4), length);
+        assertTrue(rs.next());
+        assertEquals("b", rs.getString(2));
+        assertPattern(rs.getBytes(4), 1000);
+        assertTrue(rs.next());
+        assertEquals(3, rs.getInt(1));
+        assertEquals("blob", rs.getString(3));
+        assertFalse(rs.next());
+        rs.close();
+
+        // a stream ending early leaves no row behind
+        prep = conn.prepareStatement("insert into blobs (id, data) values (?, ?);");
+        prep.setInt(1, 4);
+        prep.setBinaryStream(2, new PatternStream(100000), 200000);
+        try {
+            prep.executeUpdate();
+            fail("stream ended early");
+        }
+        catch (SQLException e) {
+            // expected
+        }
+        assertFalse(stat.executeQuery("select * from blobs where id = 4;").next());
+
+        // batches read the streams as they are added
+        PatternStream in = new PatternStream(10);
+        prep.setInt(1, 5);
+        prep.setBinaryStream(2, in, 10);
+        prep.addBatch();
+        prep.setInt(1, 6);
+        prep.addBatch();
+        assertArrayEq(new int[] { 1, 1 }, prep.executeBatch());
+        rs = stat.executeQuery("select data from blobs where id in (5, 6);");
+        assertTrue(rs.next());
+        assertPattern(rs.getBytes(1), 10);
+        assertTrue(rs.next());
+        assertPattern(rs.getBytes(1), 10);
+        rs.close();
+
+        prep.setInt(1, 7);
+        prep.setBinaryStream(2, null, 0);
+        prep.executeUpdate();
+        rs = stat.executeQuery("select data from blobs where id = 7;");
+        assertTrue(rs.next());
+        assertNull(rs.getBytes(1));
+        rs.close();
+        prep.close();
+    }
+
+    /** Inserts a stream of a given length into table.data, returning the largest read of it. */
+    private int insertStream(String table, int id, InputStream in, int length) throws SQLException {
+        PreparedStatement prep = conn.prepareStatement("insert into " + table + " (id, data) values (?, ?);");
+        try {
+            prep.setInt(1, id);
+            prep.setBinaryStream(2, in, length);
+            assertEquals(1, prep.executeUpdate());
+        }
+        finally {
+            prep.close();
+        }
+        return in instanceof PatternStream ? ((PatternStream) in).maxRead : -1;
+    }
+
+    private byte[] selectData(String table, int id) throws SQLException {
+        ResultSet rs = stat.executeQuery("select data from " + table + " where id = " + id + ";");
+        assertTrue(rs.next());
+        byte[] data = rs.getBytes(1);
+        rs.close();
+        return data;
+    }
+
+    @Test
+    public void streamedInsertConstraints() throws SQLException {
+        Assume.assumeTrue(((SQLiteConnection) conn).db().extended());
+        int length = 100000;
+        stat.executeUpdate("create table plain (id integer primary key, data blob);");
+        stat.executeUpdate("create table uniq (id integer primary key, data blob unique);");
+        stat.executeUpdate("create table indexed (id integer primary key, data blob);");
+        stat.executeUpdate("create index indexed_data on indexed (length(data), data);");
+        stat.executeUpdate("create table checked (id integer primary key, "
+                + "data blob check (data <> zeroblob(length(data))));");
+        stat.executeUpdate("create table logged (id integer primary key, data blob);");
+        stat.executeUpdate("create table log (data blob);");
+        stat.executeUpdate("create trigger logged_insert after insert on logged begin "
+                + "insert into log values (new.data); end;");
+        stat.executeUpdate("create table exprindexed (id integer primary key, data blob);");
+        stat.executeUpdate("create index exprindexed_data on exprindexed (length(\"Data\"));");
+        stat.executeUpdate("create table partial (id integer primary key, data blob, tag text);");
+        stat.executeUpdate("create unique index partial_tag on partial (tag) where length(data) > 1;");
+        stat.executeUpdate("create table quoted (id integer primary key, [data] blob, \"Data \"\"Copy\"\"\" blob);");
+        stat.executeUpdate("create unique index quoted_copy on quoted (\"data \"\"copy\"\"\");");
+
+        // streamed a chunk at a time into a column SQLite does not look at
+        assertTrue(insertStream("plain", 1, new PatternStream(length), length) <= 64 * 1024);
+        assertPattern(selectData("plain", 1), length);
+
+        // read up front where SQLite would see zeros in place of the value
+        String[] tables = { "uniq", "indexed", "checked", "logged", "exprindexed", "partial" };
+        for (String table : tables) {
+            assertEquals(table, length, insertStream(table, 1, new PatternStream(length), length));
+            assertPattern(selectData(table, 1), length);
+        }
+        ResultSet rs = stat.executeQuery("select data from log;");
+        assertTrue(rs.next());
+        assertPattern(rs.getBytes(1), length);
+        rs.close();
+
+        // quoted names are matched to the columns of the index as SQLite reads them
+        assertTrue(insertStream("quoted", 1, new PatternStream(length), length) <= 64 * 1024);
+        assertPattern(selectData("quoted", 1), length);
+        PatternStream copy = new PatternStream(length);
+        PreparedStatement prep = conn.prepareStatement("insert into quoted (id, `DATA \"COPY\"`) values (?, ?);");
+        prep.setInt(1, 2);
+        prep.setBinaryStream(2, copy, length);
+        assertEquals(1, prep.executeUpdate());
+        prep.close();
+        assertEquals(length, copy.maxRead);
+
+        // values of the same length are told apart by the UNIQUE constraint
+        byte[] other = new byte[length];
+        other[0] = 1;
+        insertStream("uniq", 2, new ByteArrayInputStream(other), length);
+        assertArrayEquals(other, selectData("uniq", 2));
+        try {
+            insertStream("uniq", 3, new PatternStream(length), length);
+            fail("inserted a duplicate");
+        }
+        catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("UNIQUE"));
+        }
+
+        try {
+            insertStream("checked", 2, new ByteArrayInputStream(new byte[length]), length);
+            fail("inserted zeros");
+        }
+        catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("CHECK"));
+        }
+
+        // a column indexed after the statement was prepared is read up front too
+        prep = conn.prepareStatement("insert into plain (id, data) values (?, ?);");
+        stat.executeUpdate("create unique index plain_data on plain (data);");
+        PatternStream in = new PatternStream(length);
+        prep.setInt(1, 2);
+        prep.setBinaryStream(2, in, length);
+        try {
+            prep.executeUpdate();
+            fail("inserted a duplicate");
+        }
+        catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("UNIQUE"));
+        }
+        prep.close();
+    }
+
+    @Test
+    public void characterStream() throws SQLException {
+        PreparedStatement prep = conn.prepareStatement("select ?;");
+        prep.setCharacterStream(1, new StringReader("character stream"), 9);
+        ResultSet rs = prep.executeQuery();
+        assertTrue(rs.next());
+        assertEquals("character", rs.getString(1));
+        rs.close();
+        prep.close();
+    }
+
     @Test(expected = SQLException.class)
     public void noSuchCol() throws SQLException {
         PreparedStatement prep = conn.prepareStatement("select notacol from (select 1);");
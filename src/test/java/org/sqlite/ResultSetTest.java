@@ -1,16 +1,33 @@
 package org.sqlite;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.sql.Blob;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
+import java.util.Random;
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
+import org.sqlite.core.CoreConnection;
+import org.sqlite.jdbc4.JDBC4Blob;
+import org.sqlite.jdbc4.JDBC4Connection;
+import org.sqlite.jdbc4.JDBC4ResultSet;
 
 public class ResultSetTest {
 
@@ -140,4 +157,354 @@ public class ResultSetTest {
         resultSet.findColumn("test.id");
     }
 
+    @Test
+    public void findColumnWithDottedNames() throws SQLException {
+        ResultSet resultSet = stat.executeQuery("select id as \"a.b.Key\", 2 as \"x.key\", 3 as other from test");
+        assertTrue(resultSet.next());
+        assertEquals(1, resultSet.findColumn("A.B.KEY"));
+        assertEquals(1, resultSet.findColumn("b.key"));
+        assertEquals(2, resultSet.findColumn("x.Key"));
+        assertEquals(3, resultSet.findColumn("OTHER"));
+        assertEquals(3, resultSet.findColumn("OTHER"));
+        for (int i = 0; i < 2; i++) {
+            try {
+                resultSet.findColumn("key");
+                fail();
+            }
+            catch (SQLException e) {
+                assertEquals("ambiguous column: 'key'", e.getMessage());
+            }
+        }
+        try {
+            resultSet.findColumn("b");
+            fail();
+        }
+        catch (SQLException e) {
+            assertEquals("no such column: 'b'", e.getMessage());
+        }
+    }
+
+    @Test
+    public void findColumnAfterExecutingAgain() throws SQLException {
+        PreparedStatement prep = conn.prepareStatement("select id, description from test where id = ?");
+        for (int i = 0; i < 3; i++) {
+            prep.setInt(1, 1);
+            ResultSet resultSet = prep.executeQuery();
+            assertTrue(resultSet.next());
+            assertEquals(1, resultSet.getInt("ID"));
+            assertEquals("description", resultSet.getString("Description"));
+            resultSet.close();
+        }
+        prep.close();
+
+        ResultSet resultSet = stat.executeQuery("select id as a from test");
+        assertEquals(1, resultSet.findColumn("a"));
+        resultSet.close();
+        resultSet = stat.executeQuery("select id as b, id as a from test");
+        assertEquals(2, resultSet.findColumn("a"));
+        resultSet.close();
+    }
+
+    @Test
+    public void blobWithoutCopy() throws Exception {
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        stat.executeUpdate("create table blobs (id integer, data blob)");
+        PreparedStatement prep = conn.prepareStatement("insert into blobs values (?, ?)");
+        prep.setInt(1, 1);
+        prep.setBytes(2, data);
+        prep.executeUpdate();
+        prep.setInt(1, 2);
+        prep.setNull(2, Types.BLOB);
+        prep.executeUpdate();
+        prep.close();
+
+        JDBC4ResultSet rs = stat.executeQuery("select data, 'abc', 42 from blobs order by id").unwrap(JDBC4ResultSet.class);
+        assertTrue(rs.next());
+        ByteBuffer buf = rs.getBlobBuffer(1);
+        assertTrue(buf.isReadOnly());
+        assertEquals(data.length, buf.remaining());
+        byte[] copy = new byte[data.length];
+        buf.get(copy);
+        assertArrayEquals(data, copy);
+        assertEquals(ByteBuffer.wrap("abc".getBytes("UTF-8")), rs.getBlobBuffer(2));
+        assertEquals(ByteBuffer.wrap("42".getBytes("UTF-8")), rs.getBlobBuffer(3));
+
+        byte[] dst = new byte[10];
+        assertEquals(data.length, rs.getBytes("data", dst, 2));
+        assertArrayEquals(new byte[] { 0, 0, 0, 1, 2, 3, 4, 5, 6, 7 }, dst);
+        copy = new byte[data.length];
+        assertEquals(data.length, rs.getBytes(1, copy, 0));
+        assertArrayEquals(data, copy);
+
+        InputStream in = rs.getBinaryStream(1);
+        assertEquals(0, in.read());
+        assertEquals(1, in.read());
+        assertEquals(data.length - 2, in.skip(data.length));
+        assertEquals(-1, in.read());
+
+        assertTrue(rs.next());
+        assertNull(rs.getBlobBuffer(1));
+        assertTrue(rs.wasNull());
+        assertEquals(-1, rs.getBytes(1, dst, 0));
+        assertNull(rs.getBinaryStream(1));
+        assertFalse(rs.next());
+        rs.close();
+    }
+
+    @Test
+    public void columnValuesOfEveryType() throws SQLException {
+        ResultSet rs = stat.executeQuery("select 42, 3.5, 'text', x'0102', null, '12abc', 1 << 40");
+        assertTrue(rs.next());
+        assertEquals(42, rs.getInt(1));
+        assertEquals("42", rs.getString(1));
+        assertEquals(3.5, rs.getDouble(2), 0.0);
+        assertEquals(3, rs.getLong(2));
+        assertEquals("3.5", rs.getString(2));
+        assertEquals("text", rs.getString(3));
+        assertEquals(0, rs.getInt(3));
+        assertArrayEquals(new byte[] { 1, 2 }, rs.getBytes(4));
+        assertNull(rs.getString(5));
+        assertNull(rs.getBytes(5));
+        assertEquals(0, rs.getLong(5));
+        assertTrue(rs.wasNull());
+        assertEquals(12, rs.getInt(6));
+        assertFalse(rs.wasNull());
+        assertEquals(1L << 40, rs.getLong(7));
+        assertEquals((int) (1L << 40), rs.getInt(7));
+        assertEquals(Long.valueOf(1L << 40), rs.getObject(7));
+        assertFalse(rs.next());
+    }
+
+    @Test
+    public void realValuesAsText() throws SQLException {
+        double[] values = { 0.1, -2.5, 100.0, 1e15, 123456789012345.0, 1e-5, 0.0001, 1.0 / 3, -1e100,
+                4.9e-324, Double.MAX_VALUE };
+        for (double value : values) {
+            ResultSet rs = stat.executeQuery("select " + value + " * 1.0, cast(" + value + " * 1.0 as text)");
+            assertTrue(rs.next());
+            assertEquals(rs.getString(2), rs.getString(1));
+            rs.close();
+        }
+    }
+
+    @Test
+    public void realValuesAsTextOfSQLite() throws SQLException {
+        stat.executeUpdate("create table reals (x real)");
+        PreparedStatement prep = conn.prepareStatement("insert into reals values (?)");
+        prep.setDouble(1, 431578872702817.0);
+        prep.addBatch();
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            prep.setDouble(1, random.nextLong() / Math.pow(10, random.nextInt(30)));
+            prep.addBatch();
+        }
+        prep.executeBatch();
+        prep.close();
+
+        ResultSet rs = stat.executeQuery("select x, cast(x as text) from reals");
+        int rows = 0;
+        while (rs.next()) {
+            assertEquals(rs.getString(2), rs.getString(1));
+            rows++;
+        }
+        assertEquals(20001, rows);
+        rs.close();
+    }
+
+    @Test
+    public void textValuesAsNumbersOfSQLite() throws SQLException {
+        ResultSet rs = stat.executeQuery("select '12abc', ' 42 ', 'Infinity', '3.7e2xyz', '1e400', x'3235', 2.5, 7");
+        assertTrue(rs.next());
+        long[] longs = { 12, 42, 0, 3, 1, 25, 2, 7 };
+        double[] doubles = { 12, 42, 0, 370, Double.POSITIVE_INFINITY, 25, 2.5, 7 };
+        for (int i = 0; i < longs.length; i++) {
+            assertEquals(longs[i], rs.getLong(i + 1));
+            assertEquals((int) longs[i], rs.getInt(i + 1));
+            assertEquals(doubles[i], rs.getDouble(i + 1), 0);
+        }
+        assertEquals("2.5", rs.getString(7));
+        assertEquals("7", rs.getString(8));
+        rs.close();
+    }
+
+    @Test
+    public void manyRowsWithLargeValues() throws SQLException {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            large.append((char) ('a' + i % 26));
+        }
+        stat.executeUpdate("create table big (id integer, data text, empty text, nodata blob)");
+        for (int i = 0; i < 10; i++) {
+            stat.executeUpdate("insert into big values (" + i + ", '" + large.substring(0, i * 1000) + "', '', x'')");
+        }
+
+        ResultSet rs = stat.executeQuery("select * from big order by id");
+        for (int i = 0; i < 10; i++) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt("id"));
+            assertEquals(large.substring(0, i * 1000), rs.getString("data"));
+            assertEquals("", rs.getString("empty"));
+            assertNull(rs.getBytes("nodata"));
+        }
+        assertFalse(rs.next());
+    }
+
+
+    @Test
+    public void getBlob() throws Exception {
+        byte[] data = new byte[200000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7);
+        }
+        stat.executeUpdate("create table blobs (id integer primary key, data blob)");
+        PreparedStatement prep = conn.prepareStatement("insert into blobs values (?, ?)");
+        prep.setInt(1, 1);
+        prep.setBytes(2, data);
+        prep.executeUpdate();
+        prep.setInt(1, 2);
+        prep.setNull(2, Types.BLOB);
+        prep.executeUpdate();
+        prep.close();
+
+        // streamed from the database if the rowid is selected, copied otherwise
+        String[] queries = { "select id, data from blobs order by id", "select data, data from blobs order by id" };
+        for (String query : queries) {
+            ResultSet rs = stat.executeQuery(query);
+            assertTrue(rs.next());
+            Blob blob = rs.getBlob(2);
+            assertEquals(data.length, blob.length());
+            assertArrayEquals(data, blob.getBytes(1, data.length));
+            byte[] part = blob.getBytes(data.length - 1, 2);
+            assertArrayEquals(new byte[] { data[data.length - 2], data[data.length - 1] }, part);
+
+            InputStream in = blob.getBinaryStream();
+            byte[] copy = new byte[data.length];
+            int n = 0;
+            for (int read; (read = in.read(copy, n, copy.length - n)) > 0;) {
+                n += read;
+            }
+            assertEquals(data.length, n);
+            assertEquals(-1, in.read());
+            assertArrayEquals(data, copy);
+            in = blob.getBinaryStream(100001, 3);
+            assertEquals(data[100000] & 0xff, in.read());
+            assertEquals(2, in.skip(5));
+            assertEquals(-1, in.read());
+            blob.free();
+
+            assertTrue(rs.next());
+            assertNull(rs.getBlob(2));
+            assertTrue(rs.wasNull());
+            rs.close();
+        }
+    }
+
+    @Test
+    public void getBlobOfSelfJoin() throws Exception {
+        stat.executeUpdate("create table blobs (id integer primary key, tag integer, data blob)");
+        stat.executeUpdate("create index blobs_tag on blobs (tag)");
+        stat.executeUpdate("insert into blobs values (1, 1, x'0101'), (2, 1, x'0202'), (3, 2, x'0303')");
+
+        // copied unless the query reads a single row of a single table for each row
+        stat.executeUpdate("create view pairs as select a.data, b.id from blobs a join blobs b on b.id = a.id + 1");
+        String[] queries = { "select a.data, b.id from blobs a join blobs b on b.id = a.id + 1 order by a.id",
+                "select a.data, b.id from blobs a join blobs b on b.tag = a.tag and b.id <> a.id order by a.id",
+                "select a.data, a.id from blobs a join blobs b on b.id = a.id + 1 order by a.id",
+                "select data, (select id from blobs where id = 3) from blobs",
+                "select data, id from blobs union all select data, id from blobs",
+                "select data, id from pairs" };
+        for (String query : queries) {
+            ResultSet rs = stat.executeQuery(query);
+            assertTrue(rs.next());
+            Blob blob = rs.getBlob(1);
+            assertFalse(blob instanceof JDBC4Blob);
+            assertArrayEquals(rs.getBytes(1), blob.getBytes(1, (int) blob.length()));
+            rs.close();
+        }
+
+        // streamed when the rowid is read with the row, from the table or an index
+        Assume.assumeTrue(((SQLiteConnection) conn).db().extended());
+        String[] streamed = { "select data, id from blobs where id = 2", "select data, id from blobs where tag = 1 order by id",
+                "select b.data, b.rowid from main.blobs as b indexed by blobs_tag where b.tag = 2;" };
+        for (String query : streamed) {
+            ResultSet rs = stat.executeQuery(query);
+            assertTrue(rs.next());
+            Blob blob = rs.getBlob(1);
+            assertTrue(query, blob instanceof JDBC4Blob);
+            assertArrayEquals(rs.getBytes(1), blob.getBytes(1, (int) blob.length()));
+            rs.close();
+        }
+    }
+
+    @Test
+    public void openBlob() throws Exception {
+        Assume.assumeTrue(((SQLiteConnection) conn).db().extended());
+        stat.executeUpdate("create table blobs (id integer primary key, data blob)");
+        stat.executeUpdate("insert into blobs values (1, zeroblob(100000))");
+
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        Blob blob = conn.unwrap(JDBC4Connection.class).openBlob("blobs", "data", 1, true);
+        assertEquals(data.length, blob.length());
+        assertEquals(10, blob.setBytes(1, data, 0, 10));
+        OutputStream out = blob.setBinaryStream(11);
+        out.write(data, 10, data.length - 11);
+        out.write(data[data.length - 1]);
+        try {
+            out.write(0);
+            fail("wrote past the end of the BLOB");
+        }
+        catch (IOException e) {
+            // expected
+        }
+        out.close();
+        try {
+            blob.setBytes(data.length, new byte[2]);
+            fail("wrote past the end of the BLOB");
+        }
+        catch (SQLException e) {
+            // expected
+        }
+        blob.free();
+        try {
+            blob.length();
+            fail("BLOB is freed");
+        }
+        catch (SQLException e) {
+            // expected
+        }
+
+        ResultSet rs = stat.executeQuery("select data from blobs");
+        assertTrue(rs.next());
+        assertArrayEquals(data, rs.getBytes(1));
+        rs.close();
+
+        blob = conn.unwrap(JDBC4Connection.class).openBlob("main", "blobs", "data", 1, false);
+        try {
+            blob.setBytes(1, new byte[1]);
+            fail("BLOB is read-only");
+        }
+        catch (SQLException e) {
+            // expected
+        }
+
+        // closed along with the database
+        Connection other = DriverManager.getConnection("jdbc:sqlite:");
+        other.createStatement().executeUpdate("create table blobs (data blob)");
+        other.createStatement().executeUpdate("insert into blobs values (x'00')");
+        blob = other.unwrap(JDBC4Connection.class).openBlob("blobs", "data", 1, false);
+        ((CoreConnection) other).realClose();
+        try {
+            blob.getBytes(1, 1);
+            fail("BLOB is closed");
+        }
+        catch (SQLException e) {
+            // expected
+        }
+    }
 }
@@ -28,4 +28,24 @@ public class SQLiteConfigTest {
         assertEquals(SQLiteConfig.DateClass.REAL.name(),
             properties.getProperty(SQLiteConfig.Pragma.DATE_CLASS.getPragmaName()));
     }
+
+    @Test
+    public void threadingMode() throws SQLException
+    {
+        SQLiteConfig config = new SQLiteConfig();
+        assertEquals(SQLiteConfig.ThreadingMode.SERIALIZED, config.getThreadingMode());
+
+        config.setThreadingMode(SQLiteConfig.ThreadingMode.MULTI_THREAD);
+        assertEquals(SQLiteConfig.ThreadingMode.MULTI_THREAD, config.getThreadingMode());
+        assertTrue((config.getOpenModeFlags() & SQLiteOpenMode.NOMUTEX.flag) != 0);
+        assertTrue((config.getOpenModeFlags() & SQLiteOpenMode.FULLMUTEX.flag) == 0);
+
+        config.setThreadingMode(SQLiteConfig.ThreadingMode.SERIALIZED);
+        assertTrue((config.getOpenModeFlags() & SQLiteOpenMode.NOMUTEX.flag) == 0);
+        assertTrue((config.getOpenModeFlags() & SQLiteOpenMode.FULLMUTEX.flag) != 0);
+
+        Properties properties = new Properties();
+        properties.setProperty(SQLiteConfig.Pragma.THREADING_MODE.getPragmaName(), "multi_thread");
+        assertEquals(SQLiteConfig.ThreadingMode.MULTI_THREAD, new SQLiteConfig(properties).getThreadingMode());
+    }
 }
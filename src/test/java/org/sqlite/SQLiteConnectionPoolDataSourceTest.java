@@ -15,14 +15,20 @@ package org.sqlite;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
 
 import javax.sql.ConnectionPoolDataSource;
 import javax.sql.PooledConnection;
 
 import org.junit.Test;
 import org.sqlite.javax.SQLiteConnectionPoolDataSource;
+import org.sqlite.javax.SQLitePoolingDataSource;
 
 public class SQLiteConnectionPoolDataSourceTest {
 
@@ -55,4 +61,172 @@ public class SQLiteConnectionPoolDataSourceTest {
         pooledConn.close();
         assertTrue(handle.isClosed());
     }
+
+    @Test
+    public void handleStatements() throws SQLException {
+        PooledConnection pooledConn = new SQLiteConnectionPoolDataSource().getPooledConnection();
+
+        Connection handle = pooledConn.getConnection();
+        Statement stat = handle.createStatement();
+        PreparedStatement prep = handle.prepareStatement("select ?");
+        assertSame(handle, stat.getConnection());
+        assertSame(handle, prep.getConnection());
+        assertTrue(handle.isWrapperFor(SQLiteConnection.class));
+
+        prep.setInt(1, 7);
+        ResultSet rs = prep.executeQuery();
+        assertEquals(7, rs.getInt(1));
+
+        // closing the handle closes its statements but not the physical connection
+        stat.getConnection().close();
+        assertTrue(stat.isClosed());
+        assertTrue(prep.isClosed());
+
+        handle = pooledConn.getConnection();
+        assertTrue(handle.createStatement().execute("select 1"));
+        pooledConn.close();
+    }
+
+    @Test
+    public void poolReusesConnections() throws SQLException {
+        SQLitePoolingDataSource ds = new SQLitePoolingDataSource();
+        ds.setMaxWait(100);
+
+        Connection conn = ds.getConnection();
+        conn.setAutoCommit(false);
+        conn.createStatement().executeUpdate("create table test (id integer)");
+        conn.createStatement().executeUpdate("insert into test values (1)");
+        conn.close();
+        assertTrue(conn.isClosed());
+        assertEquals(1, ds.getOpenCount());
+        assertEquals(1, ds.getIdleCount());
+        conn.close();
+        assertEquals(1, ds.getIdleCount());
+
+        // the same in-memory database is handed out again, with the transaction rolled back
+        Connection again = ds.getConnection();
+        assertTrue(again.getAutoCommit());
+        try {
+            again.createStatement().executeQuery("select * from test");
+            fail();
+        }
+        catch (SQLException e) {
+            assertTrue(e.getMessage().contains("no such table"));
+        }
+        assertEquals(1, ds.getOpenCount());
+        assertEquals(0, ds.getIdleCount());
+
+        try {
+            ds.getConnection();
+            fail();
+        }
+        catch (SQLTimeoutException e) {
+            // the single writer is in use
+        }
+
+        again.close();
+        ds.close();
+        assertEquals(0, ds.getOpenCount());
+        try {
+            ds.getConnection();
+            fail();
+        }
+        catch (SQLException e) {
+            assertEquals("data source closed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void poolDiscardsConnectionsFailingToReset() throws SQLException {
+        SQLitePoolingDataSource ds = new SQLitePoolingDataSource();
+        ds.setMaxWait(100);
+
+        // the transaction ends behind the back of the handle, so its rollback fails
+        Connection conn = ds.getConnection();
+        conn.setAutoCommit(false);
+        conn.createStatement().execute("rollback");
+        try {
+            conn.close();
+            fail();
+        }
+        catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("no transaction is active"));
+        }
+        assertTrue(conn.isClosed());
+        assertEquals(0, ds.getOpenCount());
+        assertEquals(0, ds.getIdleCount());
+
+        // the slot of the pool is free again
+        Connection again = ds.getConnection();
+        assertTrue(again.getAutoCommit());
+        assertTrue(again.createStatement().execute("select 1"));
+        again.close();
+        assertEquals(1, ds.getIdleCount());
+        ds.close();
+    }
+
+    @Test
+    public void poolReadersAndWriters() throws Exception {
+        File tmp = File.createTempFile("pool-test", ".db");
+        tmp.deleteOnExit();
+
+        SQLitePoolingDataSource ds = new SQLitePoolingDataSource();
+        ds.setUrl("jdbc:sqlite:" + tmp.getAbsolutePath());
+        ds.setMaxReadOnlyPoolSize(2);
+
+        Connection writer = ds.getConnection();
+        Statement stat = writer.createStatement();
+        stat.executeUpdate("create table test (id integer)");
+        stat.executeUpdate("insert into test values (1)");
+        writer.close();
+
+        Connection reader1 = ds.getReadOnlyConnection();
+        Connection reader2 = ds.getReadOnlyConnection();
+        ResultSet rs = reader1.createStatement().executeQuery("select count(*) from test");
+        assertEquals(1, rs.getInt(1));
+        rs.close();
+        rs = reader2.createStatement().executeQuery("select count(*) from test");
+        assertEquals(1, rs.getInt(1));
+        rs.close();
+        try {
+            reader1.createStatement().executeUpdate("insert into test values (2)");
+            fail();
+        }
+        catch (SQLException e) {
+            // read-only connection
+        }
+        assertEquals(3, ds.getOpenCount());
+        reader1.close();
+        reader2.close();
+        assertEquals(3, ds.getIdleCount());
+        ds.close();
+    }
+
+    @Test
+    public void poolEvictsIdleConnections() throws Exception {
+        SQLitePoolingDataSource ds = new SQLitePoolingDataSource();
+        ds.setUrl("jdbc:sqlite::memory:");
+        ds.setMaxPoolSize(3);
+        ds.setMinPoolSize(1);
+        ds.setIdleTimeout(50);
+        ds.setValidationQuery("select 1");
+
+        Connection c1 = ds.getConnection();
+        Connection c2 = ds.getConnection();
+        Connection c3 = ds.getConnection();
+        c1.close();
+        c2.close();
+        c3.close();
+        assertEquals(3, ds.getIdleCount());
+
+        Thread.sleep(100);
+        ds.evictIdleConnections();
+        assertEquals(1, ds.getIdleCount());
+        assertEquals(1, ds.getOpenCount());
+
+        Connection conn = ds.getConnection();
+        assertTrue(conn.createStatement().execute("select 1"));
+        conn.close();
+        ds.close();
+    }
 }
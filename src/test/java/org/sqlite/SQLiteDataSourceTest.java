@@ -11,13 +11,21 @@ package org.sqlite;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.sqlite.core.CoreConnection;
 
 public class SQLiteDataSourceTest
 {
@@ -84,4 +92,102 @@ public class SQLiteDataSourceTest
             }
         }
     }
+
+    @Test
+    public void parallelScan() throws Exception {
+        File tmp = File.createTempFile("parallel-scan", ".db");
+        tmp.deleteOnExit();
+        SQLiteDataSource ds = new SQLiteDataSource();
+        ds.setUrl("jdbc:sqlite:" + tmp.getAbsolutePath());
+
+        Connection conn = ds.getConnection();
+        Statement stat = conn.createStatement();
+        stat.executeUpdate("create table t (id integer primary key, v integer)");
+        stat.executeUpdate("create table empty (v integer)");
+        conn.setAutoCommit(false);
+        PreparedStatement prep = conn.prepareStatement("insert into t values (?, ?)");
+        long expected = 0;
+        int rows = 0;
+        for (int i = 1; i <= 20000; i++) {
+            // rowids spread unevenly
+            long id = i < 15000 ? i : i * 1000L;
+            prep.setLong(1, id);
+            prep.setInt(2, i);
+            prep.addBatch();
+            if (i % 3 == 0) {
+                expected += i;
+                rows++;
+            }
+        }
+        prep.executeBatch();
+        conn.commit();
+        conn.setAutoCommit(true);
+        ((CoreConnection) conn).realClose();
+
+        SQLiteParallelScan scan = new SQLiteParallelScan(ds);
+        scan.setParallelism(3);
+        final AtomicLong sum = new AtomicLong();
+        final AtomicInteger count = new AtomicInteger();
+        scan.scan("t", "v", "v % ? = 0", new SQLiteParallelScan.RowHandler() {
+            public void row(ResultSet rs) throws SQLException {
+                sum.addAndGet(rs.getLong(1));
+                count.incrementAndGet();
+            }
+        }, 3);
+        assertEquals(expected, sum.get());
+        assertEquals(rows, count.get());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            scan = new SQLiteParallelScan(ds, executor);
+            scan.setParallelism(4);
+            SQLiteParallelScan.Rows merged = scan.rows("t", "id, v", "v % 3 = 0");
+            long total = 0;
+            int n = 0;
+            while (merged.next()) {
+                total += ((Number) merged.getObject(2)).longValue();
+                n++;
+            }
+            assertEquals(expected, total);
+            assertEquals(rows, n);
+
+            // closed early
+            merged = scan.rows("t", "*", null);
+            assertTrue(merged.next());
+            merged.close();
+
+            assertFalse(scan.rows("empty", "*", null).next());
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        scan = new SQLiteParallelScan(ds);
+        try {
+            scan.scan("t", "v", null, new SQLiteParallelScan.RowHandler() {
+                public void row(ResultSet rs) throws SQLException {
+                    throw new SQLException("stop");
+                }
+            });
+            fail("handler failed");
+        }
+        catch (SQLException e) {
+            assertEquals("stop", e.getMessage());
+        }
+        try {
+            scan.rows("t", "nosuchcolumn", null).next();
+            fail("no such column");
+        }
+        catch (SQLException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void parallelScanRanges() {
+        assertArrayEquals(new long[] { 1, 3, 4, 6, 7, 10 }, SQLiteParallelScan.split(1, 10, 3));
+        assertArrayEquals(new long[] { 5, 5, 6, 6 }, SQLiteParallelScan.split(5, 6, 4));
+        long[] bounds = SQLiteParallelScan.split(Long.MIN_VALUE, Long.MAX_VALUE, 2);
+        assertArrayEquals(new long[] { Long.MIN_VALUE, -1, 0, Long.MAX_VALUE }, bounds);
+    }
 }
@@ -2,6 +2,7 @@ package org.sqlite;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
 import java.lang.reflect.Method;
 import java.sql.BatchUpdateException;
 import java.sql.Connection;
@@ -10,9 +11,13 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.Statement;
+import java.util.Timer;
+import java.util.TimerTask;
 
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -468,4 +473,131 @@ public class StatementTest
         assertTrue( stat.isClosed() );
     }
 
+    /** Counts forever. */
+    private static final String RUNAWAY = "with recursive c(x) as (select 1 union all select x + 1 from c) "
+            + "select count(*) from c";
+
+    /**
+     * Cancels a statement after a while, in case the native library cannot enforce query
+     * timeouts.
+     */
+    private static Timer cancelLater(final Statement s) {
+        Timer timer = new Timer(true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    s.cancel();
+                }
+                catch (SQLException e) {}
+            }
+        }, 4000);
+        return timer;
+    }
+
+    @Test
+    public void queryTimeout() throws SQLException {
+        Assume.assumeTrue(((SQLiteConnection) conn).db().extended());
+        ((CoreConnection) conn).setBusyTimeout(3000);
+        stat.setQueryTimeout(1);
+        assertEquals(1, stat.getQueryTimeout());
+        assertEquals(3000, ((CoreConnection) conn).getBusyTimeout());
+        Statement other = conn.createStatement();
+        assertEquals(0, other.getQueryTimeout());
+        other.close();
+
+        Timer timer = cancelLater(stat);
+        long start = System.currentTimeMillis();
+        try {
+            stat.executeQuery(RUNAWAY);
+            fail("query did not time out");
+        }
+        catch (SQLTimeoutException e) {
+            long elapsed = System.currentTimeMillis() - start;
+            assertTrue(elapsed >= 900 && elapsed < 4000);
+        }
+        finally {
+            timer.cancel();
+        }
+
+        timer = cancelLater(stat);
+        try {
+            stat.executeUpdate("create table t as " + RUNAWAY);
+            fail("update did not time out");
+        }
+        catch (SQLTimeoutException e) {}
+        finally {
+            timer.cancel();
+        }
+
+        // the connection is still usable, without a deadline
+        stat.setQueryTimeout(0);
+        ResultSet rs = stat.executeQuery("with recursive c(x) as (select 1 union all select x + 1 from c limit 100000) "
+                + "select count(*) from c");
+        assertTrue(rs.next());
+        assertEquals(100000, rs.getInt(1));
+        rs.close();
+    }
+
+    @Test
+    public void queryTimeoutBoundsLockWaits() throws Exception {
+        File tmp = File.createTempFile("timeout", ".db", new File("target"));
+        tmp.deleteOnExit();
+        String url = "jdbc:sqlite:" + tmp.getAbsolutePath();
+        Connection holder = DriverManager.getConnection(url);
+        SQLiteConnection waiter = (SQLiteConnection) DriverManager.getConnection(url);
+        try {
+            Statement hold = holder.createStatement();
+            hold.executeUpdate("create table t (id)");
+            hold.execute("begin exclusive");
+
+            waiter.setBusyTimeout(10000);
+            Statement wait = waiter.createStatement();
+            wait.setQueryTimeout(1);
+            long start = System.currentTimeMillis();
+            try {
+                wait.executeUpdate("insert into t values (1)");
+                fail("the lock was taken");
+            }
+            catch (SQLException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("SQLITE_BUSY"));
+            }
+            long elapsed = System.currentTimeMillis() - start;
+            assertTrue(elapsed >= 900 && elapsed < 5000);
+            assertEquals(10000, waiter.getBusyTimeout());
+
+            // without a query timeout, the busy timeout applies again
+            hold.execute("commit");
+            wait.setQueryTimeout(0);
+            assertEquals(1, wait.executeUpdate("insert into t values (1)"));
+            wait.close();
+        }
+        finally {
+            holder.close();
+            waiter.close();
+        }
+    }
+
+    @Test
+    public void queryTimeoutWhileFetching() throws SQLException {
+        Assume.assumeTrue(((SQLiteConnection) conn).db().extended());
+        PreparedStatement prep = conn.prepareStatement("select 1 union all select * from (" + RUNAWAY + ")");
+        prep.setQueryTimeout(1);
+        Timer timer = cancelLater(prep);
+        ResultSet rs = prep.executeQuery();
+        try {
+            assertTrue(rs.next());
+            assertEquals(1, rs.getInt(1));
+            rs.next();
+            fail("query did not time out");
+        }
+        catch (SQLTimeoutException e) {
+            assertTrue(rs.isClosed());
+        }
+        finally {
+            timer.cancel();
+        }
+        prep.close();
+    }
+
 }
@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 
 import java.io.File;
 import java.lang.reflect.Field;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -378,6 +379,63 @@ public class TransactionTest
         tmpFile.delete();
     }
 
+    @Test
+    public void batchTransaction() throws SQLException {
+        ((SQLiteConnection) conn1).setBatchTransaction(true);
+        stat1.executeUpdate("create table test (id integer primary key);");
+
+        PreparedStatement prep = conn1.prepareStatement("insert into test values (?);");
+        for (int i = 0; i < 100; i++) {
+            prep.setInt(1, i);
+            prep.addBatch();
+        }
+        assertEquals(100, prep.executeBatch().length);
+        assertTrue(conn1.getAutoCommit());
+
+        // other connections see the rows once the batch returns
+        ResultSet rs = stat2.executeQuery("select count(*) from test;");
+        assertEquals(100, rs.getInt(1));
+        rs.close();
+
+        // a failing entry rolls back the whole batch
+        prep.setInt(1, 100);
+        prep.addBatch();
+        prep.setInt(1, 5);
+        prep.addBatch();
+        try {
+            prep.executeBatch();
+            fail("duplicate key should fail the batch");
+        }
+        catch (BatchUpdateException e) {
+            assertArrayEquals(new int[] { Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED }, e.getUpdateCounts());
+        }
+        rs = stat2.executeQuery("select count(*) from test;");
+        assertEquals(100, rs.getInt(1));
+        rs.close();
+
+        // inside a transaction the batch runs in a savepoint
+        conn1.setAutoCommit(false);
+        stat1.executeUpdate("insert into test values (200);");
+        stat1.addBatch("insert into test values (201);");
+        stat1.addBatch("insert into test values (200);");
+        try {
+            stat1.executeBatch();
+            fail("duplicate key should fail the batch");
+        }
+        catch (BatchUpdateException e) {
+            assertEquals(2, e.getUpdateCounts().length);
+        }
+        stat1.addBatch("insert into test values (202);");
+        assertEquals(1, stat1.executeBatch().length);
+        conn1.commit();
+        conn1.setAutoCommit(true);
+
+        rs = stat2.executeQuery("select group_concat(id) from test where id >= 200;");
+        assertEquals("200,202", rs.getString(1));
+        rs.close();
+        prep.close();
+    }
+
     public void runUpdates(Connection con, String table) throws SQLException {
         Statement stat = con.createStatement(); 
 
@@ -12,6 +12,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -248,6 +249,172 @@ public class UDFTest
         stat.executeQuery("select f9();");
     }
 
+    @Test
+    public void scalar() throws SQLException {
+        Function.create(conn, "sarg", new Function.Scalar() {
+            @Override
+            protected void xFunc(Arguments args) throws SQLException {
+                switch (args.value_type(0)) {
+                case 1:
+                    args.result(args.value_long(0));
+                    break;
+                case 2:
+                    args.result(args.value_double(0));
+                    break;
+                case 3:
+                    args.result(args.value_text(0));
+                    break;
+                case 4:
+                    args.result(args.value_blob(0));
+                    break;
+                }
+            }
+        });
+        PreparedStatement prep = conn.prepareStatement("select sarg(?), sarg(?), sarg(?), sarg(?), sarg(?);");
+        prep.setLong(1, Long.MAX_VALUE);
+        prep.setDouble(2, 2.5);
+        prep.setString(3, "h\u00e9llo \u4e16\u754c");
+        prep.setBytes(4, b1);
+        prep.setNull(5, java.sql.Types.INTEGER);
+        ResultSet rs = prep.executeQuery();
+        assertTrue(rs.next());
+        assertEquals(Long.MAX_VALUE, rs.getLong(1));
+        assertEquals(2.5, rs.getDouble(2), 0);
+        assertEquals("h\u00e9llo \u4e16\u754c", rs.getString(3));
+        assertArrayEquals(b1, rs.getBytes(4));
+        assertNull(rs.getObject(5));
+        rs.close();
+        prep.close();
+    }
+
+    @Test
+    public void scalarConversions() throws SQLException {
+        Function.create(conn, "sconv", new Function.Scalar() {
+            @Override
+            protected void xFunc(Arguments args) throws SQLException {
+                args.result(args.count() + ":" + args.value_int(0) + ":" + args.value_double(1) + ":"
+                        + args.value_text(2) + ":" + args.value_bytes(3) + ":" + args.value_text(4));
+            }
+        });
+        ResultSet rs = stat.executeQuery("select sconv('42', ' 1.5', 7, 'abc', null);");
+        assertTrue(rs.next());
+        assertEquals("5:42:1.5:7:3:null", rs.getString(1));
+        rs.close();
+    }
+
+    @Test
+    public void scalarConversionsOfSQLite() throws SQLException {
+        Function.create(conn, "sconvert", new Function.Scalar() {
+            @Override
+            protected void xFunc(Arguments args) throws SQLException {
+                args.result(args.value_text(0) + "|" + args.value_long(0) + "|" + args.value_double(0));
+            }
+        });
+        Function.create(conn, "fconvert", new Function() {
+            @Override
+            protected void xFunc() throws SQLException {
+                result(value_text(0) + "|" + value_long(0) + "|" + value_double(0));
+            }
+        });
+
+        // both read values of another type as SQLite converts them
+        String[] values = { "0.1 + 0.2", "1e20", "'12abc'", "'Infinity'", "' 42 '", "'1e400'", "x'3235'", "7" };
+        for (String value : values) {
+            ResultSet rs = stat.executeQuery("select sconvert(" + value + "), fconvert(" + value + ");");
+            assertTrue(rs.next());
+            assertEquals(value, rs.getString(2), rs.getString(1));
+            rs.close();
+        }
+        ResultSet rs = stat.executeQuery("select sconvert(1e20), sconvert('12abc'), sconvert('Infinity');");
+        assertTrue(rs.next());
+        assertEquals("1.0e+20|9223372036854775807|1.0E20", rs.getString(1));
+        assertEquals("12abc|12|12.0", rs.getString(2));
+        assertEquals("Infinity|0|0.0", rs.getString(3));
+        rs.close();
+    }
+
+    @Test
+    public void scalarWhere() throws SQLException {
+        Function.create(conn, "within", new Function.Scalar() {
+            @Override
+            protected void xFunc(Arguments args) throws SQLException {
+                double dx = args.value_double(0) - args.value_double(2);
+                double dy = args.value_double(1) - args.value_double(3);
+                args.result(dx * dx + dy * dy <= args.value_double(4) * args.value_double(4) ? 1 : 0);
+            }
+        });
+        stat.executeUpdate("create table pts (x, y);");
+        PreparedStatement prep = conn.prepareStatement("insert into pts values (?, ?);");
+        for (int i = 0; i < 100; i++) {
+            prep.setInt(1, i % 10);
+            prep.setInt(2, i / 10);
+            prep.addBatch();
+        }
+        prep.executeBatch();
+        prep.close();
+        ResultSet rs = stat.executeQuery("select count(*) from pts where within(x, y, 0, 0, 1.5);");
+        assertTrue(rs.next());
+        assertEquals(4, rs.getInt(1));
+        rs.close();
+    }
+
+    @Test
+    public void scalarLargeValues() throws SQLException {
+        Function.create(conn, "srepeat", new Function.Scalar() {
+            @Override
+            protected void xFunc(Arguments args) throws SQLException {
+                String text = args.value_text(0);
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < args.value_int(1); i++) {
+                    sb.append(text);
+                }
+                args.result(sb.toString());
+            }
+        });
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            large.append((char) ('a' + i % 26));
+        }
+        PreparedStatement prep = conn.prepareStatement("select srepeat(?, ?), srepeat('\u00e9', 3);");
+        prep.setString(1, large.toString());
+        prep.setInt(2, 3);
+        ResultSet rs = prep.executeQuery();
+        assertTrue(rs.next());
+        assertEquals(large.toString() + large + large, rs.getString(1));
+        assertEquals("\u00e9\u00e9\u00e9", rs.getString(2));
+        rs.close();
+        prep.close();
+    }
+
+    @Test
+    public void scalarErr() throws SQLException {
+        Function.create(conn, "serr", new Function.Scalar() {
+            @Override
+            protected void xFunc(Arguments args) throws SQLException {
+                if (args.value_int(0) == 0) {
+                    args.error("serr failed");
+                }
+                else {
+                    args.value_int(1);
+                }
+            }
+        });
+        try {
+            stat.executeQuery("select serr(0);");
+            fail("error() did not fail the query");
+        }
+        catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("serr failed"));
+        }
+        try {
+            stat.executeQuery("select serr(1);");
+            fail("an out of bounds argument did not fail the query");
+        }
+        catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("out bounds"));
+        }
+    }
+
     @Test
     public void trigger() throws SQLException {
         Function.create(conn, "inform", new Function() {
@@ -289,6 +456,197 @@ public class UDFTest
         assertEquals(rs.getInt(1), rs.getInt(2));
     }
 
+    private Function geohash() {
+        return new Function() {
+            @Override
+            protected void xFunc() throws SQLException {
+                result(value_int(0) / 10 + "/" + value_int(1) / 10);
+            }
+        };
+    }
+
+    @Test
+    public void deterministic() throws SQLException {
+        Assume.assumeTrue(((SQLiteConnection) conn).db().extended());
+        stat.executeUpdate("create table pts (x, y);");
+        for (int i = 0; i < 20; i++) {
+            stat.executeUpdate("insert into pts values (" + i + ", " + (20 - i) + ");");
+        }
+        Function.create(conn, "volatile_hash", geohash());
+        try {
+            stat.executeUpdate("create index bad on pts (volatile_hash(x, y));");
+            fail("indexed a function which is not deterministic");
+        }
+        catch (SQLException e) {
+            // expected
+        }
+
+        Function.create(conn, "geohash", geohash(), Function.FLAG_DETERMINISTIC);
+        stat.executeUpdate("create index pts_hash on pts (geohash(x, y));");
+        ResultSet rs = stat.executeQuery("select count(*) from pts where geohash(x, y) = '0/1';");
+        assertTrue(rs.next());
+        assertEquals(9, rs.getInt(1));
+        rs.close();
+    }
+
+    @Test
+    public void utf8() throws SQLException {
+        Function.create(conn, "futf8", new Function() {
+            @Override
+            protected void xFunc() throws SQLException {
+                result(value_text(0) + "\u00e9");
+            }
+        }, Function.FLAG_UTF8);
+        ResultSet rs = stat.executeQuery("select futf8('\u4e16');");
+        assertTrue(rs.next());
+        assertEquals("\u4e16\u00e9", rs.getString(1));
+        rs.close();
+    }
+
+    @Test(expected = SQLException.class)
+    public void invalidFlags() throws SQLException {
+        Function.create(conn, "fbad", geohash(), 0x10000000);
+    }
+
+    @Test
+    public void window() throws SQLException {
+        ResultSet rs = stat.executeQuery("select sqlite_version();");
+        String[] version = rs.getString(1).split("\\.");
+        rs.close();
+        Assume.assumeTrue(Integer.parseInt(version[0]) > 3
+                || (Integer.parseInt(version[0]) == 3 && Integer.parseInt(version[1]) >= 25));
+
+        final int[] inverses = new int[1];
+        Function.create(conn, "wsum", new Function.Window() {
+            private long sum = 0;
+
+            @Override
+            protected void xStep() throws SQLException {
+                sum += value_long(0);
+            }
+
+            @Override
+            protected void xInverse() throws SQLException {
+                sum -= value_long(0);
+                inverses[0]++;
+            }
+
+            @Override
+            protected void xValue() throws SQLException {
+                result(sum);
+            }
+
+            @Override
+            protected void xFinal() throws SQLException {
+                result(sum);
+            }
+        });
+        stat.executeUpdate("create table t (i, v);");
+        for (int i = 1; i <= 10; i++) {
+            stat.executeUpdate("insert into t values (" + i + ", " + i * i + ");");
+        }
+
+        rs = stat.executeQuery("select wsum(v) over (order by i rows between 2 preceding and current row),"
+                + " sum(v) over (order by i rows between 2 preceding and current row) from t order by i;");
+        for (int i = 1; i <= 10; i++) {
+            assertTrue(rs.next());
+            assertEquals(rs.getLong(2), rs.getLong(1));
+        }
+        assertFalse(rs.next());
+        rs.close();
+        assertEquals(7, inverses[0]);
+
+        rs = stat.executeQuery("select wsum(v), sum(v) from t;");
+        assertTrue(rs.next());
+        assertEquals(rs.getLong(2), rs.getLong(1));
+        rs.close();
+    }
+
+    /** Sums the products of its two arguments, and counts its rows and batches. */
+    private static class BatchSum extends Function.BatchAggregate
+    {
+        private double sum = 0;
+        private long rows = 0;
+        private int batches = 0;
+
+        BatchSum(int batchSize) {
+            super(batchSize);
+        }
+
+        @Override
+        protected void xStepBatch(Rows r) throws SQLException {
+            double[] a = r.doubles(0);
+            long[] b = r.longs(1);
+            for (int i = 0; i < r.count(); i++) {
+                sum += a[i] * b[i];
+            }
+            rows += r.count();
+            batches++;
+        }
+
+        @Override
+        protected void xFinal() throws SQLException {
+            result(rows == 0 ? "empty" : sum + "/" + rows + "/" + batches);
+        }
+    }
+
+    @Test
+    public void batchAggregate() throws SQLException {
+        Assume.assumeTrue(((SQLiteConnection) conn).db().extended());
+        Function.create(conn, "bsum", new BatchSum(7));
+        stat.executeUpdate("create table t (g, a, b);");
+        PreparedStatement prep = conn.prepareStatement("insert into t values (?, ?, ?);");
+        for (int i = 0; i < 100; i++) {
+            prep.setInt(1, i % 3);
+            prep.setDouble(2, i / 2.0);
+            prep.setString(3, Integer.toString(i % 5));
+            prep.addBatch();
+        }
+        prep.executeBatch();
+        prep.close();
+
+        ResultSet rs = stat.executeQuery("select bsum(a, b), bsum(b, a), sum(a * b), count(*) from t group by g;");
+        for (int g = 0; g < 3; g++) {
+            assertTrue(rs.next());
+            String[] first = rs.getString(1).split("/");
+            String[] second = rs.getString(2).split("/");
+            assertEquals(rs.getDouble(3), Double.parseDouble(first[0]), 0);
+            assertEquals(rs.getInt(4), Integer.parseInt(first[1]));
+            assertEquals(rs.getInt(4), Integer.parseInt(second[1]));
+            int batches = Integer.parseInt(first[2]);
+            assertEquals((rs.getInt(4) + 6) / 7, batches);
+        }
+        assertFalse(rs.next());
+        rs.close();
+
+        rs = stat.executeQuery("select bsum(a, b) from t where g > 3;");
+        assertTrue(rs.next());
+        assertEquals("empty", rs.getString(1));
+        rs.close();
+    }
+
+    @Test
+    public void batchAggregateErr() throws SQLException {
+        Function.create(conn, "berr", new Function.BatchAggregate() {
+            @Override
+            protected void xStepBatch(Rows rows) throws SQLException {
+                throw new SQLException("berr failed");
+            }
+
+            @Override
+            protected void xFinal() throws SQLException {
+                result(0);
+            }
+        });
+        try {
+            stat.executeQuery("select berr(1);");
+            fail("xStepBatch() did not fail the query");
+        }
+        catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("berr failed"));
+        }
+    }
+
     @Test
     public void destroy() throws SQLException {
         Function.create(conn, "f1", new Function() {
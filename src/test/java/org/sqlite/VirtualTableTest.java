@@ -0,0 +1,317 @@
+package org.sqlite;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests virtual tables implemented in Java. */
+public class VirtualTableTest
+{
+    private Connection conn;
+    private Statement  stat;
+
+    private int        produced;
+    private int        filters;
+    private boolean    disconnected;
+
+    @Before
+    public void connect() throws Exception {
+        conn = DriverManager.getConnection("jdbc:sqlite:");
+        stat = conn.createStatement();
+        Assume.assumeTrue(((SQLiteConnection) conn).db().extended());
+    }
+
+    @After
+    public void close() throws SQLException {
+        stat.close();
+        conn.close();
+    }
+
+    /** A table of n rows: id, name, the half of id, and a BLOB for even ids. */
+    private class NumberTable extends VirtualTable
+    {
+        private final int n;
+
+        NumberTable(int n) {
+            this.n = n;
+        }
+
+        @Override
+        public String getSchema() {
+            return "create table x(id integer, name text, half real, data blob)";
+        }
+
+        @Override
+        protected void bestIndex(IndexInfo info) {
+            for (int i = 0; i < info.getConstraintCount(); i++) {
+                if (info.getConstraintColumn(i) == 0 && info.getConstraintOp(i) == IndexInfo.EQ
+                        && info.isConstraintUsable(i)) {
+                    info.useConstraint(i, 1, true);
+                    info.setIndexNumber(1);
+                    info.setIndexString("id");
+                    info.setEstimatedCost(1);
+                    info.setEstimatedRows(1);
+                    return;
+                }
+            }
+            info.setEstimatedCost(n);
+            info.setEstimatedRows(n);
+        }
+
+        @Override
+        public VirtualCursor open() {
+            return new VirtualCursor() {
+                private long id;
+                private long end;
+
+                @Override
+                protected void filter(int indexNumber, String indexString, Object[] values) {
+                    filters++;
+                    if (indexNumber == 1) {
+                        assertEquals("id", indexString);
+                        assertEquals(1, values.length);
+                        id = ((Long) values[0]).longValue();
+                        end = id < 1 || id > n ? id : id + 1;
+                    }
+                    else {
+                        assertEquals(0, values.length);
+                        id = 1;
+                        end = n + 1;
+                    }
+                }
+
+                @Override
+                protected boolean next(Row row) {
+                    if (id >= end) {
+                        return false;
+                    }
+                    produced++;
+                    row.setRowid(id);
+                    row.set(0, id);
+                    row.set(1, "n" + id);
+                    row.set(2, id / 2.0);
+                    if (id % 2 == 0) {
+                        row.set(3, new byte[] { (byte) id, 0, (byte) -id });
+                    }
+                    id++;
+                    return true;
+                }
+            };
+        }
+
+        @Override
+        protected void disconnect() {
+            disconnected = true;
+        }
+    }
+
+    private void createModule(final int n) throws SQLException {
+        VirtualTable.createModule(conn, "numbers", new VirtualTable.Module() {
+            public VirtualTable connect(String[] args) {
+                assertEquals("numbers", args[0]);
+                return new NumberTable(args.length > 3 ? Integer.parseInt(args[3]) : n);
+            }
+        });
+    }
+
+    @Test
+    public void scan() throws SQLException {
+        createModule(10);
+        stat.executeUpdate("create virtual table temp.t using numbers");
+
+        ResultSet rs = stat.executeQuery("select rowid, id, name, half, data from t");
+        for (int i = 1; i <= 10; i++) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getLong(1));
+            assertEquals(i, rs.getLong(2));
+            assertEquals("n" + i, rs.getString(3));
+            assertEquals(i / 2.0, rs.getDouble(4), 0);
+            if (i % 2 == 0) {
+                assertArrayEquals(new byte[] { (byte) i, 0, (byte) -i }, rs.getBytes(5));
+            }
+            else {
+                assertNull(rs.getBytes(5));
+            }
+        }
+        assertFalse(rs.next());
+        rs.close();
+        assertEquals(1, filters);
+
+        rs = stat.executeQuery("select count(*), sum(id), total(half) from t where name like 'n1%'");
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        assertEquals(11, rs.getLong(2));
+        assertEquals(5.5, rs.getDouble(3), 0);
+        rs.close();
+    }
+
+    @Test
+    public void batches() throws SQLException {
+        createModule(100000);
+        stat.executeUpdate("create virtual table temp.t using numbers");
+
+        ResultSet rs = stat.executeQuery("select count(*), sum(id), sum(length(name)), count(data) from t");
+        assertTrue(rs.next());
+        assertEquals(100000, rs.getInt(1));
+        assertEquals(100000L * 100001 / 2, rs.getLong(2));
+        assertEquals(9 * 2 + 90 * 3 + 900 * 4 + 9000 * 5 + 90000 * 6 + 7, rs.getLong(3));
+        assertEquals(50000, rs.getInt(4));
+        rs.close();
+        assertEquals(100000, produced);
+
+        // the cursor runs ahead by up to a batch of rows
+        produced = 0;
+        rs = stat.executeQuery("select id from t limit 3");
+        assertTrue(rs.next());
+        assertTrue(rs.next());
+        assertTrue(rs.next());
+        assertFalse(rs.next());
+        rs.close();
+        assertEquals(VirtualCursor.DEFAULT_BATCH_SIZE, produced);
+    }
+
+    @Test
+    public void arguments() throws SQLException {
+        createModule(0);
+        stat.executeUpdate("create virtual table temp.t using numbers(3)");
+        ResultSet rs = stat.executeQuery("select count(*) from t");
+        assertTrue(rs.next());
+        assertEquals(3, rs.getInt(1));
+        rs.close();
+    }
+
+    @Test
+    public void constraint() throws SQLException {
+        createModule(1000);
+        stat.executeUpdate("create virtual table temp.t using numbers");
+
+        ResultSet rs = stat.executeQuery("select name from t where id = 500");
+        assertTrue(rs.next());
+        assertEquals("n500", rs.getString(1));
+        assertFalse(rs.next());
+        rs.close();
+        assertEquals(1, produced);
+
+        rs = stat.executeQuery("select count(*) from t where id = 5000");
+        assertTrue(rs.next());
+        assertEquals(0, rs.getInt(1));
+        rs.close();
+        assertEquals(1, produced);
+    }
+
+    @Test
+    public void join() throws SQLException {
+        createModule(1000);
+        stat.executeUpdate("create virtual table temp.t using numbers");
+        stat.executeUpdate("create table orders (item integer, qty integer)");
+        stat.executeUpdate("insert into orders values (3, 1), (30, 2), (300, 3), (3000, 4)");
+
+        ResultSet rs = stat.executeQuery(
+                "select name, qty from orders join t on t.id = orders.item order by qty");
+        assertTrue(rs.next());
+        assertEquals("n3", rs.getString(1));
+        assertTrue(rs.next());
+        assertEquals("n30", rs.getString(1));
+        assertTrue(rs.next());
+        assertEquals("n300", rs.getString(1));
+        assertEquals(3, rs.getInt(2));
+        assertFalse(rs.next());
+        rs.close();
+
+        // one lookup for each order instead of a scan of the table
+        assertEquals(4, filters);
+        assertEquals(3, produced);
+    }
+
+    @Test
+    public void errors() throws SQLException {
+        VirtualTable.createModule(conn, "failing", new VirtualTable.Module() {
+            public VirtualTable connect(String[] args) throws SQLException {
+                if (args.length > 3) {
+                    throw new SQLException("bad argument " + args[3]);
+                }
+                return new VirtualTable() {
+                    @Override
+                    public String getSchema() {
+                        return "create table x(a)";
+                    }
+
+                    @Override
+                    public VirtualCursor open() {
+                        return new VirtualCursor() {
+                            @Override
+                            protected void filter(int indexNumber, String indexString, Object[] values) {}
+
+                            @Override
+                            protected boolean next(Row row) throws SQLException {
+                                throw new SQLException("broken cursor");
+                            }
+                        };
+                    }
+                };
+            }
+        });
+
+        try {
+            stat.executeUpdate("create virtual table temp.t using failing(x)");
+            fail("the module did not fail");
+        }
+        catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("bad argument x"));
+        }
+
+        stat.executeUpdate("create virtual table temp.t using failing");
+        try {
+            stat.executeQuery("select * from t").next();
+            fail("the cursor did not fail");
+        }
+        catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("broken cursor"));
+        }
+    }
+
+    @Test
+    public void badSchema() throws SQLException {
+        VirtualTable.createModule(conn, "unparsable", new VirtualTable.Module() {
+            public VirtualTable connect(String[] args) {
+                return new NumberTable(1) {
+                    @Override
+                    public String getSchema() {
+                        return "create table x(id integer,)";
+                    }
+                };
+            }
+        });
+        try {
+            stat.executeUpdate("create virtual table temp.t using unparsable");
+            fail("the schema was declared");
+        }
+        catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("syntax error"));
+        }
+        // the table SQLite did not take is let go of
+        assertTrue(disconnected);
+    }
+
+    @Test
+    public void drop() throws SQLException {
+        createModule(10);
+        stat.executeUpdate("create virtual table temp.t using numbers");
+        stat.executeUpdate("drop table t");
+        assertTrue(disconnected);
+    }
+
+    @Test(expected = SQLException.class)
+    public void noModule() throws SQLException {
+        VirtualTable.createModule(conn, "none", null);
+    }
+}